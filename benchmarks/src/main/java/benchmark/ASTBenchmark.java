@@ -0,0 +1,98 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parser.Parser;
+import parser.SyntacticException;
+import scanner.LexicalException;
+import util.MappedSource;
+import util.AST.ASTReader;
+import util.AST.ASTWriter;
+import util.AST.FuncDec;
+import util.AST.Program;
+
+/**
+ * Binary AST format against parsing: reparsing the source, writing the
+ * binary AST, reading all of it back from a mapped file and reading only
+ * one function
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ASTBenchmark {
+
+	// Number of functions of the generated program
+	@Param({ "10", "100" })
+	public int subprograms;
+	// Block nesting depth
+	@Param({ "2", "4" })
+	public int depth;
+
+	// The generated source, its AST and its binary AST file
+	private Path sourceFile, binaryFile;
+	private MappedSource source;
+	private Program program;
+
+	@Setup
+	public void setup() throws IOException, SyntacticException, LexicalException {
+		this.sourceFile = Files.createTempFile("synthetic", ".pas");
+		new SourceGenerator(42, this.subprograms, 8, this.depth).write(this.sourceFile);
+		this.source = new MappedSource(this.sourceFile.toString());
+		this.program = new Parser(this.source).parse();
+		this.binaryFile = Files.createTempFile("synthetic", ".ast");
+		try (OutputStream out = Files.newOutputStream(this.binaryFile)) {
+			new ASTWriter(out).write(this.program);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		this.source.close();
+		Files.deleteIfExists(this.sourceFile);
+		Files.deleteIfExists(this.binaryFile);
+	}
+
+	@Benchmark
+	public Program reparse() throws SyntacticException, LexicalException {
+		return new Parser(this.source).parse();
+	}
+
+	@Benchmark
+	public void write() throws IOException {
+		new ASTWriter(OutputStream.nullOutputStream()).write(this.program);
+	}
+
+	@Benchmark
+	public Program readAll() throws IOException {
+		return ASTReader.open(this.binaryFile).read();
+	}
+
+	@Benchmark
+	public FuncDec readOneFunction() throws IOException {
+		ASTReader reader = ASTReader.open(this.binaryFile);
+		return reader.getFunction(reader.getFunctionCount() / 2);
+	}
+
+}
@@ -0,0 +1,89 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import checker.Checker;
+import checker.SemanticException;
+import parser.Parser;
+import parser.SyntacticException;
+import scanner.LexicalException;
+import util.MappedSource;
+import util.AST.Program;
+import util.symbolsTable.IdentificationTable;
+
+/**
+ * Checker throughput: checking (and annotating) a parsed program, and
+ * parsing it with and without the check, so the cost of the semantic pass
+ * shows next to the parser; the sizes show that it grows linearly
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckerBenchmark {
+
+	// Number of functions of the generated program
+	@Param({ "10", "100" })
+	public int subprograms;
+	// Block nesting depth
+	@Param({ "2", "4" })
+	public int depth;
+
+	// The generated source and its AST
+	private Path file;
+	private MappedSource source;
+	private Program program;
+
+	@Setup
+	public void setup() throws IOException, SyntacticException, LexicalException {
+		this.file = Files.createTempFile("synthetic", ".pas");
+		new SourceGenerator(42, this.subprograms, 8, this.depth).write(this.file);
+		this.source = new MappedSource(this.file.toString());
+		this.program = new Parser(this.source).parse();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		this.source.close();
+		Files.deleteIfExists(this.file);
+	}
+
+	@Benchmark
+	public Program check() throws SemanticException {
+		new Checker(new IdentificationTable()).check(this.program);
+		return this.program;
+	}
+
+	@Benchmark
+	public Program parse() throws SyntacticException, LexicalException {
+		return new Parser(this.source).parse();
+	}
+
+	@Benchmark
+	public Program parseAndCheck() throws SyntacticException, LexicalException, SemanticException {
+		Program program = new Parser(this.source).parse();
+		new Checker(new IdentificationTable()).check(program);
+		return program;
+	}
+
+}
@@ -0,0 +1,103 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import checker.SemanticException;
+import util.symbolsTable.IdentificationTable;
+
+/**
+ * Identification table throughput: enter, retrieve, openScope and closeScope
+ * on a table with nested scopes
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentificationTableBenchmark {
+
+	// Names declared in each scope
+	@Param({ "10", "1000" })
+	public int names;
+	// Number of nested scopes
+	@Param({ "1", "16" })
+	public int scopes;
+
+	// Names of each scope (interned, as the parser does)
+	private String[][] ids;
+	// A table with every scope open and declared
+	private IdentificationTable table;
+
+	@Setup(Level.Trial)
+	public void setup() throws SemanticException {
+		this.ids = new String[this.scopes][this.names];
+		for (int scope = 0; scope < this.scopes; scope++) {
+			for (int i = 0; i < this.names; i++) {
+				// A name visible in some scope cannot be declared again
+				this.ids[scope][i] = ("v" + (scope * this.names + i)).intern();
+			}
+		}
+		this.table = this.fill();
+	}
+
+	/**
+	 * Opens every scope and declares its names
+	 * @return
+	 * @throws SemanticException
+	 */
+	private IdentificationTable fill() throws SemanticException {
+		IdentificationTable table = new IdentificationTable();
+		for (int scope = 0; scope < this.scopes; scope++) {
+			table.openScope();
+			for (String id : this.ids[scope]) {
+				table.enter(id, null, scope);
+			}
+		}
+		return table;
+	}
+
+	@Benchmark
+	public IdentificationTable enterAndCloseScopes() throws SemanticException {
+		IdentificationTable table = this.fill();
+		for (int scope = 0; scope < this.scopes; scope++) {
+			table.closeScope();
+		}
+		return table;
+	}
+
+	@Benchmark
+	public void retrieve(Blackhole blackhole) {
+		for (String[] scope : this.ids) {
+			for (String id : scope) {
+				blackhole.consume(this.table.retrieveAttribute(id));
+			}
+		}
+	}
+
+	@Benchmark
+	public void reopenInnermostScope() throws SemanticException {
+		this.table.closeScope();
+		this.table.openScope();
+		for (String id : this.ids[this.scopes - 1]) {
+			this.table.enter(id, null, 0);
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parser.Parser;
+import parser.SyntacticException;
+import scanner.LexicalException;
+import scanner.TokenPipeline;
+import util.AST.Program;
+
+/**
+ * Parser throughput: programs per second over Parser.parse(), with the
+ * scanner on the parser thread and on a producer thread (token pipeline)
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Benchmark
+	public Program parse(Sources sources) throws SyntacticException, LexicalException {
+		return new Parser(sources.getSource()).parse();
+	}
+
+	@Benchmark
+	public Program parsePipelined(Sources sources) throws SyntacticException, LexicalException {
+		try (TokenPipeline tokens = new TokenPipeline(sources.getSource())) {
+			return new Parser(tokens).parse();
+		}
+	}
+
+}
@@ -0,0 +1,271 @@
+package benchmark;
+
+import parser.GrammarSymbols;
+import scanner.Keywords;
+import scanner.LexicalException;
+import util.Source;
+import util.diagnostics.Code;
+import util.diagnostics.Diagnostic;
+
+/**
+ * Reference scanner
+ * The hand written scanner the table driven one replaced: a switch over the
+ * states of the DFA of the lexical grammar, coded by hand. ScannerCheck
+ * compares the two token by token; it is not used by the compiler
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ReferenceScanner {
+
+	// The source
+	private Source source;
+	// The offset of the current char in the source code and of the one after it
+	private int offset, nextOffset;
+	// The last char read from the source code
+	private char currentChar;
+	// The kind of the current token
+	private GrammarSymbols currentKind;
+	// The offsets where the current token starts and ends
+	private int tokenStart, tokenEnd;
+	// Current line and column in the source file
+	private int line, column;
+
+	/**
+	 * Default constructor
+	 * @param source
+	 */
+	public ReferenceScanner(Source source) {
+		this.source = source;
+		this.readChar();
+	}
+
+	/**
+	 * Scans the next token
+	 * @return
+	 * @throws LexicalException
+	 */
+	public GrammarSymbols advance() throws LexicalException {
+		while (this.isSeparator(this.currentChar)) {
+			this.scanSeparator();
+		}
+		this.tokenStart = this.offset;
+		this.currentKind = this.scanToken();
+		this.tokenEnd = this.offset;
+		return this.currentKind;
+	}
+
+	public GrammarSymbols getKind() {
+		return this.currentKind;
+	}
+
+	public String getSpelling() {
+		return this.source.substring(this.tokenStart, this.tokenEnd);
+	}
+
+	public int getLine() {
+		return this.line;
+	}
+
+	public int getColumn() {
+		return this.column;
+	}
+
+	private boolean isSeparator(char c) {
+		return c == '#' || c == ' ' || c == '\n' || c == '\t';
+	}
+
+	private void scanSeparator() {
+		if ( this.currentChar == '#' ) {
+			while (this.currentChar != '\n' && this.currentChar != Source.EOT) {
+				this.getNextChar();
+			}
+		} else {
+			this.getNextChar();
+		}
+	}
+
+	private void getNextChar() {
+		this.readChar();
+		if ( this.currentChar == '\n' ) {
+			this.line++;
+			this.column = 0;
+		} else if ( this.currentChar == '\t' ) {
+			this.column = this.column + 4;
+		} else {
+			this.column++;
+		}
+	}
+
+	/**
+	 * Moves to the next offset of the source and reads its char
+	 * A "\r\n" pair or a single '\r' is read as one '\n', and the last line
+	 * always ends with a '\n', even if the source does not
+	 */
+	private void readChar() {
+		this.offset = this.nextOffset++;
+		char c = this.source.charAt(this.offset);
+		if ( c == '\r' ) {
+			if ( this.source.charAt(this.nextOffset) == '\n' ) {
+				this.nextOffset++;
+			}
+			c = '\n';
+		} else if ( c == Source.EOT && this.currentChar != '\n' && this.currentChar != Source.EOT ) {
+			c = '\n';
+		}
+		this.currentChar = c;
+	}
+
+	private boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	/**
+	 * Scans the next token, simulating the DFA of the lexical grammar
+	 * @return
+	 * @throws LexicalException
+	 */
+	private GrammarSymbols scanToken() throws LexicalException {
+		int estado = 0;
+
+		while (true) {
+			switch (estado) {
+			case 0:
+				if ( currentChar == ';' ) {
+					estado = 1;
+				} else if ( currentChar == ':' ) {
+					estado = 2;
+				} else if ( isLetter(currentChar) ) {
+					estado = 3;
+				} else if ( currentChar == '(' ) {
+					estado = 4;
+				} else if ( currentChar == ')' ) {
+					estado = 5;
+				} else if ( currentChar == '-' ) {
+					estado = 6;
+				} else if ( currentChar == '/' ) {
+					estado = 7;
+				} else if ( currentChar == ',' ) {
+					estado = 8;
+				} else if ( currentChar == '=' ) {
+					estado = 9;
+				} else if ( currentChar == '+' ) {
+					estado = 10;
+				} else if ( currentChar == '*' ) {
+					estado = 11;
+				} else if ( isDigit(currentChar) ) {
+					estado = 12;
+				} else if ( currentChar == Source.EOT ) {
+					estado = 13;
+					break;
+				} else if ( currentChar == '.' ) {
+					estado = 17;
+				} else if ( currentChar == '<' ) {
+					estado = 16;
+				} else if ( currentChar == '>' ) {
+					estado = 18;
+				} else {
+					estado = 14;
+					break;
+				}
+				getNextChar();
+				break;
+
+			case 1:
+				return GrammarSymbols.SEMICOLON;
+
+			case 2:
+				if ( currentChar == '=' ) {
+					estado = 15;
+					getNextChar();
+				} else {
+					return GrammarSymbols.COLON;
+				}
+				break;
+
+			case 3:
+				while (isLetter(currentChar) || isDigit(currentChar)) {
+					getNextChar();
+				}
+				return Keywords.lookup(this.source, this.tokenStart, this.offset - this.tokenStart);
+
+			case 4:
+				return GrammarSymbols.LP;
+
+			case 5:
+				return GrammarSymbols.RP;
+
+			case 6:
+				return GrammarSymbols.SUB;
+
+			case 7:
+				return GrammarSymbols.DIV;
+
+			case 8:
+				return GrammarSymbols.COMMA;
+
+			case 9:
+				return GrammarSymbols.EQUALS;
+
+			case 10:
+				return GrammarSymbols.ADD;
+
+			case 11:
+				return GrammarSymbols.MUL;
+
+			case 12:
+				while (isDigit(currentChar)) {
+					getNextChar();
+				}
+				return GrammarSymbols.NUM;
+
+			case 13:
+				return GrammarSymbols.EOF;
+
+			case 14:
+				throw new LexicalException(new Diagnostic(Code.UNEXPECTED_CHARACTER, this.line, this.column, this.currentChar));
+
+			case 15:
+				return GrammarSymbols.ATTR;
+
+			case 16:
+				if ( currentChar == '=' ) {
+					estado = 19;
+					getNextChar();
+				} else if ( currentChar == '>' ) {
+					estado = 20;
+					getNextChar();
+				} else {
+					return GrammarSymbols.LT;
+				}
+				break;
+
+			case 17:
+				return GrammarSymbols.DOT;
+
+			case 18:
+				if ( currentChar == '=' ) {
+					estado = 21;
+					getNextChar();
+				} else {
+					return GrammarSymbols.GT;
+				}
+				break;
+
+			case 19:
+				return GrammarSymbols.LE;
+
+			case 20:
+				return GrammarSymbols.NOTEQUALS;
+
+			case 21:
+				return GrammarSymbols.GE;
+
+			}
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parser.GrammarSymbols;
+import scanner.LexicalException;
+import scanner.Scanner;
+import util.MappedSource;
+
+/**
+ * Scanner throughput: tokens per second over Scanner.getNextToken(), on
+ * the generated program or on a text of the same length made only of
+ * keywords and identifiers (most of them close to a keyword), which
+ * stresses telling one from the other
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+
+	// What is scanned: the generated program or keywords and identifiers
+	@Param({ "program", "words" })
+	public String workload;
+
+	// The keyword and identifier text and its mapping
+	private Path file;
+	private MappedSource words;
+
+	@Setup
+	public void setup(Sources sources) throws IOException {
+		if ( this.workload.equals("words") ) {
+			String text = new SourceGenerator(42, 0, 0, 0).words(sources.getSource().length());
+			this.file = Files.createTempFile("words", ".pas");
+			Files.write(this.file, text.getBytes(StandardCharsets.ISO_8859_1));
+			this.words = new MappedSource(this.file.toString());
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if ( this.words != null ) {
+			this.words.close();
+			Files.deleteIfExists(this.file);
+		}
+	}
+
+	private MappedSource source(Sources sources) {
+		return this.words != null ? this.words : sources.getSource();
+	}
+
+	/**
+	 * Counts the scanned tokens (reported as tokens/s)
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Tokens {
+
+		public long tokens;
+
+	}
+
+	@Benchmark
+	public int getNextToken(Sources sources, Tokens tokens) throws LexicalException {
+		Scanner scanner = new Scanner(this.source(sources));
+		int count = 1;
+		while ( scanner.getNextToken().getKind() != GrammarSymbols.EOF ) {
+			count++;
+		}
+		tokens.tokens += count;
+		return count;
+	}
+
+	@Benchmark
+	public int tokenize(Sources sources, Tokens tokens) {
+		int count = new Scanner(this.source(sources)).tokenize().size();
+		tokens.tokens += count;
+		return count;
+	}
+
+}
@@ -0,0 +1,141 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import parser.GrammarSymbols;
+import scanner.LexicalException;
+import scanner.Scanner;
+import scanner.ScannerGenerator;
+import util.CharSequenceSource;
+
+/**
+ * Scanner check, run after changing grammar.txt, the scanner or its
+ * generator. Fails (exit status 1) when ScannerTables.java is not what
+ * ScannerGenerator makes of grammar.txt, or when the table driven scanner
+ * and the hand written one (ReferenceScanner) differ in any token kind,
+ * spelling, line or column, or lexical error, over a corpus: the given
+ * sources, generated programs, keyword and identifier text and variants
+ * of them with CRLF and CR line ends, tabs, comments, invalid and non ASCII
+ * chars and cut at random offsets
+ * Usage: java -cp benchmarks/target/benchmarks.jar benchmark.ScannerCheck [grammar] [tables] [sources]
+ * (from the project directory: grammar.txt, src/scanner/ScannerTables.java
+ * and teste.pas by default)
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ScannerCheck {
+
+	// Generated programs (each also gives its variants)
+	public static final int PROGRAMS = 40;
+	// Chars inserted in the variants
+	private static final char[] NOISE = { '\t', '#', '\r', '!', '{', '"', '\u00e9', '\u00ff', '_', '\'' };
+
+	public static void main(String[] args) throws IOException {
+		Path grammar = Paths.get(args.length > 0 ? args[0] : "grammar.txt");
+		Path tables = Paths.get(args.length > 1 ? args[1] : "src/scanner/ScannerTables.java");
+		boolean failed = false;
+
+		String generated = ScannerGenerator.generate(Files.readAllLines(grammar, StandardCharsets.UTF_8));
+		String current = new String(Files.readAllBytes(tables), StandardCharsets.UTF_8);
+		if ( !generated.replace("\r", "").equals(current.replace("\r", "")) ) {
+			System.out.println(tables + " is out of date with " + grammar + " (run scanner.ScannerGenerator)");
+			failed = true;
+		}
+
+		Map<String, String> corpus = new LinkedHashMap<String, String>();
+		for (int i = 2; i < args.length || (i == 2 && args.length <= 2); i++) {
+			Path file = Paths.get(i < args.length ? args[i] : "teste.pas");
+			corpus.put(file.toString(), new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1));
+		}
+		for (int i = 0; i < PROGRAMS; i++) {
+			SourceGenerator generator = new SourceGenerator(i, 1 + i % 7, 2 + i % 5, i % 4);
+			String program = generator.generate();
+			corpus.put("program " + i, program);
+			corpus.put("words " + i, generator.words(2000));
+		}
+		Random random = new Random(42);
+		int tokens = 0;
+		for (Map.Entry<String, String> entry : corpus.entrySet()) {
+			String name = entry.getKey();
+			String text = entry.getValue();
+			String[] variants = {
+				text,
+				text.replace("\n", "\r\n"),
+				text.replace("\n", "\r"),
+				text.replace("  ", "\t"),
+				text.replace(";\n", "; # comment := 1 < 2\n"),
+				text.substring(0, random.nextInt(text.length() + 1)),
+				noise(text, random),
+				noise(text, random),
+			};
+			for (int v = 0; v < variants.length; v++) {
+				String difference = compare(variants[v]);
+				if ( difference.startsWith("!") ) {
+					System.out.println(name + ", variant " + v + ": " + difference.substring(1));
+					failed = true;
+				} else {
+					tokens += Integer.parseInt(difference);
+				}
+			}
+		}
+		System.out.println(corpus.size() * 8 + " sources, " + tokens + " tokens compared"
+				+ (failed ? ": FAILED" : ": the scanners agree and the tables are up to date"));
+		System.exit(failed ? 1 : 0);
+	}
+
+	/**
+	 * Copies a text with a noise char inserted at a random offset
+	 * @param text
+	 * @param random
+	 * @return
+	 */
+	private static String noise(String text, Random random) {
+		int offset = random.nextInt(text.length() + 1);
+		return text.substring(0, offset) + NOISE[random.nextInt(NOISE.length)] + text.substring(offset);
+	}
+
+	/**
+	 * Scans a text with both scanners
+	 * @param text
+	 * @return the number of tokens, or "!" and the first difference
+	 */
+	private static String compare(String text) {
+		Scanner scanner = new Scanner(new CharSequenceSource("check", text));
+		ReferenceScanner reference = new ReferenceScanner(new CharSequenceSource("reference", text));
+		for (int count = 1;; count++) {
+			String expected, actual;
+			try {
+				reference.advance();
+				expected = reference.getKind() + " '" + reference.getSpelling() + "' at " + reference.getLine() + ":" + reference.getColumn();
+			} catch (LexicalException e) {
+				expected = describe(e);
+			}
+			try {
+				scanner.advance();
+				actual = scanner.getKind() + " '" + scanner.getSpelling() + "' at " + scanner.getLine() + ":" + scanner.getColumn();
+			} catch (LexicalException e) {
+				actual = describe(e);
+			}
+			if ( !expected.equals(actual) ) {
+				return "!token " + count + ": " + actual + ", expecting " + expected;
+			}
+			if ( expected.startsWith("error") || reference.getKind() == GrammarSymbols.EOF ) {
+				return Integer.toString(count);
+			}
+		}
+	}
+
+	private static String describe(LexicalException e) {
+		return "error " + e.getDiagnostic().getCode() + " " + Arrays.toString(e.getDiagnostic().getArguments())
+				+ " at " + e.getLine() + ":" + e.getColumn();
+	}
+
+}
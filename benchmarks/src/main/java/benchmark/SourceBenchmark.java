@@ -0,0 +1,93 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parser.GrammarSymbols;
+import scanner.LexicalException;
+import scanner.Scanner;
+import util.ByteBufferSource;
+import util.CharArraySource;
+import util.CharSequenceSource;
+import util.ChannelSource;
+import util.Source;
+
+/**
+ * Scanner time over each kind of source: the mapped file, a String, a char
+ * array, heap and direct byte buffers and a byte channel read in chunks
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SourceBenchmark {
+
+	// The kind of source scanned
+	@Param({ "mapped", "string", "chars", "heap", "direct", "channel" })
+	public String kind;
+
+	// The source bytes and text
+	private byte[] bytes;
+	private String text;
+	private char[] chars;
+	private ByteBuffer direct;
+
+	@Setup
+	public void setup(Sources sources) throws IOException {
+		this.bytes = Files.readAllBytes(Paths.get(sources.getSource().getName()));
+		this.text = new String(this.bytes, StandardCharsets.ISO_8859_1);
+		this.chars = this.text.toCharArray();
+		this.direct = ByteBuffer.allocateDirect(this.bytes.length);
+		this.direct.put(this.bytes).flip();
+	}
+
+	private Source source(Sources sources) {
+		switch (this.kind) {
+		case "string":
+			return new CharSequenceSource("string", this.text);
+		case "chars":
+			return new CharArraySource("chars", this.chars);
+		case "heap":
+			return new ByteBufferSource("heap", ByteBuffer.wrap(this.bytes));
+		case "direct":
+			return new ByteBufferSource("direct", this.direct);
+		case "channel":
+			return new ChannelSource("channel", Channels.newChannel(new ByteArrayInputStream(this.bytes)));
+		default:
+			return sources.getSource();
+		}
+	}
+
+	@Benchmark
+	public int advance(Sources sources) throws LexicalException {
+		Scanner scanner = new Scanner(this.source(sources));
+		int count = 1;
+		while ( scanner.advance() != GrammarSymbols.EOF ) {
+			count++;
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,337 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic source generator
+ * Generates valid programs of the language with a given number of
+ * subprograms, commands per block and block nesting depth. The same seed
+ * always gives the same program
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class SourceGenerator {
+
+	// Global variables of every generated program
+	private static final String[] GLOBALS = { "g0", "g1", "g2", "g3", "g4", "g5", "g6", "g7" };
+	private static final String[] BOOLEANS = { "b0", "b1" };
+	private static final String[] RELATIONS = { "=", "<>", "<", ">", "<=", ">=" };
+	private static final String[] OPERATORS = { "+", "-", "*", "/" };
+	// Every keyword, and identifiers that share a length and first letters with one
+	private static final String[] KEYWORDS = { "program", "var", "integer", "boolean", "function", "procedure",
+			"begin", "end", "if", "then", "else", "while", "do", "write", "break", "continue", "true", "false" };
+	private static final String[] NEAR_KEYWORDS = { "programs", "va", "integral", "booleans", "functor", "procedures",
+			"beginx", "ending", "iff", "them", "elsewhere", "whiles", "dot", "writer", "breaks", "continued", "truth", "falsey",
+			"b", "e", "tx", "wh", "progra", "endx", "iF", "thenn", "wrote", "brake" };
+
+	// Random choices
+	private final Random random;
+	// Number of functions (as many procedures are generated, halved)
+	private final int subprograms;
+	// Commands per block
+	private final int commands;
+	// Maximum block nesting depth (if and while)
+	private final int depth;
+	// The program text
+	private StringBuilder out;
+	// Functions declared so far (name, number of parameters)
+	private List<String> functions;
+	private List<Integer> arities;
+
+	/**
+	 * Default constructor
+	 * @param seed
+	 * @param subprograms
+	 * @param commands
+	 * @param depth
+	 */
+	public SourceGenerator(long seed, int subprograms, int commands, int depth) {
+		this.random = new Random(seed);
+		this.subprograms = subprograms;
+		this.commands = commands;
+		this.depth = depth;
+	}
+
+	/**
+	 * Generates a program
+	 * @return the source text
+	 */
+	public String generate() {
+		this.out = new StringBuilder();
+		this.functions = new ArrayList<String>();
+		this.arities = new ArrayList<Integer>();
+
+		this.out.append("program synthetic;\nvar\n  ");
+		this.out.append(String.join(", ", GLOBALS)).append(": integer;\n  ");
+		this.out.append(String.join(", ", BOOLEANS)).append(": boolean;\n");
+		for (int i = 0; i < this.subprograms; i++) {
+			this.function("f" + i);
+		}
+		for (int i = 0; i < Math.max(1, this.subprograms / 2); i++) {
+			this.procedure("p" + i);
+		}
+		this.out.append("begin\n");
+		this.block(GLOBALS, BOOLEANS, this.depth, false, 1);
+		this.out.append("end.\n");
+		return this.out.toString();
+	}
+
+	/**
+	 * Generates a text of keywords and identifiers only, about as long as the
+	 * given number of chars: keywords (in mixed case too), identifiers close
+	 * to a keyword and other identifiers, a third of each, separated by
+	 * single spaces and line breaks. Not a program, only valid tokens, so
+	 * it measures how the scanner tells identifiers from keywords
+	 * @param length
+	 * @return
+	 */
+	public String words(int length) {
+		StringBuilder out = new StringBuilder(length + 16);
+		int column = 0;
+		while (out.length() < length) {
+			String word;
+			int choice = this.random.nextInt(3);
+			if ( choice == 0 ) {
+				word = this.pick(KEYWORDS);
+				if ( this.random.nextInt(4) == 0 ) {
+					word = word.toUpperCase();
+				}
+			} else if ( choice == 1 ) {
+				word = this.pick(NEAR_KEYWORDS);
+			} else {
+				word = (char) ('a' + this.random.nextInt(26)) + Integer.toString(this.random.nextInt(1000), 36);
+			}
+			out.append(word);
+			column += word.length() + 1;
+			if ( column > 72 ) {
+				out.append('\n');
+				column = 0;
+			} else {
+				out.append(' ');
+			}
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Writes a generated program to a file
+	 * @param file
+	 * @return the file
+	 * @throws IOException
+	 */
+	public Path write(Path file) throws IOException {
+		return Files.write(file, this.generate().getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Returns the parameter names of a subprogram with n parameters
+	 * @param n
+	 * @return
+	 */
+	private static String[] parameters(int n) {
+		String[] names = new String[n];
+		for (int i = 0; i < n; i++) {
+			names[i] = "a" + i;
+		}
+		return names;
+	}
+
+	/**
+	 * Returns the integer variables visible in a subprogram
+	 * @param parameters
+	 * @return
+	 */
+	private static String[] integers(String[] parameters) {
+		List<String> names = new ArrayList<String>();
+		for (String parameter : parameters) {
+			names.add(parameter);
+		}
+		names.add("t");
+		names.add("u");
+		for (String global : GLOBALS) {
+			names.add(global);
+		}
+		return names.toArray(new String[0]);
+	}
+
+	private void function(String name) {
+		String[] parameters = parameters(this.random.nextInt(4));
+		this.out.append("function ").append(name).append('(');
+		this.parameterList(parameters);
+		this.out.append("): integer;\nvar\n  t, u: integer;\n  q: boolean;\nbegin\n");
+		this.block(integers(parameters), new String[] { "q" }, this.depth, false, 1);
+		this.out.append("  ").append(name).append(" := t + u;\nend;\n");
+		this.functions.add(name);
+		this.arities.add(parameters.length);
+	}
+
+	private void procedure(String name) {
+		String[] parameters = parameters(this.random.nextInt(3));
+		this.out.append("procedure ").append(name).append('(');
+		this.parameterList(parameters);
+		this.out.append(");\nvar\n  t, u: integer;\n  q: boolean;\nbegin\n");
+		this.block(integers(parameters), new String[] { "q" }, this.depth, false, 1);
+		this.out.append("end;\n");
+	}
+
+	private void parameterList(String[] parameters) {
+		for (int i = 0; i < parameters.length; i++) {
+			this.out.append(i > 0 ? "; " : "").append(parameters[i]).append(": integer");
+		}
+	}
+
+	private String pick(String[] names) {
+		return names[this.random.nextInt(names.length)];
+	}
+
+	private void indent(int level) {
+		for (int i = 0; i < level; i++) {
+			this.out.append("  ");
+		}
+	}
+
+	/**
+	 * Generates the commands of a block
+	 * @param integers - integer variables in scope
+	 * @param booleans - boolean variables in scope
+	 * @param depth - how many more blocks may be nested
+	 * @param loop - whether the block is inside a while
+	 * @param level - indentation level
+	 */
+	private void block(String[] integers, String[] booleans, int depth, boolean loop, int level) {
+		for (int i = 0; i < this.commands; i++) {
+			int choice = this.random.nextInt(100);
+			this.indent(level);
+			if ( choice < 35 ) {
+				this.out.append(this.pick(integers)).append(" := ");
+				this.aexp(integers, 2);
+				this.out.append(";\n");
+			} else if ( choice < 45 ) {
+				this.out.append(this.pick(booleans)).append(" := ");
+				this.bexp(integers, booleans);
+				this.out.append(";\n");
+			} else if ( choice < 55 ) {
+				this.out.append("write(");
+				this.aexp(integers, 2);
+				this.out.append(");\n");
+			} else if ( choice < 70 && depth > 0 ) {
+				this.out.append("if ");
+				this.bexp(integers, booleans);
+				this.out.append(" then\n");
+				this.nested(integers, booleans, depth, loop, level);
+				if ( this.random.nextBoolean() ) {
+					this.indent(level);
+					this.out.append("else\n");
+					this.nested(integers, booleans, depth, loop, level);
+				}
+			} else if ( choice < 85 && depth > 0 ) {
+				// Counted loops, so generated programs also terminate
+				String counter = this.pick(integers);
+				this.out.append(counter).append(" := 0;\n");
+				this.indent(level);
+				this.out.append("while ").append(counter).append(" < ").append(1 + this.random.nextInt(5)).append(" do\n");
+				this.indent(level);
+				this.out.append("begin\n");
+				this.indent(level + 1);
+				this.out.append(counter).append(" := ").append(counter).append(" + 1;\n");
+				List<String> others = new ArrayList<String>();
+				for (String name : integers) {
+					if ( !name.equals(counter) ) {
+						others.add(name);
+					}
+				}
+				this.block(others.toArray(new String[0]), booleans, depth - 1, true, level + 1);
+				this.indent(level);
+				this.out.append("end;\n");
+			} else if ( choice < 90 && loop ) {
+				this.out.append("break;\n");
+			} else if ( choice < 95 && !this.functions.isEmpty() ) {
+				this.call(integers);
+				this.out.append(";\n");
+			} else {
+				this.out.append(this.pick(integers)).append(" := ");
+				this.aexp(integers, 1);
+				this.out.append(";\n");
+			}
+		}
+	}
+
+	private void nested(String[] integers, String[] booleans, int depth, boolean loop, int level) {
+		this.indent(level);
+		this.out.append("begin\n");
+		this.block(integers, booleans, depth - 1, loop, level + 1);
+		this.indent(level);
+		this.out.append("end;\n");
+	}
+
+	private void call(String[] integers) {
+		int i = this.random.nextInt(this.functions.size());
+		this.out.append(this.functions.get(i)).append('(');
+		for (int j = 0; j < this.arities.get(i); j++) {
+			this.out.append(j > 0 ? ", " : "");
+			this.aexp(integers, 0);
+		}
+		this.out.append(')');
+	}
+
+	private void aexp(String[] integers, int depth) {
+		int choice = this.random.nextInt(10);
+		if ( depth <= 0 || choice < 3 ) {
+			if ( choice < 4 ) {
+				this.out.append(this.random.nextInt(101));
+			} else if ( choice < 9 || this.functions.isEmpty() ) {
+				this.out.append(this.pick(integers));
+			} else {
+				this.call(integers);
+			}
+			return;
+		}
+		String operator = this.pick(OPERATORS);
+		boolean parenthesized = this.random.nextBoolean();
+		this.out.append(parenthesized ? "(" : "");
+		this.aexp(integers, depth - 1);
+		this.out.append(' ').append(operator).append(' ');
+		if ( operator.equals("/") ) {
+			// Never divides by zero
+			this.out.append(1 + this.random.nextInt(9));
+		} else {
+			this.aexp(integers, depth - 1);
+		}
+		this.out.append(parenthesized ? ")" : "");
+	}
+
+	private void bexp(String[] integers, String[] booleans) {
+		int choice = this.random.nextInt(10);
+		if ( choice < 2 ) {
+			this.out.append(this.random.nextBoolean() ? "true" : "false");
+		} else if ( choice < 4 ) {
+			this.out.append(this.pick(booleans));
+		} else {
+			this.aexp(integers, 1);
+			this.out.append(' ').append(this.pick(RELATIONS)).append(' ');
+			this.aexp(integers, 1);
+		}
+	}
+
+	/**
+	 * Generator start point: prints a program
+	 * @param args - subprograms commands depth [seed]
+	 */
+	public static void main(String[] args) {
+		if ( args.length < 3 ) {
+			System.err.println("Usage: benchmark.SourceGenerator <subprograms> <commands> <depth> [seed]");
+			System.exit(1);
+		}
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		SourceGenerator generator = new SourceGenerator(seed,
+				Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		System.out.print(generator.generate());
+	}
+
+}
@@ -0,0 +1,54 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import util.MappedSource;
+
+/**
+ * Benchmark state holding a generated source file, mapped once per trial
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+@State(Scope.Benchmark)
+public class Sources {
+
+	// Number of functions of the generated program
+	@Param({ "10", "100" })
+	public int subprograms;
+	// Commands per block
+	@Param({ "8" })
+	public int commands;
+	// Block nesting depth
+	@Param({ "2", "4" })
+	public int depth;
+
+	// The generated file and its mapping
+	private Path file;
+	private MappedSource source;
+
+	@Setup
+	public void setup() throws IOException {
+		this.file = Files.createTempFile("synthetic", ".pas");
+		new SourceGenerator(42, this.subprograms, this.commands, this.depth).write(this.file);
+		this.source = new MappedSource(this.file.toString());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		this.source.close();
+		Files.deleteIfExists(this.file);
+	}
+
+	public MappedSource getSource() {
+		return this.source;
+	}
+
+}
@@ -0,0 +1,94 @@
+package benchmark;
+
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * End-to-end time of a short compile job, run the way it is used: a new
+ * process per compilation, so startup is part of the time. Compares the
+ * JVM, the JVM with an application class data sharing archive (created by
+ * the first run) and the native executable of the native profile (when it
+ * was built), side by side. Not a JMH benchmark: JMH measures warm code
+ * inside one process
+ * Usage: java -cp benchmarks/target/benchmarks.jar benchmark.StartupBenchmark [runs] [source] [target directory]
+ * (from the project directory: teste.pas and core/target by default)
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class StartupBenchmark {
+
+	// Measured and warm-up runs of each mode
+	public static final int RUNS = 20, WARMUP = 3;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : RUNS;
+		String source = args.length > 1 ? args[1] : "teste.pas";
+		Path target = Paths.get(args.length > 2 ? args[2] : "core/target");
+		Path jar = target.resolve("pascompiler-1.0-SNAPSHOT.jar");
+		Path archive = target.resolve("pascompiler.jsa");
+		Path image = target.resolve("pascompiler");
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		if ( !Files.isRegularFile(jar) ) {
+			System.err.println(jar + " not found (mvn package first)");
+			System.exit(1);
+		}
+		if ( !Files.isRegularFile(archive) ) {
+			run(java, "-XX:ArchiveClassesAtExit=" + archive, "-jar", jar.toString(), source);
+		}
+		measure("jvm", runs, java, "-jar", jar.toString(), source);
+		measure("jvm + cds", runs, java, "-XX:SharedArchiveFile=" + archive, "-jar", jar.toString(), source);
+		if ( Files.isExecutable(image) ) {
+			measure("native", runs, image.toString(), source);
+		} else {
+			System.out.println("native: " + image + " not found (mvn -Pnative package, with GraalVM)");
+		}
+	}
+
+	/**
+	 * Runs a command many times and prints the minimum, median and mean
+	 * wall time
+	 * @param mode
+	 * @param runs
+	 * @param command
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private static void measure(String mode, int runs, String... command) throws IOException, InterruptedException {
+		for (int i = 0; i < WARMUP; i++) {
+			run(command);
+		}
+		long[] times = new long[runs];
+		long total = 0;
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			run(command);
+			times[i] = System.nanoTime() - start;
+			total += times[i];
+		}
+		Arrays.sort(times);
+		System.out.println(String.format("%-10s min %6.1f ms, median %6.1f ms, mean %6.1f ms (%d runs)",
+				mode + ":", times[0] / 1e6, times[runs / 2] / 1e6, total / 1e6 / runs, runs));
+	}
+
+	/**
+	 * Runs a command with its output discarded
+	 * @param command
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private static void run(String... command) throws IOException, InterruptedException {
+		Process process = new ProcessBuilder(command)
+				.redirectOutput(Redirect.DISCARD)
+				.redirectError(Redirect.DISCARD)
+				.start();
+		int status = process.waitFor();
+		if ( status != 0 ) {
+			throw new IllegalStateException(String.join(" ", command) + " exited with " + status);
+		}
+	}
+
+}
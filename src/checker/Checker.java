@@ -0,0 +1,417 @@
+package checker;
+
+import util.AST.AST;
+import util.AST.Aexp;
+import util.AST.AssignCmd;
+import util.AST.Bexp;
+import util.AST.BooleanFactor;
+import util.AST.BreakCmd;
+import util.AST.CallCmd;
+import util.AST.CallFactor;
+import util.AST.Cmd;
+import util.AST.ContinueCmd;
+import util.AST.Expression;
+import util.AST.FuncDec;
+import util.AST.IfCmd;
+import util.AST.NumberFactor;
+import util.AST.ProcDec;
+import util.AST.Program;
+import util.AST.SubprogramDec;
+import util.AST.Term;
+import util.AST.Type;
+import util.AST.VarDec;
+import util.AST.VariableFactor;
+import util.AST.Visitor;
+import util.AST.WhileCmd;
+import util.AST.WriteCmd;
+import util.diagnostics.Code;
+import util.diagnostics.Diagnostic;
+import util.symbolsTable.Attribute;
+import util.symbolsTable.IdentificationTable;
+
+/**
+ * Checker class
+ * Semantic analysis in a single visit of the AST: every name is resolved
+ * once, through the identification table, and the node that uses it keeps
+ * the attribute of its declaration (node, slot and scope); every expression
+ * keeps its type. The code generators read these annotations and never look
+ * a name up again. Slots follow the frame layout of the generators: globals
+ * in declaration order; parameters, local variables and the function result
+ * in that order; subprograms from 1, functions first (0 is the main program).
+ * Verifies that names are declared once and used as what they are, that the
+ * types of assignments, conditions, operands and arguments match, that
+ * calls have as many arguments as parameters and that break and continue
+ * are inside a loop
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Checker implements Visitor {
+
+	/**
+	 * A semantic error found during a visit (visit methods cannot throw
+	 * SemanticException, so it travels unchecked up to check)
+	 */
+	private static class Failure extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Diagnostic diagnostic;
+
+		private Failure(Diagnostic diagnostic) {
+			super(null, null, false, false);
+			this.diagnostic = diagnostic;
+		}
+
+	}
+
+	// The identification table used to resolve names
+	private IdentificationTable identificationTable;
+	// The subprogram being checked (null for the main program) and the attribute of its result
+	private SubprogramDec current;
+	private Attribute result;
+	// Number of loops around the command being checked
+	private int loops;
+	// Position of the command being checked (expressions have none)
+	private int line, column;
+	// The command or subprogram being checked (or the program, for its declarations)
+	private AST node;
+
+	/**
+	 * Default constructor
+	 * @param identificationTable
+	 */
+	public Checker(IdentificationTable identificationTable) {
+		this.identificationTable = identificationTable;
+	}
+
+	/**
+	 * Checks a program and annotates its AST
+	 * @param program
+	 * @throws SemanticException
+	 */
+	public void check(Program program) throws SemanticException {
+		try {
+			program.visit(this, null);
+		} catch (Failure e) {
+			throw new SemanticException(e.diagnostic, this.node);
+		}
+	}
+
+	/**
+	 * Creates an error at a position
+	 * @param line
+	 * @param column
+	 * @param code
+	 * @param arguments - the message arguments
+	 * @return
+	 */
+	private static Failure error(int line, int column, Code code, Object... arguments) {
+		return new Failure(new Diagnostic(code, line, column, arguments));
+	}
+
+	/**
+	 * Creates an error at the command being checked
+	 * @param code
+	 * @param arguments - the message arguments
+	 * @return
+	 */
+	private Failure error(Code code, Object... arguments) {
+		return error(this.line, this.column, code, arguments);
+	}
+
+	/**
+	 * Declares a name in the current scope
+	 * @param name
+	 * @param node - the declaration
+	 * @param slot
+	 * @param line
+	 * @param column
+	 */
+	private void declare(String name, AST node, int slot, int line, int column) {
+		try {
+			this.identificationTable.enter(name, node, slot);
+		} catch (SemanticException e) {
+			throw error(line, column, e.getDiagnostic().getCode(), e.getDiagnostic().getArguments());
+		}
+	}
+
+	/**
+	 * Declares variables in consecutive slots
+	 * @param variables
+	 * @param slot - the first slot
+	 * @return the next free slot
+	 */
+	private int declare(VarDec[] variables, int slot) {
+		for (VarDec variable : variables) {
+			for (String name : variable.getNames()) {
+				this.declare(name, variable, slot++, variable.getLine(), variable.getColumn());
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * Resolves a variable name (or the result of the function being checked)
+	 * @param name
+	 * @param line
+	 * @param column
+	 * @return
+	 */
+	private Attribute variable(String name, int line, int column) {
+		if ( this.result != null && this.current.getName().equals(name) ) {
+			return this.result;
+		}
+		Attribute attribute = this.identificationTable.retrieveAttribute(name);
+		if ( attribute == null ) {
+			throw error(line, column, Code.UNDECLARED_VARIABLE, name);
+		}
+		if ( !(attribute.getAst() instanceof VarDec) ) {
+			throw error(line, column, Code.NOT_A_VARIABLE, name);
+		}
+		return attribute;
+	}
+
+	/**
+	 * Returns the type of a resolved variable
+	 * @param attribute
+	 * @return
+	 */
+	private static Type typeOf(Attribute attribute) {
+		if ( attribute.getAst() instanceof FuncDec ) {
+			return ((FuncDec) attribute.getAst()).getReturnType();
+		}
+		return ((VarDec) attribute.getAst()).getType();
+	}
+
+	/**
+	 * Resolves a subprogram name and checks the arguments of a call
+	 * @param name
+	 * @param arguments
+	 * @param line
+	 * @param column
+	 * @return
+	 */
+	private Attribute call(String name, Expression[] arguments, int line, int column) {
+		Attribute attribute = this.identificationTable.retrieveAttribute(name);
+		if ( attribute == null ) {
+			throw error(line, column, Code.UNDECLARED_SUBPROGRAM, name);
+		}
+		if ( !(attribute.getAst() instanceof SubprogramDec) ) {
+			throw error(line, column, Code.NOT_A_SUBPROGRAM, name);
+		}
+		SubprogramDec subprogram = (SubprogramDec) attribute.getAst();
+		if ( arguments.length != subprogram.getParameterCount() ) {
+			throw error(line, column, Code.ARGUMENT_COUNT, name, subprogram.getParameterCount(), arguments.length);
+		}
+		int i = 0;
+		for (VarDec parameter : subprogram.getParameters()) {
+			for (String parameterName : parameter.getNames()) {
+				Type type = this.typeOf(arguments[i]);
+				if ( type != parameter.getType() ) {
+					throw error(line, column, Code.ARGUMENT_TYPE, parameterName, name, parameter.getType(), type);
+				}
+				i++;
+			}
+		}
+		return attribute;
+	}
+
+	/**
+	 * Checks an expression and returns its type
+	 * @param expression
+	 * @return
+	 */
+	private Type typeOf(Expression expression) {
+		return (Type) expression.visit(this, null);
+	}
+
+	/**
+	 * Checks the condition of an if or a while
+	 * @param condition
+	 */
+	private void condition(Expression condition) {
+		Type type = this.typeOf(condition);
+		if ( type != Type.BOOLEAN ) {
+			throw this.error(Code.CONDITION_TYPE, type);
+		}
+	}
+
+	private void check(Cmd[] commands) {
+		for (Cmd cmd : commands) {
+			this.line = cmd.getLine();
+			this.column = cmd.getColumn();
+			this.node = cmd;
+			cmd.visit(this, null);
+		}
+	}
+
+	public Object visitProgram(Program program, Object arg) {
+		// Globals and subprograms first: a subprogram may call any other one
+		this.node = program;
+		this.declare(program.getVariables(), 0);
+		int slot = 1;
+		for (FuncDec function : program.getFunctions()) {
+			this.node = function;
+			this.declare(function.getName(), function, slot++, function.getLine(), function.getColumn());
+		}
+		for (ProcDec procedure : program.getProcedures()) {
+			this.node = procedure;
+			this.declare(procedure.getName(), procedure, slot++, procedure.getLine(), procedure.getColumn());
+		}
+		for (FuncDec function : program.getFunctions()) {
+			function.visit(this, null);
+		}
+		for (ProcDec procedure : program.getProcedures()) {
+			procedure.visit(this, null);
+		}
+		this.current = null;
+		this.result = null;
+		this.check(program.getCommands());
+		return null;
+	}
+
+	public Object visitVarDec(VarDec varDec, Object arg) {
+		// Declarations are handled by their program or subprogram
+		return null;
+	}
+
+	/**
+	 * Checks a subprogram in a scope of its own
+	 * @param subprogram
+	 */
+	private void checkSubprogram(SubprogramDec subprogram) {
+		this.identificationTable.openScope();
+		this.node = subprogram;
+		int slot = this.declare(subprogram.getParameters(), 0);
+		slot = this.declare(subprogram.getVariables(), slot);
+		this.current = subprogram;
+		this.result = subprogram instanceof FuncDec ? new Attribute(subprogram, slot, 1) : null;
+		this.check(subprogram.getCommands());
+		this.identificationTable.closeScope();
+	}
+
+	public Object visitFuncDec(FuncDec funcDec, Object arg) {
+		this.checkSubprogram(funcDec);
+		return null;
+	}
+
+	public Object visitProcDec(ProcDec procDec, Object arg) {
+		this.checkSubprogram(procDec);
+		return null;
+	}
+
+	public Object visitAssignCmd(AssignCmd cmd, Object arg) {
+		Attribute attribute = this.variable(cmd.getName(), cmd.getLine(), cmd.getColumn());
+		Type type = this.typeOf(cmd.getValue());
+		if ( type != typeOf(attribute) ) {
+			throw this.error(Code.ASSIGNMENT_TYPE, type, cmd.getName(), typeOf(attribute));
+		}
+		cmd.setAttribute(attribute);
+		return null;
+	}
+
+	public Object visitCallCmd(CallCmd cmd, Object arg) {
+		// A function called as a command has its result discarded
+		cmd.setAttribute(this.call(cmd.getName(), cmd.getArguments(), cmd.getLine(), cmd.getColumn()));
+		return null;
+	}
+
+	public Object visitIfCmd(IfCmd cmd, Object arg) {
+		this.condition(cmd.getCondition());
+		this.check(cmd.getThenCommands());
+		if ( cmd.getElseCommands() != null ) {
+			this.check(cmd.getElseCommands());
+		}
+		return null;
+	}
+
+	public Object visitWhileCmd(WhileCmd cmd, Object arg) {
+		this.condition(cmd.getCondition());
+		this.loops++;
+		this.check(cmd.getCommands());
+		this.loops--;
+		return null;
+	}
+
+	public Object visitWriteCmd(WriteCmd cmd, Object arg) {
+		this.typeOf(cmd.getValue());
+		return null;
+	}
+
+	public Object visitBreakCmd(BreakCmd cmd, Object arg) {
+		if ( this.loops == 0 ) {
+			throw this.error(Code.BREAK_OUTSIDE_LOOP);
+		}
+		return null;
+	}
+
+	public Object visitContinueCmd(ContinueCmd cmd, Object arg) {
+		if ( this.loops == 0 ) {
+			throw this.error(Code.CONTINUE_OUTSIDE_LOOP);
+		}
+		return null;
+	}
+
+	public Object visitBexp(Bexp bexp, Object arg) {
+		Type left = this.typeOf(bexp.getLeft());
+		Type right = this.typeOf(bexp.getRight());
+		if ( left != right ) {
+			throw this.error(Code.COMPARISON_TYPES, left, right);
+		}
+		bexp.setType(Type.BOOLEAN);
+		return Type.BOOLEAN;
+	}
+
+	/**
+	 * Checks that every operand of an arithmetic expression is an integer
+	 * @param operands
+	 */
+	private void arithmetic(Expression[] operands) {
+		for (Expression operand : operands) {
+			Type type = this.typeOf(operand);
+			if ( type != Type.INTEGER ) {
+				throw this.error(Code.ARITHMETIC_TYPE, type);
+			}
+		}
+	}
+
+	public Object visitAexp(Aexp aexp, Object arg) {
+		this.arithmetic(aexp.getOperands());
+		aexp.setType(Type.INTEGER);
+		return Type.INTEGER;
+	}
+
+	public Object visitTerm(Term term, Object arg) {
+		this.arithmetic(term.getOperands());
+		term.setType(Type.INTEGER);
+		return Type.INTEGER;
+	}
+
+	public Object visitVariableFactor(VariableFactor factor, Object arg) {
+		Attribute attribute = this.variable(factor.getName(), factor.getLine(), factor.getColumn());
+		factor.setAttribute(attribute);
+		factor.setType(typeOf(attribute));
+		return factor.getType();
+	}
+
+	public Object visitCallFactor(CallFactor factor, Object arg) {
+		Attribute attribute = this.call(factor.getName(), factor.getArguments(), factor.getLine(), factor.getColumn());
+		if ( !(attribute.getAst() instanceof FuncDec) ) {
+			throw error(factor.getLine(), factor.getColumn(), Code.PROCEDURE_VALUE, factor.getName());
+		}
+		factor.setAttribute(attribute);
+		factor.setType(((FuncDec) attribute.getAst()).getReturnType());
+		return factor.getType();
+	}
+
+	public Object visitNumberFactor(NumberFactor factor, Object arg) {
+		factor.setType(Type.INTEGER);
+		return Type.INTEGER;
+	}
+
+	public Object visitBooleanFactor(BooleanFactor factor, Object arg) {
+		factor.setType(Type.BOOLEAN);
+		return Type.BOOLEAN;
+	}
+
+}
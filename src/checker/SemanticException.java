@@ -1,5 +1,10 @@
 package checker;
 
+import util.AST.AST;
+import util.diagnostics.Code;
+import util.diagnostics.Diagnostic;
+import util.diagnostics.DiagnosticException;
+
 /**
  * Semantic Exception
  * @version 2010-september-04
@@ -7,28 +12,59 @@ package checker;
  * @author Gustavo H P Carvalho
  * @email gustavohpcarvalho@ecomp.poli.br
  */
-public class SemanticException extends Exception {
+public class SemanticException extends DiagnosticException {
 
 	private static final long serialVersionUID = 3457448332803077642L;
+
+	// The command or subprogram the error was found in (null if not known)
+	private final transient AST node;
 	
 	/**
 	 * Default constructor
 	 * @param message
 	 */
 	public SemanticException(String message) {
-		super(message);
+		this(message, -1, -1);
 	}
 	
 	/**
-	 * Creates the error report
+	 * Creates an exception at a position of the source
+	 * @param message
+	 * @param line
+	 * @param column
 	 */
-	public String toString() {
-		String errorMessage =
-			"----------------------------- SEMANTIC ERROR REPORT - BEGIN -----------------------------\n" +
-			">> Message: " + super.getMessage() + "\n" +
-			"------------------------------ SEMANTIC ERROR REPORT - END ------------------------------\n";
-			
-		return errorMessage;
+	public SemanticException(String message, int line, int column) {
+		this(new Diagnostic(Code.SEMANTIC_ERROR, line, column, message));
+	}
+	
+	/**
+	 * Creates an exception with a diagnostic
+	 * @param diagnostic
+	 */
+	public SemanticException(Diagnostic diagnostic) {
+		this(diagnostic, null);
+	}
+	
+	/**
+	 * Creates an exception with a diagnostic found in a command or subprogram
+	 * @param diagnostic
+	 * @param node
+	 */
+	public SemanticException(Diagnostic diagnostic, AST node) {
+		super(diagnostic);
+		this.node = node;
+	}
+	
+	public int getLine() {
+		return this.getDiagnostic().getLine();
+	}
+	
+	public int getColumn() {
+		return this.getDiagnostic().getColumn();
+	}
+	
+	public AST getNode() {
+		return this.node;
 	}
 	
 }
@@ -0,0 +1,157 @@
+package compiler;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Batch compiler class
+ * Compiles many source files at the same time on a bounded ForkJoinPool and
+ * reports the results in the order the files were given
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class BatchCompiler {
+
+	// Source file extension
+	public static final String EXTENSION = ".pas";
+
+	// The compilations, in report order
+	private List<Compilation> compilations;
+	// Number of worker threads
+	private int threads;
+	// The compilation cache (null: no cache)
+	private CompilationCache cache;
+
+	/**
+	 * Default constructor
+	 * @param options - source files or directories (searched for .pas files),
+	 * number of worker threads...
+	 * @throws IOException
+	 */
+	public BatchCompiler(Options options) throws IOException {
+		this.compilations = new ArrayList<Compilation>();
+		this.threads = options.getThreads();
+		this.cache = CompilationCache.open(options);
+		for (String path : options.getPaths()) {
+			for (String file : sourceFiles(Paths.get(path))) {
+				this.compilations.add(new Compilation(file, options, this.cache));
+			}
+		}
+	}
+
+	/**
+	 * Returns the source files of a path (the path itself or the .pas files under it)
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	private static List<String> sourceFiles(Path path) throws IOException {
+		List<String> files = new ArrayList<String>();
+		if ( Files.isDirectory(path) ) {
+			try (Stream<Path> walk = Files.walk(path)) {
+				files.addAll(walk
+						.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(EXTENSION))
+						.map(Path::toString)
+						.sorted()
+						.collect(Collectors.toList()));
+			}
+		} else {
+			files.add(path.toString());
+		}
+		return files;
+	}
+
+	/**
+	 * Compiles every file (on the calling thread when there is only one file
+	 * or one thread, so a short job does not start a pool)
+	 * @return the number of files with errors
+	 */
+	public int compile() {
+		if ( this.threads == 1 || this.compilations.size() == 1 ) {
+			int failed = 0;
+			for (Compilation compilation : this.compilations) {
+				if ( !compilation.compile() ) {
+					failed++;
+				}
+			}
+			if ( this.cache != null ) {
+				this.cache.trim();
+			}
+			return failed;
+		}
+		ForkJoinPool pool = new ForkJoinPool(this.threads);
+		try {
+			List<ForkJoinTask<Boolean>> tasks = new ArrayList<ForkJoinTask<Boolean>>();
+			for (Compilation compilation : this.compilations) {
+				tasks.add(pool.submit(compilation::compile));
+			}
+			int failed = 0;
+			for (ForkJoinTask<Boolean> task : tasks) {
+				if ( !task.join() ) {
+					failed++;
+				}
+			}
+			if ( this.cache != null ) {
+				this.cache.trim();
+			}
+			return failed;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Prints the result of each file (in the given order) and a summary
+	 * @param out
+	 * @param elapsed - wall time of the whole batch in nanoseconds
+	 */
+	public void report(PrintStream out, long elapsed) {
+		long bytes = 0;
+		int failed = 0, eliminated = 0, tailCalls = 0;
+		for (Compilation compilation : this.compilations) {
+			bytes += compilation.getBytes();
+			eliminated += compilation.getEliminated();
+			tailCalls += compilation.getTailCalls();
+			if ( !compilation.getDiagnostics().hasErrors() ) {
+				out.println(compilation.getFileName() + ": OK");
+			} else {
+				failed++;
+				out.println(compilation.getFileName() + ": FAILED");
+				out.println(compilation.getError());
+			}
+		}
+		double seconds = elapsed / 1e9;
+		out.println();
+		out.println("-- SUMMARY --");
+		out.println("Files: " + this.compilations.size() + " (" + failed + " with errors)");
+		out.println("Threads: " + this.threads);
+		if ( this.cache != null ) {
+			out.println("Cache: " + this.cache.getHits() + " hits, " + this.cache.getMisses() + " misses");
+		}
+		out.println("Source: " + bytes + " bytes");
+		out.println("Folding: " + eliminated + " AST nodes eliminated" +
+				(tailCalls > 0 ? ", " + tailCalls + " tail calls turned into loops" : ""));
+		out.println(String.format("Time: %.1f ms (%.1f files/s, %.2f MB/s)",
+				elapsed / 1e6,
+				this.compilations.size() / seconds,
+				bytes / seconds / (1024 * 1024)));
+	}
+
+	/**
+	 * Returns the compilations, in report order
+	 * @return
+	 */
+	public List<Compilation> getCompilations() {
+		return this.compilations;
+	}
+
+}
@@ -0,0 +1,404 @@
+package compiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import checker.Checker;
+import checker.SemanticException;
+import encoder.Encoder;
+import interpreter.Bytecode;
+import interpreter.CodeGenerator;
+import interpreter.IRCodeGenerator;
+import ir.Builder;
+import ir.Function;
+import ir.Inliner;
+import ir.Optimizer;
+import optimizer.ConstantFolder;
+import optimizer.TailCallEliminator;
+import parser.Parser;
+import parser.SyntacticException;
+import scanner.LexicalException;
+import scanner.Scanner;
+import scanner.TokenBuffer;
+import scanner.TokenPipeline;
+import util.MappedSource;
+import util.Source;
+import util.AST.AST;
+import util.AST.Program;
+import util.diagnostics.DiagnosticException;
+import util.diagnostics.DiagnosticSink;
+import util.symbolsTable.IdentificationTable;
+
+/**
+ * Compilation class
+ * Compiles one source file; every phase object (scanner, parser,
+ * identification table) belongs to the compilation, so several compilations
+ * can run at the same time
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Compilation {
+
+	// The source file
+	private String fileName;
+	// The source given in memory or as a stream (null: the file is mapped)
+	private Source input;
+	// The compiler options
+	private Options options;
+	// The compilation cache (null: no cache)
+	private CompilationCache cache;
+	// The compiled program and its class file (possibly from the cache)
+	private CompilationCache.Entry entry;
+	// Whether the result came from the cache
+	private boolean cached;
+	// The identification table of this compilation
+	private IdentificationTable identificationTable;
+	// The register bytecode (only when the program is going to run)
+	private Bytecode bytecode;
+	// The checked program run on the tree interpreter (only when it is going to)
+	private Program executable;
+	// The diagnostics of the compilation (formatted only when reported)
+	private DiagnosticSink diagnostics;
+	// Source size in bytes and compilation time in nanoseconds
+	private long bytes, time;
+	// AST nodes removed by constant folding
+	private int eliminated;
+	// Tail calls turned into loops
+	private int tailCalls;
+	// Phase statistics (null unless the options ask for them)
+	private Statistics statistics;
+
+	/**
+	 * Default constructor
+	 * @param fileName
+	 * @param options
+	 */
+	public Compilation(String fileName, Options options) {
+		this(fileName, options, null);
+	}
+
+	/**
+	 * Creates a compilation of a source given in memory or as a stream
+	 * The source is not cached (nor closed) by the compilation
+	 * @param source
+	 * @param options
+	 */
+	public Compilation(Source source, Options options) {
+		this(source.getName(), options, null);
+		this.input = source;
+	}
+
+	/**
+	 * Creates a compilation that reuses the results cached for the same source
+	 * @param fileName
+	 * @param options
+	 * @param cache
+	 */
+	public Compilation(String fileName, Options options, CompilationCache cache) {
+		this.fileName = fileName;
+		this.options = options;
+		this.cache = cache;
+		this.identificationTable = new IdentificationTable();
+		this.diagnostics = new DiagnosticSink(fileName);
+		if ( options.isStatistics() ) {
+			this.statistics = new Statistics();
+		}
+	}
+
+	/**
+	 * Compiles the source file
+	 * @return true if there were no errors
+	 */
+	public boolean compile() {
+		long start = System.nanoTime();
+		Source source = this.input;
+		try {
+			this.begin();
+			if ( source == null ) {
+				source = new MappedSource(this.fileName);
+			}
+			boolean classes = this.options.getOutputDirectory() != null;
+			String key = null;
+			if ( this.cache != null && source instanceof MappedSource ) {
+				key = this.cache.key((MappedSource) source);
+				this.entry = this.cache.load(key);
+				if ( this.entry != null && (this.options.isRun() || (classes && this.entry.getClassFile() == null))
+						&& this.entry.getProgram() == null ) {
+					// Damaged cache entry
+					this.entry = null;
+				}
+				this.cached = this.entry != null;
+				this.cache.count(this.cached);
+				if ( this.cached ) {
+					// What the analysis that was skipped did
+					this.eliminated = this.entry.getEliminated();
+					this.tailCalls = this.entry.getTailCalls();
+				}
+			}
+			this.end(Statistics.READ);
+			if ( !this.cached ) {
+				Program program = this.analyze(this.parse(source));
+				this.begin();
+				this.entry = new CompilationCache.Entry(program, classes ? new Encoder().encode(program) : null,
+						this.eliminated, this.tailCalls);
+				if ( key != null ) {
+					this.cache.store(key, this.entry);
+				}
+				this.end(Statistics.CODEGEN);
+			} else if ( classes && this.entry.getClassFile() == null ) {
+				// Cached by a run: the checked program only needs encoding
+				this.begin();
+				Program program = this.entry.getProgram();
+				this.entry = new CompilationCache.Entry(program, new Encoder().encode(program), this.eliminated, this.tailCalls);
+				this.cache.store(key, this.entry);
+				this.end(Statistics.CODEGEN);
+			}
+			if ( classes ) {
+				this.begin();
+				this.writeClass(this.entry.getName(), this.entry.getClassFile());
+				this.end(Statistics.CODEGEN);
+			}
+			if ( this.options.isRun() ) {
+				// Checked, folded and annotated, also when read from the cache
+				Program program = this.entry.getProgram();
+				this.begin();
+				if ( this.options.isTree() ) {
+					// The tree interpreter builds its nodes as they first run
+					this.executable = program;
+				} else if ( this.options.isOptimized() ) {
+					Function[] functions = new Builder().build(program);
+					Optimizer optimizer = new Optimizer();
+					optimizer.optimize(functions);
+					functions = new Inliner(optimizer).inline(functions);
+					this.bytecode = new IRCodeGenerator().generate(functions);
+				} else {
+					this.bytecode = new CodeGenerator().generate(program);
+				}
+				this.end(Statistics.CODEGEN);
+			}
+		} catch (DiagnosticException e) {
+			this.diagnostics.report(e);
+		} catch (IOException e) {
+			this.diagnostics.report(e);
+		} catch (RuntimeException e) {
+			this.diagnostics.report(e);
+		} finally {
+			if ( source != null ) {
+				// A stream only knows its length once it was read
+				this.bytes = Math.max(0, source.length());
+				if ( source != this.input ) {
+					source.close();
+				}
+			}
+		}
+		this.time = System.nanoTime() - start;
+		if ( this.statistics != null ) {
+			this.statistics.addSymbols(this.identificationTable.getDeclarations(),
+					this.identificationTable.getLookups(), this.identificationTable.getScopes());
+		}
+		return !this.diagnostics.hasErrors();
+	}
+
+	/**
+	 * Starts measuring a phase (if statistics are kept)
+	 */
+	private void begin() {
+		if ( this.statistics != null ) {
+			this.statistics.begin();
+		}
+	}
+
+	/**
+	 * Ends measuring a phase (if statistics are kept)
+	 * @param phase
+	 */
+	private void end(int phase) {
+		if ( this.statistics != null ) {
+			this.statistics.end(phase);
+		}
+	}
+
+	/**
+	 * Checks and annotates a program, then folds its constants and turns its
+	 * tail calls into loops
+	 * @param program
+	 * @return the folded program
+	 * @throws SemanticException
+	 */
+	private Program analyze(Program program) throws SemanticException {
+		this.begin();
+		new Checker(this.identificationTable).check(program);
+		this.end(Statistics.CHECK);
+		this.begin();
+		ConstantFolder folder = new ConstantFolder();
+		program = folder.fold(program);
+		this.eliminated += folder.getEliminated();
+		TailCallEliminator eliminator = new TailCallEliminator();
+		program = eliminator.eliminate(program);
+		this.tailCalls += eliminator.getEliminated();
+		this.end(Statistics.FOLD);
+		return program;
+	}
+
+	/**
+	 * Parses the source, recovering from syntax errors so all of them are
+	 * reported, and scanning it on another thread if the options ask for it
+	 * and the source is large enough to pay for the thread. With statistics,
+	 * the source is scanned into a token buffer first, so scanning and
+	 * parsing are measured apart
+	 * @param source
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException
+	 */
+	private Program parse(Source source) throws SyntacticException, LexicalException {
+		if ( this.statistics != null ) {
+			this.statistics.begin();
+			TokenBuffer tokens = new Scanner(source).tokenize();
+			this.statistics.end(Statistics.SCAN);
+			this.statistics.addTokens(tokens.size());
+			this.statistics.begin();
+			Parser parser = new Parser(tokens);
+			parser.setMaxErrors(Parser.MAX_ERRORS);
+			try {
+				Program program = parser.parse();
+				this.statistics.addNodes(ConstantFolder.size(program));
+				return program;
+			} finally {
+				this.statistics.end(Statistics.PARSE);
+			}
+		}
+		// Sources of unknown length are streams, only read by one thread
+		if ( !this.options.isPipelined() || source.length() < TokenPipeline.MINIMUM_LENGTH ) {
+			Parser parser = new Parser(source);
+			parser.setMaxErrors(Parser.MAX_ERRORS);
+			return parser.parse();
+		}
+		try (TokenPipeline tokens = new TokenPipeline(source)) {
+			Parser parser = new Parser(tokens);
+			parser.setMaxErrors(Parser.MAX_ERRORS);
+			return parser.parse();
+		}
+	}
+
+	/**
+	 * Writes the class file of the program in the output directory
+	 * @param name - the program name
+	 * @param bytes
+	 * @throws IOException
+	 */
+	private void writeClass(String name, byte[] bytes) throws IOException {
+		Path directory = Paths.get(this.options.getOutputDirectory());
+		Files.createDirectories(directory);
+		Files.write(directory.resolve(name + ".class"), bytes);
+	}
+
+	/**
+	 * Returns the source file name
+	 * @return
+	 */
+	public String getFileName() {
+		return this.fileName;
+	}
+
+	/**
+	 * Returns the identification table of this compilation
+	 * @return
+	 */
+	public IdentificationTable getIdentificationTable() {
+		return this.identificationTable;
+	}
+
+	/**
+	 * Returns the resulting AST (read from the cache entry when first asked for)
+	 * @return
+	 */
+	public AST getAst() {
+		return !this.diagnostics.hasErrors() && this.entry != null ? this.entry.getProgram() : null;
+	}
+
+	/**
+	 * Returns whether the result came from the cache
+	 * @return
+	 */
+	public boolean isCached() {
+		return this.cached;
+	}
+
+	/**
+	 * Returns the register bytecode (null unless the program is going to run)
+	 * @return
+	 */
+	public Bytecode getBytecode() {
+		return this.bytecode;
+	}
+
+	/**
+	 * Returns the checked program to run on the tree interpreter (null
+	 * unless the program is going to run there)
+	 * @return
+	 */
+	public Program getExecutable() {
+		return this.executable;
+	}
+
+	/**
+	 * Returns the error report (null if there were no errors), formatting
+	 * the diagnostics
+	 * @return
+	 */
+	public String getError() {
+		return this.diagnostics.hasErrors() ? this.diagnostics.toString() : null;
+	}
+
+	/**
+	 * Returns the diagnostics of the compilation
+	 * @return
+	 */
+	public DiagnosticSink getDiagnostics() {
+		return this.diagnostics;
+	}
+
+	/**
+	 * Returns the source size in bytes
+	 * @return
+	 */
+	public long getBytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Returns the phase statistics (null unless the options ask for them)
+	 * @return
+	 */
+	public Statistics getStatistics() {
+		return this.statistics;
+	}
+
+	/**
+	 * Returns the number of AST nodes removed by constant folding
+	 * @return
+	 */
+	public int getEliminated() {
+		return this.eliminated;
+	}
+
+	/**
+	 * Returns the number of tail calls turned into loops
+	 * @return
+	 */
+	public int getTailCalls() {
+		return this.tailCalls;
+	}
+
+	/**
+	 * Returns the compilation time in nanoseconds
+	 * @return
+	 */
+	public long getTime() {
+		return this.time;
+	}
+
+}
@@ -0,0 +1,348 @@
+package compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import util.MappedSource;
+import util.AST.ASTReader;
+import util.AST.ASTWriter;
+import util.AST.Program;
+
+/**
+ * Compilation cache
+ * A content addressed directory that several compiler processes may share:
+ * the SHA-256 of the compiler version and of the source bytes names an entry
+ * holding the program class file and its checked AST (in the binary AST
+ * format, with the types and slots the checker gave it, after folding), so
+ * an unchanged source skips the scanner, the parser, the checker, the
+ * folding and the encoder. An entry is written to a
+ * temporary file and renamed into place, so a reader never sees half an
+ * entry; a hit touches the entry and, when the directory grows past its
+ * limit, the least recently used entries are removed under a file lock.
+ * Entries are readable by everyone, as the files a compiler writes
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class CompilationCache {
+
+	// Entry file extension
+	public static final String EXTENSION = ".entry";
+	// Default size limit in bytes
+	public static final long DEFAULT_LIMIT = 256L * 1024 * 1024;
+	// First int of every entry
+	private static final int MAGIC = 0x50415343;
+	// Lock file taken while entries are removed
+	private static final String LOCK = "cache.lock";
+	// Temporary files older than this were left by a process that died
+	private static final long STALE = 60L * 60 * 1000;
+
+	// The cache directory
+	private Path directory;
+	// Size limit in bytes
+	private long limit;
+	// Compilations that used an entry and that compiled the source
+	private AtomicInteger hits = new AtomicInteger(), misses = new AtomicInteger();
+
+	/**
+	 * Default constructor
+	 * @param directory
+	 * @param limit - size limit in bytes
+	 * @throws IOException
+	 */
+	public CompilationCache(String directory, long limit) throws IOException {
+		this.directory = Paths.get(directory);
+		this.limit = limit;
+		Files.createDirectories(this.directory);
+	}
+
+	/**
+	 * Opens the cache the options ask for
+	 * @param options
+	 * @return the cache (null if the options do not ask for one)
+	 * @throws IOException
+	 */
+	public static CompilationCache open(Options options) throws IOException {
+		if ( options.getCacheDirectory() == null ) {
+			return null;
+		}
+		return new CompilationCache(options.getCacheDirectory(), options.getCacheLimit());
+	}
+
+	/**
+	 * A cached compilation: the program name, its class file (null if it was
+	 * not generated), how many AST nodes folding eliminated and tail calls it
+	 * turned into loops, and its AST, read from the entry file only when
+	 * asked for
+	 */
+	public static class Entry {
+
+		private String name;
+		private byte[] classFile;
+		private int eliminated, tailCalls;
+		private Program program;
+		// Where the binary AST starts in the entry file
+		private Path file;
+		private long offset;
+
+		private Entry(String name, byte[] classFile, int eliminated, int tailCalls, Path file, long offset) {
+			this.name = name;
+			this.classFile = classFile;
+			this.eliminated = eliminated;
+			this.tailCalls = tailCalls;
+			this.file = file;
+			this.offset = offset;
+		}
+
+		/**
+		 * Creates an entry for a compiled program
+		 * @param program
+		 * @param classFile - null if not generated
+		 * @param eliminated - AST nodes eliminated by folding
+		 * @param tailCalls - tail calls turned into loops
+		 */
+		public Entry(Program program, byte[] classFile, int eliminated, int tailCalls) {
+			this.name = program.getName();
+			this.program = program;
+			this.classFile = classFile;
+			this.eliminated = eliminated;
+			this.tailCalls = tailCalls;
+		}
+
+		/**
+		 * Returns the program name
+		 * @return
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Returns the program (null if the entry file can no longer be read)
+		 * @return
+		 */
+		public Program getProgram() {
+			if ( this.program == null && this.file != null ) {
+				try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+					long size = channel.size() - this.offset;
+					this.program = new ASTReader(channel.map(FileChannel.MapMode.READ_ONLY, this.offset, size)).read();
+				} catch (IOException e) {
+					// Removed meanwhile or written by another format version
+				} catch (RuntimeException e) {
+					// Damaged
+				}
+				this.file = null;
+			}
+			return this.program;
+		}
+
+		public byte[] getClassFile() {
+			return this.classFile;
+		}
+
+		public int getEliminated() {
+			return this.eliminated;
+		}
+
+		public int getTailCalls() {
+			return this.tailCalls;
+		}
+
+	}
+
+	/**
+	 * Returns the key of a source: the SHA-256 (in hex) of the compiler
+	 * version and the source bytes
+	 * @param source
+	 * @return
+	 */
+	public String key(MappedSource source) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e.toString());
+		}
+		digest.update(Properties.version.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(source.getBytes());
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest()) {
+			key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Looks an entry up
+	 * @param key
+	 * @return the entry (null if there is none or it cannot be read)
+	 */
+	public Entry load(String key) {
+		Path file = this.directory.resolve(key + EXTENSION);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if ( in.readInt() != MAGIC || !in.readUTF().equals(Properties.version) ) {
+				return null;
+			}
+			String name = in.readUTF();
+			int eliminated = in.readInt();
+			int tailCalls = in.readInt();
+			byte[] classFile = null;
+			int classLength = in.readInt();
+			if ( classLength >= 0 ) {
+				classFile = new byte[classLength];
+				in.readFully(classFile);
+			}
+			// The AST is the rest of the file
+			long offset = in.readInt();
+			// Most recently used
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return new Entry(name, classFile, eliminated, tailCalls, file, offset);
+		} catch (IOException e) {
+			// Missing, removed meanwhile or damaged: compiles again
+			return null;
+		}
+	}
+
+	/**
+	 * Counts a compilation that used the entry it loaded (a hit) or had to
+	 * compile its source (a miss)
+	 * @param hit
+	 */
+	public void count(boolean hit) {
+		(hit ? this.hits : this.misses).incrementAndGet();
+	}
+
+	/**
+	 * Stores an entry (a failed write only costs a miss later)
+	 * @param key
+	 * @param entry
+	 */
+	public void store(String key, Entry entry) {
+		Path temporary = null;
+		try {
+			temporary = Files.createTempFile(this.directory, key, ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				out.writeInt(MAGIC);
+				out.writeUTF(Properties.version);
+				out.writeUTF(entry.name);
+				out.writeInt(entry.eliminated);
+				out.writeInt(entry.tailCalls);
+				if ( entry.classFile == null ) {
+					out.writeInt(-1);
+				} else {
+					out.writeInt(entry.classFile.length);
+					out.write(entry.classFile);
+				}
+				out.writeInt(out.size() + 4);
+				out.flush();
+				new ASTWriter(out).write(entry.getProgram());
+			}
+			// Same key, same contents: whoever renames last wins and readers see either
+			Path file = this.directory.resolve(key + EXTENSION);
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			temporary = null;
+			try {
+				// Temporary files are only readable by their owner
+				Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-r--r--"));
+			} catch (UnsupportedOperationException e) {
+				// Not a POSIX file system: its default permissions
+			}
+		} catch (IOException e) {
+			// Not cached
+		} finally {
+			if ( temporary != null ) {
+				try {
+					Files.deleteIfExists(temporary);
+				} catch (IOException e) {
+					// Removed as stale later
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the least recently used entries until the cache fits its limit
+	 * (and temporary files left by processes that died)
+	 */
+	public synchronized void trim() {
+		try (FileChannel channel = FileChannel.open(this.directory.resolve(LOCK),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FileLock lock = channel.lock();
+			try {
+				List<Path> files = new ArrayList<Path>();
+				List<BasicFileAttributes> attributes = new ArrayList<BasicFileAttributes>();
+				long size = 0;
+				long now = System.currentTimeMillis();
+				try (DirectoryStream<Path> entries = Files.newDirectoryStream(this.directory)) {
+					for (Path file : entries) {
+						BasicFileAttributes attribute;
+						try {
+							attribute = Files.readAttributes(file, BasicFileAttributes.class);
+						} catch (IOException e) {
+							continue;
+						}
+						String name = file.getFileName().toString();
+						if ( name.endsWith(EXTENSION) ) {
+							files.add(file);
+							attributes.add(attribute);
+							size += attribute.size();
+						} else if ( name.endsWith(".tmp") && now - attribute.lastModifiedTime().toMillis() > STALE ) {
+							Files.deleteIfExists(file);
+						}
+					}
+				}
+				if ( size <= this.limit ) {
+					return;
+				}
+				// Oldest first
+				Integer[] order = new Integer[files.size()];
+				for (int i = 0; i < order.length; i++) {
+					order[i] = i;
+				}
+				Arrays.sort(order, (a, b) -> attributes.get(a).lastModifiedTime().compareTo(attributes.get(b).lastModifiedTime()));
+				for (int i = 0; i < order.length && size > this.limit; i++) {
+					try {
+						Files.deleteIfExists(files.get(order[i]));
+						size -= attributes.get(order[i]).size();
+					} catch (IOException e) {
+						// In use elsewhere: stays
+					}
+				}
+			} finally {
+				lock.release();
+			}
+		} catch (IOException e) {
+			// Trimmed next time
+		}
+	}
+
+	public int getHits() {
+		return this.hits.get();
+	}
+
+	public int getMisses() {
+		return this.misses.get();
+	}
+
+}
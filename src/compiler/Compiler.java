@@ -1,10 +1,24 @@
 package compiler;
 
-import parser.Parser;
-import parser.SyntacticException;
-import scanner.LexicalException;
-import util.AST.AST;
-import util.symbolsTable.IdentificationTable;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import interpreter.SpecializingInterpreter;
+import interpreter.VirtualMachine;
+import util.ChannelSource;
+import util.Json;
 
 /**
  * Compiler driver
@@ -14,32 +28,197 @@ import util.symbolsTable.IdentificationTable;
  * @email gustavohpcarvalho@ecomp.poli.br
  */
 public class Compiler {
-	
-	// Compiler identification table
-	public static IdentificationTable identificationTable = null;
+
+	// The path that stands for the standard input
+	public static final String STDIN = "-";
+	// Command line summary
+	public static final String USAGE = "usage: pascompiler [-j threads] [-d classDir] [-r [-O | -t]] [-p]"
+			+ " [-c cacheDir [-cs megabytes]] [--stats] [--stats-json file] [files]\n"
+			+ "       pascompiler --server [--socket path]";
 
 	/**
 	 * Compiler start point
-	 * @param args - none
+	 * @param args - [-j threads] [-d classDirectory] [-r [-O | -t]] [-c cacheDirectory [-cs megabytes]]
+	 * [--stats] [--stats-json file] [files or directories];
+	 * with no files, compiles Properties.sourceCodeLocation and prints its AST
+	 * ("-" reads the source from the standard input)
+	 * (-r runs the programs instead, -O optimizes them first, -t runs them
+	 * on the specializing tree interpreter).
+	 * With --server [--socket path], serves compile requests instead
 	 */
 	public static void main(String[] args) {
-		// Creates the parser object
-		Parser p = null;
-		// Creates the AST object
-		AST ast = null;
-		
+		Options options;
 		try {
-			p = new Parser();
-			ast = p.parse();
-			
+			options = Options.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+		
+		if ( options.isServer() ) {
+			serve(options);
+		} else if ( options.isRun() ) {
+			if ( options.getPaths().isEmpty() ) {
+				run(Properties.sourceCodeLocation, options);
+			}
+			for (String path : options.getPaths()) {
+				run(path, options);
+			}
+		} else if ( options.getPaths().isEmpty() ) {
+			compile(Properties.sourceCodeLocation, options);
+		} else if ( options.getPaths().equals(Collections.singletonList(STDIN)) ) {
+			compile(STDIN, options);
+		} else {
+			compileAll(options);
+		}
+	}
+	
+	/**
+	 * Creates the compilation of a file, or of the standard input (streamed,
+	 * so it is not cached)
+	 * @param fileName
+	 * @param options
+	 * @return
+	 */
+	private static Compilation open(String fileName, Options options) {
+		if ( STDIN.equals(fileName) ) {
+			return new Compilation(new ChannelSource("<stdin>", Channels.newChannel(System.in)), options);
+		}
+		return new Compilation(fileName, options, openCache(options));
+	}
+	
+	/**
+	 * Compiles a single file and prints its AST
+	 * @param fileName
+	 * @param options
+	 */
+	private static void compile(String fileName, Options options) {
+		Compilation compilation = open(fileName, options);
+		
+		if ( compilation.compile() ) {
 			System.out.println("\n-- AST STRUCTURE --");
-			if ( ast != null ) {
-				System.out.println(ast.toString(0));
+			if ( compilation.getAst() != null ) {
+				System.out.println(compilation.getAst().toString(0));
+			}
+		} else {
+			System.err.println(compilation.getError());
+		}
+		reportStatistics(Collections.singletonList(compilation), options, System.err);
+	}
+	
+	/**
+	 * Compiles a single file and runs it on the register machine (or the tree interpreter)
+	 * @param fileName
+	 * @param options
+	 */
+	private static void run(String fileName, Options options) {
+		Compilation compilation = open(fileName, options);
+		
+		if ( compilation.compile() ) {
+			PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)), false);
+			try {
+				if ( options.isTree() ) {
+					new SpecializingInterpreter(out).run(compilation.getExecutable());
+				} else {
+					new VirtualMachine(compilation.getBytecode()).run(out);
+				}
+			} catch (RuntimeException e) {
+				out.flush();
+				System.err.println(e.getMessage());
+			}
+			out.flush();
+		} else {
+			System.err.println(compilation.getError());
+		}
+		reportStatistics(Collections.singletonList(compilation), options, System.err);
+	}
+	
+	/**
+	 * Prints the statistics of the compilations added up, and writes them
+	 * (added up and per file) to the statistics file, if the options ask for it
+	 * @param compilations
+	 * @param options
+	 * @param out
+	 */
+	private static void reportStatistics(List<Compilation> compilations, Options options, PrintStream out) {
+		if ( !options.isStatistics() ) {
+			return;
+		}
+		Statistics total = Statistics.total();
+		List<Object> files = new ArrayList<Object>();
+		for (Compilation compilation : compilations) {
+			total.add(compilation.getStatistics());
+			Map<String, Object> file = new LinkedHashMap<String, Object>();
+			file.put("file", compilation.getFileName());
+			file.put("ok", !compilation.getDiagnostics().hasErrors());
+			file.putAll(compilation.getStatistics().toJson());
+			file.remove("files");
+			files.add(file);
+		}
+		out.println();
+		out.print(total);
+		if ( options.getStatisticsFile() != null ) {
+			Map<String, Object> json = new LinkedHashMap<String, Object>();
+			json.put("total", total.toJson());
+			json.put("files", files);
+			try {
+				Files.write(Paths.get(options.getStatisticsFile()), Json.write(json).getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				System.err.println(e.toString());
+			}
+		}
+	}
+	
+	/**
+	 * Serves compile requests until the client exits
+	 * @param options
+	 */
+	private static void serve(Options options) {
+		try {
+			if ( options.getSocket() != null ) {
+				LanguageServer.listen(options.getSocket());
+			} else {
+				new LanguageServer(System.in, System.out).run();
+			}
+		} catch (IOException e) {
+			System.err.println(e.toString());
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Opens the compilation cache (compiles without it if it cannot be opened)
+	 * @param options
+	 * @return the cache (null if there is none)
+	 */
+	private static CompilationCache openCache(Options options) {
+		try {
+			return CompilationCache.open(options);
+		} catch (IOException e) {
+			System.err.println(e.toString());
+			return null;
+		}
+	}
+	
+	/**
+	 * Compiles many files in parallel and prints the results in order
+	 * @param options
+	 */
+	private static void compileAll(Options options) {
+		try {
+			BatchCompiler batch = new BatchCompiler(options);
+			long start = System.nanoTime();
+			int failed = batch.compile();
+			batch.report(System.out, System.nanoTime() - start);
+			reportStatistics(batch.getCompilations(), options, System.out);
+			if ( failed > 0 ) {
+				System.exit(1);
 			}
-		} catch (SyntacticException e) {
-			e.printStackTrace();
-		} catch (LexicalException e) {
-			e.printStackTrace();
+		} catch (IOException e) {
+			System.err.println(e.toString());
+			System.exit(1);
 		}
 	}
 	
@@ -0,0 +1,493 @@
+package compiler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import checker.Checker;
+import checker.SemanticException;
+import parser.IncrementalParser;
+import parser.Parser;
+import parser.SyntacticException;
+import scanner.IncrementalScanner;
+import scanner.LexicalException;
+import util.EditableSource;
+import util.Json;
+import util.AST.Program;
+import util.diagnostics.Diagnostic;
+import util.diagnostics.DiagnosticSink;
+import util.diagnostics.Severity;
+import util.symbolsTable.IdentificationTable;
+
+/**
+ * Language server
+ * A resident compiler process that speaks JSON-RPC with Content-Length
+ * framing (the Language Server Protocol transport) over a pair of streams
+ * (standard input and output, or a Unix domain socket connection). Each
+ * open document keeps its text and AST; an edit is scanned and parsed
+ * again incrementally (and, after a syntax error, in full with recovery, so
+ * every syntax error is found), the program is checked, and the diagnostics
+ * are published. Besides the LSP document notifications, the pascal/compile
+ * request returns the diagnostics of a document directly
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class LanguageServer {
+
+	/**
+	 * An open document
+	 */
+	private static class Document {
+
+		// The text and its parser (which keeps the tokens and the AST)
+		private EditableSource source;
+		private IncrementalParser parser;
+		// The version the client gave to the text
+		private Object version;
+
+		private Document(String uri, String text, Object version) {
+			this.source = new EditableSource(uri, text);
+			this.parser = new IncrementalParser(this.source);
+			this.version = version;
+		}
+
+	}
+
+	// LSP error codes
+	private static final int METHOD_NOT_FOUND = -32601, INVALID_PARAMS = -32602;
+	// Diagnostic severities
+	private static final int ERROR = 1, WARNING = 2;
+
+	// The message streams
+	private InputStream in;
+	private OutputStream out;
+	// The open documents, by URI
+	private Map<String, Document> documents = new HashMap<String, Document>();
+	// Whether the client asked for a shutdown
+	private boolean shutdown;
+
+	/**
+	 * Default constructor
+	 * @param in - where the client messages come from
+	 * @param out - where the replies go
+	 */
+	public LanguageServer(InputStream in, OutputStream out) {
+		this.in = new BufferedInputStream(in);
+		this.out = out;
+	}
+
+	/**
+	 * Serves the clients of a Unix domain socket, one connection at a time,
+	 * until one of them sends exit
+	 * @param path - the socket file (replaced if it exists)
+	 * @throws IOException
+	 */
+	public static void listen(String path) throws IOException {
+		Path file = Paths.get(path);
+		Files.deleteIfExists(file);
+		try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+			server.bind(UnixDomainSocketAddress.of(file));
+			boolean exit = false;
+			while (!exit) {
+				try (SocketChannel client = server.accept()) {
+					exit = new LanguageServer(Channels.newInputStream(client), Channels.newOutputStream(client)).run();
+				}
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Answers the client messages until the client sends exit or closes the stream
+	 * @return true if the client sent exit
+	 * @throws IOException
+	 */
+	public boolean run() throws IOException {
+		String message;
+		while ((message = this.read()) != null) {
+			Map<String, Object> request;
+			try {
+				request = object(Json.parse(message));
+			} catch (IllegalArgumentException e) {
+				continue;
+			}
+			if ( request == null ) {
+				continue;
+			}
+			if ( "exit".equals(request.get("method")) ) {
+				return true;
+			}
+			this.handle(request);
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the next message (null at the end of the stream)
+	 * @return
+	 * @throws IOException
+	 */
+	private String read() throws IOException {
+		int length = -1;
+		String line;
+		while ((line = this.readLine()) != null && !line.isEmpty()) {
+			int colon = line.indexOf(':');
+			if ( colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Length") ) {
+				length = Integer.parseInt(line.substring(colon + 1).trim());
+			}
+		}
+		if ( line == null || length < 0 ) {
+			return null;
+		}
+		byte[] content = this.in.readNBytes(length);
+		if ( content.length < length ) {
+			return null;
+		}
+		return new String(content, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a header line (null at the end of the stream)
+	 * @return
+	 * @throws IOException
+	 */
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int c;
+		while ((c = this.in.read()) != '\n') {
+			if ( c < 0 ) {
+				return null;
+			}
+			if ( c != '\r' ) {
+				line.write(c);
+			}
+		}
+		return line.toString(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Sends a message
+	 * @param message
+	 * @throws IOException
+	 */
+	private void send(Map<String, Object> message) throws IOException {
+		message.put("jsonrpc", "2.0");
+		byte[] content = Json.write(message).getBytes(StandardCharsets.UTF_8);
+		this.out.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		this.out.write(content);
+		this.out.flush();
+	}
+
+	/**
+	 * Answers a request or handles a notification
+	 * @param request
+	 * @throws IOException
+	 */
+	private void handle(Map<String, Object> request) throws IOException {
+		Object id = request.get("id");
+		String method = String.valueOf(request.get("method"));
+		Map<String, Object> params = object(request.get("params"));
+		Object result = null;
+		try {
+			switch (method) {
+			case "initialize":
+				result = capabilities();
+				break;
+			case "shutdown":
+				this.shutdown = true;
+				break;
+			case "textDocument/didOpen": {
+				Map<String, Object> document = object(params.get("textDocument"));
+				String uri = (String) document.get("uri");
+				this.documents.put(uri, new Document(uri, (String) document.get("text"), document.get("version")));
+				this.publish(uri);
+				break;
+			}
+			case "textDocument/didChange":
+				this.change(params);
+				break;
+			case "textDocument/didClose": {
+				String uri = (String) object(params.get("textDocument")).get("uri");
+				this.documents.remove(uri);
+				this.notify("textDocument/publishDiagnostics", diagnostics(uri, null, new ArrayList<Object>()));
+				break;
+			}
+			case "pascal/compile": {
+				String uri = (String) object(params.get("textDocument")).get("uri");
+				Document document = this.documents.get(uri);
+				if ( document == null ) {
+					this.error(id, INVALID_PARAMS, "Document not open: " + uri);
+					return;
+				}
+				result = diagnostics(uri, document.version, this.diagnose(document));
+				break;
+			}
+			default:
+				if ( id != null && !this.shutdown ) {
+					this.error(id, METHOD_NOT_FOUND, "Unknown method: " + method);
+				}
+				return;
+			}
+		} catch (RuntimeException e) {
+			// Missing or malformed parameters
+			if ( id != null ) {
+				this.error(id, INVALID_PARAMS, String.valueOf(e.getMessage()));
+			}
+			return;
+		}
+		if ( id != null ) {
+			Map<String, Object> response = new LinkedHashMap<String, Object>();
+			response.put("id", id);
+			response.put("result", result);
+			this.send(response);
+		}
+	}
+
+	/**
+	 * Returns what the server does, as the initialize result
+	 * @return
+	 */
+	private static Map<String, Object> capabilities() {
+		Map<String, Object> sync = new LinkedHashMap<String, Object>();
+		sync.put("openClose", true);
+		// Incremental changes
+		sync.put("change", 2);
+		Map<String, Object> capabilities = new LinkedHashMap<String, Object>();
+		capabilities.put("textDocumentSync", sync);
+		Map<String, Object> info = new LinkedHashMap<String, Object>();
+		info.put("name", "PasCompiler");
+		info.put("version", Properties.version);
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("capabilities", capabilities);
+		result.put("serverInfo", info);
+		return result;
+	}
+
+	/**
+	 * Applies the changes of a didChange notification, then publishes the
+	 * diagnostics of the document
+	 * @param params
+	 * @throws IOException
+	 */
+	private void change(Map<String, Object> params) throws IOException {
+		Map<String, Object> identifier = object(params.get("textDocument"));
+		String uri = (String) identifier.get("uri");
+		Document document = this.documents.get(uri);
+		if ( document == null ) {
+			return;
+		}
+		for (Object item : (List<?>) params.get("contentChanges")) {
+			Map<String, Object> change = object(item);
+			String text = (String) change.get("text");
+			Map<String, Object> range = object(change.get("range"));
+			if ( range == null ) {
+				document.parser.edit(0, document.source.length(), text);
+			} else {
+				int start = offset(document.source, object(range.get("start")));
+				int end = offset(document.source, object(range.get("end")));
+				document.parser.edit(start, Math.max(0, end - start), text);
+			}
+		}
+		document.version = identifier.get("version");
+		this.publish(uri);
+	}
+
+	/**
+	 * Returns the offset of an LSP position (line and character) in a text
+	 * (a character past the end of its line stands for the end of the line)
+	 * @param source
+	 * @param position
+	 * @return
+	 */
+	private static int offset(EditableSource source, Map<String, Object> position) {
+		int line = ((Number) position.get("line")).intValue();
+		int character = ((Number) position.get("character")).intValue();
+		if ( line >= source.getLineCount() ) {
+			return source.length();
+		}
+		int start = source.getLineStart(line);
+		int end = source.length();
+		if ( line + 1 < source.getLineCount() ) {
+			// Before the line break
+			end = source.getLineStart(line + 1) - 1;
+			if ( end > start && source.charAt(end) == '\n' && source.charAt(end - 1) == '\r' ) {
+				end--;
+			}
+		}
+		return Math.min(start + character, end);
+	}
+
+	/**
+	 * Returns the LSP position (line and character) of an offset in a text
+	 * @param source
+	 * @param offset
+	 * @return
+	 */
+	private static Map<String, Object> position(EditableSource source, int offset) {
+		offset = Math.min(offset, source.length());
+		int line = source.getLine(offset);
+		Map<String, Object> position = new LinkedHashMap<String, Object>();
+		position.put("line", line);
+		position.put("character", offset - source.getLineStart(line));
+		return position;
+	}
+
+	/**
+	 * Publishes the diagnostics of a document
+	 * @param uri
+	 * @throws IOException
+	 */
+	private void publish(String uri) throws IOException {
+		Document document = this.documents.get(uri);
+		this.notify("textDocument/publishDiagnostics", diagnostics(uri, document.version, this.diagnose(document)));
+	}
+
+	private static Map<String, Object> diagnostics(String uri, Object version, List<Object> diagnostics) {
+		Map<String, Object> params = new LinkedHashMap<String, Object>();
+		params.put("uri", uri);
+		if ( version != null ) {
+			params.put("version", version);
+		}
+		params.put("diagnostics", diagnostics);
+		return params;
+	}
+
+	/**
+	 * Returns the diagnostics of a document: the lexical and syntactic errors
+	 * of its last parse or, if it parsed, the first semantic error
+	 * @param document
+	 * @return
+	 */
+	private List<Object> diagnose(Document document) {
+		DiagnosticSink sink = new DiagnosticSink(document.source.getName());
+		Exception error = document.parser.getError();
+		Program program = document.parser.getProgram();
+		if ( error instanceof SyntacticException ) {
+			sink.report(recover(document, error));
+		} else if ( error != null ) {
+			sink.report(error);
+		} else if ( program != null ) {
+			try {
+				new Checker(new IdentificationTable()).check(program);
+			} catch (SemanticException e) {
+				// Lines inside a command or subprogram are relative to it
+				sink.report(document.parser.locate(e.getDiagnostic(), e.getNode()));
+			}
+		}
+		List<Object> diagnostics = new ArrayList<Object>();
+		for (Diagnostic diagnostic : sink.getDiagnostics()) {
+			diagnostics.add(diagnostic(document, diagnostic));
+		}
+		return diagnostics;
+	}
+
+	/**
+	 * Parses a document that has a syntax error again, recovering from each
+	 * error: the incremental parser stops at the first one
+	 * @param document
+	 * @param error - the first error
+	 * @return the first error, with every other one suppressed in it
+	 */
+	private static Exception recover(Document document, Exception error) {
+		try {
+			Parser parser = new Parser(document.source);
+			parser.setMaxErrors(Parser.MAX_ERRORS);
+			parser.parse();
+		} catch (SyntacticException e) {
+			return e;
+		} catch (LexicalException e) {
+			return e;
+		}
+		return error;
+	}
+
+	/**
+	 * Returns the LSP form of a diagnostic. The range covers the subject:
+	 * lexical and syntactic diagnostics know where it starts; a semantic one
+	 * is at the line and column the scanner reached after a token, so the
+	 * range covers that token
+	 * @param document
+	 * @param diagnostic
+	 * @return
+	 */
+	private static Map<String, Object> diagnostic(Document document, Diagnostic diagnostic) {
+		String subject = diagnostic.getSubject();
+		int start = diagnostic.getOffset();
+		int length = subject != null ? Math.max(1, subject.length()) : 1;
+		if ( start < 0 && diagnostic.getLine() >= 0 ) {
+			IncrementalScanner tokens = document.parser.getScanner();
+			int token = tokens.find(diagnostic.getLine(), diagnostic.getColumn());
+			if ( token >= 0 ) {
+				start = tokens.getStart(token);
+				length = Math.max(1, tokens.getLength(token));
+			}
+		}
+		Map<String, Object> range = new LinkedHashMap<String, Object>();
+		if ( start >= 0 ) {
+			range.put("start", position(document.source, start));
+			range.put("end", position(document.source, start + length));
+		} else {
+			range = range(Math.max(0, diagnostic.getLine()), Math.max(0, diagnostic.getColumn()), length);
+		}
+		Map<String, Object> lsp = new LinkedHashMap<String, Object>();
+		lsp.put("range", range);
+		lsp.put("severity", diagnostic.getSeverity() == Severity.ERROR ? ERROR : WARNING);
+		lsp.put("code", diagnostic.getCode().name());
+		lsp.put("source", diagnostic.getCode().getPhase().name().toLowerCase());
+		lsp.put("message", diagnostic.getMessage());
+		return lsp;
+	}
+
+	private static Map<String, Object> range(int line, int column, int length) {
+		Map<String, Object> start = new LinkedHashMap<String, Object>();
+		start.put("line", line);
+		start.put("character", column);
+		Map<String, Object> end = new LinkedHashMap<String, Object>();
+		end.put("line", line);
+		end.put("character", column + length);
+		Map<String, Object> range = new LinkedHashMap<String, Object>();
+		range.put("start", start);
+		range.put("end", end);
+		return range;
+	}
+
+	private void notify(String method, Map<String, Object> params) throws IOException {
+		Map<String, Object> notification = new LinkedHashMap<String, Object>();
+		notification.put("method", method);
+		notification.put("params", params);
+		this.send(notification);
+	}
+
+	private void error(Object id, int code, String message) throws IOException {
+		Map<String, Object> error = new LinkedHashMap<String, Object>();
+		error.put("code", code);
+		error.put("message", message);
+		Map<String, Object> response = new LinkedHashMap<String, Object>();
+		response.put("id", id);
+		response.put("error", error);
+		this.send(response);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> object(Object value) {
+		return value instanceof Map ? (Map<String, Object>) value : null;
+	}
+
+}
@@ -0,0 +1,155 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiler options, read from the command line
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Options {
+
+	// Most worker threads (the limit of a fork join pool)
+	public static final int MAX_THREADS = 0x7fff;
+
+	// Source files or directories
+	private List<String> paths = new ArrayList<String>();
+	// Number of worker threads for batch compilation
+	private int threads = Runtime.getRuntime().availableProcessors();
+	// Directory where class files are written (null: no code generation)
+	private String outputDirectory = null;
+	// Runs the programs on the register machine instead of printing their AST
+	private boolean run = false;
+	// Compilation cache directory (null: no cache) and its size limit in bytes
+	private String cacheDirectory = null;
+	private long cacheLimit = CompilationCache.DEFAULT_LIMIT;
+	// Scans large sources on a thread of their own while they are parsed
+	private boolean pipelined = false;
+	// Runs the programs through the SSA optimizer before the register machine
+	private boolean optimized = false;
+	// Runs the programs on the specializing tree interpreter instead of the register machine
+	private boolean tree = false;
+	// Keeps phase statistics, and the file their JSON form is written to (null: none)
+	private boolean statistics = false;
+	private String statisticsFile = null;
+	// Serves compile requests instead of compiling, on this Unix domain socket (null: standard input and output)
+	private boolean server = false;
+	private String socket = null;
+
+	/**
+	 * Reads the options from the command line arguments
+	 * @param args
+	 * @return
+	 * @throws IllegalArgumentException if a number is out of its range
+	 */
+	public static Options parse(String[] args) {
+		Options options = new Options();
+		for (int i = 0; i < args.length; i++) {
+			if ( args[i].equals("-j") && i + 1 < args.length ) {
+				options.threads = (int) positive(args[i], args[++i], MAX_THREADS);
+			} else if ( args[i].equals("-d") && i + 1 < args.length ) {
+				options.outputDirectory = args[++i];
+			} else if ( args[i].equals("-r") ) {
+				options.run = true;
+			} else if ( args[i].equals("-c") && i + 1 < args.length ) {
+				options.cacheDirectory = args[++i];
+			} else if ( args[i].equals("-cs") && i + 1 < args.length ) {
+				options.cacheLimit = positive(args[i], args[++i], Long.MAX_VALUE / (1024 * 1024)) * 1024 * 1024;
+			} else if ( args[i].equals("-p") ) {
+				options.pipelined = true;
+			} else if ( args[i].equals("-O") ) {
+				options.optimized = true;
+			} else if ( args[i].equals("-t") ) {
+				options.tree = true;
+			} else if ( args[i].equals("--stats") ) {
+				options.statistics = true;
+			} else if ( args[i].equals("--stats-json") && i + 1 < args.length ) {
+				options.statistics = true;
+				options.statisticsFile = args[++i];
+			} else if ( args[i].equals("--server") ) {
+				options.server = true;
+			} else if ( args[i].equals("--socket") && i + 1 < args.length ) {
+				options.server = true;
+				options.socket = args[++i];
+			} else {
+				options.paths.add(args[i]);
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * Reads the number of an option
+	 * @param option
+	 * @param value
+	 * @param maximum
+	 * @return
+	 * @throws IllegalArgumentException if it is not an integer from 1 to maximum
+	 */
+	private static long positive(String option, String value, long maximum) {
+		long number;
+		try {
+			number = Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			number = 0;
+		}
+		if ( number < 1 || number > maximum ) {
+			throw new IllegalArgumentException(option + " expects an integer from 1 to " + maximum + ", not " + value);
+		}
+		return number;
+	}
+
+	public List<String> getPaths() {
+		return paths;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public String getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	public boolean isRun() {
+		return run;
+	}
+
+	public String getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	public long getCacheLimit() {
+		return cacheLimit;
+	}
+
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
+	public boolean isOptimized() {
+		return optimized;
+	}
+
+	public boolean isTree() {
+		return tree;
+	}
+
+	public boolean isStatistics() {
+		return statistics;
+	}
+
+	public String getStatisticsFile() {
+		return statisticsFile;
+	}
+
+	public boolean isServer() {
+		return server;
+	}
+
+	public String getSocket() {
+		return socket;
+	}
+
+}
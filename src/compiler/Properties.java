@@ -11,5 +11,7 @@ public interface Properties {
 
 	// The source code file
 	public static final String sourceCodeLocation = "teste.pas";
+	// The compiler version (part of every cache key: change it whenever the AST or the generated code change)
+	public static final String version = "1.5";
 	
 }
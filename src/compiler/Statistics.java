@@ -0,0 +1,194 @@
+package compiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compilation statistics
+ * Wall time, CPU time and allocated bytes of each phase (read from the
+ * thread management bean of the compiling thread), plus token, AST node and
+ * identification table counts. A compilation only keeps statistics when the
+ * options ask for them, so the phase hooks cost a null test otherwise
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Statistics {
+
+	// The phases
+	public static final int READ = 0, SCAN = 1, PARSE = 2, CHECK = 3, FOLD = 4, CODEGEN = 5;
+	private static final String[] PHASES = { "read", "scan", "parse", "check", "fold", "codegen" };
+
+	// The thread management bean, and whether it measures CPU time and allocation
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final boolean CPU = THREADS.isCurrentThreadCpuTimeSupported();
+	private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+	// Wall time, CPU time (nanoseconds) and allocated bytes of each phase
+	private long[] wall = new long[PHASES.length];
+	private long[] cpu = new long[PHASES.length];
+	private long[] allocated = new long[PHASES.length];
+	// Counters read when the current phase began
+	private long wallMark, cpuMark, allocatedMark;
+	// Tokens scanned and AST nodes parsed
+	private long tokens, nodes;
+	// Identification table operations
+	private long declarations, lookups, scopes;
+	// Compilations added up
+	private int files = 1;
+
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		if ( THREADS instanceof com.sun.management.ThreadMXBean ) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREADS;
+			if ( bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ) {
+				return bean;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Starts measuring a phase
+	 */
+	public void begin() {
+		this.wallMark = System.nanoTime();
+		this.cpuMark = CPU ? THREADS.getCurrentThreadCpuTime() : 0;
+		this.allocatedMark = ALLOCATION != null ? ALLOCATION.getCurrentThreadAllocatedBytes() : 0;
+	}
+
+	/**
+	 * Adds what was measured since the last begin to a phase
+	 * @param phase
+	 */
+	public void end(int phase) {
+		this.wall[phase] += System.nanoTime() - this.wallMark;
+		if ( CPU ) {
+			this.cpu[phase] += THREADS.getCurrentThreadCpuTime() - this.cpuMark;
+		}
+		if ( ALLOCATION != null ) {
+			this.allocated[phase] += ALLOCATION.getCurrentThreadAllocatedBytes() - this.allocatedMark;
+		}
+	}
+
+	public void addTokens(long tokens) {
+		this.tokens += tokens;
+	}
+
+	public void addNodes(long nodes) {
+		this.nodes += nodes;
+	}
+
+	/**
+	 * Adds the identification table operations
+	 * @param declarations
+	 * @param lookups
+	 * @param scopes - scopes opened
+	 */
+	public void addSymbols(long declarations, long lookups, long scopes) {
+		this.declarations += declarations;
+		this.lookups += lookups;
+		this.scopes += scopes;
+	}
+
+	/**
+	 * Adds up the statistics of another compilation
+	 * @param other
+	 */
+	public void add(Statistics other) {
+		for (int i = 0; i < PHASES.length; i++) {
+			this.wall[i] += other.wall[i];
+			this.cpu[i] += other.cpu[i];
+			this.allocated[i] += other.allocated[i];
+		}
+		this.tokens += other.tokens;
+		this.nodes += other.nodes;
+		this.declarations += other.declarations;
+		this.lookups += other.lookups;
+		this.scopes += other.scopes;
+		this.files += other.files;
+	}
+
+	/**
+	 * Creates empty statistics to add compilations up
+	 * @return
+	 */
+	public static Statistics total() {
+		Statistics total = new Statistics();
+		total.files = 0;
+		return total;
+	}
+
+	public long getWallTime(int phase) {
+		return this.wall[phase];
+	}
+
+	public long getCpuTime(int phase) {
+		return this.cpu[phase];
+	}
+
+	public long getAllocatedBytes(int phase) {
+		return this.allocated[phase];
+	}
+
+	public long getTokens() {
+		return this.tokens;
+	}
+
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	/**
+	 * Returns the statistics as a JSON object (a map)
+	 * @return
+	 */
+	public Map<String, Object> toJson() {
+		Map<String, Object> json = new LinkedHashMap<String, Object>();
+		json.put("files", this.files);
+		Map<String, Object> phases = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < PHASES.length; i++) {
+			Map<String, Object> phase = new LinkedHashMap<String, Object>();
+			phase.put("wallNanos", this.wall[i]);
+			phase.put("cpuNanos", CPU ? this.cpu[i] : null);
+			phase.put("allocatedBytes", ALLOCATION != null ? this.allocated[i] : null);
+			phases.put(PHASES[i], phase);
+		}
+		json.put("phases", phases);
+		json.put("tokens", this.tokens);
+		json.put("nodes", this.nodes);
+		Map<String, Object> symbols = new LinkedHashMap<String, Object>();
+		symbols.put("declarations", this.declarations);
+		symbols.put("lookups", this.lookups);
+		symbols.put("scopes", this.scopes);
+		json.put("symbols", symbols);
+		return json;
+	}
+
+	/**
+	 * Returns the human readable summary
+	 */
+	public String toString() {
+		StringBuilder str = new StringBuilder("-- STATISTICS --\n");
+		str.append(String.format("%-8s %10s %10s %12s%n", "Phase", "Wall ms", "CPU ms", "Allocated KB"));
+		long wall = 0, cpu = 0, allocated = 0;
+		for (int i = 0; i < PHASES.length; i++) {
+			str.append(this.line(PHASES[i], this.wall[i], this.cpu[i], this.allocated[i]));
+			wall += this.wall[i];
+			cpu += this.cpu[i];
+			allocated += this.allocated[i];
+		}
+		str.append(this.line("total", wall, cpu, allocated));
+		str.append("Tokens: " + this.tokens + ", AST nodes: " + this.nodes + "\n");
+		str.append("Symbols: " + this.declarations + " declarations, " + this.lookups + " lookups, " +
+				this.scopes + " scopes\n");
+		return str.toString();
+	}
+
+	private String line(String phase, long wall, long cpu, long allocated) {
+		return String.format("%-8s %10.3f %10s %12s%n", phase, wall / 1e6,
+				CPU ? String.format("%.3f", cpu / 1e6) : "-",
+				ALLOCATION != null ? String.valueOf(allocated / 1024) : "-");
+	}
+
+}
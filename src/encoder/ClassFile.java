@@ -0,0 +1,217 @@
+package encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Class file writer
+ * Builds a JVM class file (version 49, so no stack map frames are needed)
+ * with static fields and static methods only
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ClassFile {
+
+	// Access flags
+	public static final int ACC_PUBLIC = 0x0001;
+	public static final int ACC_PRIVATE = 0x0002;
+	public static final int ACC_STATIC = 0x0008;
+	public static final int ACC_FINAL = 0x0010;
+	public static final int ACC_SUPER = 0x0020;
+
+	// Constant pool tags
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	// Class file version (Java 5)
+	private static final int MAJOR_VERSION = 49;
+
+	// Constant pool contents and the index of each entry
+	private ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private DataOutputStream poolOut = new DataOutputStream(pool);
+	private HashMap<String, Integer> poolIndex = new HashMap<String, Integer>();
+	private int poolCount = 1;
+
+	// The class name (internal form) and its constant pool index
+	private String className;
+	private int thisClass, superClass;
+	// Fields and methods, already encoded
+	private List<byte[]> fields = new ArrayList<byte[]>();
+	private List<byte[]> methods = new ArrayList<byte[]>();
+
+	/**
+	 * Default constructor
+	 * @param className - internal name (with '/' as package separator)
+	 */
+	public ClassFile(String className) {
+		this.className = className;
+		this.thisClass = this.classRef(className);
+		this.superClass = this.classRef("java/lang/Object");
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	/* -------------------------------------------- */
+	/* --------------- CONSTANT POOL -------------- */
+	/* -------------------------------------------- */
+
+	/**
+	 * Returns the index of a constant, adding it to the pool if needed
+	 */
+	private int constant(String key, int tag, int a, int b, String utf8, int value) {
+		Integer index = this.poolIndex.get(key);
+		if ( index != null ) {
+			return index;
+		}
+		try {
+			this.poolOut.writeByte(tag);
+			switch (tag) {
+			case CONSTANT_UTF8:
+				this.poolOut.writeUTF(utf8);
+				break;
+			case CONSTANT_INTEGER:
+				this.poolOut.writeInt(value);
+				break;
+			case CONSTANT_CLASS:
+				this.poolOut.writeShort(a);
+				break;
+			default:
+				this.poolOut.writeShort(a);
+				this.poolOut.writeShort(b);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString());
+		}
+		index = this.poolCount++;
+		this.poolIndex.put(key, index);
+		return index;
+	}
+
+	public int utf8(String s) {
+		return this.constant("U" + s, CONSTANT_UTF8, 0, 0, s, 0);
+	}
+
+	public int integer(int value) {
+		return this.constant("I" + value, CONSTANT_INTEGER, 0, 0, null, value);
+	}
+
+	public int classRef(String name) {
+		return this.constant("C" + name, CONSTANT_CLASS, this.utf8(name), 0, null, 0);
+	}
+
+	private int nameAndType(String name, String descriptor) {
+		return this.constant("N" + name + ":" + descriptor, CONSTANT_NAME_AND_TYPE,
+				this.utf8(name), this.utf8(descriptor), null, 0);
+	}
+
+	public int fieldRef(String owner, String name, String descriptor) {
+		return this.constant("F" + owner + "." + name + ":" + descriptor, CONSTANT_FIELDREF,
+				this.classRef(owner), this.nameAndType(name, descriptor), null, 0);
+	}
+
+	public int methodRef(String owner, String name, String descriptor) {
+		return this.constant("M" + owner + "." + name + ":" + descriptor, CONSTANT_METHODREF,
+				this.classRef(owner), this.nameAndType(name, descriptor), null, 0);
+	}
+
+	/* -------------------------------------------- */
+	/* ------------- FIELDS AND METHODS ----------- */
+	/* -------------------------------------------- */
+
+	/**
+	 * Adds a field
+	 * @param access
+	 * @param name
+	 * @param descriptor
+	 */
+	public void addField(int access, String name, String descriptor) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeShort(access);
+			out.writeShort(this.utf8(name));
+			out.writeShort(this.utf8(descriptor));
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString());
+		}
+		this.fields.add(bytes.toByteArray());
+	}
+
+	/**
+	 * Adds a method with its code
+	 * @param access
+	 * @param name
+	 * @param descriptor
+	 * @param code
+	 */
+	public void addMethod(int access, String name, String descriptor, Code code) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			byte[] instructions = code.toByteArray();
+			out.writeShort(access);
+			out.writeShort(this.utf8(name));
+			out.writeShort(this.utf8(descriptor));
+			// One attribute: Code
+			out.writeShort(1);
+			out.writeShort(this.utf8("Code"));
+			out.writeInt(12 + instructions.length);
+			out.writeShort(code.getMaxStack());
+			out.writeShort(code.getMaxLocals());
+			out.writeInt(instructions.length);
+			out.write(instructions);
+			// No exception table and no attributes
+			out.writeShort(0);
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString());
+		}
+		this.methods.add(bytes.toByteArray());
+	}
+
+	/**
+	 * Returns the class file bytes
+	 * @return
+	 */
+	public byte[] toByteArray() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(MAJOR_VERSION);
+			out.writeShort(this.poolCount);
+			this.pool.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(this.thisClass);
+			out.writeShort(this.superClass);
+			// No interfaces
+			out.writeShort(0);
+			out.writeShort(this.fields.size());
+			for (byte[] field : this.fields) {
+				out.write(field);
+			}
+			out.writeShort(this.methods.size());
+			for (byte[] method : this.methods) {
+				out.write(method);
+			}
+			// No attributes
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString());
+		}
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,236 @@
+package encoder;
+
+import java.util.Arrays;
+
+/**
+ * Method code buffer
+ * Emits JVM instructions, resolves jump labels and keeps track of the
+ * operand stack depth to compute max_stack
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Code {
+
+	// Opcodes used by the encoder
+	public static final int ICONST_0 = 3;
+	public static final int BIPUSH = 16;
+	public static final int SIPUSH = 17;
+	public static final int LDC_W = 19;
+	public static final int ILOAD = 21;
+	public static final int ISTORE = 54;
+	public static final int POP = 87;
+	public static final int IADD = 96;
+	public static final int ISUB = 100;
+	public static final int IMUL = 104;
+	public static final int IDIV = 108;
+	public static final int IFEQ = 153;
+	public static final int IFNE = 154;
+	public static final int IF_ICMPEQ = 159;
+	public static final int IF_ICMPNE = 160;
+	public static final int IF_ICMPLT = 161;
+	public static final int IF_ICMPGE = 162;
+	public static final int IF_ICMPGT = 163;
+	public static final int IF_ICMPLE = 164;
+	public static final int GOTO = 167;
+	public static final int IRETURN = 172;
+	public static final int RETURN = 177;
+	public static final int GETSTATIC = 178;
+	public static final int PUTSTATIC = 179;
+	public static final int INVOKEVIRTUAL = 182;
+	public static final int INVOKESTATIC = 184;
+	public static final int WIDE = 196;
+
+	// Instruction bytes
+	private byte[] code = new byte[64];
+	private int length = 0;
+	// Label positions (-1 while not placed)
+	private int[] labels = new int[16];
+	private int labelCount = 0;
+	// Jumps to resolve: position of the opcode, position of the offset, label
+	private int[] fixups = new int[24];
+	private int fixupCount = 0;
+	// Current and maximum stack depth, number of locals
+	private int stack = 0, maxStack = 0, maxLocals;
+
+	/**
+	 * Default constructor
+	 * @param maxLocals
+	 */
+	public Code(int maxLocals) {
+		this.maxLocals = maxLocals;
+	}
+
+	public int getMaxStack() {
+		return maxStack;
+	}
+
+	public int getMaxLocals() {
+		return maxLocals;
+	}
+
+	/**
+	 * Returns the current stack depth
+	 * @return
+	 */
+	public int getStack() {
+		return stack;
+	}
+
+	/**
+	 * Sets the stack depth (at a label reached only by jumps)
+	 * @param stack
+	 */
+	public void setStack(int stack) {
+		this.stack = stack;
+	}
+
+	private void put(int b) {
+		if ( this.length == this.code.length ) {
+			this.code = Arrays.copyOf(this.code, this.length * 2);
+		}
+		this.code[this.length++] = (byte) b;
+	}
+
+	private void put2(int s) {
+		this.put(s >> 8);
+		this.put(s);
+	}
+
+	private void adjust(int delta) {
+		this.stack += delta;
+		if ( this.stack > this.maxStack ) {
+			this.maxStack = this.stack;
+		}
+	}
+
+	/**
+	 * Emits an instruction without operands
+	 * @param opcode
+	 * @param delta - stack depth change
+	 */
+	public void emit(int opcode, int delta) {
+		this.put(opcode);
+		this.adjust(delta);
+	}
+
+	/**
+	 * Emits an instruction with a constant pool index operand
+	 * @param opcode
+	 * @param index
+	 * @param delta - stack depth change
+	 */
+	public void emitIndex(int opcode, int index, int delta) {
+		this.put(opcode);
+		this.put2(index);
+		this.adjust(delta);
+	}
+
+	/**
+	 * Pushes an int constant with the shortest instruction
+	 * @param value
+	 * @param classFile - for constants that need the constant pool
+	 */
+	public void pushInt(int value, ClassFile classFile) {
+		if ( value >= -1 && value <= 5 ) {
+			this.put(ICONST_0 + value);
+		} else if ( value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ) {
+			this.put(BIPUSH);
+			this.put(value);
+		} else if ( value >= Short.MIN_VALUE && value <= Short.MAX_VALUE ) {
+			this.put(SIPUSH);
+			this.put2(value);
+		} else {
+			this.put(LDC_W);
+			this.put2(classFile.integer(value));
+		}
+		this.adjust(1);
+	}
+
+	/**
+	 * Loads an int local variable
+	 * @param slot
+	 */
+	public void load(int slot) {
+		this.local(ILOAD, slot);
+		this.adjust(1);
+	}
+
+	/**
+	 * Stores an int local variable
+	 * @param slot
+	 */
+	public void store(int slot) {
+		this.local(ISTORE, slot);
+		this.adjust(-1);
+	}
+
+	private void local(int opcode, int slot) {
+		if ( slot <= 255 ) {
+			this.put(opcode);
+			this.put(slot);
+		} else {
+			this.put(WIDE);
+			this.put(opcode);
+			this.put2(slot);
+		}
+	}
+
+	/**
+	 * Creates a new label
+	 * @return
+	 */
+	public int newLabel() {
+		if ( this.labelCount == this.labels.length ) {
+			this.labels = Arrays.copyOf(this.labels, this.labelCount * 2);
+		}
+		this.labels[this.labelCount] = -1;
+		return this.labelCount++;
+	}
+
+	/**
+	 * Places a label at the current position
+	 * @param label
+	 */
+	public void placeLabel(int label) {
+		this.labels[label] = this.length;
+	}
+
+	/**
+	 * Emits a jump (goto or a conditional branch) to a label
+	 * @param opcode
+	 * @param label
+	 */
+	public void jump(int opcode, int label) {
+		if ( this.fixupCount + 3 > this.fixups.length ) {
+			this.fixups = Arrays.copyOf(this.fixups, this.fixups.length * 2);
+		}
+		this.fixups[this.fixupCount++] = this.length;
+		this.fixups[this.fixupCount++] = this.length + 1;
+		this.fixups[this.fixupCount++] = label;
+		this.put(opcode);
+		this.put2(0);
+		if ( opcode == IFEQ || opcode == IFNE ) {
+			this.adjust(-1);
+		} else if ( opcode != GOTO ) {
+			this.adjust(-2);
+		}
+	}
+
+	/**
+	 * Returns the instruction bytes, with every jump resolved
+	 * @return
+	 */
+	public byte[] toByteArray() {
+		for (int i = 0; i < this.fixupCount; i += 3) {
+			int target = this.labels[this.fixups[i + 2]];
+			int offset = target - this.fixups[i];
+			if ( target < 0 || offset < Short.MIN_VALUE || offset > Short.MAX_VALUE ) {
+				throw new RuntimeException("Jump out of range in generated code");
+			}
+			this.code[this.fixups[i + 1]] = (byte) (offset >> 8);
+			this.code[this.fixups[i + 1] + 1] = (byte) offset;
+		}
+		return Arrays.copyOf(this.code, this.length);
+	}
+
+}
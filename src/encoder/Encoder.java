@@ -0,0 +1,393 @@
+package encoder;
+
+import java.util.ArrayDeque;
+
+import util.AST.Aexp;
+import util.AST.AssignCmd;
+import util.AST.Bexp;
+import util.AST.BooleanFactor;
+import util.AST.BreakCmd;
+import util.AST.CallCmd;
+import util.AST.CallFactor;
+import util.AST.Cmd;
+import util.AST.ContinueCmd;
+import util.AST.Expression;
+import util.AST.FuncDec;
+import util.AST.IfCmd;
+import util.AST.NumberFactor;
+import util.AST.Operator;
+import util.AST.ProcDec;
+import util.AST.Program;
+import util.AST.SubprogramDec;
+import util.AST.Term;
+import util.AST.Type;
+import util.AST.VarDec;
+import util.AST.VariableFactor;
+import util.AST.Visitor;
+import util.AST.WhileCmd;
+import util.AST.WriteCmd;
+import util.symbolsTable.Attribute;
+
+/**
+ * Encoder class
+ * Generates a JVM class file from a checked AST: global variables become
+ * static fields, functions and procedures static methods and the main
+ * commands the main method. Names were resolved by the checker: a local
+ * (scope above 0) is stored in the local variable of its slot, which follows
+ * the checker layout (parameters, local variables, function result).
+ * Expression visits return the Type of the value they push
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Encoder implements Visitor {
+
+	// Descriptors used by write
+	private static final String PRINT_STREAM = "java/io/PrintStream";
+
+	// The class being generated
+	private ClassFile classFile;
+	// Labels of the enclosing loops (continue, break)
+	private ArrayDeque<int[]> loops = new ArrayDeque<int[]>();
+
+	/**
+	 * Generates the class file of a program
+	 * @param program - a program annotated by the checker
+	 * @return the class file bytes
+	 */
+	public byte[] encode(Program program) {
+		program.visit(this, null);
+		return this.classFile.toByteArray();
+	}
+
+	/**
+	 * Returns the JVM descriptor of a type
+	 * @param type
+	 * @return
+	 */
+	private static String descriptor(Type type) {
+		return type == Type.BOOLEAN ? "Z" : "I";
+	}
+
+	/**
+	 * Returns the JVM method descriptor of a subprogram
+	 * @param subprogram
+	 * @return
+	 */
+	private static String descriptor(SubprogramDec subprogram) {
+		StringBuffer str = new StringBuffer("(");
+		for (VarDec parameter : subprogram.getParameters()) {
+			for (int i = 0; i < parameter.getNames().length; i++) {
+				str.append(descriptor(parameter.getType()));
+			}
+		}
+		str.append(')');
+		if ( subprogram instanceof FuncDec ) {
+			str.append(descriptor(((FuncDec) subprogram).getReturnType()));
+		} else {
+			str.append('V');
+		}
+		return str.toString();
+	}
+
+	public Object visitProgram(Program program, Object arg) {
+		this.classFile = new ClassFile(program.getName());
+
+		for (VarDec variable : program.getVariables()) {
+			for (String name : variable.getNames()) {
+				this.classFile.addField(ClassFile.ACC_PRIVATE | ClassFile.ACC_STATIC,
+						name, descriptor(variable.getType()));
+			}
+		}
+		for (FuncDec function : program.getFunctions()) {
+			function.visit(this, null);
+		}
+		for (ProcDec procedure : program.getProcedures()) {
+			procedure.visit(this, null);
+		}
+
+		// The main commands only see the globals (slot 0 holds the main arguments)
+		Code code = new Code(1);
+		for (Cmd cmd : program.getCommands()) {
+			cmd.visit(this, code);
+		}
+		code.emit(Code.RETURN, 0);
+		this.classFile.addMethod(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC,
+				"main", "([Ljava/lang/String;)V", code);
+		return null;
+	}
+
+	public Object visitVarDec(VarDec varDec, Object arg) {
+		// Slots were given by the checker
+		return null;
+	}
+
+	/**
+	 * Generates the method of a function or procedure
+	 * Slots: parameters, local variables and, for functions, the result
+	 * @param subprogram
+	 */
+	private void encodeSubprogram(SubprogramDec subprogram) {
+		int parameters = subprogram.getParameterCount();
+		int result = parameters + subprogram.getVariableCount();
+		int slots = subprogram instanceof FuncDec ? result + 1 : result;
+
+		Code code = new Code(slots);
+		// Locals start at zero (false), as globals do
+		for (int slot = parameters; slot < slots; slot++) {
+			code.pushInt(0, this.classFile);
+			code.store(slot);
+		}
+		for (Cmd cmd : subprogram.getCommands()) {
+			cmd.visit(this, code);
+		}
+		if ( subprogram instanceof FuncDec ) {
+			code.load(result);
+			code.emit(Code.IRETURN, -1);
+		} else {
+			code.emit(Code.RETURN, 0);
+		}
+		this.classFile.addMethod(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC,
+				subprogram.getName(), descriptor(subprogram), code);
+	}
+
+	public Object visitFuncDec(FuncDec funcDec, Object arg) {
+		this.encodeSubprogram(funcDec);
+		return null;
+	}
+
+	public Object visitProcDec(ProcDec procDec, Object arg) {
+		this.encodeSubprogram(procDec);
+		return null;
+	}
+
+	public Object visitAssignCmd(AssignCmd cmd, Object arg) {
+		Code code = (Code) arg;
+		cmd.getValue().visit(this, code);
+		Attribute attribute = cmd.getAttribute();
+		if ( attribute.getScope() > 0 ) {
+			code.store(attribute.getSlot());
+		} else {
+			code.emitIndex(Code.PUTSTATIC, this.globalField(cmd.getName(), attribute), -1);
+		}
+		return null;
+	}
+
+	public Object visitCallCmd(CallCmd cmd, Object arg) {
+		Code code = (Code) arg;
+		SubprogramDec subprogram = this.call(cmd.getAttribute(), cmd.getArguments(), code);
+		if ( subprogram instanceof FuncDec ) {
+			// The result of a function called as a command is discarded
+			code.emit(Code.POP, -1);
+		}
+		return null;
+	}
+
+	/**
+	 * Pushes the arguments and calls a subprogram
+	 * @param attribute - the called subprogram
+	 * @param arguments
+	 * @param code
+	 * @return the called subprogram
+	 */
+	private SubprogramDec call(Attribute attribute, Expression[] arguments, Code code) {
+		SubprogramDec subprogram = (SubprogramDec) attribute.getAst();
+		for (Expression argument : arguments) {
+			argument.visit(this, code);
+		}
+		int delta = -arguments.length + (subprogram instanceof FuncDec ? 1 : 0);
+		code.emitIndex(Code.INVOKESTATIC,
+				this.classFile.methodRef(this.classFile.getClassName(), subprogram.getName(), descriptor(subprogram)),
+				delta);
+		return subprogram;
+	}
+
+	public Object visitIfCmd(IfCmd cmd, Object arg) {
+		Code code = (Code) arg;
+		int elseLabel = code.newLabel();
+		this.jumpIfFalse(cmd.getCondition(), elseLabel, code);
+		for (Cmd thenCmd : cmd.getThenCommands()) {
+			thenCmd.visit(this, code);
+		}
+		if ( cmd.getElseCommands() == null ) {
+			code.placeLabel(elseLabel);
+		} else {
+			int endLabel = code.newLabel();
+			code.jump(Code.GOTO, endLabel);
+			code.placeLabel(elseLabel);
+			for (Cmd elseCmd : cmd.getElseCommands()) {
+				elseCmd.visit(this, code);
+			}
+			code.placeLabel(endLabel);
+		}
+		return null;
+	}
+
+	public Object visitWhileCmd(WhileCmd cmd, Object arg) {
+		Code code = (Code) arg;
+		int startLabel = code.newLabel();
+		int endLabel = code.newLabel();
+		code.placeLabel(startLabel);
+		this.jumpIfFalse(cmd.getCondition(), endLabel, code);
+		this.loops.push(new int[] { startLabel, endLabel });
+		for (Cmd bodyCmd : cmd.getCommands()) {
+			bodyCmd.visit(this, code);
+		}
+		this.loops.pop();
+		code.jump(Code.GOTO, startLabel);
+		code.placeLabel(endLabel);
+		return null;
+	}
+
+	public Object visitWriteCmd(WriteCmd cmd, Object arg) {
+		Code code = (Code) arg;
+		code.emitIndex(Code.GETSTATIC,
+				this.classFile.fieldRef("java/lang/System", "out", "L" + PRINT_STREAM + ";"), 1);
+		Type type = (Type) cmd.getValue().visit(this, code);
+		code.emitIndex(Code.INVOKEVIRTUAL,
+				this.classFile.methodRef(PRINT_STREAM, "println", "(" + descriptor(type) + ")V"), -2);
+		return null;
+	}
+
+	public Object visitBreakCmd(BreakCmd cmd, Object arg) {
+		((Code) arg).jump(Code.GOTO, this.loops.peek()[1]);
+		return null;
+	}
+
+	public Object visitContinueCmd(ContinueCmd cmd, Object arg) {
+		((Code) arg).jump(Code.GOTO, this.loops.peek()[0]);
+		return null;
+	}
+
+	/**
+	 * Returns the conditional branch taken when a relational operator holds
+	 * @param operator
+	 * @return
+	 */
+	private static int branch(Operator operator) {
+		switch (operator) {
+		case EQUALS: return Code.IF_ICMPEQ;
+		case NOTEQUALS: return Code.IF_ICMPNE;
+		case GT: return Code.IF_ICMPGT;
+		case LT: return Code.IF_ICMPLT;
+		case GE: return Code.IF_ICMPGE;
+		default: return Code.IF_ICMPLE;
+		}
+	}
+
+	/**
+	 * Returns the conditional branch taken when a relational operator does not hold
+	 * @param operator
+	 * @return
+	 */
+	private static int inverseBranch(Operator operator) {
+		switch (operator) {
+		case EQUALS: return Code.IF_ICMPNE;
+		case NOTEQUALS: return Code.IF_ICMPEQ;
+		case GT: return Code.IF_ICMPLE;
+		case LT: return Code.IF_ICMPGE;
+		case GE: return Code.IF_ICMPLT;
+		default: return Code.IF_ICMPGT;
+		}
+	}
+
+	/**
+	 * Generates a condition as a jump taken when it is false
+	 * @param condition
+	 * @param label
+	 * @param code
+	 */
+	private void jumpIfFalse(Expression condition, int label, Code code) {
+		if ( condition instanceof Bexp ) {
+			Bexp bexp = (Bexp) condition;
+			bexp.getLeft().visit(this, code);
+			bexp.getRight().visit(this, code);
+			code.jump(inverseBranch(bexp.getOperator()), label);
+		} else {
+			condition.visit(this, code);
+			code.jump(Code.IFEQ, label);
+		}
+	}
+
+	public Object visitBexp(Bexp bexp, Object arg) {
+		Code code = (Code) arg;
+		int trueLabel = code.newLabel();
+		int endLabel = code.newLabel();
+		bexp.getLeft().visit(this, code);
+		bexp.getRight().visit(this, code);
+		code.jump(branch(bexp.getOperator()), trueLabel);
+		code.pushInt(0, this.classFile);
+		code.jump(Code.GOTO, endLabel);
+		code.setStack(code.getStack() - 1);
+		code.placeLabel(trueLabel);
+		code.pushInt(1, this.classFile);
+		code.placeLabel(endLabel);
+		return Type.BOOLEAN;
+	}
+
+	/**
+	 * Generates operands[0] operators[0] operands[1] ... (left to right)
+	 * @param operands
+	 * @param operators
+	 * @param code
+	 */
+	private void encodeOperation(Expression[] operands, Operator[] operators, Code code) {
+		operands[0].visit(this, code);
+		for (int i = 1; i < operands.length; i++) {
+			operands[i].visit(this, code);
+			switch (operators[i - 1]) {
+			case ADD: code.emit(Code.IADD, -1); break;
+			case SUB: code.emit(Code.ISUB, -1); break;
+			case MUL: code.emit(Code.IMUL, -1); break;
+			default: code.emit(Code.IDIV, -1); break;
+			}
+		}
+	}
+
+	public Object visitAexp(Aexp aexp, Object arg) {
+		this.encodeOperation(aexp.getOperands(), aexp.getOperators(), (Code) arg);
+		return Type.INTEGER;
+	}
+
+	public Object visitTerm(Term term, Object arg) {
+		this.encodeOperation(term.getOperands(), term.getOperators(), (Code) arg);
+		return Type.INTEGER;
+	}
+
+	public Object visitVariableFactor(VariableFactor factor, Object arg) {
+		Code code = (Code) arg;
+		Attribute attribute = factor.getAttribute();
+		if ( attribute.getScope() > 0 ) {
+			code.load(attribute.getSlot());
+		} else {
+			code.emitIndex(Code.GETSTATIC, this.globalField(factor.getName(), attribute), 1);
+		}
+		return factor.getType();
+	}
+
+	/**
+	 * Returns the field reference of a global variable
+	 * @param name
+	 * @param attribute - its declaration
+	 * @return
+	 */
+	private int globalField(String name, Attribute attribute) {
+		Type type = ((VarDec) attribute.getAst()).getType();
+		return this.classFile.fieldRef(this.classFile.getClassName(), name, descriptor(type));
+	}
+
+	public Object visitCallFactor(CallFactor factor, Object arg) {
+		this.call(factor.getAttribute(), factor.getArguments(), (Code) arg);
+		return factor.getType();
+	}
+
+	public Object visitNumberFactor(NumberFactor factor, Object arg) {
+		((Code) arg).pushInt(factor.getValue(), this.classFile);
+		return Type.INTEGER;
+	}
+
+	public Object visitBooleanFactor(BooleanFactor factor, Object arg) {
+		((Code) arg).pushInt(factor.getValue() ? 1 : 0, this.classFile);
+		return Type.BOOLEAN;
+	}
+
+}
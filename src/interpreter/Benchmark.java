@@ -0,0 +1,135 @@
+package interpreter;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import checker.Checker;
+import ir.Builder;
+import ir.Function;
+import ir.Inliner;
+import ir.Optimizer;
+import optimizer.ConstantFolder;
+import parser.Parser;
+import util.MappedSource;
+import util.AST.Program;
+import util.symbolsTable.IdentificationTable;
+
+/**
+ * Interpreter benchmark
+ * Runs a program many times on the tree walking interpreter, on the
+ * specializing tree interpreter and on the register machine: as generated,
+ * through the SSA optimizer and with calls inlined too (output discarded).
+ * Reports the time per run and what the optimizer and inliner cost at
+ * compile time
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Benchmark {
+
+	/**
+	 * Benchmark start point
+	 * @param args - source file [runs]
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if ( args.length == 0 ) {
+			System.err.println("Usage: interpreter.Benchmark <source file> [runs]");
+			System.exit(1);
+		}
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		MappedSource source = new MappedSource(args[0]);
+		Program program = new Parser(source).parse();
+		source.close();
+		new Checker(new IdentificationTable()).check(program);
+		program = new ConstantFolder().fold(program);
+		PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+
+		// Time to the first run: code generation plus one execution
+		long start = System.nanoTime();
+		Bytecode bytecode = new CodeGenerator().generate(program);
+		long generation = System.nanoTime() - start;
+		new VirtualMachine(bytecode).run(out);
+		long first = System.nanoTime() - start;
+
+		// The same, through the IR
+		start = System.nanoTime();
+		Function[] functions = new Builder().build(program);
+		long building = System.nanoTime() - start;
+		Optimizer optimizer = new Optimizer();
+		optimizer.optimize(functions);
+		long optimization = System.nanoTime() - start - building;
+		Bytecode optimized = new IRCodeGenerator().generate(functions);
+		long optimizedGeneration = System.nanoTime() - start;
+
+		// The same, with calls inlined and specialized
+		start = System.nanoTime();
+		functions = new Builder().build(program);
+		new Optimizer().optimize(functions);
+		long before = System.nanoTime();
+		Inliner inliner = new Inliner(new Optimizer());
+		functions = inliner.inline(functions);
+		long inlining = System.nanoTime() - before;
+		Bytecode inlined = new IRCodeGenerator().generate(functions);
+		long inlinedGeneration = System.nanoTime() - start;
+
+		// Warm up the engines, then measure
+		for (int i = 0; i < runs; i++) {
+			new TreeInterpreter(out).run(program);
+			new SpecializingInterpreter(out).run(program);
+			new VirtualMachine(bytecode).run(out);
+			new VirtualMachine(optimized).run(out);
+			new VirtualMachine(inlined).run(out);
+		}
+		start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			new TreeInterpreter(out).run(program);
+		}
+		long tree = (System.nanoTime() - start) / runs;
+		start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			new SpecializingInterpreter(out).run(program);
+		}
+		long specialized = (System.nanoTime() - start) / runs;
+		start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			new VirtualMachine(bytecode).run(out);
+		}
+		long register = (System.nanoTime() - start) / runs;
+		start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			new VirtualMachine(optimized).run(out);
+		}
+		long ssa = (System.nanoTime() - start) / runs;
+		start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			new VirtualMachine(inlined).run(out);
+		}
+		long inlinedRun = (System.nanoTime() - start) / runs;
+
+		System.out.println("-- INTERPRETER BENCHMARK --");
+		System.out.println("Program: " + args[0] + " (" + bytecode.code.length + " code words)");
+		System.out.println(String.format("Code generation: %.3f ms, first run: %.3f ms", generation / 1e6, first / 1e6));
+		System.out.println(String.format("Tree walking: %.3f ms/run", tree / 1e6));
+		System.out.println(String.format("Specializing tree: %.3f ms/run (%.1fx)", specialized / 1e6, (double) tree / specialized));
+		System.out.println(String.format("Register machine: %.3f ms/run (%.1fx)", register / 1e6, (double) tree / register));
+		System.out.println(String.format("Optimized code generation: %.3f ms (IR %.3f ms, optimizer %.3f ms), %d code words",
+				optimizedGeneration / 1e6, building / 1e6, optimization / 1e6, optimized.code.length));
+		System.out.println(String.format("Optimizer: %d copies propagated, %d subexpressions reused, %d invariants hoisted, %d dead instructions",
+				optimizer.getCopies(), optimizer.getSubexpressions(), optimizer.getHoisted(), optimizer.getDead()));
+		System.out.println(String.format("Optimized register machine: %.3f ms/run (%.1fx)", ssa / 1e6, (double) tree / ssa));
+		System.out.println(String.format("Inlined code generation: %.3f ms (inliner %.3f ms), %d code words",
+				inlinedGeneration / 1e6, inlining / 1e6, inlined.code.length));
+		System.out.println(String.format("Inliner: %d calls inlined, %d calls specialized, %d subprograms removed",
+				inliner.getInlined(), inliner.getSpecialized(), inliner.getRemoved()));
+		for (String line : inliner.getReport()) {
+			System.out.println("  " + line);
+		}
+		System.out.println(String.format("Inlined register machine: %.3f ms/run (%.1fx, %.2fx the optimized code)",
+				inlinedRun / 1e6, (double) tree / inlinedRun, (double) ssa / inlinedRun));
+		long saved = register - ssa;
+		if ( saved > 0 ) {
+			System.out.println(String.format("Optimizer pays for itself after %.1f runs", (double) (optimizedGeneration - generation) / saved));
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+package interpreter;
+
+/**
+ * Register bytecode of a whole program
+ * Subprogram 0 is the main program; the others follow in declaration order
+ * (functions, then procedures). The frame of the main program starts with
+ * the global variables
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Bytecode {
+
+	// The instructions of all subprograms
+	final int[] code;
+	// Entry point, number of parameters and frame size (registers) of each subprogram
+	final int[] entries, parameters, frameSizes;
+	// Subprogram names (for listings)
+	final String[] names;
+
+	/**
+	 * Default constructor
+	 * @param code
+	 * @param entries
+	 * @param parameters
+	 * @param frameSizes
+	 * @param names
+	 */
+	Bytecode(int[] code, int[] entries, int[] parameters, int[] frameSizes, String[] names) {
+		this.code = code;
+		this.entries = entries;
+		this.parameters = parameters;
+		this.frameSizes = frameSizes;
+		this.names = names;
+	}
+
+	/**
+	 * Returns the program listing
+	 */
+	public String toString() {
+		StringBuffer str = new StringBuffer();
+		for (int pc = 0; pc < this.code.length; ) {
+			for (int i = 0; i < this.entries.length; i++) {
+				if ( this.entries[i] == pc ) {
+					str.append(this.names[i] + ": (frame " + this.frameSizes[i] + ")\n");
+				}
+			}
+			int op = this.code[pc];
+			str.append(String.format("%6d  %-7s", pc, Opcodes.NAMES[op]));
+			for (int i = 1; i <= Opcodes.OPERANDS[op]; i++) {
+				str.append(' ').append(this.code[pc + i]);
+			}
+			str.append('\n');
+			pc += 1 + Opcodes.OPERANDS[op];
+		}
+		return str.toString();
+	}
+
+}
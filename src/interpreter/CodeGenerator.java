@@ -0,0 +1,528 @@
+package interpreter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import util.AST.Aexp;
+import util.AST.AssignCmd;
+import util.AST.Bexp;
+import util.AST.BooleanFactor;
+import util.AST.BreakCmd;
+import util.AST.CallCmd;
+import util.AST.CallFactor;
+import util.AST.Cmd;
+import util.AST.ContinueCmd;
+import util.AST.Expression;
+import util.AST.FuncDec;
+import util.AST.IfCmd;
+import util.AST.NumberFactor;
+import util.AST.Operator;
+import util.AST.ProcDec;
+import util.AST.Program;
+import util.AST.SubprogramDec;
+import util.AST.Term;
+import util.AST.Type;
+import util.AST.VarDec;
+import util.AST.VariableFactor;
+import util.AST.Visitor;
+import util.AST.WhileCmd;
+import util.AST.WriteCmd;
+import util.symbolsTable.Attribute;
+
+/**
+ * Register code generator
+ * Lowers a checked AST into register bytecode. Names were resolved by the
+ * checker: the slot of a global is its register in the main program frame,
+ * the slot of a parameter, local variable or function result its register
+ * in the subprogram frame and the slot of a subprogram its number. Expression
+ * visits take the wanted destination register (or null) and return the
+ * register that holds the value
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class CodeGenerator implements Visitor {
+
+	// The instructions
+	private int[] code = new int[256];
+	private int length = 0;
+	// Label positions (-1 while not placed) and jump operands to resolve
+	private int[] labels = new int[16];
+	private int labelCount = 0;
+	private int[] fixups = new int[16];
+	private int fixupCount = 0;
+	// Labels of the enclosing loops (continue, break)
+	private ArrayDeque<int[]> loops = new ArrayDeque<int[]>();
+	// The subprogram being generated (null for the main program) and its result register
+	private SubprogramDec current;
+	private int result;
+	// Next free register and frame size of the subprogram being generated
+	private int next, frameSize;
+	// Number of global variables (the first registers of the main program frame)
+	private int globals;
+
+	/**
+	 * Generates the register bytecode of a program
+	 * @param program - a program annotated by the checker
+	 * @return
+	 */
+	public Bytecode generate(Program program) {
+		SubprogramDec[] subprograms = new SubprogramDec[program.getFunctions().length + program.getProcedures().length];
+		System.arraycopy(program.getFunctions(), 0, subprograms, 0, program.getFunctions().length);
+		System.arraycopy(program.getProcedures(), 0, subprograms, program.getFunctions().length, program.getProcedures().length);
+		int[] entries = new int[subprograms.length + 1];
+		int[] parameters = new int[subprograms.length + 1];
+		int[] frameSizes = new int[subprograms.length + 1];
+		String[] names = new String[subprograms.length + 1];
+
+		// Subprogram 0 is the main program
+		int globals = 0;
+		for (VarDec variable : program.getVariables()) {
+			globals += variable.getNames().length;
+		}
+
+		for (int i = 0; i < subprograms.length; i++) {
+			SubprogramDec subprogram = subprograms[i];
+			// Parameters, local variables, the result, then temporaries
+			parameters[i + 1] = subprogram.getParameterCount();
+			this.result = parameters[i + 1] + subprogram.getVariableCount();
+			this.next = this.result + 1;
+			this.current = subprogram;
+			entries[i + 1] = this.length;
+			names[i + 1] = subprogram.getName();
+			subprogram.visit(this, null);
+			frameSizes[i + 1] = this.frameSize;
+		}
+
+		this.current = null;
+		this.globals = globals;
+		this.next = globals;
+		entries[0] = this.length;
+		names[0] = program.getName();
+		program.visit(this, null);
+		frameSizes[0] = this.frameSize;
+
+		// Jump operands hold label numbers until every label is placed
+		for (int i = 0; i < this.fixupCount; i++) {
+			this.code[this.fixups[i]] = this.labels[this.code[this.fixups[i]]];
+		}
+		return new Bytecode(Arrays.copyOf(this.code, this.length), entries, parameters, frameSizes, names);
+	}
+
+	/**
+	 * Returns a fresh temporary register
+	 * @return
+	 */
+	private int temporary() {
+		int register = this.next++;
+		this.frameSize = Math.max(this.frameSize, this.next);
+		return register;
+	}
+
+	/**
+	 * Appends an instruction
+	 * @param operands - the opcode and its operands
+	 */
+	private void emit(int... operands) {
+		if ( this.length + operands.length > this.code.length ) {
+			this.code = Arrays.copyOf(this.code, Math.max(this.code.length * 2, this.length + operands.length));
+		}
+		System.arraycopy(operands, 0, this.code, this.length, operands.length);
+		this.length += operands.length;
+	}
+
+	/**
+	 * Creates a new (not placed) label
+	 * @return
+	 */
+	private int newLabel() {
+		if ( this.labelCount == this.labels.length ) {
+			this.labels = Arrays.copyOf(this.labels, this.labelCount * 2);
+		}
+		this.labels[this.labelCount] = -1;
+		return this.labelCount++;
+	}
+
+	/**
+	 * Places a label at the current position
+	 * @param label
+	 */
+	private void placeLabel(int label) {
+		this.labels[label] = this.length;
+	}
+
+	/**
+	 * Appends a jump instruction whose last operand is a label
+	 * @param operands - the opcode, its register operands and the label
+	 */
+	private void jump(int... operands) {
+		this.emit(operands);
+		if ( this.fixupCount == this.fixups.length ) {
+			this.fixups = Arrays.copyOf(this.fixups, this.fixupCount * 2);
+		}
+		this.fixups[this.fixupCount++] = this.length - 1;
+	}
+
+	/**
+	 * Generates an expression
+	 * @param expression
+	 * @param target - the wanted register (-1 for any)
+	 * @return the register holding the value
+	 */
+	private int evaluate(Expression expression, int target) {
+		return (Integer) expression.visit(this, target < 0 ? null : target);
+	}
+
+	/**
+	 * Returns the destination of an expression visit
+	 * @param arg - the wanted register (or null)
+	 * @return
+	 */
+	private int destination(Object arg) {
+		return arg != null ? (Integer) arg : this.temporary();
+	}
+
+	/**
+	 * Generates commands, releasing their temporaries after each one
+	 * @param commands
+	 */
+	private void generate(Cmd[] commands) {
+		for (Cmd cmd : commands) {
+			int mark = this.next;
+			cmd.visit(this, null);
+			this.next = mark;
+		}
+	}
+
+	/**
+	 * Verifies if a variable lives in the frame being generated (globals live
+	 * in the main program frame)
+	 * @param attribute
+	 * @return
+	 */
+	private boolean inFrame(Attribute attribute) {
+		return attribute.getScope() > 0 || this.current == null;
+	}
+
+	public Object visitProgram(Program program, Object arg) {
+		this.frameSize = this.next;
+		this.generate(program.getCommands());
+		this.emit(Opcodes.RETURN);
+		return null;
+	}
+
+	public Object visitVarDec(VarDec varDec, Object arg) {
+		// Declarations are handled by generate
+		return null;
+	}
+
+	public Object visitFuncDec(FuncDec funcDec, Object arg) {
+		this.frameSize = this.next;
+		this.generate(funcDec.getCommands());
+		this.emit(Opcodes.RET, this.result);
+		return null;
+	}
+
+	public Object visitProcDec(ProcDec procDec, Object arg) {
+		this.frameSize = this.next;
+		this.generate(procDec.getCommands());
+		this.emit(Opcodes.RETURN);
+		return null;
+	}
+
+	public Object visitAssignCmd(AssignCmd cmd, Object arg) {
+		// The result of a function is a register of its frame, like its locals
+		Attribute attribute = cmd.getAttribute();
+		if ( this.inFrame(attribute) ) {
+			this.evaluate(cmd.getValue(), attribute.getSlot());
+		} else {
+			int value = this.evaluate(cmd.getValue(), -1);
+			this.emit(Opcodes.GSTORE, attribute.getSlot(), value);
+		}
+		return null;
+	}
+
+	public Object visitCallCmd(CallCmd cmd, Object arg) {
+		this.call(cmd.getAttribute(), cmd.getArguments(), this.temporary());
+		return null;
+	}
+
+	/**
+	 * Generates a call; the arguments go to consecutive registers
+	 * @param attribute - the called subprogram
+	 * @param arguments
+	 * @param target
+	 */
+	private void call(Attribute attribute, Expression[] arguments, int target) {
+		int subprogram = attribute.getSlot();
+		int first = this.next;
+		for (int i = 0; i < arguments.length; i++) {
+			this.temporary();
+		}
+		for (int i = 0; i < arguments.length; i++) {
+			this.evaluate(arguments[i], first + i);
+		}
+		this.emit(Opcodes.CALL, target, subprogram, first, arguments.length);
+	}
+
+	public Object visitIfCmd(IfCmd cmd, Object arg) {
+		int elseLabel = this.newLabel();
+		this.jumpIf(cmd.getCondition(), false, elseLabel);
+		this.generate(cmd.getThenCommands());
+		if ( cmd.getElseCommands() == null ) {
+			this.placeLabel(elseLabel);
+		} else {
+			int endLabel = this.newLabel();
+			this.jump(Opcodes.JUMP, endLabel);
+			this.placeLabel(elseLabel);
+			this.generate(cmd.getElseCommands());
+			this.placeLabel(endLabel);
+		}
+		return null;
+	}
+
+	public Object visitWhileCmd(WhileCmd cmd, Object arg) {
+		// The condition is tested at the bottom, so each iteration runs one jump
+		int bodyLabel = this.newLabel();
+		int testLabel = this.newLabel();
+		int endLabel = this.newLabel();
+		this.jump(Opcodes.JUMP, testLabel);
+		this.placeLabel(bodyLabel);
+		this.loops.push(new int[] { testLabel, endLabel });
+		this.generate(cmd.getCommands());
+		this.loops.pop();
+		this.placeLabel(testLabel);
+		int mark = this.next;
+		this.jumpIf(cmd.getCondition(), true, bodyLabel);
+		this.next = mark;
+		this.placeLabel(endLabel);
+		return null;
+	}
+
+	public Object visitWriteCmd(WriteCmd cmd, Object arg) {
+		Type type = cmd.getValue().getType();
+		int value = this.evaluate(cmd.getValue(), -1);
+		this.emit(type == Type.BOOLEAN ? Opcodes.PRINTB : Opcodes.PRINTI, value);
+		return null;
+	}
+
+	public Object visitBreakCmd(BreakCmd cmd, Object arg) {
+		this.jump(Opcodes.JUMP, this.loops.peek()[1]);
+		return null;
+	}
+
+	public Object visitContinueCmd(ContinueCmd cmd, Object arg) {
+		this.jump(Opcodes.JUMP, this.loops.peek()[0]);
+		return null;
+	}
+
+	/**
+	 * Returns the instruction that computes a relational operator
+	 * @param operator
+	 * @return
+	 */
+	private static int relation(Operator operator) {
+		switch (operator) {
+		case EQUALS: return Opcodes.EQ;
+		case NOTEQUALS: return Opcodes.NE;
+		case GT: return Opcodes.GT;
+		case LT: return Opcodes.LT;
+		case GE: return Opcodes.GE;
+		default: return Opcodes.LE;
+		}
+	}
+
+	/**
+	 * Returns the relational operator that holds when another one does not
+	 * @param operator
+	 * @return
+	 */
+	private static Operator negate(Operator operator) {
+		switch (operator) {
+		case EQUALS: return Operator.NOTEQUALS;
+		case NOTEQUALS: return Operator.EQUALS;
+		case GT: return Operator.LE;
+		case LT: return Operator.GE;
+		case GE: return Operator.LT;
+		default: return Operator.GT;
+		}
+	}
+
+	/**
+	 * Returns the jump taken when a relational operator holds
+	 * @param operator
+	 * @param constant - whether the right operand is an immediate value
+	 * @return
+	 */
+	private static int relationJump(Operator operator, boolean constant) {
+		int offset = constant ? Opcodes.JEQK - Opcodes.JEQ : 0;
+		switch (operator) {
+		case EQUALS: return Opcodes.JEQ + offset;
+		case NOTEQUALS: return Opcodes.JNE + offset;
+		case GT: return Opcodes.JGT + offset;
+		case LT: return Opcodes.JLT + offset;
+		case GE: return Opcodes.JGE + offset;
+		default: return Opcodes.JLE + offset;
+		}
+	}
+
+	/**
+	 * Generates a condition as a jump taken when it has the given value
+	 * @param condition
+	 * @param when
+	 * @param label
+	 */
+	private void jumpIf(Expression condition, boolean when, int label) {
+		if ( condition instanceof Bexp ) {
+			Bexp bexp = (Bexp) condition;
+			Operator operator = when ? bexp.getOperator() : negate(bexp.getOperator());
+			int left = this.protect(this.evaluate(bexp.getLeft(), -1), bexp.getRight());
+			if ( bexp.getRight() instanceof NumberFactor ) {
+				int right = ((NumberFactor) bexp.getRight()).getValue();
+				this.jump(relationJump(operator, true), left, right, label);
+			} else {
+				int right = this.evaluate(bexp.getRight(), -1);
+				this.jump(relationJump(operator, false), left, right, label);
+			}
+		} else {
+			int value = this.evaluate(condition, -1);
+			this.jump(when ? Opcodes.JNZ : Opcodes.JZ, value, label);
+		}
+	}
+
+	/**
+	 * Verifies if evaluating an expression may call a subprogram
+	 * @param expression
+	 * @return
+	 */
+	private static boolean hasCall(Expression expression) {
+		if ( expression instanceof CallFactor ) {
+			return true;
+		} else if ( expression instanceof Bexp ) {
+			return hasCall(((Bexp) expression).getLeft()) || hasCall(((Bexp) expression).getRight());
+		}
+		Expression[] operands = null;
+		if ( expression instanceof Aexp ) {
+			operands = ((Aexp) expression).getOperands();
+		} else if ( expression instanceof Term ) {
+			operands = ((Term) expression).getOperands();
+		}
+		if ( operands != null ) {
+			for (Expression operand : operands) {
+				if ( hasCall(operand) ) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Copies a global read in place (in the main program frame) when a
+	 * later operand may call a subprogram that changes it
+	 * @param register
+	 * @param later
+	 * @return
+	 */
+	private int protect(int register, Expression later) {
+		if ( this.current == null && register < this.globals && hasCall(later) ) {
+			int copy = this.temporary();
+			this.emit(Opcodes.MOVE, copy, register);
+			return copy;
+		}
+		return register;
+	}
+
+	public Object visitBexp(Bexp bexp, Object arg) {
+		int left = this.protect(this.evaluate(bexp.getLeft(), -1), bexp.getRight());
+		int right = this.evaluate(bexp.getRight(), -1);
+		int target = this.destination(arg);
+		this.emit(relation(bexp.getOperator()), target, left, right);
+		return target;
+	}
+
+	/**
+	 * Generates operands[0] operators[0] operands[1] ... (left to right)
+	 * Partial results go to a temporary; only the last operation writes the
+	 * target, so operands that read the target see its old value
+	 * @param operands
+	 * @param operators
+	 * @param arg
+	 * @return
+	 */
+	private int generateOperation(Expression[] operands, Operator[] operators, Object arg) {
+		if ( operands.length == 1 ) {
+			return this.evaluate(operands[0], arg != null ? (Integer) arg : -1);
+		}
+		int value = this.evaluate(operands[0], -1);
+		for (int i = 1; i < operands.length; i++) {
+			value = this.protect(value, operands[i]);
+		}
+		int partial = -1;
+		for (int i = 1; i < operands.length; i++) {
+			// Number operands are immediate values
+			boolean constant = operands[i] instanceof NumberFactor;
+			int right = constant ? ((NumberFactor) operands[i]).getValue() : this.evaluate(operands[i], -1);
+			int offset = constant ? Opcodes.ADDK - Opcodes.ADD : 0;
+			int target;
+			if ( i == operands.length - 1 ) {
+				target = this.destination(arg);
+			} else {
+				if ( partial < 0 ) {
+					partial = this.temporary();
+				}
+				target = partial;
+			}
+			switch (operators[i - 1]) {
+			case ADD: this.emit(Opcodes.ADD + offset, target, value, right); break;
+			case SUB: this.emit(Opcodes.SUB + offset, target, value, right); break;
+			case MUL: this.emit(Opcodes.MUL + offset, target, value, right); break;
+			default: this.emit(Opcodes.DIV + offset, target, value, right); break;
+			}
+			value = target;
+		}
+		return value;
+	}
+
+	public Object visitAexp(Aexp aexp, Object arg) {
+		return this.generateOperation(aexp.getOperands(), aexp.getOperators(), arg);
+	}
+
+	public Object visitTerm(Term term, Object arg) {
+		return this.generateOperation(term.getOperands(), term.getOperators(), arg);
+	}
+
+	public Object visitVariableFactor(VariableFactor factor, Object arg) {
+		Attribute attribute = factor.getAttribute();
+		if ( !this.inFrame(attribute) ) {
+			int target = this.destination(arg);
+			this.emit(Opcodes.GLOAD, target, attribute.getSlot());
+			return target;
+		}
+		int register = attribute.getSlot();
+		// Locals are read in place unless a register was asked for
+		if ( arg != null && (Integer) arg != register ) {
+			this.emit(Opcodes.MOVE, (Integer) arg, register);
+			return arg;
+		}
+		return register;
+	}
+
+	public Object visitCallFactor(CallFactor factor, Object arg) {
+		int target = this.destination(arg);
+		this.call(factor.getAttribute(), factor.getArguments(), target);
+		return target;
+	}
+
+	public Object visitNumberFactor(NumberFactor factor, Object arg) {
+		int target = this.destination(arg);
+		this.emit(Opcodes.CONST, target, factor.getValue());
+		return target;
+	}
+
+	public Object visitBooleanFactor(BooleanFactor factor, Object arg) {
+		int target = this.destination(arg);
+		this.emit(Opcodes.CONST, target, factor.getValue() ? 1 : 0);
+		return target;
+	}
+
+}
@@ -0,0 +1,857 @@
+package interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ir.Block;
+import ir.Dominators;
+import ir.Function;
+import ir.Instruction;
+
+/**
+ * Register code generator for the IR
+ * Turns optimized SSA functions into register bytecode. Values get registers
+ * by coloring their interference graph (liveness is computed value by
+ * value); values are colored in dominator tree order, so SSA needs no more
+ * registers than values live at once, and a phi and its operands share a
+ * register when they do not interfere, which leaves most loop variables
+ * without moves. The phi copies are placed on the edges (critical edges are
+ * split first) and ordered as parallel copies. Parameters stay in the
+ * registers the caller copies them to; in the main program, whose frame
+ * holds the globals, a global loaded or stored around a single use is used
+ * in place. Constants are immediate operands where the machine takes them,
+ * a comparison that only feeds a branch becomes a compare and jump, and an
+ * argument computed right before its call is computed into its argument
+ * register. Above the colored registers each frame has a scratch register
+ * (cycles of copies, unused call results) and the argument registers
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class IRCodeGenerator {
+
+	// Value not in a register yet
+	private static final int NONE = -1;
+
+	// The instructions
+	private int[] code = new int[256];
+	private int length = 0;
+	// Block positions of the function being generated (indexed by block number)
+	private int[] labels;
+	// Jump operands (holding block numbers) to resolve once the function is placed
+	private int[] fixups = new int[16];
+	private int fixupCount = 0;
+
+	// The function being generated and whether it is the main program
+	private Function function;
+	private boolean main;
+	// Per instruction (indexed by instruction number): register, uses that
+	// need a register, position in its block and whether it is a
+	// comparison fused into the branch after it
+	private int[] register, uses, index;
+	private boolean[] fused;
+	// The instructions that use each value in a register (and at which operand)
+	private Instruction[][] users;
+	private int[][] userOperands;
+	// Scratch register and first argument register of the frame
+	private int scratch, arguments;
+
+	/**
+	 * Generates the register bytecode of a program
+	 * @param functions - the main program, then the subprograms in number
+	 * order (as built by ir.Builder)
+	 * @return
+	 */
+	public Bytecode generate(Function[] functions) {
+		int[] entries = new int[functions.length];
+		int[] parameters = new int[functions.length];
+		int[] frameSizes = new int[functions.length];
+		String[] names = new String[functions.length];
+		for (int i = 0; i < functions.length; i++) {
+			entries[i] = this.length;
+			parameters[i] = functions[i].getParameterCount();
+			names[i] = functions[i].getName();
+			frameSizes[i] = this.generate(functions[i]);
+		}
+		return new Bytecode(Arrays.copyOf(this.code, this.length), entries, parameters, frameSizes, names);
+	}
+
+	/**
+	 * Appends an instruction
+	 * @param operands - the opcode and its operands
+	 */
+	private void emit(int... operands) {
+		if ( this.length + operands.length > this.code.length ) {
+			this.code = Arrays.copyOf(this.code, Math.max(this.code.length * 2, this.length + operands.length));
+		}
+		System.arraycopy(operands, 0, this.code, this.length, operands.length);
+		this.length += operands.length;
+	}
+
+	/**
+	 * Appends a jump instruction whose last operand is a block
+	 * @param operands - the opcode, its other operands and the block
+	 */
+	private void jump(int... operands) {
+		this.emit(operands);
+		if ( this.fixupCount == this.fixups.length ) {
+			this.fixups = Arrays.copyOf(this.fixups, this.fixupCount * 2);
+		}
+		this.fixups[this.fixupCount++] = this.length - 1;
+	}
+
+	/**
+	 * Generates a function
+	 * @param function
+	 * @return the frame size
+	 */
+	private int generate(Function function) {
+		this.function = function;
+		this.main = function.getNumber() == 0;
+		function.splitCriticalEdges();
+		int count = function.getInstructionCount();
+		this.register = new int[count];
+		this.uses = new int[count];
+		this.index = new int[count];
+		this.fused = new boolean[count];
+		Arrays.fill(this.register, NONE);
+		this.findUses();
+		int colors = this.color();
+		// Scratch and argument registers above the colored ones
+		this.scratch = Math.max(colors, function.getParameterCount());
+		this.arguments = this.scratch + 1;
+		int maxArguments = 0;
+		for (Block block : function.getBlocks()) {
+			for (Instruction instruction : block.getInstructions()) {
+				if ( instruction.getOp() == Instruction.CALL ) {
+					maxArguments = Math.max(maxArguments, instruction.getOperands().length);
+				}
+			}
+		}
+		this.placeArguments();
+
+		this.labels = new int[function.getBlockCount()];
+		this.fixupCount = 0;
+		List<Block> blocks = function.getBlocks();
+		for (int i = 0; i < blocks.size(); i++) {
+			this.labels[blocks.get(i).getId()] = this.length;
+			this.generate(blocks.get(i), i + 1 < blocks.size() ? blocks.get(i + 1) : null);
+		}
+		for (int i = 0; i < this.fixupCount; i++) {
+			this.code[this.fixups[i]] = this.labels[this.code[this.fixups[i]]];
+		}
+		return this.arguments + maxArguments;
+	}
+
+	/**
+	 * Verifies if an operand of an instruction is taken as an immediate value
+	 * (or rebuilt where it is needed) instead of read from a register
+	 * @param instruction
+	 * @param operand
+	 * @return
+	 */
+	private boolean isImmediate(Instruction instruction, int operand) {
+		Instruction value = instruction.getOperand(operand);
+		if ( value.getOp() != Instruction.CONST ) {
+			return false;
+		}
+		int op = instruction.getOp();
+		if ( op == Instruction.PHI || op == Instruction.CALL || (op == Instruction.GSTORE && this.main) ) {
+			// Constant copies
+			return true;
+		}
+		if ( Instruction.isArithmetic(op) || (Instruction.isRelation(op) && this.fused[instruction.getId()]) ) {
+			boolean other = instruction.getOperand(1 - operand).getOp() == Instruction.CONST;
+			// The right operand, or the left one swapped to the right
+			return operand == 1 || (!other && (Instruction.isRelation(op) || Instruction.isCommutative(op)));
+		}
+		return false;
+	}
+
+	/**
+	 * Counts the register uses of each value, marks the comparisons fused
+	 * into branches and records the position of each instruction
+	 */
+	private void findUses() {
+		for (Block block : this.function.getBlocks()) {
+			List<Instruction> instructions = block.getInstructions();
+			for (int i = 0; i < instructions.size(); i++) {
+				Instruction instruction = instructions.get(i);
+				this.index[instruction.getId()] = i;
+				if ( instruction.getOp() == Instruction.BRANCH && i > 0 ) {
+					Instruction condition = instruction.getOperand(0);
+					if ( Instruction.isRelation(condition.getOp()) && instructions.get(i - 1) == condition ) {
+						this.fused[condition.getId()] = true;
+					}
+				}
+			}
+		}
+		int[] total = new int[this.uses.length];
+		for (Block block : this.function.getBlocks()) {
+			for (Instruction instruction : block.getInstructions()) {
+				for (Instruction operand : instruction.getOperands()) {
+					total[operand.getId()]++;
+				}
+			}
+		}
+		for (int i = 0; i < total.length; i++) {
+			if ( this.fused[i] && total[i] != 1 ) {
+				this.fused[i] = false;
+			}
+		}
+		this.users = new Instruction[this.uses.length][];
+		this.userOperands = new int[this.uses.length][];
+		for (Block block : this.function.getBlocks()) {
+			for (Instruction instruction : block.getInstructions()) {
+				Instruction[] operands = instruction.getOperands();
+				for (int i = 0; i < operands.length; i++) {
+					if ( this.fused[operands[i].getId()] || this.isImmediate(instruction, i) ) {
+						continue;
+					}
+					int id = operands[i].getId();
+					int n = this.uses[id]++;
+					if ( this.users[id] == null ) {
+						this.users[id] = new Instruction[2];
+						this.userOperands[id] = new int[2];
+					} else if ( n == this.users[id].length ) {
+						this.users[id] = Arrays.copyOf(this.users[id], n * 2);
+						this.userOperands[id] = Arrays.copyOf(this.userOperands[id], n * 2);
+					}
+					this.users[id][n] = instruction;
+					this.userOperands[id][n] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verifies if an instruction writes a register when it runs
+	 * @param instruction
+	 * @return
+	 */
+	private boolean writesRegister(Instruction instruction) {
+		int op = instruction.getOp();
+		return op == Instruction.CONST || op == Instruction.COPY || Instruction.isArithmetic(op) ||
+				(Instruction.isRelation(op) && !this.fused[instruction.getId()]) ||
+				op == Instruction.GLOAD || op == Instruction.CALL;
+	}
+
+	/**
+	 * Verifies if nothing between two positions of a block calls a
+	 * subprogram or (unless global is -1) stores to a global
+	 * @param instructions
+	 * @param from - exclusive
+	 * @param to - exclusive
+	 * @param global
+	 * @return
+	 */
+	private static boolean isQuiet(List<Instruction> instructions, int from, int to, int global) {
+		for (int i = from + 1; i < to; i++) {
+			Instruction instruction = instructions.get(i);
+			if ( instruction.getOp() == Instruction.CALL ||
+					(instruction.getOp() == Instruction.GSTORE && instruction.getConstant() == global) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the position of the last use of a value, if every use is in
+	 * its block and none is a phi
+	 * @param value
+	 * @return the position (-1 if some use is elsewhere)
+	 */
+	private int lastUse(Instruction value) {
+		int last = this.index[value.getId()];
+		for (int i = 0; i < this.uses[value.getId()]; i++) {
+			Instruction user = this.users[value.getId()][i];
+			if ( user.getBlock() != value.getBlock() || user.getOp() == Instruction.PHI ) {
+				return -1;
+			}
+			last = Math.max(last, this.index[user.getId()]);
+		}
+		return last;
+	}
+
+	/**
+	 * Returns the global whose register a value of the main program can live
+	 * in: a global loaded and not changed until the last use of the value,
+	 * or a value stored to a global right after it is computed and not
+	 * changed (nor the global) until its last use
+	 * @param value
+	 * @return the global (-1 if none)
+	 */
+	private int home(Instruction value) {
+		if ( !this.main || !this.writesRegister(value) || value.getOp() == Instruction.CONST ) {
+			return -1;
+		}
+		List<Instruction> instructions = value.getBlock().getInstructions();
+		int position = this.index[value.getId()];
+		int global;
+		int from;
+		if ( value.getOp() == Instruction.GLOAD ) {
+			global = value.getConstant();
+			from = position;
+		} else if ( position + 1 < instructions.size() && instructions.get(position + 1).getOp() == Instruction.GSTORE &&
+				instructions.get(position + 1).getOperand(0) == value ) {
+			global = instructions.get(position + 1).getConstant();
+			from = position + 1;
+		} else {
+			return -1;
+		}
+		int last = this.lastUse(value);
+		if ( last < 0 || !isQuiet(instructions, from, last, global) ) {
+			return -1;
+		}
+		return global;
+	}
+
+	/**
+	 * Verifies if a value is computed right into an argument register: it is
+	 * only used by a call later in its block, with no call in between
+	 * @param value
+	 * @return
+	 */
+	private boolean isDirectArgument(Instruction value) {
+		if ( this.uses[value.getId()] != 1 || !this.writesRegister(value) || value.getOp() == Instruction.CONST ) {
+			return false;
+		}
+		Instruction user = this.users[value.getId()][0];
+		if ( user.getOp() != Instruction.CALL || user.getBlock() != value.getBlock() ) {
+			return false;
+		}
+		List<Instruction> instructions = value.getBlock().getInstructions();
+		return isQuiet(instructions, this.index[value.getId()], this.index[user.getId()], -1);
+	}
+
+	/**
+	 * Gives the direct arguments their argument registers (once the frame
+	 * size is known)
+	 */
+	private void placeArguments() {
+		for (Block block : this.function.getBlocks()) {
+			for (Instruction instruction : block.getInstructions()) {
+				if ( this.register[instruction.getId()] == NONE - 1 ) {
+					this.register[instruction.getId()] = this.arguments + this.userOperands[instruction.getId()][0];
+				}
+			}
+		}
+	}
+
+	/**
+	 * A set of value numbers with constant time add, remove and clear
+	 */
+	private static class ValueSet {
+
+		private int[] dense, sparse;
+		private int size;
+
+		private ValueSet(int capacity) {
+			this.dense = new int[capacity];
+			this.sparse = new int[capacity];
+		}
+
+		private boolean contains(int value) {
+			int i = this.sparse[value];
+			return i < this.size && this.dense[i] == value;
+		}
+
+		private void add(int value) {
+			if ( !this.contains(value) ) {
+				this.sparse[value] = this.size;
+				this.dense[this.size++] = value;
+			}
+		}
+
+		private void remove(int value) {
+			if ( this.contains(value) ) {
+				int last = this.dense[--this.size];
+				this.dense[this.sparse[value]] = last;
+				this.sparse[last] = this.sparse[value];
+			}
+		}
+
+	}
+
+	/**
+	 * Assigns registers: homes and argument registers first, then the
+	 * parameters their own registers and the other values colors
+	 * @return the number of registers used (globals included in the main program)
+	 */
+	private int color() {
+		int count = this.function.getInstructionCount();
+		// Which values need a color (parameters have theirs already)
+		boolean[] colored = new boolean[count];
+		List<Block> blocks = this.function.getBlocks();
+		for (Block block : blocks) {
+			for (Instruction instruction : block.getInstructions()) {
+				int id = instruction.getId();
+				int op = instruction.getOp();
+				if ( op == Instruction.PARAM ) {
+					this.register[id] = instruction.getConstant();
+					colored[id] = this.uses[id] > 0;
+					continue;
+				}
+				if ( this.uses[id] == 0 || !(this.writesRegister(instruction) || op == Instruction.PHI) ) {
+					continue;
+				}
+				int global = this.home(instruction);
+				if ( global >= 0 ) {
+					this.register[id] = global;
+				} else if ( this.isDirectArgument(instruction) ) {
+					// Placed once the frame size is known
+					this.register[id] = NONE - 1;
+				} else {
+					colored[id] = true;
+				}
+			}
+		}
+
+		// Liveness, one value at a time: from each use back to the definition
+		// (a value is added to a block several times in a row at most)
+		int[][] liveOut = new int[this.function.getBlockCount()][];
+		int[] liveOutSize = new int[liveOut.length];
+		int[] liveInMark = new int[liveOut.length];
+		Arrays.fill(liveInMark, -1);
+		List<Block> stack = new ArrayList<Block>();
+		for (Block block : blocks) {
+			for (Instruction value : block.getInstructions()) {
+				int id = value.getId();
+				if ( !colored[id] ) {
+					continue;
+				}
+				for (int u = 0; u < this.uses[id]; u++) {
+					Instruction user = this.users[id][u];
+					Block from = user.getBlock();
+					if ( user.getOp() == Instruction.PHI ) {
+						from = from.getPredecessors().get(this.userOperands[id][u]);
+						addLive(liveOut, liveOutSize, from, id);
+					}
+					if ( from != block ) {
+						stack.add(from);
+					}
+					while (!stack.isEmpty()) {
+						Block live = stack.remove(stack.size() - 1);
+						if ( liveInMark[live.getId()] == id ) {
+							continue;
+						}
+						liveInMark[live.getId()] = id;
+						for (Block predecessor : live.getPredecessors()) {
+							addLive(liveOut, liveOutSize, predecessor, id);
+							if ( predecessor != block ) {
+								stack.add(predecessor);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		// Interference: a value interferes with the values live where it is defined
+		int[][] neighbors = new int[count][];
+		int[] degree = new int[count];
+		ValueSet live = new ValueSet(count);
+		for (Block block : blocks) {
+			live.size = 0;
+			for (int i = 0; i < liveOutSize[block.getId()]; i++) {
+				live.add(liveOut[block.getId()][i]);
+			}
+			List<Instruction> instructions = block.getInstructions();
+			for (int i = instructions.size() - 1; i >= 0; i--) {
+				Instruction instruction = instructions.get(i);
+				int id = instruction.getId();
+				if ( instruction.getOp() == Instruction.PHI || instruction.getOp() == Instruction.PARAM ) {
+					continue;
+				}
+				if ( colored[id] ) {
+					live.remove(id);
+					for (int j = 0; j < live.size; j++) {
+						interfere(neighbors, degree, id, live.dense[j]);
+					}
+				}
+				for (Instruction operand : instruction.getOperands()) {
+					if ( colored[operand.getId()] ) {
+						live.add(operand.getId());
+					}
+				}
+			}
+			// Phis (and parameters) are all defined where the block starts
+			for (Instruction instruction : instructions) {
+				live.remove(instruction.getId());
+			}
+			for (Instruction instruction : instructions) {
+				int id = instruction.getId();
+				int op = instruction.getOp();
+				if ( (op == Instruction.PHI || op == Instruction.PARAM) && colored[id] ) {
+					for (int j = 0; j < live.size; j++) {
+						interfere(neighbors, degree, id, live.dense[j]);
+					}
+					live.add(id);
+				}
+			}
+		}
+
+		// Parameters keep their registers; the others take the lowest free
+		// color, trying the colors of related phis first
+		int base = this.main ? this.function.getGlobalCount() : 0;
+		int colors = Math.max(base, this.function.getParameterCount());
+		boolean[] taken = new boolean[16];
+		for (Block block : new Dominators(this.function).getOrder()) {
+			for (Instruction instruction : block.getInstructions()) {
+				int id = instruction.getId();
+				if ( !colored[id] || instruction.getOp() == Instruction.PARAM ) {
+					continue;
+				}
+				if ( taken.length < colors + 1 ) {
+					taken = new boolean[2 * (colors + 1)];
+				}
+				Arrays.fill(taken, 0, colors + 1, false);
+				for (int j = 0; j < degree[id]; j++) {
+					int color = this.register[neighbors[id][j]];
+					if ( color >= 0 ) {
+						taken[color] = true;
+					}
+				}
+				int color = this.preferredColor(instruction, taken);
+				if ( color < 0 ) {
+					color = base;
+					while (taken[color]) {
+						color++;
+					}
+				}
+				this.register[id] = color;
+				colors = Math.max(colors, color + 1);
+			}
+		}
+		return colors;
+	}
+
+	/**
+	 * Adds a value to the values live at the end of a block
+	 * @param liveOut
+	 * @param liveOutSize
+	 * @param block
+	 * @param value
+	 */
+	private static void addLive(int[][] liveOut, int[] liveOutSize, Block block, int value) {
+		int b = block.getId();
+		int size = liveOutSize[b];
+		if ( size > 0 && liveOut[b][size - 1] == value ) {
+			return;
+		}
+		if ( liveOut[b] == null ) {
+			liveOut[b] = new int[4];
+		} else if ( size == liveOut[b].length ) {
+			liveOut[b] = Arrays.copyOf(liveOut[b], size * 2);
+		}
+		liveOut[b][size] = value;
+		liveOutSize[b] = size + 1;
+	}
+
+	/**
+	 * Records that two values interfere
+	 * @param neighbors
+	 * @param degree
+	 * @param a
+	 * @param b
+	 */
+	private static void interfere(int[][] neighbors, int[] degree, int a, int b) {
+		if ( a == b ) {
+			return;
+		}
+		add(neighbors, degree, a, b);
+		add(neighbors, degree, b, a);
+	}
+
+	private static void add(int[][] neighbors, int[] degree, int a, int b) {
+		if ( neighbors[a] == null ) {
+			neighbors[a] = new int[4];
+		} else if ( degree[a] == neighbors[a].length ) {
+			neighbors[a] = Arrays.copyOf(neighbors[a], degree[a] * 2);
+		}
+		neighbors[a][degree[a]++] = b;
+	}
+
+	/**
+	 * Returns a free color shared with a related phi: the color of an operand
+	 * of a phi, or the color of a phi the value is an operand of
+	 * @param value
+	 * @param taken - colors of the interfering values
+	 * @return the color (-1 if none)
+	 */
+	private int preferredColor(Instruction value, boolean[] taken) {
+		if ( value.getOp() == Instruction.PHI ) {
+			for (Instruction operand : value.getOperands()) {
+				int color = this.register[operand.getId()];
+				if ( color >= 0 && (color >= taken.length || !taken[color]) && operand.getOp() != Instruction.CONST &&
+						this.isColor(color) ) {
+					return color;
+				}
+			}
+		}
+		int id = value.getId();
+		for (int i = 0; i < this.uses[id]; i++) {
+			Instruction user = this.users[id][i];
+			if ( user.getOp() == Instruction.PHI ) {
+				int color = this.register[user.getId()];
+				if ( color >= 0 && (color >= taken.length || !taken[color]) && this.isColor(color) ) {
+					return color;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Verifies if a register may be a color (it does not hold a global of the
+	 * main program)
+	 * @param register
+	 * @return
+	 */
+	private boolean isColor(int register) {
+		return !this.main || register >= this.function.getGlobalCount();
+	}
+
+	/**
+	 * Returns the register of a value (the scratch register for a call whose
+	 * result is not used)
+	 * @param value
+	 * @return
+	 */
+	private int registerOf(Instruction value) {
+		int register = this.register[value.getId()];
+		return register >= 0 ? register : this.scratch;
+	}
+
+	/**
+	 * Generates a block
+	 * @param block
+	 * @param next - the block placed after it (null if none)
+	 */
+	private void generate(Block block, Block next) {
+		for (Instruction instruction : block.getInstructions()) {
+			int op = instruction.getOp();
+			int id = instruction.getId();
+			Instruction[] operands = instruction.getOperands();
+			switch (op) {
+			case Instruction.PHI:
+			case Instruction.PARAM:
+				break;
+			case Instruction.CONST:
+				if ( this.register[id] >= 0 ) {
+					this.emit(Opcodes.CONST, this.register[id], instruction.getConstant());
+				}
+				break;
+			case Instruction.COPY:
+				this.move(this.register[id], operands[0]);
+				break;
+			case Instruction.GLOAD:
+				if ( !this.main ) {
+					this.emit(Opcodes.GLOAD, this.registerOf(instruction), instruction.getConstant());
+				} else if ( this.registerOf(instruction) != instruction.getConstant() ) {
+					this.emit(Opcodes.MOVE, this.registerOf(instruction), instruction.getConstant());
+				}
+				break;
+			case Instruction.GSTORE:
+				if ( !this.main ) {
+					this.emit(Opcodes.GSTORE, instruction.getConstant(), this.registerOf(operands[0]));
+				} else {
+					this.move(instruction.getConstant(), operands[0]);
+				}
+				break;
+			case Instruction.CALL:
+				for (int i = 0; i < operands.length; i++) {
+					this.move(this.arguments + i, operands[i]);
+				}
+				this.emit(Opcodes.CALL, this.registerOf(instruction), instruction.getConstant(), this.arguments, operands.length);
+				break;
+			case Instruction.PRINTI:
+				this.emit(Opcodes.PRINTI, this.registerOf(operands[0]));
+				break;
+			case Instruction.PRINTB:
+				this.emit(Opcodes.PRINTB, this.registerOf(operands[0]));
+				break;
+			case Instruction.JUMP: {
+				Block target = block.getSuccessors()[0];
+				this.phiCopies(block, target);
+				target = this.follow(target);
+				if ( target != next ) {
+					this.jump(Opcodes.JUMP, target.getId());
+				}
+				break;
+			}
+			case Instruction.BRANCH:
+				this.branch(block, operands[0], next);
+				break;
+			case Instruction.RET:
+				this.emit(Opcodes.RET, this.registerOf(operands[0]));
+				break;
+			case Instruction.RETURN:
+				this.emit(Opcodes.RETURN);
+				break;
+			default:
+				if ( Instruction.isRelation(op) && this.fused[id] ) {
+					break;
+				}
+				this.operation(instruction);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Copies a value to a register (a constant is loaded again: its register,
+	 * if it has one, may be gone here)
+	 * @param target
+	 * @param value
+	 */
+	private void move(int target, Instruction value) {
+		if ( value.getOp() == Instruction.CONST ) {
+			this.emit(Opcodes.CONST, target, value.getConstant());
+		} else if ( this.registerOf(value) != target ) {
+			this.emit(Opcodes.MOVE, target, this.registerOf(value));
+		}
+	}
+
+	/**
+	 * Generates an arithmetic operation or a comparison
+	 * @param instruction
+	 */
+	private void operation(Instruction instruction) {
+		int op = instruction.getOp();
+		Instruction left = instruction.getOperand(0), right = instruction.getOperand(1);
+		int opcode = Opcodes.ADD + (op - Instruction.ADD);
+		if ( Instruction.isRelation(op) ) {
+			opcode = Opcodes.EQ + (op - Instruction.EQ);
+		} else if ( this.isImmediate(instruction, 1) ) {
+			this.emit(opcode + Opcodes.ADDK - Opcodes.ADD, this.registerOf(instruction), this.registerOf(left), right.getConstant());
+			return;
+		} else if ( this.isImmediate(instruction, 0) ) {
+			// Commutative: the constant goes to the right
+			this.emit(opcode + Opcodes.ADDK - Opcodes.ADD, this.registerOf(instruction), this.registerOf(right), left.getConstant());
+			return;
+		}
+		this.emit(opcode, this.registerOf(instruction), this.registerOf(left), this.registerOf(right));
+	}
+
+	/**
+	 * Follows blocks that only jump on to a block without phis
+	 * @param block
+	 * @return the first block that does something
+	 */
+	private Block follow(Block block) {
+		for (int steps = 0; steps < 16; steps++) {
+			List<Instruction> instructions = block.getInstructions();
+			if ( instructions.size() != 1 || instructions.get(0).getOp() != Instruction.JUMP ) {
+				break;
+			}
+			Block successor = block.getSuccessors()[0];
+			List<Instruction> next = successor.getInstructions();
+			if ( successor == block || (!next.isEmpty() && next.get(0).getOp() == Instruction.PHI) ) {
+				break;
+			}
+			block = successor;
+		}
+		return block;
+	}
+
+	/**
+	 * Generates a conditional branch: a compare and jump when the condition
+	 * is a comparison right before it
+	 * @param block
+	 * @param condition
+	 * @param next - the block placed after it
+	 */
+	private void branch(Block block, Instruction condition, Block next) {
+		Block whenTrue = this.follow(block.getSuccessors()[0]);
+		Block whenFalse = this.follow(block.getSuccessors()[1]);
+		if ( whenTrue == next ) {
+			this.jumpIf(condition, false, whenFalse);
+		} else {
+			this.jumpIf(condition, true, whenTrue);
+			if ( whenFalse != next ) {
+				this.jump(Opcodes.JUMP, whenFalse.getId());
+			}
+		}
+	}
+
+	/**
+	 * Generates a jump taken when a condition has the given value
+	 * @param condition
+	 * @param when
+	 * @param target
+	 */
+	private void jumpIf(Instruction condition, boolean when, Block target) {
+		if ( !this.fused[condition.getId()] ) {
+			this.jump(when ? Opcodes.JNZ : Opcodes.JZ, this.registerOf(condition), target.getId());
+			return;
+		}
+		int op = when ? condition.getOp() : Instruction.negate(condition.getOp());
+		Instruction left = condition.getOperand(0), right = condition.getOperand(1);
+		if ( this.isImmediate(condition, 1) ) {
+			this.jump(Opcodes.JEQK + (op - Instruction.EQ), this.registerOf(left), right.getConstant(), target.getId());
+		} else if ( this.isImmediate(condition, 0) ) {
+			op = Instruction.swap(op);
+			this.jump(Opcodes.JEQK + (op - Instruction.EQ), this.registerOf(right), left.getConstant(), target.getId());
+		} else {
+			this.jump(Opcodes.JEQ + (op - Instruction.EQ), this.registerOf(left), this.registerOf(right), target.getId());
+		}
+	}
+
+	/**
+	 * Generates the copies into the phis of a successor, as parallel copies
+	 * (a cycle goes through the scratch register); constants are loaded last
+	 * @param block
+	 * @param successor
+	 */
+	private void phiCopies(Block block, Block successor) {
+		int edge = successor.getPredecessors().indexOf(block);
+		List<int[]> copies = new ArrayList<int[]>();
+		List<int[]> constants = new ArrayList<int[]>();
+		for (Instruction phi : successor.getInstructions()) {
+			if ( phi.getOp() != Instruction.PHI ) {
+				break;
+			}
+			if ( this.register[phi.getId()] < 0 ) {
+				continue;
+			}
+			Instruction value = phi.getOperand(edge);
+			int target = this.register[phi.getId()];
+			if ( value.getOp() == Instruction.CONST ) {
+				constants.add(new int[] { target, value.getConstant() });
+			} else if ( this.registerOf(value) != target ) {
+				copies.add(new int[] { target, this.registerOf(value) });
+			}
+		}
+		while (!copies.isEmpty()) {
+			int ready = -1;
+			for (int i = 0; i < copies.size() && ready < 0; i++) {
+				ready = i;
+				for (int[] other : copies) {
+					if ( other[1] == copies.get(i)[0] ) {
+						ready = -1;
+						break;
+					}
+				}
+			}
+			if ( ready < 0 ) {
+				// A cycle: saves the value of one target, which is then free
+				int target = copies.get(0)[0];
+				this.emit(Opcodes.MOVE, this.scratch, target);
+				for (int[] other : copies) {
+					if ( other[1] == target ) {
+						other[1] = this.scratch;
+					}
+				}
+				continue;
+			}
+			int[] copy = copies.remove(ready);
+			this.emit(Opcodes.MOVE, copy[0], copy[1]);
+		}
+		for (int[] constant : constants) {
+			this.emit(Opcodes.CONST, constant[0], constant[1]);
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package interpreter;
+
+/**
+ * Register machine instruction set
+ * Every instruction is an opcode followed by a fixed number of int operands.
+ * Registers are relative to the frame of the running subprogram; the global
+ * variables are the first registers of the main program frame
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+final class Opcodes {
+
+	// r[d] := k
+	static final int CONST = 0;
+	// r[d] := r[s]
+	static final int MOVE = 1;
+	// r[d] := r[g] of the main frame (globals)
+	static final int GLOAD = 2;
+	// r[g] of the main frame := r[s]
+	static final int GSTORE = 3;
+	// r[d] := r[a] op r[b]
+	static final int ADD = 4;
+	static final int SUB = 5;
+	static final int MUL = 6;
+	static final int DIV = 7;
+	// r[d] := r[a] op k
+	static final int ADDK = 8;
+	static final int SUBK = 9;
+	static final int MULK = 10;
+	static final int DIVK = 11;
+	// r[d] := r[a] rel r[b] (1 or 0)
+	static final int EQ = 12;
+	static final int NE = 13;
+	static final int LT = 14;
+	static final int LE = 15;
+	static final int GT = 16;
+	static final int GE = 17;
+	// pc := t
+	static final int JUMP = 18;
+	// if r[s] == 0 (or != 0) then pc := t
+	static final int JZ = 19;
+	static final int JNZ = 20;
+	// if r[a] rel r[b] then pc := t
+	static final int JEQ = 21;
+	static final int JNE = 22;
+	static final int JLT = 23;
+	static final int JLE = 24;
+	static final int JGT = 25;
+	static final int JGE = 26;
+	// if r[a] rel k then pc := t
+	static final int JEQK = 27;
+	static final int JNEK = 28;
+	static final int JLTK = 29;
+	static final int JLEK = 30;
+	static final int JGTK = 31;
+	static final int JGEK = 32;
+	// r[d] := call f(r[a], ..., r[a + n - 1])
+	static final int CALL = 33;
+	// returns r[s] to the caller
+	static final int RET = 34;
+	// returns from a procedure (or ends the main program)
+	static final int RETURN = 35;
+	// prints r[s] as an integer or as a boolean
+	static final int PRINTI = 36;
+	static final int PRINTB = 37;
+
+	// Instruction names and operand counts, indexed by opcode
+	static final String[] NAMES = {
+		"const", "move", "gload", "gstore", "add", "sub", "mul", "div",
+		"addk", "subk", "mulk", "divk", "eq", "ne", "lt", "le", "gt", "ge",
+		"jump", "jz", "jnz", "jeq", "jne", "jlt", "jle", "jgt", "jge",
+		"jeqk", "jnek", "jltk", "jlek", "jgtk", "jgek",
+		"call", "ret", "return", "printi", "printb"
+	};
+	static final int[] OPERANDS = {
+		2, 2, 2, 2, 3, 3, 3, 3,
+		3, 3, 3, 3, 3, 3, 3, 3, 3, 3,
+		1, 2, 2, 3, 3, 3, 3, 3, 3,
+		3, 3, 3, 3, 3, 3,
+		4, 1, 0, 1, 1
+	};
+
+	private Opcodes() {
+	}
+
+}
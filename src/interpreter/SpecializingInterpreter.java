@@ -0,0 +1,1157 @@
+package interpreter;
+
+import java.io.PrintStream;
+
+import util.AST.Aexp;
+import util.AST.AssignCmd;
+import util.AST.Bexp;
+import util.AST.BooleanFactor;
+import util.AST.BreakCmd;
+import util.AST.CallCmd;
+import util.AST.CallFactor;
+import util.AST.Cmd;
+import util.AST.ContinueCmd;
+import util.AST.Expression;
+import util.AST.FuncDec;
+import util.AST.IfCmd;
+import util.AST.NumberFactor;
+import util.AST.Operator;
+import util.AST.Program;
+import util.AST.SubprogramDec;
+import util.AST.Term;
+import util.AST.Type;
+import util.AST.VarDec;
+import util.AST.VariableFactor;
+import util.AST.WhileCmd;
+import util.AST.WriteCmd;
+import util.symbolsTable.Attribute;
+
+/**
+ * Specializing tree interpreter
+ * Runs the program from a tree of executable nodes built from the checked
+ * AST. Every node starts uninitialized and, the first time it runs, replaces
+ * itself in its parent with a node specialized for what it found there: a
+ * local or a global slot, an integer operation or relation with a constant
+ * or a variable operand, an increment of a local... so later runs only call
+ * the specialized nodes directly, and code that never runs is never built.
+ * Integers and booleans (false is 0, true is 1) live unboxed in flat int[]
+ * frames: the globals are the main program frame and each call gets a frame
+ * with its parameters, local variables and result, in their checker slots.
+ * Commands return whether they break or continue a loop, so running throws
+ * no exceptions
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class SpecializingInterpreter {
+
+	// How a command completes
+	private static final int NORMAL = 0, BREAK = 1, CONTINUE = 2;
+
+	// Where write prints
+	private PrintStream out;
+	// The global variables (the main program frame)
+	private int[] globals;
+	// Subprograms by slot (built when first called) and their declarations
+	private Subprogram[] subprograms;
+	private SubprogramDec[] declarations;
+	// Nodes that specialized themselves
+	private int rewrites;
+
+	/**
+	 * Default constructor
+	 * @param out - where write prints
+	 */
+	public SpecializingInterpreter(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Runs a program
+	 * @param program - a program annotated by the checker
+	 */
+	public void run(Program program) {
+		int functions = program.getFunctions().length;
+		this.declarations = new SubprogramDec[1 + functions + program.getProcedures().length];
+		System.arraycopy(program.getFunctions(), 0, this.declarations, 1, functions);
+		System.arraycopy(program.getProcedures(), 0, this.declarations, 1 + functions, program.getProcedures().length);
+		this.subprograms = new Subprogram[this.declarations.length];
+		this.globals = new int[count(program.getVariables())];
+		Subprogram main = new Subprogram(this.block(program.getCommands(), true), this.globals.length, -1);
+		try {
+			main.body.execute(this.globals);
+		} catch (ArithmeticException e) {
+			throw new RuntimeException("Runtime error: division by zero");
+		}
+	}
+
+	/**
+	 * Returns the number of nodes that specialized themselves
+	 * @return
+	 */
+	public int getRewrites() {
+		return this.rewrites;
+	}
+
+	/**
+	 * Returns the number of variables declared
+	 * @param variables
+	 * @return
+	 */
+	private static int count(VarDec[] variables) {
+		int count = 0;
+		for (VarDec variable : variables) {
+			count += variable.getNames().length;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns a subprogram, building it when first called
+	 * @param slot
+	 * @return
+	 */
+	private Subprogram subprogram(int slot) {
+		Subprogram subprogram = this.subprograms[slot];
+		if ( subprogram == null ) {
+			SubprogramDec declaration = this.declarations[slot];
+			int locals = declaration.getParameterCount() + declaration.getVariableCount();
+			// The result of a function follows its local variables
+			boolean function = declaration instanceof FuncDec;
+			subprogram = new Subprogram(this.block(declaration.getCommands(), false),
+					function ? locals + 1 : locals, function ? locals : -1);
+			this.subprograms[slot] = subprogram;
+		}
+		return subprogram;
+	}
+
+	/**
+	 * Returns a block of uninitialized commands
+	 * @param commands
+	 * @param main - whether the commands belong to the main program
+	 * @return
+	 */
+	private Block block(Cmd[] commands, boolean main) {
+		Command[] nodes = new Command[commands.length];
+		for (int i = 0; i < commands.length; i++) {
+			nodes[i] = new UninitializedCommand(this, commands[i], main);
+		}
+		return new Block(nodes);
+	}
+
+	/**
+	 * Verifies if a variable is read and written in the running frame (the
+	 * globals are the frame of the main program)
+	 * @param attribute
+	 * @param main
+	 * @return
+	 */
+	private static boolean inFrame(Attribute attribute, boolean main) {
+		return attribute.getScope() > 0 || main;
+	}
+
+	/**
+	 * Builds the node specialized for a command
+	 * @param cmd
+	 * @param main
+	 * @return
+	 */
+	private Command specialize(Cmd cmd, boolean main) {
+		if ( cmd instanceof AssignCmd ) {
+			AssignCmd assign = (AssignCmd) cmd;
+			Attribute attribute = assign.getAttribute();
+			if ( !inFrame(attribute, main) ) {
+				return new GlobalWrite(this.globals, attribute.getSlot(), new UninitializedExpr(this, assign.getValue(), main));
+			}
+			int increment = increment(assign.getValue(), attribute);
+			if ( increment != 0 ) {
+				return new LocalIncrement(attribute.getSlot(), increment);
+			}
+			return new LocalWrite(attribute.getSlot(), new UninitializedExpr(this, assign.getValue(), main));
+		} else if ( cmd instanceof CallCmd ) {
+			CallCmd call = (CallCmd) cmd;
+			return new CallCommand(this.subprogram(call.getAttribute().getSlot()), this.arguments(call.getArguments(), main));
+		} else if ( cmd instanceof IfCmd ) {
+			IfCmd ifCmd = (IfCmd) cmd;
+			Expr condition = new UninitializedExpr(this, ifCmd.getCondition(), main);
+			if ( ifCmd.getElseCommands() == null ) {
+				return new If(condition, this.block(ifCmd.getThenCommands(), main));
+			}
+			return new IfElse(condition, this.block(ifCmd.getThenCommands(), main), this.block(ifCmd.getElseCommands(), main));
+		} else if ( cmd instanceof WhileCmd ) {
+			WhileCmd whileCmd = (WhileCmd) cmd;
+			return new While(new UninitializedExpr(this, whileCmd.getCondition(), main), this.block(whileCmd.getCommands(), main));
+		} else if ( cmd instanceof WriteCmd ) {
+			Expression value = ((WriteCmd) cmd).getValue();
+			if ( value.getType() == Type.BOOLEAN ) {
+				return new WriteBoolean(this.out, new UninitializedExpr(this, value, main));
+			}
+			return new WriteInteger(this.out, new UninitializedExpr(this, value, main));
+		} else if ( cmd instanceof BreakCmd ) {
+			return new Jump(BREAK);
+		} else if ( cmd instanceof ContinueCmd ) {
+			return new Jump(CONTINUE);
+		}
+		throw new IllegalArgumentException("Unknown command " + cmd.getClass().getSimpleName());
+	}
+
+	/**
+	 * Returns k when a value is (variable + k) or (variable - k) for the
+	 * assigned variable, 0 otherwise
+	 * @param value
+	 * @param attribute - the assigned variable
+	 * @return
+	 */
+	private static int increment(Expression value, Attribute attribute) {
+		if ( !(value instanceof Aexp) || ((Aexp) value).getOperands().length != 2 ) {
+			return 0;
+		}
+		Expression[] operands = ((Aexp) value).getOperands();
+		if ( !(operands[0] instanceof VariableFactor) || !(operands[1] instanceof NumberFactor)
+				|| !same(((VariableFactor) operands[0]).getAttribute(), attribute) ) {
+			return 0;
+		}
+		int k = ((NumberFactor) operands[1]).getValue();
+		return ((Aexp) value).getOperators()[0] == Operator.ADD ? k : -k;
+	}
+
+	/**
+	 * Verifies if two attributes name the same variable
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private static boolean same(Attribute a, Attribute b) {
+		return a.getAst() == b.getAst() && a.getSlot() == b.getSlot() && a.getScope() == b.getScope();
+	}
+
+	/**
+	 * Returns the uninitialized nodes of call arguments
+	 * @param arguments
+	 * @param main
+	 * @return
+	 */
+	private Expr[] arguments(Expression[] arguments, boolean main) {
+		Expr[] nodes = new Expr[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			nodes[i] = new UninitializedExpr(this, arguments[i], main);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Builds the node specialized for an expression
+	 * @param expression
+	 * @param main
+	 * @return
+	 */
+	private Expr specialize(Expression expression, boolean main) {
+		if ( expression instanceof NumberFactor ) {
+			return new Constant(((NumberFactor) expression).getValue());
+		} else if ( expression instanceof BooleanFactor ) {
+			return new Constant(((BooleanFactor) expression).getValue() ? 1 : 0);
+		} else if ( expression instanceof VariableFactor ) {
+			Attribute attribute = ((VariableFactor) expression).getAttribute();
+			if ( inFrame(attribute, main) ) {
+				return new LocalRead(attribute.getSlot());
+			}
+			return new GlobalRead(this.globals, attribute.getSlot());
+		} else if ( expression instanceof CallFactor ) {
+			CallFactor call = (CallFactor) expression;
+			return new Call(this.subprogram(call.getAttribute().getSlot()), this.arguments(call.getArguments(), main));
+		} else if ( expression instanceof Aexp ) {
+			return this.operation(((Aexp) expression).getOperands(), ((Aexp) expression).getOperators(), main);
+		} else if ( expression instanceof Term ) {
+			return this.operation(((Term) expression).getOperands(), ((Term) expression).getOperators(), main);
+		} else if ( expression instanceof Bexp ) {
+			Bexp bexp = (Bexp) expression;
+			Expr left = new UninitializedExpr(this, bexp.getLeft(), main);
+			if ( bexp.getRight() instanceof NumberFactor ) {
+				return relation(bexp.getOperator(), left, ((NumberFactor) bexp.getRight()).getValue());
+			}
+			return relation(bexp.getOperator(), left, new UninitializedExpr(this, bexp.getRight(), main));
+		}
+		throw new IllegalArgumentException("Unknown expression " + expression.getClass().getSimpleName());
+	}
+
+	/**
+	 * Builds operands[0] operators[0] operands[1] ... (left to right) as
+	 * binary nodes; number operands become constants of their operation
+	 * @param operands
+	 * @param operators
+	 * @param main
+	 * @return
+	 */
+	private Expr operation(Expression[] operands, Operator[] operators, boolean main) {
+		Expr value = new UninitializedExpr(this, operands[0], main);
+		for (int i = 1; i < operands.length; i++) {
+			if ( operands[i] instanceof NumberFactor ) {
+				int k = ((NumberFactor) operands[i]).getValue();
+				switch (operators[i - 1]) {
+				case ADD: value = new AddConstant(value, k); break;
+				case SUB: value = new AddConstant(value, -k); break;
+				case MUL: value = new MulConstant(value, k); break;
+				default: value = new DivConstant(value, k); break;
+				}
+			} else {
+				Expr right = new UninitializedExpr(this, operands[i], main);
+				switch (operators[i - 1]) {
+				case ADD: value = new Add(value, right); break;
+				case SUB: value = new Sub(value, right); break;
+				case MUL: value = new Mul(value, right); break;
+				default: value = new Div(value, right); break;
+				}
+			}
+		}
+		return value;
+	}
+
+	private static Expr relation(Operator operator, Expr left, Expr right) {
+		switch (operator) {
+		case EQUALS: return new Equal(left, right);
+		case NOTEQUALS: return new NotEqual(left, right);
+		case GT: return new Greater(left, right);
+		case LT: return new Less(left, right);
+		case GE: return new GreaterEqual(left, right);
+		default: return new LessEqual(left, right);
+		}
+	}
+
+	private static Expr relation(Operator operator, Expr left, int k) {
+		switch (operator) {
+		case EQUALS: return new EqualConstant(left, k);
+		case NOTEQUALS: return new NotEqualConstant(left, k);
+		case GT: return new GreaterConstant(left, k);
+		case LT: return new LessConstant(left, k);
+		case GE: return new GreaterEqualConstant(left, k);
+		default: return new LessEqualConstant(left, k);
+		}
+	}
+
+	/**
+	 * Executable node
+	 * A node knows its parent, so it can replace itself there
+	 */
+	private abstract static class Node {
+
+		// The node that holds this one
+		Node parent;
+
+		/**
+		 * Makes this node the parent of a child
+		 * @param child
+		 * @return the child
+		 */
+		final <T extends Node> T adopt(T child) {
+			child.parent = this;
+			return child;
+		}
+
+		/**
+		 * Replaces this node in its parent
+		 * @param node
+		 * @return the node
+		 */
+		final <T extends Node> T replace(T node) {
+			node.parent = this.parent;
+			this.parent.replaceChild(this, node);
+			return node;
+		}
+
+		/**
+		 * Replaces a child node
+		 * @param child
+		 * @param node
+		 */
+		void replaceChild(Node child, Node node) {
+			throw new IllegalStateException(this.getClass().getSimpleName() + " has no replaceable children");
+		}
+
+		/**
+		 * Replaces a node in an array of children
+		 * @param children
+		 * @param child
+		 * @param node
+		 */
+		static void replaceIn(Node[] children, Node child, Node node) {
+			for (int i = 0; i < children.length; i++) {
+				if ( children[i] == child ) {
+					children[i] = node;
+					return;
+				}
+			}
+			throw new IllegalStateException("Not a child");
+		}
+
+	}
+
+	/**
+	 * Expression node: evaluates to an int (booleans are 0 or 1)
+	 */
+	private abstract static class Expr extends Node {
+
+		abstract int execute(int[] frame);
+
+		/**
+		 * Evaluates a condition
+		 * @param frame
+		 * @return
+		 */
+		boolean test(int[] frame) {
+			return this.execute(frame) != 0;
+		}
+
+	}
+
+	/**
+	 * Command node: returns NORMAL, BREAK or CONTINUE
+	 */
+	private abstract static class Command extends Node {
+
+		abstract int execute(int[] frame);
+
+	}
+
+	/**
+	 * Expression not run yet: specializes itself when it first runs
+	 */
+	private static final class UninitializedExpr extends Expr {
+
+		private final SpecializingInterpreter interpreter;
+		private final Expression expression;
+		private final boolean main;
+
+		UninitializedExpr(SpecializingInterpreter interpreter, Expression expression, boolean main) {
+			this.interpreter = interpreter;
+			this.expression = expression;
+			this.main = main;
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.specialize().execute(frame);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.specialize().test(frame);
+		}
+
+		private Expr specialize() {
+			this.interpreter.rewrites++;
+			return this.replace(this.interpreter.specialize(this.expression, this.main));
+		}
+
+	}
+
+	/**
+	 * Command not run yet: specializes itself when it first runs
+	 */
+	private static final class UninitializedCommand extends Command {
+
+		private final SpecializingInterpreter interpreter;
+		private final Cmd cmd;
+		private final boolean main;
+
+		UninitializedCommand(SpecializingInterpreter interpreter, Cmd cmd, boolean main) {
+			this.interpreter = interpreter;
+			this.cmd = cmd;
+			this.main = main;
+		}
+
+		@Override
+		int execute(int[] frame) {
+			this.interpreter.rewrites++;
+			return this.replace(this.interpreter.specialize(this.cmd, this.main)).execute(frame);
+		}
+
+	}
+
+	/**
+	 * A subprogram: its body and frame layout (the root of its nodes)
+	 */
+	private static final class Subprogram extends Node {
+
+		final Block body;
+		final int frameSize, result;
+
+		Subprogram(Block body, int frameSize, int result) {
+			this.body = this.adopt(body);
+			this.frameSize = frameSize;
+			this.result = result;
+		}
+
+		/**
+		 * Runs the subprogram with the arguments evaluated in the caller frame
+		 * @param arguments
+		 * @param frame
+		 * @return the subprogram frame
+		 */
+		int[] call(Expr[] arguments, int[] frame) {
+			int[] callee = new int[this.frameSize];
+			for (int i = 0; i < arguments.length; i++) {
+				callee[i] = arguments[i].execute(frame);
+			}
+			this.body.execute(callee);
+			return callee;
+		}
+
+	}
+
+	private static final class Block extends Command {
+
+		private final Command[] commands;
+
+		Block(Command[] commands) {
+			this.commands = commands;
+			for (Command command : commands) {
+				this.adopt(command);
+			}
+		}
+
+		@Override
+		int execute(int[] frame) {
+			Command[] commands = this.commands;
+			for (int i = 0; i < commands.length; i++) {
+				int completion = commands[i].execute(frame);
+				if ( completion != NORMAL ) {
+					return completion;
+				}
+			}
+			return NORMAL;
+		}
+
+		@Override
+		void replaceChild(Node child, Node node) {
+			replaceIn(this.commands, child, node);
+		}
+
+	}
+
+	private static final class LocalWrite extends Command {
+
+		private final int slot;
+		private Expr value;
+
+		LocalWrite(int slot, Expr value) {
+			this.slot = slot;
+			this.value = this.adopt(value);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			frame[this.slot] = this.value.execute(frame);
+			return NORMAL;
+		}
+
+		@Override
+		void replaceChild(Node child, Node node) {
+			this.value = (Expr) node;
+		}
+
+	}
+
+	private static final class LocalIncrement extends Command {
+
+		private final int slot, k;
+
+		LocalIncrement(int slot, int k) {
+			this.slot = slot;
+			this.k = k;
+		}
+
+		@Override
+		int execute(int[] frame) {
+			frame[this.slot] += this.k;
+			return NORMAL;
+		}
+
+	}
+
+	private static final class GlobalWrite extends Command {
+
+		private final int[] globals;
+		private final int slot;
+		private Expr value;
+
+		GlobalWrite(int[] globals, int slot, Expr value) {
+			this.globals = globals;
+			this.slot = slot;
+			this.value = this.adopt(value);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			this.globals[this.slot] = this.value.execute(frame);
+			return NORMAL;
+		}
+
+		@Override
+		void replaceChild(Node child, Node node) {
+			this.value = (Expr) node;
+		}
+
+	}
+
+	private static final class CallCommand extends Command {
+
+		private final Subprogram subprogram;
+		private final Expr[] arguments;
+
+		CallCommand(Subprogram subprogram, Expr[] arguments) {
+			this.subprogram = subprogram;
+			this.arguments = arguments;
+			for (Expr argument : arguments) {
+				this.adopt(argument);
+			}
+		}
+
+		@Override
+		int execute(int[] frame) {
+			this.subprogram.call(this.arguments, frame);
+			return NORMAL;
+		}
+
+		@Override
+		void replaceChild(Node child, Node node) {
+			replaceIn(this.arguments, child, node);
+		}
+
+	}
+
+	private static final class If extends Command {
+
+		private Expr condition;
+		private final Block then;
+
+		If(Expr condition, Block then) {
+			this.condition = this.adopt(condition);
+			this.then = this.adopt(then);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.condition.test(frame) ? this.then.execute(frame) : NORMAL;
+		}
+
+		@Override
+		void replaceChild(Node child, Node node) {
+			this.condition = (Expr) node;
+		}
+
+	}
+
+	private static final class IfElse extends Command {
+
+		private Expr condition;
+		private final Block then, otherwise;
+
+		IfElse(Expr condition, Block then, Block otherwise) {
+			this.condition = this.adopt(condition);
+			this.then = this.adopt(then);
+			this.otherwise = this.adopt(otherwise);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.condition.test(frame) ? this.then.execute(frame) : this.otherwise.execute(frame);
+		}
+
+		@Override
+		void replaceChild(Node child, Node node) {
+			this.condition = (Expr) node;
+		}
+
+	}
+
+	private static final class While extends Command {
+
+		private Expr condition;
+		private final Block body;
+
+		While(Expr condition, Block body) {
+			this.condition = this.adopt(condition);
+			this.body = this.adopt(body);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			while ( this.condition.test(frame) ) {
+				if ( this.body.execute(frame) == BREAK ) {
+					break;
+				}
+			}
+			return NORMAL;
+		}
+
+		@Override
+		void replaceChild(Node child, Node node) {
+			this.condition = (Expr) node;
+		}
+
+	}
+
+	private static final class WriteInteger extends Command {
+
+		private final PrintStream out;
+		private Expr value;
+
+		WriteInteger(PrintStream out, Expr value) {
+			this.out = out;
+			this.value = this.adopt(value);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			this.out.println(this.value.execute(frame));
+			return NORMAL;
+		}
+
+		@Override
+		void replaceChild(Node child, Node node) {
+			this.value = (Expr) node;
+		}
+
+	}
+
+	private static final class WriteBoolean extends Command {
+
+		private final PrintStream out;
+		private Expr value;
+
+		WriteBoolean(PrintStream out, Expr value) {
+			this.out = out;
+			this.value = this.adopt(value);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			this.out.println(this.value.test(frame));
+			return NORMAL;
+		}
+
+		@Override
+		void replaceChild(Node child, Node node) {
+			this.value = (Expr) node;
+		}
+
+	}
+
+	/**
+	 * Break or continue
+	 */
+	private static final class Jump extends Command {
+
+		private final int completion;
+
+		Jump(int completion) {
+			this.completion = completion;
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.completion;
+		}
+
+	}
+
+	private static final class Constant extends Expr {
+
+		private final int value;
+
+		Constant(int value) {
+			this.value = value;
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.value;
+		}
+
+	}
+
+	private static final class LocalRead extends Expr {
+
+		private final int slot;
+
+		LocalRead(int slot) {
+			this.slot = slot;
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return frame[this.slot];
+		}
+
+	}
+
+	private static final class GlobalRead extends Expr {
+
+		private final int[] globals;
+		private final int slot;
+
+		GlobalRead(int[] globals, int slot) {
+			this.globals = globals;
+			this.slot = slot;
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.globals[this.slot];
+		}
+
+	}
+
+	private static final class Call extends Expr {
+
+		private final Subprogram subprogram;
+		private final Expr[] arguments;
+
+		Call(Subprogram subprogram, Expr[] arguments) {
+			this.subprogram = subprogram;
+			this.arguments = arguments;
+			for (Expr argument : arguments) {
+				this.adopt(argument);
+			}
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.subprogram.call(this.arguments, frame)[this.subprogram.result];
+		}
+
+		@Override
+		void replaceChild(Node child, Node node) {
+			replaceIn(this.arguments, child, node);
+		}
+
+	}
+
+	/**
+	 * Operation on two evaluated operands (left first)
+	 */
+	private abstract static class Binary extends Expr {
+
+		Expr left, right;
+
+		Binary(Expr left, Expr right) {
+			this.left = this.adopt(left);
+			this.right = this.adopt(right);
+		}
+
+		@Override
+		final void replaceChild(Node child, Node node) {
+			if ( this.left == child ) {
+				this.left = (Expr) node;
+			} else {
+				this.right = (Expr) node;
+			}
+		}
+
+	}
+
+	/**
+	 * Operation on an evaluated operand and a constant
+	 */
+	private abstract static class Unary extends Expr {
+
+		Expr operand;
+		final int k;
+
+		Unary(Expr operand, int k) {
+			this.operand = this.adopt(operand);
+			this.k = k;
+		}
+
+		@Override
+		final void replaceChild(Node child, Node node) {
+			this.operand = (Expr) node;
+		}
+
+	}
+
+	private static final class Add extends Binary {
+
+		Add(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.left.execute(frame) + this.right.execute(frame);
+		}
+
+	}
+
+	private static final class Sub extends Binary {
+
+		Sub(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.left.execute(frame) - this.right.execute(frame);
+		}
+
+	}
+
+	private static final class Mul extends Binary {
+
+		Mul(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.left.execute(frame) * this.right.execute(frame);
+		}
+
+	}
+
+	private static final class Div extends Binary {
+
+		Div(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.left.execute(frame) / this.right.execute(frame);
+		}
+
+	}
+
+	private static final class AddConstant extends Unary {
+
+		AddConstant(Expr operand, int k) {
+			super(operand, k);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.operand.execute(frame) + this.k;
+		}
+
+	}
+
+	private static final class MulConstant extends Unary {
+
+		MulConstant(Expr operand, int k) {
+			super(operand, k);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.operand.execute(frame) * this.k;
+		}
+
+	}
+
+	private static final class DivConstant extends Unary {
+
+		DivConstant(Expr operand, int k) {
+			super(operand, k);
+		}
+
+		@Override
+		int execute(int[] frame) {
+			return this.operand.execute(frame) / this.k;
+		}
+
+	}
+
+	/**
+	 * Relation: a boolean valued binary node
+	 */
+	private abstract static class Relation extends Binary {
+
+		Relation(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		final int execute(int[] frame) {
+			return this.test(frame) ? 1 : 0;
+		}
+
+		@Override
+		abstract boolean test(int[] frame);
+
+	}
+
+	private static final class Equal extends Relation {
+
+		Equal(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.left.execute(frame) == this.right.execute(frame);
+		}
+
+	}
+
+	private static final class NotEqual extends Relation {
+
+		NotEqual(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.left.execute(frame) != this.right.execute(frame);
+		}
+
+	}
+
+	private static final class Less extends Relation {
+
+		Less(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.left.execute(frame) < this.right.execute(frame);
+		}
+
+	}
+
+	private static final class LessEqual extends Relation {
+
+		LessEqual(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.left.execute(frame) <= this.right.execute(frame);
+		}
+
+	}
+
+	private static final class Greater extends Relation {
+
+		Greater(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.left.execute(frame) > this.right.execute(frame);
+		}
+
+	}
+
+	private static final class GreaterEqual extends Relation {
+
+		GreaterEqual(Expr left, Expr right) {
+			super(left, right);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.left.execute(frame) >= this.right.execute(frame);
+		}
+
+	}
+
+	/**
+	 * Relation with a constant right operand
+	 */
+	private abstract static class RelationConstant extends Unary {
+
+		RelationConstant(Expr operand, int k) {
+			super(operand, k);
+		}
+
+		@Override
+		final int execute(int[] frame) {
+			return this.test(frame) ? 1 : 0;
+		}
+
+		@Override
+		abstract boolean test(int[] frame);
+
+	}
+
+	private static final class EqualConstant extends RelationConstant {
+
+		EqualConstant(Expr operand, int k) {
+			super(operand, k);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.operand.execute(frame) == this.k;
+		}
+
+	}
+
+	private static final class NotEqualConstant extends RelationConstant {
+
+		NotEqualConstant(Expr operand, int k) {
+			super(operand, k);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.operand.execute(frame) != this.k;
+		}
+
+	}
+
+	private static final class LessConstant extends RelationConstant {
+
+		LessConstant(Expr operand, int k) {
+			super(operand, k);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.operand.execute(frame) < this.k;
+		}
+
+	}
+
+	private static final class LessEqualConstant extends RelationConstant {
+
+		LessEqualConstant(Expr operand, int k) {
+			super(operand, k);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.operand.execute(frame) <= this.k;
+		}
+
+	}
+
+	private static final class GreaterConstant extends RelationConstant {
+
+		GreaterConstant(Expr operand, int k) {
+			super(operand, k);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.operand.execute(frame) > this.k;
+		}
+
+	}
+
+	private static final class GreaterEqualConstant extends RelationConstant {
+
+		GreaterEqualConstant(Expr operand, int k) {
+			super(operand, k);
+		}
+
+		@Override
+		boolean test(int[] frame) {
+			return this.operand.execute(frame) >= this.k;
+		}
+
+	}
+
+}
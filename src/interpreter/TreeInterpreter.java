@@ -0,0 +1,277 @@
+package interpreter;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+
+import util.AST.Aexp;
+import util.AST.AssignCmd;
+import util.AST.Bexp;
+import util.AST.BooleanFactor;
+import util.AST.BreakCmd;
+import util.AST.CallCmd;
+import util.AST.CallFactor;
+import util.AST.Cmd;
+import util.AST.ContinueCmd;
+import util.AST.Expression;
+import util.AST.FuncDec;
+import util.AST.IfCmd;
+import util.AST.NumberFactor;
+import util.AST.Operator;
+import util.AST.ProcDec;
+import util.AST.Program;
+import util.AST.SubprogramDec;
+import util.AST.Term;
+import util.AST.Type;
+import util.AST.VarDec;
+import util.AST.VariableFactor;
+import util.AST.Visitor;
+import util.AST.WhileCmd;
+import util.AST.WriteCmd;
+
+/**
+ * Tree walking interpreter
+ * Runs the program straight from the AST: values are boxed Integer and
+ * Boolean objects and variables are looked up by name in hash maps on every
+ * access. It is the reference the register machine is measured against
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class TreeInterpreter implements Visitor {
+
+	// What a command asks the enclosing commands to do
+	private static final Object BREAK = new Object();
+	private static final Object CONTINUE = new Object();
+
+	// Where write prints
+	private PrintStream out;
+	// Global variables, local variables of the running subprogram and subprograms
+	private HashMap<String, Object> globals = new HashMap<String, Object>();
+	private HashMap<String, Object> locals = new HashMap<String, Object>();
+	private HashMap<String, SubprogramDec> subprograms = new HashMap<String, SubprogramDec>();
+
+	/**
+	 * Default constructor
+	 * @param out - where write prints
+	 */
+	public TreeInterpreter(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Runs a program
+	 * @param program
+	 */
+	public void run(Program program) {
+		try {
+			program.visit(this, null);
+		} catch (ArithmeticException e) {
+			throw new RuntimeException("Runtime error: division by zero");
+		}
+	}
+
+	/**
+	 * Returns the initial value of a type
+	 * @param type
+	 * @return
+	 */
+	private static Object initial(Type type) {
+		return type == Type.BOOLEAN ? (Object) Boolean.FALSE : (Object) Integer.valueOf(0);
+	}
+
+	/**
+	 * Runs commands until one of them breaks or continues a loop
+	 * @param commands
+	 * @return BREAK, CONTINUE or null
+	 */
+	private Object execute(Cmd[] commands) {
+		for (Cmd cmd : commands) {
+			Object jump = cmd.visit(this, null);
+			if ( jump != null ) {
+				return jump;
+			}
+		}
+		return null;
+	}
+
+	public Object visitProgram(Program program, Object arg) {
+		for (VarDec variable : program.getVariables()) {
+			variable.visit(this, this.globals);
+		}
+		for (FuncDec function : program.getFunctions()) {
+			this.subprograms.put(function.getName(), function);
+		}
+		for (ProcDec procedure : program.getProcedures()) {
+			this.subprograms.put(procedure.getName(), procedure);
+		}
+		this.execute(program.getCommands());
+		return null;
+	}
+
+	public Object visitVarDec(VarDec varDec, Object arg) {
+		@SuppressWarnings("unchecked")
+		HashMap<String, Object> variables = (HashMap<String, Object>) arg;
+		for (String name : varDec.getNames()) {
+			variables.put(name, initial(varDec.getType()));
+		}
+		return null;
+	}
+
+	public Object visitFuncDec(FuncDec funcDec, Object arg) {
+		this.locals.put(funcDec.getName(), initial(funcDec.getReturnType()));
+		this.execute(funcDec.getCommands());
+		return this.locals.get(funcDec.getName());
+	}
+
+	public Object visitProcDec(ProcDec procDec, Object arg) {
+		this.execute(procDec.getCommands());
+		return null;
+	}
+
+	public Object visitAssignCmd(AssignCmd cmd, Object arg) {
+		Object value = cmd.getValue().visit(this, null);
+		if ( this.locals.containsKey(cmd.getName()) ) {
+			this.locals.put(cmd.getName(), value);
+		} else if ( this.globals.containsKey(cmd.getName()) ) {
+			this.globals.put(cmd.getName(), value);
+		} else {
+			throw new RuntimeException("Undeclared variable " + cmd.getName());
+		}
+		return null;
+	}
+
+	public Object visitCallCmd(CallCmd cmd, Object arg) {
+		this.call(cmd.getName(), cmd.getArguments());
+		return null;
+	}
+
+	/**
+	 * Calls a subprogram in a new set of local variables
+	 * @param name
+	 * @param arguments
+	 * @return the function result (null for procedures)
+	 */
+	private Object call(String name, Expression[] arguments) {
+		SubprogramDec subprogram = this.subprograms.get(name);
+		if ( subprogram == null ) {
+			throw new RuntimeException("Undeclared subprogram " + name);
+		}
+		HashMap<String, Object> frame = new HashMap<String, Object>();
+		int i = 0;
+		for (VarDec parameter : subprogram.getParameters()) {
+			for (String parameterName : parameter.getNames()) {
+				frame.put(parameterName, arguments[i++].visit(this, null));
+			}
+		}
+		for (VarDec variable : subprogram.getVariables()) {
+			variable.visit(this, frame);
+		}
+		HashMap<String, Object> caller = this.locals;
+		this.locals = frame;
+		try {
+			return subprogram.visit(this, null);
+		} finally {
+			this.locals = caller;
+		}
+	}
+
+	public Object visitIfCmd(IfCmd cmd, Object arg) {
+		if ( (Boolean) cmd.getCondition().visit(this, null) ) {
+			return this.execute(cmd.getThenCommands());
+		} else if ( cmd.getElseCommands() != null ) {
+			return this.execute(cmd.getElseCommands());
+		}
+		return null;
+	}
+
+	public Object visitWhileCmd(WhileCmd cmd, Object arg) {
+		while ( (Boolean) cmd.getCondition().visit(this, null) ) {
+			if ( this.execute(cmd.getCommands()) == BREAK ) {
+				break;
+			}
+		}
+		return null;
+	}
+
+	public Object visitWriteCmd(WriteCmd cmd, Object arg) {
+		this.out.println(cmd.getValue().visit(this, null));
+		return null;
+	}
+
+	public Object visitBreakCmd(BreakCmd cmd, Object arg) {
+		return BREAK;
+	}
+
+	public Object visitContinueCmd(ContinueCmd cmd, Object arg) {
+		return CONTINUE;
+	}
+
+	public Object visitBexp(Bexp bexp, Object arg) {
+		Object left = bexp.getLeft().visit(this, null);
+		Object right = bexp.getRight().visit(this, null);
+		switch (bexp.getOperator()) {
+		case EQUALS: return left.equals(right);
+		case NOTEQUALS: return !left.equals(right);
+		default: break;
+		}
+		int a = left instanceof Boolean ? ((Boolean) left ? 1 : 0) : (Integer) left;
+		int b = right instanceof Boolean ? ((Boolean) right ? 1 : 0) : (Integer) right;
+		switch (bexp.getOperator()) {
+		case GT: return a > b;
+		case LT: return a < b;
+		case GE: return a >= b;
+		default: return a <= b;
+		}
+	}
+
+	/**
+	 * Evaluates operands[0] operators[0] operands[1] ... (left to right)
+	 * @param operands
+	 * @param operators
+	 * @return
+	 */
+	private Object evaluate(Expression[] operands, Operator[] operators) {
+		int value = (Integer) operands[0].visit(this, null);
+		for (int i = 1; i < operands.length; i++) {
+			int right = (Integer) operands[i].visit(this, null);
+			switch (operators[i - 1]) {
+			case ADD: value += right; break;
+			case SUB: value -= right; break;
+			case MUL: value *= right; break;
+			default: value /= right; break;
+			}
+		}
+		return value;
+	}
+
+	public Object visitAexp(Aexp aexp, Object arg) {
+		return this.evaluate(aexp.getOperands(), aexp.getOperators());
+	}
+
+	public Object visitTerm(Term term, Object arg) {
+		return this.evaluate(term.getOperands(), term.getOperators());
+	}
+
+	public Object visitVariableFactor(VariableFactor factor, Object arg) {
+		Object value = this.locals.get(factor.getName());
+		if ( value == null ) {
+			value = this.globals.get(factor.getName());
+		}
+		if ( value == null ) {
+			throw new RuntimeException("Undeclared variable " + factor.getName());
+		}
+		return value;
+	}
+
+	public Object visitCallFactor(CallFactor factor, Object arg) {
+		return this.call(factor.getName(), factor.getArguments());
+	}
+
+	public Object visitNumberFactor(NumberFactor factor, Object arg) {
+		return factor.getValue();
+	}
+
+	public Object visitBooleanFactor(BooleanFactor factor, Object arg) {
+		return factor.getValue();
+	}
+
+}
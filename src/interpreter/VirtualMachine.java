@@ -0,0 +1,229 @@
+package interpreter;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Register virtual machine
+ * Runs register bytecode in a single dispatch loop. All frames share one
+ * int[] register file (a callee frame starts right after its caller's, the
+ * main program frame, holding the globals, at 0), so integer and boolean
+ * values are never boxed
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class VirtualMachine {
+
+	// Maximum number of nested calls
+	public static final int MAX_DEPTH = 1 << 20;
+
+	// The program
+	private Bytecode bytecode;
+
+	/**
+	 * Default constructor
+	 * @param bytecode
+	 */
+	public VirtualMachine(Bytecode bytecode) {
+		this.bytecode = bytecode;
+	}
+
+	/**
+	 * Runs the program
+	 * @param out - where write prints
+	 */
+	public void run(PrintStream out) {
+		final int[] code = this.bytecode.code;
+		final int[] entries = this.bytecode.entries;
+		final int[] parameters = this.bytecode.parameters;
+		final int[] frameSizes = this.bytecode.frameSizes;
+		int[] r = new int[Math.max(256, frameSizes[0])];
+		// Saved caller state, four ints per call: return pc, base, result register, frame size
+		int[] calls = new int[64];
+		int depth = 0;
+		int base = 0, frame = frameSizes[0], pc = entries[0];
+
+		try {
+			for (;;) {
+				switch (code[pc]) {
+				case Opcodes.CONST:
+					r[base + code[pc + 1]] = code[pc + 2];
+					pc += 3;
+					break;
+				case Opcodes.MOVE:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]];
+					pc += 3;
+					break;
+				case Opcodes.GLOAD:
+					r[base + code[pc + 1]] = r[code[pc + 2]];
+					pc += 3;
+					break;
+				case Opcodes.GSTORE:
+					r[code[pc + 1]] = r[base + code[pc + 2]];
+					pc += 3;
+					break;
+				case Opcodes.ADD:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] + r[base + code[pc + 3]];
+					pc += 4;
+					break;
+				case Opcodes.SUB:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] - r[base + code[pc + 3]];
+					pc += 4;
+					break;
+				case Opcodes.MUL:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] * r[base + code[pc + 3]];
+					pc += 4;
+					break;
+				case Opcodes.DIV:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] / r[base + code[pc + 3]];
+					pc += 4;
+					break;
+				case Opcodes.ADDK:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] + code[pc + 3];
+					pc += 4;
+					break;
+				case Opcodes.SUBK:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] - code[pc + 3];
+					pc += 4;
+					break;
+				case Opcodes.MULK:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] * code[pc + 3];
+					pc += 4;
+					break;
+				case Opcodes.DIVK:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] / code[pc + 3];
+					pc += 4;
+					break;
+				case Opcodes.EQ:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] == r[base + code[pc + 3]] ? 1 : 0;
+					pc += 4;
+					break;
+				case Opcodes.NE:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] != r[base + code[pc + 3]] ? 1 : 0;
+					pc += 4;
+					break;
+				case Opcodes.LT:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] < r[base + code[pc + 3]] ? 1 : 0;
+					pc += 4;
+					break;
+				case Opcodes.LE:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] <= r[base + code[pc + 3]] ? 1 : 0;
+					pc += 4;
+					break;
+				case Opcodes.GT:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] > r[base + code[pc + 3]] ? 1 : 0;
+					pc += 4;
+					break;
+				case Opcodes.GE:
+					r[base + code[pc + 1]] = r[base + code[pc + 2]] >= r[base + code[pc + 3]] ? 1 : 0;
+					pc += 4;
+					break;
+				case Opcodes.JUMP:
+					pc = code[pc + 1];
+					break;
+				case Opcodes.JZ:
+					pc = r[base + code[pc + 1]] == 0 ? code[pc + 2] : pc + 3;
+					break;
+				case Opcodes.JNZ:
+					pc = r[base + code[pc + 1]] != 0 ? code[pc + 2] : pc + 3;
+					break;
+				case Opcodes.JEQ:
+					pc = r[base + code[pc + 1]] == r[base + code[pc + 2]] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JNE:
+					pc = r[base + code[pc + 1]] != r[base + code[pc + 2]] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JLT:
+					pc = r[base + code[pc + 1]] < r[base + code[pc + 2]] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JLE:
+					pc = r[base + code[pc + 1]] <= r[base + code[pc + 2]] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JGT:
+					pc = r[base + code[pc + 1]] > r[base + code[pc + 2]] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JGE:
+					pc = r[base + code[pc + 1]] >= r[base + code[pc + 2]] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JEQK:
+					pc = r[base + code[pc + 1]] == code[pc + 2] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JNEK:
+					pc = r[base + code[pc + 1]] != code[pc + 2] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JLTK:
+					pc = r[base + code[pc + 1]] < code[pc + 2] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JLEK:
+					pc = r[base + code[pc + 1]] <= code[pc + 2] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JGTK:
+					pc = r[base + code[pc + 1]] > code[pc + 2] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.JGEK:
+					pc = r[base + code[pc + 1]] >= code[pc + 2] ? code[pc + 3] : pc + 4;
+					break;
+				case Opcodes.CALL: {
+					int subprogram = code[pc + 2];
+					int callee = base + frame;
+					int calleeFrame = frameSizes[subprogram];
+					if ( depth == calls.length ) {
+						if ( depth == 4 * MAX_DEPTH ) {
+							throw new RuntimeException("Runtime error: too many nested calls");
+						}
+						calls = Arrays.copyOf(calls, depth * 2);
+					}
+					if ( callee + calleeFrame > r.length ) {
+						r = Arrays.copyOf(r, Math.max(r.length * 2, callee + calleeFrame));
+					}
+					// Copies the arguments and clears the local variables
+					int first = base + code[pc + 3];
+					int count = parameters[subprogram];
+					System.arraycopy(r, first, r, callee, count);
+					Arrays.fill(r, callee + count, callee + calleeFrame, 0);
+					calls[depth] = pc + 5;
+					calls[depth + 1] = base;
+					calls[depth + 2] = code[pc + 1];
+					calls[depth + 3] = frame;
+					depth += 4;
+					base = callee;
+					frame = calleeFrame;
+					pc = entries[subprogram];
+					break;
+				}
+				case Opcodes.RET: {
+					int value = r[base + code[pc + 1]];
+					depth -= 4;
+					pc = calls[depth];
+					base = calls[depth + 1];
+					r[base + calls[depth + 2]] = value;
+					frame = calls[depth + 3];
+					break;
+				}
+				case Opcodes.RETURN:
+					if ( depth == 0 ) {
+						return;
+					}
+					depth -= 4;
+					pc = calls[depth];
+					base = calls[depth + 1];
+					frame = calls[depth + 3];
+					break;
+				case Opcodes.PRINTI:
+					out.println(r[base + code[pc + 1]]);
+					pc += 2;
+					break;
+				case Opcodes.PRINTB:
+					out.println(r[base + code[pc + 1]] != 0);
+					pc += 2;
+					break;
+				default:
+					throw new RuntimeException("Invalid opcode " + code[pc] + " at " + pc);
+				}
+			}
+		} catch (ArithmeticException e) {
+			throw new RuntimeException("Runtime error: division by zero");
+		}
+	}
+
+}
@@ -0,0 +1,297 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Basic block
+ * Instructions run in order, phis first; the last one is the terminator,
+ * which names the successors. Phi operands follow the order of the
+ * predecessors. Removed instructions leave the list when it is next asked
+ * for, so a pass may remove instructions while it walks a block
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Block {
+
+	private static final Block[] NONE = new Block[0];
+
+	// The function the block belongs to
+	private Function function;
+	// Unique number inside its function
+	private int id;
+	// The instructions (and whether removed ones are still in the list)
+	private ArrayList<Instruction> instructions = new ArrayList<Instruction>();
+	private boolean removed;
+	// Control flow edges
+	private List<Block> predecessors = new ArrayList<Block>(2);
+	private Block[] successors = NONE;
+
+	/**
+	 * Default constructor
+	 * @param function
+	 * @param id
+	 */
+	Block(Function function, int id) {
+		this.function = function;
+		this.id = id;
+	}
+
+	public Function getFunction() {
+		return this.function;
+	}
+
+	public int getId() {
+		return this.id;
+	}
+
+	/**
+	 * Returns the instructions (the list may be walked while instructions are
+	 * removed: they stay in it, outside the block, until the next call)
+	 * @return
+	 */
+	public List<Instruction> getInstructions() {
+		if ( this.removed ) {
+			this.instructions.removeIf(instruction -> instruction.getBlock() != this);
+			this.removed = false;
+		}
+		return this.instructions;
+	}
+
+	public List<Block> getPredecessors() {
+		return this.predecessors;
+	}
+
+	public Block[] getSuccessors() {
+		return this.successors;
+	}
+
+	/**
+	 * Returns the terminator (null while the block is open)
+	 * @return
+	 */
+	public Instruction getTerminator() {
+		List<Instruction> instructions = this.getInstructions();
+		if ( instructions.isEmpty() ) {
+			return null;
+		}
+		Instruction last = instructions.get(instructions.size() - 1);
+		return last.isTerminator() ? last : null;
+	}
+
+	/**
+	 * Appends an instruction
+	 * @param instruction
+	 * @return the instruction
+	 */
+	public Instruction append(Instruction instruction) {
+		instruction.setBlock(this);
+		instruction.setId(this.function.nextId());
+		this.instructions.add(instruction);
+		return instruction;
+	}
+
+	/**
+	 * Inserts an instruction at a position
+	 * @param index
+	 * @param instruction
+	 * @return the instruction
+	 */
+	public Instruction insert(int index, Instruction instruction) {
+		this.getInstructions();
+		instruction.setBlock(this);
+		instruction.setId(this.function.nextId());
+		this.instructions.add(index, instruction);
+		return instruction;
+	}
+
+	/**
+	 * Inserts an instruction after the phis
+	 * @param instruction
+	 * @return the instruction
+	 */
+	public Instruction insertAfterPhis(Instruction instruction) {
+		List<Instruction> instructions = this.getInstructions();
+		int index = 0;
+		while (index < instructions.size() && instructions.get(index).getOp() == Instruction.PHI) {
+			index++;
+		}
+		return this.insert(index, instruction);
+	}
+
+	/**
+	 * Inserts an instruction before the terminator
+	 * @param instruction
+	 * @return the instruction
+	 */
+	public Instruction insertBeforeTerminator(Instruction instruction) {
+		List<Instruction> instructions = this.getInstructions();
+		return this.insert(this.getTerminator() == null ? instructions.size() : instructions.size() - 1, instruction);
+	}
+
+	/**
+	 * Moves an instruction of another block before the terminator of this one
+	 * @param instruction
+	 */
+	public void moveBeforeTerminator(Instruction instruction) {
+		instruction.getBlock().remove(instruction);
+		List<Instruction> instructions = this.getInstructions();
+		instruction.setBlock(this);
+		instructions.add(this.getTerminator() == null ? instructions.size() : instructions.size() - 1, instruction);
+	}
+
+	/**
+	 * Removes an instruction
+	 * @param instruction
+	 */
+	void remove(Instruction instruction) {
+		instruction.setBlock(null);
+		this.removed = true;
+	}
+
+	/**
+	 * Ends the block with a jump
+	 * @param target
+	 */
+	public void jump(Block target) {
+		this.append(new Instruction(Instruction.JUMP, 0));
+		this.successors = new Block[] { target };
+		target.predecessors.add(this);
+	}
+
+	/**
+	 * Ends the block with a conditional branch
+	 * @param condition
+	 * @param whenTrue
+	 * @param whenFalse
+	 */
+	public void branch(Instruction condition, Block whenTrue, Block whenFalse) {
+		this.append(new Instruction(Instruction.BRANCH, 0, condition));
+		this.successors = new Block[] { whenTrue, whenFalse };
+		whenTrue.predecessors.add(this);
+		whenFalse.predecessors.add(this);
+	}
+
+	/**
+	 * Ends the block with a return
+	 * @param value - the function result (null for a procedure or the main program)
+	 */
+	public void exit(Instruction value) {
+		if ( value != null ) {
+			this.append(new Instruction(Instruction.RET, 0, value));
+		} else {
+			this.append(new Instruction(Instruction.RETURN, 0));
+		}
+	}
+
+	/**
+	 * Verifies if the block has a terminator
+	 * @return
+	 */
+	public boolean isTerminated() {
+		return this.getTerminator() != null;
+	}
+
+	/**
+	 * Removes the edge to a successor (and the matching phi operands there)
+	 * @param index - the successor number
+	 */
+	public void removeSuccessor(int index) {
+		Block successor = this.successors[index];
+		successor.removePredecessor(successor.predecessors.indexOf(this));
+		Block[] successors = new Block[this.successors.length - 1];
+		for (int i = 0, j = 0; i < this.successors.length; i++) {
+			if ( i != index ) {
+				successors[j++] = this.successors[i];
+			}
+		}
+		this.successors = successors;
+	}
+
+	/**
+	 * Removes an incoming edge and the matching phi operands
+	 * @param index - the predecessor number
+	 */
+	private void removePredecessor(int index) {
+		this.predecessors.remove(index);
+		for (Instruction instruction : this.getInstructions()) {
+			if ( instruction.getOp() != Instruction.PHI ) {
+				break;
+			}
+			Instruction[] operands = instruction.getOperands();
+			Instruction[] kept = new Instruction[operands.length - 1];
+			System.arraycopy(operands, 0, kept, 0, index);
+			System.arraycopy(operands, index + 1, kept, index, kept.length - index);
+			instruction.setOperands(kept);
+		}
+	}
+
+	/**
+	 * Puts a block on the edge to a successor
+	 * @param index - the successor number
+	 * @return the new block, which jumps to the successor
+	 */
+	public Block splitEdge(int index) {
+		Block successor = this.successors[index];
+		Block block = this.function.newBlock();
+		this.successors[index] = block;
+		block.predecessors.add(this);
+		block.append(new Instruction(Instruction.JUMP, 0));
+		block.successors = new Block[] { successor };
+		successor.predecessors.set(successor.predecessors.indexOf(this), block);
+		return block;
+	}
+
+	/**
+	 * Moves the instructions after one of this block, and the successors, to
+	 * a new block, which takes the place of this one in the predecessors of
+	 * the successors; this block is left open
+	 * @param instruction
+	 * @return the new block (outside the layout)
+	 */
+	public Block splitAfter(Instruction instruction) {
+		List<Instruction> instructions = this.getInstructions();
+		List<Instruction> tail = instructions.subList(instructions.indexOf(instruction) + 1, instructions.size());
+		Block block = this.function.newBlock();
+		for (Instruction moved : tail) {
+			moved.setBlock(block);
+			block.instructions.add(moved);
+		}
+		tail.clear();
+		block.successors = this.successors;
+		this.successors = NONE;
+		for (Block successor : block.successors) {
+			Collections.replaceAll(successor.predecessors, this, block);
+		}
+		return block;
+	}
+
+	/**
+	 * Sets the successors named by the terminator (the predecessors of the
+	 * successors are left to the caller, which keeps their phi order)
+	 * @param successors
+	 */
+	void setSuccessors(Block... successors) {
+		this.successors = successors.length == 0 ? NONE : successors;
+	}
+
+	/**
+	 * Returns the block listing
+	 */
+	public String toString() {
+		StringBuffer str = new StringBuffer("b" + this.id + ":");
+		if ( !this.predecessors.isEmpty() ) {
+			str.append("  ; from");
+			for (Block predecessor : this.predecessors) {
+				str.append(" b").append(predecessor.id);
+			}
+		}
+		str.append('\n');
+		for (Instruction instruction : this.getInstructions()) {
+			str.append("  ").append(instruction).append('\n');
+		}
+		return str.toString();
+	}
+
+}
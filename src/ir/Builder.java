@@ -0,0 +1,448 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import util.AST.Aexp;
+import util.AST.AssignCmd;
+import util.AST.Bexp;
+import util.AST.BooleanFactor;
+import util.AST.BreakCmd;
+import util.AST.CallCmd;
+import util.AST.CallFactor;
+import util.AST.Cmd;
+import util.AST.ContinueCmd;
+import util.AST.Expression;
+import util.AST.FuncDec;
+import util.AST.IfCmd;
+import util.AST.NumberFactor;
+import util.AST.Operator;
+import util.AST.ProcDec;
+import util.AST.Program;
+import util.AST.SubprogramDec;
+import util.AST.Term;
+import util.AST.Type;
+import util.AST.VarDec;
+import util.AST.VariableFactor;
+import util.AST.Visitor;
+import util.AST.WhileCmd;
+import util.AST.WriteCmd;
+import util.symbolsTable.Attribute;
+
+/**
+ * IR builder
+ * Lowers every body of a checked AST into basic blocks and builds SSA form
+ * on the way (Braun et al., "Simple and Efficient Construction of Static
+ * Single Assignment Form"): each block remembers the value each variable
+ * holds at its end and a read looks backwards through the predecessors,
+ * placing a phi where paths meet; a block whose predecessors are not all
+ * known yet (a loop test) gets phis to complete once it is sealed.
+ * Parameters, local variables and the function result are SSA variables
+ * (their checker slots number them); globals stay in memory, because any
+ * call may read or change them. A variable read before any assignment is 0.
+ * A while tests its condition after the body in the layout, so each
+ * iteration runs a single jump. Expression visits return the instruction
+ * holding the value
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Builder implements Visitor {
+
+	// The function being built and the block being filled
+	private Function function;
+	private Block current;
+	// Value of each variable at the end of each block (indexed by block number)
+	private List<Instruction[]> definitions = new ArrayList<Instruction[]>();
+	// Blocks whose predecessors are all known
+	private BitSet sealed = new BitSet();
+	// Phis waiting for their operands until their block is sealed
+	private HashMap<Block, List<Instruction>> incompletePhis = new HashMap<Block, List<Instruction>>();
+	// Number of SSA variables of the function being built and number of globals
+	private int variableCount, globalCount;
+	// Tests (continue) and exits (break) of the enclosing loops
+	private ArrayDeque<Block[]> loops = new ArrayDeque<Block[]>();
+
+	/**
+	 * Builds the IR of a program
+	 * @param program - a program annotated by the checker
+	 * @return the main program, then the subprograms in declaration order
+	 * (functions, then procedures)
+	 */
+	public Function[] build(Program program) {
+		FuncDec[] functions = program.getFunctions();
+		ProcDec[] procedures = program.getProcedures();
+		Function[] result = new Function[1 + functions.length + procedures.length];
+		this.globalCount = 0;
+		for (VarDec variable : program.getVariables()) {
+			this.globalCount += variable.getNames().length;
+		}
+		result[0] = this.build(program.getName(), 0, null, program.getCommands());
+		for (int i = 0; i < functions.length; i++) {
+			result[1 + i] = this.build(functions[i].getName(), 1 + i, functions[i], functions[i].getCommands());
+		}
+		for (int i = 0; i < procedures.length; i++) {
+			int number = 1 + functions.length + i;
+			result[number] = this.build(procedures[i].getName(), number, procedures[i], procedures[i].getCommands());
+		}
+		return result;
+	}
+
+	/**
+	 * Builds the IR of one body
+	 * @param name
+	 * @param number
+	 * @param subprogram - null for the main program
+	 * @param commands
+	 * @return
+	 */
+	private Function build(String name, int number, SubprogramDec subprogram, Cmd[] commands) {
+		int parameterCount = subprogram == null ? 0 : subprogram.getParameterCount();
+		this.function = new Function(name, number, parameterCount, subprogram instanceof FuncDec, this.globalCount);
+		this.definitions.clear();
+		this.sealed.clear();
+		this.incompletePhis.clear();
+		// Parameters, local variables, then the function result
+		this.variableCount = subprogram == null ? 0 : parameterCount + subprogram.getVariableCount() + 1;
+		this.current = this.startBlock();
+		this.seal(this.current);
+		for (int i = 0; i < parameterCount; i++) {
+			this.write(i, this.current.append(new Instruction(Instruction.PARAM, i)));
+		}
+		this.lower(commands);
+		if ( !this.current.isTerminated() ) {
+			this.current.exit(this.function.returnsValue() ? this.read(this.variableCount - 1, this.current) : null);
+		}
+		return this.function;
+	}
+
+	/**
+	 * Creates a block and puts it next in the layout
+	 * @return
+	 */
+	private Block startBlock() {
+		Block block = this.function.newBlock();
+		this.function.getBlocks().add(block);
+		return block;
+	}
+
+	/**
+	 * Returns the values of the variables at the end of a block
+	 * @param block
+	 * @return
+	 */
+	private Instruction[] definitions(Block block) {
+		while (this.definitions.size() <= block.getId()) {
+			this.definitions.add(null);
+		}
+		Instruction[] definitions = this.definitions.get(block.getId());
+		if ( definitions == null ) {
+			definitions = new Instruction[this.variableCount];
+			this.definitions.set(block.getId(), definitions);
+		}
+		return definitions;
+	}
+
+	/**
+	 * Assigns a variable in a block
+	 * @param variable
+	 * @param value
+	 */
+	private void write(int variable, Instruction value) {
+		this.definitions(this.current)[variable] = value;
+	}
+
+	/**
+	 * Returns the value of a variable at the end of a block
+	 * @param variable
+	 * @param block
+	 * @return
+	 */
+	private Instruction read(int variable, Block block) {
+		// Chains of blocks with a single known predecessor are followed in a loop
+		List<Block> chain = null;
+		Instruction value = this.definitions(block)[variable];
+		while (value == null && this.sealed.get(block.getId()) && block.getPredecessors().size() == 1) {
+			if ( chain == null ) {
+				chain = new ArrayList<Block>();
+			}
+			chain.add(block);
+			block = block.getPredecessors().get(0);
+			value = this.definitions(block)[variable];
+		}
+		if ( value == null ) {
+			value = this.readFromPredecessors(variable, block);
+		}
+		if ( chain != null ) {
+			for (Block link : chain) {
+				this.definitions(link)[variable] = value;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Reads a variable not assigned in a block (that does not have a single
+	 * known predecessor)
+	 * @param variable
+	 * @param block
+	 * @return
+	 */
+	private Instruction readFromPredecessors(int variable, Block block) {
+		Instruction value;
+		if ( !this.sealed.get(block.getId()) ) {
+			value = block.insert(0, new Instruction(Instruction.PHI, variable));
+			this.incompletePhis.computeIfAbsent(block, b -> new ArrayList<Instruction>()).add(value);
+		} else if ( block.getPredecessors().isEmpty() ) {
+			// Never assigned
+			value = block.insertAfterPhis(new Instruction(Instruction.CONST, 0));
+		} else {
+			value = block.insert(0, new Instruction(Instruction.PHI, variable));
+			// Assigned before the operands are read, so a loop reaches this phi again
+			this.definitions(block)[variable] = value;
+			this.addPhiOperands(value, block);
+		}
+		this.definitions(block)[variable] = value;
+		return value;
+	}
+
+	/**
+	 * Reads the operands of a phi from the predecessors of its block
+	 * @param phi
+	 * @param block
+	 */
+	private void addPhiOperands(Instruction phi, Block block) {
+		List<Block> predecessors = block.getPredecessors();
+		Instruction[] operands = new Instruction[predecessors.size()];
+		for (int i = 0; i < operands.length; i++) {
+			operands[i] = this.read(phi.getConstant(), predecessors.get(i));
+		}
+		phi.setOperands(operands);
+	}
+
+	/**
+	 * Marks a block whose predecessors are all known and completes its phis
+	 * @param block
+	 */
+	private void seal(Block block) {
+		List<Instruction> phis = this.incompletePhis.remove(block);
+		if ( phis != null ) {
+			for (Instruction phi : phis) {
+				this.addPhiOperands(phi, block);
+			}
+		}
+		this.sealed.set(block.getId());
+	}
+
+	/**
+	 * Appends an instruction to the current block
+	 * @param op
+	 * @param constant
+	 * @param operands
+	 * @return
+	 */
+	private Instruction emit(int op, int constant, Instruction... operands) {
+		return this.current.append(new Instruction(op, constant, operands));
+	}
+
+	private Instruction lower(Expression expression) {
+		return (Instruction) expression.visit(this, null);
+	}
+
+	private Instruction[] lower(Expression[] expressions) {
+		Instruction[] values = new Instruction[expressions.length];
+		for (int i = 0; i < expressions.length; i++) {
+			values[i] = this.lower(expressions[i]);
+		}
+		return values;
+	}
+
+	private void lower(Cmd[] commands) {
+		for (Cmd cmd : commands) {
+			cmd.visit(this, null);
+		}
+	}
+
+	/**
+	 * Ends the current block with a jump and goes on in a block no edge
+	 * reaches (what follows a break or a continue never runs)
+	 * @param target
+	 */
+	private void jumpAway(Block target) {
+		this.current.jump(target);
+		this.current = this.startBlock();
+		this.seal(this.current);
+	}
+
+	public Object visitProgram(Program program, Object arg) {
+		// Bodies are built by build
+		return null;
+	}
+
+	public Object visitVarDec(VarDec varDec, Object arg) {
+		return null;
+	}
+
+	public Object visitFuncDec(FuncDec funcDec, Object arg) {
+		return null;
+	}
+
+	public Object visitProcDec(ProcDec procDec, Object arg) {
+		return null;
+	}
+
+	public Object visitAssignCmd(AssignCmd cmd, Object arg) {
+		Instruction value = this.lower(cmd.getValue());
+		if ( cmd.getValue() instanceof VariableFactor ) {
+			// x := y keeps the copy for copy propagation to remove
+			value = this.emit(Instruction.COPY, 0, value);
+		}
+		Attribute attribute = cmd.getAttribute();
+		if ( attribute.getScope() > 0 ) {
+			this.write(attribute.getSlot(), value);
+		} else {
+			this.emit(Instruction.GSTORE, attribute.getSlot(), value);
+		}
+		return null;
+	}
+
+	public Object visitCallCmd(CallCmd cmd, Object arg) {
+		this.emit(Instruction.CALL, cmd.getAttribute().getSlot(), this.lower(cmd.getArguments()));
+		return null;
+	}
+
+	public Object visitIfCmd(IfCmd cmd, Object arg) {
+		Instruction condition = this.lower(cmd.getCondition());
+		Block thenBlock = this.function.newBlock();
+		Block elseBlock = cmd.getElseCommands() == null ? null : this.function.newBlock();
+		Block end = this.function.newBlock();
+		this.current.branch(condition, thenBlock, elseBlock != null ? elseBlock : end);
+		this.function.getBlocks().add(thenBlock);
+		this.seal(thenBlock);
+		this.current = thenBlock;
+		this.lower(cmd.getThenCommands());
+		this.current.jump(end);
+		if ( elseBlock != null ) {
+			this.function.getBlocks().add(elseBlock);
+			this.seal(elseBlock);
+			this.current = elseBlock;
+			this.lower(cmd.getElseCommands());
+			this.current.jump(end);
+		}
+		this.function.getBlocks().add(end);
+		this.seal(end);
+		this.current = end;
+		return null;
+	}
+
+	public Object visitWhileCmd(WhileCmd cmd, Object arg) {
+		// Layout: body, test, exit; the test is built first (its phis wait
+		// for the back edges) and placed after the body
+		Block test = this.function.newBlock();
+		Block body = this.function.newBlock();
+		Block exit = this.function.newBlock();
+		this.current.jump(test);
+		this.current = test;
+		this.current.branch(this.lower(cmd.getCondition()), body, exit);
+		this.function.getBlocks().add(body);
+		this.seal(body);
+		this.current = body;
+		this.loops.push(new Block[] { test, exit });
+		this.lower(cmd.getCommands());
+		this.loops.pop();
+		this.current.jump(test);
+		this.function.getBlocks().add(test);
+		this.seal(test);
+		this.function.getBlocks().add(exit);
+		this.seal(exit);
+		this.current = exit;
+		return null;
+	}
+
+	public Object visitWriteCmd(WriteCmd cmd, Object arg) {
+		int op = cmd.getValue().getType() == Type.BOOLEAN ? Instruction.PRINTB : Instruction.PRINTI;
+		this.emit(op, 0, this.lower(cmd.getValue()));
+		return null;
+	}
+
+	public Object visitBreakCmd(BreakCmd cmd, Object arg) {
+		this.jumpAway(this.loops.peek()[1]);
+		return null;
+	}
+
+	public Object visitContinueCmd(ContinueCmd cmd, Object arg) {
+		this.jumpAway(this.loops.peek()[0]);
+		return null;
+	}
+
+	/**
+	 * Returns the IR operation of an AST operator
+	 * @param operator
+	 * @return
+	 */
+	private static int operation(Operator operator) {
+		switch (operator) {
+		case ADD: return Instruction.ADD;
+		case SUB: return Instruction.SUB;
+		case MUL: return Instruction.MUL;
+		case DIV: return Instruction.DIV;
+		case EQUALS: return Instruction.EQ;
+		case NOTEQUALS: return Instruction.NE;
+		case LT: return Instruction.LT;
+		case LE: return Instruction.LE;
+		case GT: return Instruction.GT;
+		default: return Instruction.GE;
+		}
+	}
+
+	public Object visitBexp(Bexp bexp, Object arg) {
+		Instruction left = this.lower(bexp.getLeft());
+		Instruction right = this.lower(bexp.getRight());
+		return this.emit(operation(bexp.getOperator()), 0, left, right);
+	}
+
+	/**
+	 * Lowers operands[0] operators[0] operands[1] ... (left to right)
+	 * @param operands
+	 * @param operators
+	 * @return
+	 */
+	private Instruction lowerOperation(Expression[] operands, Operator[] operators) {
+		Instruction value = this.lower(operands[0]);
+		for (int i = 1; i < operands.length; i++) {
+			value = this.emit(operation(operators[i - 1]), 0, value, this.lower(operands[i]));
+		}
+		return value;
+	}
+
+	public Object visitAexp(Aexp aexp, Object arg) {
+		return this.lowerOperation(aexp.getOperands(), aexp.getOperators());
+	}
+
+	public Object visitTerm(Term term, Object arg) {
+		return this.lowerOperation(term.getOperands(), term.getOperators());
+	}
+
+	public Object visitVariableFactor(VariableFactor factor, Object arg) {
+		Attribute attribute = factor.getAttribute();
+		if ( attribute.getScope() > 0 ) {
+			return this.read(attribute.getSlot(), this.current);
+		}
+		return this.emit(Instruction.GLOAD, attribute.getSlot());
+	}
+
+	public Object visitCallFactor(CallFactor factor, Object arg) {
+		return this.emit(Instruction.CALL, factor.getAttribute().getSlot(), this.lower(factor.getArguments()));
+	}
+
+	public Object visitNumberFactor(NumberFactor factor, Object arg) {
+		return this.emit(Instruction.CONST, factor.getValue());
+	}
+
+	public Object visitBooleanFactor(BooleanFactor factor, Object arg) {
+		return this.emit(Instruction.CONST, factor.getValue() ? 1 : 0);
+	}
+
+}
@@ -0,0 +1,210 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dominator tree
+ * Computed with the iterative algorithm of Cooper, Harvey and Kennedy ("A
+ * Simple, Fast Dominance Algorithm") over the reverse postorder of the
+ * blocks reached from the entry. Blocks no path reaches are left out
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Dominators {
+
+	// Blocks in reverse postorder
+	private List<Block> order = new ArrayList<Block>();
+	// Position in the reverse postorder (indexed by block number, -1 if not reached)
+	private int[] position;
+	// Immediate dominator (indexed by block number)
+	private Block[] idom;
+	// Children in the dominator tree (indexed by block number)
+	private List<List<Block>> children = new ArrayList<List<Block>>();
+	// Preorder and postorder numbers in the dominator tree (indexed by block number)
+	private int[] pre, post;
+
+	/**
+	 * Default constructor
+	 * @param function
+	 */
+	public Dominators(Function function) {
+		int count = function.getBlockCount();
+		this.position = new int[count];
+		this.idom = new Block[count];
+		this.pre = new int[count];
+		this.post = new int[count];
+		for (int i = 0; i < count; i++) {
+			this.position[i] = -1;
+			this.children.add(null);
+		}
+		this.number(function.getEntry());
+		Block entry = function.getEntry();
+		this.idom[entry.getId()] = entry;
+		for (boolean changed = true; changed; ) {
+			changed = false;
+			for (int i = 1; i < this.order.size(); i++) {
+				Block block = this.order.get(i);
+				Block dominator = null;
+				for (Block predecessor : block.getPredecessors()) {
+					if ( this.idom[predecessor.getId()] != null ) {
+						dominator = dominator == null ? predecessor : this.intersect(predecessor, dominator);
+					}
+				}
+				if ( this.idom[block.getId()] != dominator ) {
+					this.idom[block.getId()] = dominator;
+					changed = true;
+				}
+			}
+		}
+		for (int i = 1; i < this.order.size(); i++) {
+			Block block = this.order.get(i);
+			this.children(this.idom[block.getId()]).add(block);
+		}
+		this.numberTree(entry);
+	}
+
+	/**
+	 * Numbers the blocks in reverse postorder (without recursion: bodies
+	 * may be deeply nested)
+	 * @param entry
+	 */
+	private void number(Block entry) {
+		List<Block> postorder = new ArrayList<Block>();
+		List<Block> stack = new ArrayList<Block>();
+		List<Integer> next = new ArrayList<Integer>();
+		boolean[] visited = new boolean[this.position.length];
+		stack.add(entry);
+		next.add(0);
+		visited[entry.getId()] = true;
+		while (!stack.isEmpty()) {
+			int top = stack.size() - 1;
+			Block block = stack.get(top);
+			int i = next.get(top);
+			if ( i < block.getSuccessors().length ) {
+				next.set(top, i + 1);
+				Block successor = block.getSuccessors()[i];
+				if ( !visited[successor.getId()] ) {
+					visited[successor.getId()] = true;
+					stack.add(successor);
+					next.add(0);
+				}
+			} else {
+				postorder.add(block);
+				stack.remove(top);
+				next.remove(top);
+			}
+		}
+		for (int i = postorder.size() - 1; i >= 0; i--) {
+			this.position[postorder.get(i).getId()] = this.order.size();
+			this.order.add(postorder.get(i));
+		}
+	}
+
+	/**
+	 * Returns the nearest common dominator of two blocks
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private Block intersect(Block a, Block b) {
+		while (a != b) {
+			while (this.position[a.getId()] > this.position[b.getId()]) {
+				a = this.idom[a.getId()];
+			}
+			while (this.position[b.getId()] > this.position[a.getId()]) {
+				b = this.idom[b.getId()];
+			}
+		}
+		return a;
+	}
+
+	private List<Block> children(Block block) {
+		List<Block> children = this.children.get(block.getId());
+		if ( children == null ) {
+			children = new ArrayList<Block>(2);
+			this.children.set(block.getId(), children);
+		}
+		return children;
+	}
+
+	/**
+	 * Numbers the dominator tree in preorder and postorder
+	 * @param entry
+	 */
+	private void numberTree(Block entry) {
+		int counter = 0;
+		List<Block> stack = new ArrayList<Block>();
+		List<Integer> next = new ArrayList<Integer>();
+		stack.add(entry);
+		next.add(0);
+		this.pre[entry.getId()] = counter++;
+		while (!stack.isEmpty()) {
+			int top = stack.size() - 1;
+			Block block = stack.get(top);
+			int i = next.get(top);
+			List<Block> children = this.getChildren(block);
+			if ( i < children.size() ) {
+				next.set(top, i + 1);
+				Block child = children.get(i);
+				this.pre[child.getId()] = counter++;
+				stack.add(child);
+				next.add(0);
+			} else {
+				this.post[block.getId()] = counter++;
+				stack.remove(top);
+				next.remove(top);
+			}
+		}
+	}
+
+	/**
+	 * Returns the blocks reached from the entry, in reverse postorder (a
+	 * block comes after its dominators)
+	 * @return
+	 */
+	public List<Block> getOrder() {
+		return this.order;
+	}
+
+	/**
+	 * Verifies if a block is reached from the entry
+	 * @param block
+	 * @return
+	 */
+	public boolean isReachable(Block block) {
+		return this.position[block.getId()] >= 0;
+	}
+
+	/**
+	 * Returns the immediate dominator of a block (the entry for the entry)
+	 * @param block
+	 * @return
+	 */
+	public Block getImmediateDominator(Block block) {
+		return this.idom[block.getId()];
+	}
+
+	/**
+	 * Returns the blocks a block immediately dominates
+	 * @param block
+	 * @return
+	 */
+	public List<Block> getChildren(Block block) {
+		List<Block> children = this.children.get(block.getId());
+		return children != null ? children : new ArrayList<Block>(0);
+	}
+
+	/**
+	 * Verifies if every path from the entry to a block passes through another
+	 * (a block dominates itself)
+	 * @param dominator
+	 * @param block
+	 * @return
+	 */
+	public boolean dominates(Block dominator, Block block) {
+		return this.pre[dominator.getId()] <= this.pre[block.getId()] &&
+				this.post[block.getId()] <= this.post[dominator.getId()];
+	}
+
+}
@@ -0,0 +1,172 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IR of a subprogram (or of the main program)
+ * A control flow graph of basic blocks, kept in layout order: the first
+ * block is the entry and the code generators place the blocks in this
+ * order, so a jump to the next block costs nothing
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Function {
+
+	// Subprogram name and number (0 for the main program)
+	private String name;
+	private int number;
+	// Number of parameters
+	private int parameterCount;
+	// Whether it returns a value
+	private boolean returnsValue;
+	// Number of global variables of the program
+	private int globalCount;
+	// The blocks, in layout order
+	private List<Block> blocks = new ArrayList<Block>();
+	// Next instruction and block numbers
+	private int instructionCount, blockCount;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param number
+	 * @param parameterCount
+	 * @param returnsValue
+	 * @param globalCount - number of global variables of the program
+	 */
+	public Function(String name, int number, int parameterCount, boolean returnsValue, int globalCount) {
+		this.name = name;
+		this.number = number;
+		this.parameterCount = parameterCount;
+		this.returnsValue = returnsValue;
+		this.globalCount = globalCount;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public int getNumber() {
+		return this.number;
+	}
+
+	void setNumber(int number) {
+		this.number = number;
+	}
+
+	public int getParameterCount() {
+		return this.parameterCount;
+	}
+
+	public boolean returnsValue() {
+		return this.returnsValue;
+	}
+
+	public int getGlobalCount() {
+		return this.globalCount;
+	}
+
+	public List<Block> getBlocks() {
+		return this.blocks;
+	}
+
+	public Block getEntry() {
+		return this.blocks.get(0);
+	}
+
+	/**
+	 * Creates a block outside the layout
+	 * @return
+	 */
+	public Block newBlock() {
+		return new Block(this, this.blockCount++);
+	}
+
+	/**
+	 * Returns a fresh instruction number
+	 * @return
+	 */
+	int nextId() {
+		return this.instructionCount++;
+	}
+
+	/**
+	 * Returns the number of instruction numbers given so far (every
+	 * instruction number is lower)
+	 * @return
+	 */
+	public int getInstructionCount() {
+		return this.instructionCount;
+	}
+
+	/**
+	 * Returns the number of block numbers given so far
+	 * @return
+	 */
+	public int getBlockCount() {
+		return this.blockCount;
+	}
+
+	/**
+	 * Returns the number of instructions in the blocks
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (Block block : this.blocks) {
+			size += block.getInstructions().size();
+		}
+		return size;
+	}
+
+	/**
+	 * Points every operand at the instruction that stands for it now
+	 */
+	public void resolveOperands() {
+		for (Block block : this.blocks) {
+			for (Instruction instruction : block.getInstructions()) {
+				instruction.resolveOperands();
+			}
+		}
+	}
+
+	/**
+	 * Puts a block on every edge from a block with many successors to a block
+	 * with phis, so the copies that leave SSA form have a place of their own;
+	 * the new block goes right before its successor
+	 */
+	public void splitCriticalEdges() {
+		for (int i = 0; i < this.blocks.size(); i++) {
+			Block block = this.blocks.get(i);
+			Block[] successors = block.getSuccessors();
+			if ( successors.length < 2 ) {
+				continue;
+			}
+			for (int j = 0; j < successors.length; j++) {
+				Block successor = successors[j];
+				List<Instruction> instructions = successor.getInstructions();
+				if ( !instructions.isEmpty() && instructions.get(0).getOp() == Instruction.PHI ) {
+					Block split = block.splitEdge(j);
+					int index = this.blocks.indexOf(successor);
+					this.blocks.add(index, split);
+					if ( index <= i ) {
+						i++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the function listing
+	 */
+	public String toString() {
+		StringBuffer str = new StringBuffer(this.name + ": (" + this.parameterCount + " parameters)\n");
+		for (Block block : this.blocks) {
+			str.append(block);
+		}
+		return str.toString();
+	}
+
+}
@@ -0,0 +1,520 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IR inliner
+ * Builds the call graph of a program and works through it bottom up
+ * (callees before their callers, so a callee is inlined with the calls it
+ * inlined itself): a call to a small subprogram that is not recursive is
+ * replaced by a copy of its body, a call with constant arguments to a larger
+ * one calls a copy of it specialized for those constants (kept only when the
+ * constants make it smaller), and at the end the subprograms the main
+ * program no longer calls are removed, the others renumbered. Each function
+ * changed is optimized again right away, so the size of a callee, and the
+ * constants its callers pass, are those of its optimized code
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Inliner {
+
+	// Instructions a callee may have to be inlined (and to be specialized)
+	public static final int BUDGET = 40, SPECIALIZATION_BUDGET = 400;
+	// Instructions inlining may add to one function
+	public static final int GROWTH = 2000;
+	// Specialized copies of one subprogram (tried)
+	public static final int SPECIALIZATIONS = 4;
+
+	// The optimizer run over each function changed
+	private Optimizer optimizer;
+	// Instructions a callee may have to be inlined (callees called once: four times as many)
+	private int budget;
+	// The functions (the list grows with specialized copies)
+	private List<Function> functions;
+	// Call sites of each function, whether it is recursive, and its specialized copies
+	private int[] calls;
+	private boolean[] recursive;
+	private Map<String, Function> specializations = new HashMap<String, Function>();
+	private int[] copies;
+	// Calls inlined, calls specialized, and subprograms removed
+	private int inlined, specialized, removed;
+	// What was done, one line each
+	private List<String> report = new ArrayList<String>();
+
+	/**
+	 * Default constructor
+	 * @param optimizer - run over each function the inliner changes
+	 */
+	public Inliner(Optimizer optimizer) {
+		this(optimizer, BUDGET);
+	}
+
+	/**
+	 * Creates an inliner with another size budget
+	 * @param optimizer
+	 * @param budget - instructions a callee may have to be inlined
+	 */
+	public Inliner(Optimizer optimizer, int budget) {
+		this.optimizer = optimizer;
+		this.budget = budget;
+	}
+
+	/**
+	 * Inlines and specializes the calls of a program, and removes the
+	 * subprograms no longer called
+	 * @param functions - the main program, then the subprograms, numbered by position
+	 * @return the functions left, numbered by position
+	 */
+	public Function[] inline(Function[] functions) {
+		this.functions = new ArrayList<Function>(Arrays.asList(functions));
+		this.calls = new int[functions.length];
+		this.copies = new int[functions.length];
+		for (Function function : functions) {
+			for (Instruction call : calls(function)) {
+				this.calls[call.getConstant()]++;
+			}
+		}
+		List<Function> order = this.bottomUp();
+		for (Function function : order) {
+			this.inline(function);
+		}
+		return this.removeUncalled();
+	}
+
+	/**
+	 * Returns the call instructions of a function
+	 * @param function
+	 * @return
+	 */
+	private static List<Instruction> calls(Function function) {
+		List<Instruction> calls = new ArrayList<Instruction>();
+		for (Block block : function.getBlocks()) {
+			for (Instruction instruction : block.getInstructions()) {
+				if ( instruction.getOp() == Instruction.CALL ) {
+					calls.add(instruction);
+				}
+			}
+		}
+		return calls;
+	}
+
+	/**
+	 * Orders the functions the main program reaches callees first, finding
+	 * the recursive ones on the way: the strongly connected components of
+	 * the call graph (Tarjan) come out callees first
+	 * @return
+	 */
+	private List<Function> bottomUp() {
+		int count = this.functions.size();
+		int[][] callees = new int[count][];
+		for (int i = 0; i < count; i++) {
+			List<Instruction> calls = calls(this.functions.get(i));
+			callees[i] = new int[calls.size()];
+			for (int j = 0; j < calls.size(); j++) {
+				callees[i][j] = calls.get(j).getConstant();
+			}
+		}
+		this.recursive = new boolean[count];
+		int[] index = new int[count], low = new int[count];
+		Arrays.fill(index, -1);
+		boolean[] onStack = new boolean[count];
+		int[] stack = new int[count];
+		int top = 0, next = 0;
+		// Depth first search without recursion: the function and its next callee
+		int[] path = new int[count], edge = new int[count];
+		int depth = 0;
+		List<Function> order = new ArrayList<Function>();
+		path[0] = 0;
+		index[0] = low[0] = next++;
+		stack[top++] = 0;
+		onStack[0] = true;
+		while (depth >= 0) {
+			int v = path[depth];
+			if ( edge[depth] < callees[v].length ) {
+				int w = callees[v][edge[depth]++];
+				if ( w == v ) {
+					this.recursive[v] = true;
+				}
+				if ( index[w] < 0 ) {
+					index[w] = low[w] = next++;
+					stack[top++] = w;
+					onStack[w] = true;
+					path[++depth] = w;
+					edge[depth] = 0;
+				} else if ( onStack[w] ) {
+					low[v] = Math.min(low[v], index[w]);
+				}
+				continue;
+			}
+			if ( low[v] == index[v] ) {
+				int first = top;
+				do {
+					onStack[stack[--first]] = false;
+				} while (stack[first] != v);
+				for (int i = first; i < top; i++) {
+					this.recursive[stack[i]] |= top - first > 1;
+					order.add(this.functions.get(stack[i]));
+				}
+				top = first;
+			}
+			if ( --depth >= 0 ) {
+				low[path[depth]] = Math.min(low[path[depth]], low[v]);
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Inlines or specializes the calls of a function
+	 * @param function
+	 */
+	private void inline(Function function) {
+		int size = function.size();
+		boolean changed = false;
+		for (Instruction call : calls(function)) {
+			if ( call.getBlock() == null ) {
+				// Removed by the optimizer
+				continue;
+			}
+			int number = call.getConstant();
+			Function callee = this.functions.get(number);
+			int calleeSize = callee.size();
+			int budget = this.calls[number] == 1 ? this.budget * 4 : this.budget;
+			if ( callee != function && !this.isRecursive(number) && calleeSize <= budget
+					&& function.size() + calleeSize <= size + GROWTH && callee.getEntry().getPredecessors().isEmpty() ) {
+				this.inline(function, call, callee);
+				this.report.add("inlined " + callee.getName() + " into " + function.getName() +
+						" (" + calleeSize + " instructions)");
+				this.inlined++;
+				changed = true;
+			} else if ( callee != function && calleeSize <= SPECIALIZATION_BUDGET ) {
+				changed |= this.specialize(function, call, callee);
+			}
+		}
+		if ( changed ) {
+			this.optimizer.optimize(function);
+		}
+	}
+
+	private boolean isRecursive(int number) {
+		return number < this.recursive.length && this.recursive[number];
+	}
+
+	/**
+	 * Replaces a call by a copy of the callee body: the block of the call
+	 * jumps to the copy of the entry and the copies of the returns jump to
+	 * the rest of the block, where a phi joins the results
+	 * @param function
+	 * @param call
+	 * @param callee
+	 */
+	private void inline(Function function, Instruction call, Function callee) {
+		// An argument may be the result of a call inlined before
+		call.resolveOperands();
+		Block block = call.getBlock();
+		Block rest = block.splitAfter(call);
+		Map<Instruction, Instruction> values = new HashMap<Instruction, Instruction>();
+		Instruction[] arguments = call.getOperands();
+		List<Block> copy = this.copy(callee, function, values, arguments);
+		// The returns jump to the rest of the block
+		List<Instruction> results = new ArrayList<Instruction>();
+		for (Block returning : copy) {
+			Instruction terminator = returning.getTerminator();
+			if ( terminator.getOp() != Instruction.RET && terminator.getOp() != Instruction.RETURN ) {
+				continue;
+			}
+			if ( terminator.getOp() == Instruction.RET ) {
+				results.add(terminator.getOperand(0));
+			}
+			terminator.setOp(Instruction.JUMP);
+			terminator.setOperands();
+			returning.setSuccessors(rest);
+			rest.getPredecessors().add(returning);
+		}
+		Instruction result = null;
+		if ( callee.returnsValue() ) {
+			if ( results.isEmpty() ) {
+				// The callee never returns
+				result = rest.insert(0, new Instruction(Instruction.CONST, 0));
+			} else if ( results.size() == 1 ) {
+				result = results.get(0);
+			} else {
+				result = rest.insert(0, new Instruction(Instruction.PHI, 0, results.toArray(new Instruction[results.size()])));
+			}
+		}
+		call.replaceWith(result);
+		block.jump(copy.get(0));
+		// Layout: the copy, then the rest, right after the block
+		List<Block> blocks = function.getBlocks();
+		int index = blocks.indexOf(block) + 1;
+		blocks.addAll(index, copy);
+		blocks.add(index + copy.size(), rest);
+		// The calls of the copy are new call sites
+		this.calls[callee.getNumber()]--;
+		for (Block copied : copy) {
+			for (Instruction instruction : copied.getInstructions()) {
+				if ( instruction.getOp() == Instruction.CALL ) {
+					this.calls[instruction.getConstant()]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the blocks of a function into another one, keeping the order of
+	 * the predecessors (and so of the phi operands)
+	 * @param source
+	 * @param target
+	 * @param values - filled with the copy of each instruction
+	 * @param parameters - the value of each parameter (null: copies the
+	 * parameter instructions)
+	 * @return the copied blocks, in layout order (the entry first)
+	 */
+	private List<Block> copy(Function source, Function target, Map<Instruction, Instruction> values, Instruction[] parameters) {
+		Map<Block, Block> blocks = new HashMap<Block, Block>();
+		List<Block> copy = new ArrayList<Block>();
+		for (Block block : source.getBlocks()) {
+			Block copied = target.newBlock();
+			blocks.put(block, copied);
+			copy.add(copied);
+			for (Instruction instruction : block.getInstructions()) {
+				if ( instruction.getOp() == Instruction.PARAM && parameters != null ) {
+					values.put(instruction, parameters[instruction.getConstant()]);
+				} else {
+					values.put(instruction, copied.append(new Instruction(instruction.getOp(), instruction.getConstant())));
+				}
+			}
+		}
+		for (Block block : source.getBlocks()) {
+			Block copied = blocks.get(block);
+			for (Instruction instruction : block.getInstructions()) {
+				Instruction[] operands = instruction.getOperands();
+				if ( operands.length == 0 || values.get(instruction).getBlock() != copied ) {
+					continue;
+				}
+				Instruction[] mapped = new Instruction[operands.length];
+				for (int i = 0; i < operands.length; i++) {
+					mapped[i] = values.get(operands[i]);
+				}
+				values.get(instruction).setOperands(mapped);
+			}
+			Block[] successors = new Block[block.getSuccessors().length];
+			for (int i = 0; i < successors.length; i++) {
+				successors[i] = blocks.get(block.getSuccessors()[i]);
+			}
+			copied.setSuccessors(successors);
+			for (Block predecessor : block.getPredecessors()) {
+				copied.getPredecessors().add(blocks.get(predecessor));
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Makes a call with constant arguments call a copy of the callee with the
+	 * constants in place of those parameters, if they make it smaller
+	 * @param function
+	 * @param call
+	 * @param callee
+	 * @return whether the call changed
+	 */
+	private boolean specialize(Function function, Instruction call, Function callee) {
+		call.resolveOperands();
+		Instruction[] arguments = call.getOperands();
+		StringBuilder key = new StringBuilder(callee.getName()).append('(');
+		int constants = 0;
+		for (int i = 0; i < arguments.length; i++) {
+			if ( i > 0 ) {
+				key.append(", ");
+			}
+			if ( arguments[i].getOp() == Instruction.CONST ) {
+				key.append(arguments[i].getConstant());
+				constants++;
+			} else {
+				key.append('_');
+			}
+		}
+		key.append(')');
+		if ( constants == 0 || !folds(callee, arguments) ) {
+			return false;
+		}
+		Function copy = this.specializations.get(key.toString());
+		if ( copy == null ) {
+			if ( this.specializations.containsKey(key.toString()) || this.copies[callee.getNumber()] >= SPECIALIZATIONS ) {
+				return false;
+			}
+			// Copies that did not get smaller count too
+			this.copies[callee.getNumber()]++;
+			copy = this.specialize(callee, arguments, key.toString());
+			this.specializations.put(key.toString(), copy);
+			if ( copy == null ) {
+				return false;
+			}
+		}
+		Instruction[] kept = new Instruction[arguments.length - constants];
+		for (int i = 0, j = 0; i < arguments.length; i++) {
+			if ( arguments[i].getOp() != Instruction.CONST ) {
+				kept[j++] = arguments[i];
+			}
+		}
+		call.setConstant(copy.getNumber());
+		call.setOperands(kept);
+		this.calls[callee.getNumber()]--;
+		this.calls[copy.getNumber()]++;
+		this.report.add("specialized " + callee.getName() + " as " + key + " in " + function.getName());
+		this.specialized++;
+		return true;
+	}
+
+	/**
+	 * Verifies if a constant argument meets another constant in an operation
+	 * of the callee (the copy would fold it), before paying for the copy
+	 * @param callee
+	 * @param arguments
+	 * @return
+	 */
+	private static boolean folds(Function callee, Instruction[] arguments) {
+		for (Block block : callee.getBlocks()) {
+			for (Instruction instruction : block.getInstructions()) {
+				int op = instruction.getOp();
+				if ( !Instruction.isArithmetic(op) && !Instruction.isRelation(op) ) {
+					continue;
+				}
+				Instruction left = instruction.getOperand(0), right = instruction.getOperand(1);
+				if ( (isConstantParameter(left, arguments) && (right.getOp() == Instruction.CONST || isConstantParameter(right, arguments)))
+						|| (isConstantParameter(right, arguments) && left.getOp() == Instruction.CONST) ) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isConstantParameter(Instruction instruction, Instruction[] arguments) {
+		return instruction.getOp() == Instruction.PARAM && arguments[instruction.getConstant()].getOp() == Instruction.CONST;
+	}
+
+	/**
+	 * Copies a subprogram with constants in place of some parameters
+	 * @param callee
+	 * @param arguments - the arguments of a call (the constants are used)
+	 * @param name
+	 * @return the copy (null if it is not smaller than the subprogram)
+	 */
+	private Function specialize(Function callee, Instruction[] arguments, String name) {
+		int number = this.functions.size();
+		int parameters = 0;
+		for (Instruction argument : arguments) {
+			parameters += argument.getOp() == Instruction.CONST ? 0 : 1;
+		}
+		Function copy = new Function(name, number, parameters, callee.returnsValue(), callee.getGlobalCount());
+		Map<Instruction, Instruction> values = new HashMap<Instruction, Instruction>();
+		copy.getBlocks().addAll(this.copy(callee, copy, values, null));
+		// Constant parameters become constants, the others are numbered again
+		int[] renumbered = new int[arguments.length];
+		for (int i = 0, j = 0; i < arguments.length; i++) {
+			renumbered[i] = arguments[i].getOp() == Instruction.CONST ? -1 : j++;
+		}
+		for (Instruction instruction : copy.getEntry().getInstructions()) {
+			if ( instruction.getOp() != Instruction.PARAM ) {
+				continue;
+			}
+			int parameter = instruction.getConstant();
+			if ( renumbered[parameter] < 0 ) {
+				instruction.setOp(Instruction.CONST);
+				instruction.setConstant(arguments[parameter].getConstant());
+			} else {
+				instruction.setConstant(renumbered[parameter]);
+			}
+		}
+		this.optimizer.optimize(copy);
+		if ( copy.size() >= callee.size() ) {
+			return null;
+		}
+		this.functions.add(copy);
+		this.calls = Arrays.copyOf(this.calls, number + 1);
+		this.copies = Arrays.copyOf(this.copies, number + 1);
+		// The copy calls what the callee calls
+		for (Instruction instruction : calls(copy)) {
+			this.calls[instruction.getConstant()]++;
+		}
+		return copy;
+	}
+
+	/**
+	 * Removes the subprograms the main program no longer reaches and numbers
+	 * the others by position again
+	 * @return
+	 */
+	private Function[] removeUncalled() {
+		int count = this.functions.size();
+		boolean[] reached = new boolean[count];
+		List<Function> stack = new ArrayList<Function>();
+		stack.add(this.functions.get(0));
+		reached[0] = true;
+		while (!stack.isEmpty()) {
+			for (Instruction call : calls(stack.remove(stack.size() - 1))) {
+				if ( !reached[call.getConstant()] ) {
+					reached[call.getConstant()] = true;
+					stack.add(this.functions.get(call.getConstant()));
+				}
+			}
+		}
+		int[] numbers = new int[count];
+		List<Function> kept = new ArrayList<Function>();
+		for (int i = 0; i < count; i++) {
+			Function function = this.functions.get(i);
+			if ( reached[i] ) {
+				numbers[i] = kept.size();
+				kept.add(function);
+			} else {
+				this.report.add("removed " + function.getName() + " (not called)");
+				this.removed++;
+			}
+		}
+		for (Function function : kept) {
+			function.setNumber(numbers[function.getNumber()]);
+			for (Instruction call : calls(function)) {
+				call.setConstant(numbers[call.getConstant()]);
+			}
+		}
+		return kept.toArray(new Function[kept.size()]);
+	}
+
+	/**
+	 * Returns the number of calls inlined
+	 * @return
+	 */
+	public int getInlined() {
+		return this.inlined;
+	}
+
+	/**
+	 * Returns the number of calls changed to call a specialized copy
+	 * @return
+	 */
+	public int getSpecialized() {
+		return this.specialized;
+	}
+
+	/**
+	 * Returns the number of subprograms removed
+	 * @return
+	 */
+	public int getRemoved() {
+		return this.removed;
+	}
+
+	/**
+	 * Returns what was inlined, specialized and removed, one line each
+	 * @return
+	 */
+	public List<String> getReport() {
+		return this.report;
+	}
+
+}
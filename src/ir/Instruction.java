@@ -0,0 +1,302 @@
+package ir;
+
+/**
+ * IR instruction
+ * A three address instruction in SSA form: the instruction is also the value
+ * it defines, so operands point straight at their definitions. Arithmetic
+ * and relational operations are in the order of the register machine
+ * opcodes. Instructions replaced by an optimization forward to their
+ * replacement until the operands that still point at them are resolved
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Instruction {
+
+	// k (the constant)
+	public static final int CONST = 0;
+	// Parameter number k of the subprogram
+	public static final int PARAM = 1;
+	// One operand per predecessor of the block, in the same order
+	public static final int PHI = 2;
+	// The value of the operand
+	public static final int COPY = 3;
+	// Operand 0 op operand 1
+	public static final int ADD = 4;
+	public static final int SUB = 5;
+	public static final int MUL = 6;
+	public static final int DIV = 7;
+	// Operand 0 rel operand 1 (1 or 0)
+	public static final int EQ = 8;
+	public static final int NE = 9;
+	public static final int LT = 10;
+	public static final int LE = 11;
+	public static final int GT = 12;
+	public static final int GE = 13;
+	// Global variable k (globals live in memory: calls may read and change them)
+	public static final int GLOAD = 14;
+	// Global variable k := operand 0
+	public static final int GSTORE = 15;
+	// Subprogram k (operands: the arguments)
+	public static final int CALL = 16;
+	// Prints operand 0 as an integer or as a boolean
+	public static final int PRINTI = 17;
+	public static final int PRINTB = 18;
+	// Terminators: to the only successor; to successor 0 if operand 0 is
+	// not 0, else to successor 1; returns operand 0; returns nothing
+	public static final int JUMP = 19;
+	public static final int BRANCH = 20;
+	public static final int RET = 21;
+	public static final int RETURN = 22;
+
+	// Instruction names, indexed by operation
+	private static final String[] NAMES = {
+		"const", "param", "phi", "copy", "add", "sub", "mul", "div",
+		"eq", "ne", "lt", "le", "gt", "ge", "gload", "gstore", "call",
+		"printi", "printb", "jump", "branch", "ret", "return"
+	};
+
+	private static final Instruction[] NONE = new Instruction[0];
+
+	// The operation
+	private int op;
+	// Constant, parameter number, global slot or subprogram number
+	private int constant;
+	// The operands
+	private Instruction[] operands;
+	// The block the instruction is in (null once removed)
+	private Block block;
+	// Unique number inside its function (for listings and value tables)
+	private int id;
+	// The instruction that replaced this one (null if none)
+	private Instruction replacement;
+
+	/**
+	 * Default constructor
+	 * @param op
+	 * @param constant
+	 * @param operands
+	 */
+	public Instruction(int op, int constant, Instruction... operands) {
+		this.op = op;
+		this.constant = constant;
+		this.operands = operands.length == 0 ? NONE : operands;
+	}
+
+	/**
+	 * Verifies if an operation is arithmetic (add, sub, mul or div)
+	 * @param op
+	 * @return
+	 */
+	public static boolean isArithmetic(int op) {
+		return op >= ADD && op <= DIV;
+	}
+
+	/**
+	 * Verifies if an operation is relational
+	 * @param op
+	 * @return
+	 */
+	public static boolean isRelation(int op) {
+		return op >= EQ && op <= GE;
+	}
+
+	/**
+	 * Verifies if an operation does not depend on the order of its operands
+	 * @param op
+	 * @return
+	 */
+	public static boolean isCommutative(int op) {
+		return op == ADD || op == MUL || op == EQ || op == NE;
+	}
+
+	/**
+	 * Returns the relation that holds for swapped operands
+	 * @param op
+	 * @return
+	 */
+	public static int swap(int op) {
+		switch (op) {
+		case LT: return GT;
+		case LE: return GE;
+		case GT: return LT;
+		case GE: return LE;
+		default: return op;
+		}
+	}
+
+	/**
+	 * Returns the relation that holds when another one does not
+	 * @param op
+	 * @return
+	 */
+	public static int negate(int op) {
+		switch (op) {
+		case EQ: return NE;
+		case NE: return EQ;
+		case LT: return GE;
+		case LE: return GT;
+		case GT: return LE;
+		default: return LT;
+		}
+	}
+
+	/**
+	 * Computes an arithmetic or relational operation (integers wrap)
+	 * @param op
+	 * @param a
+	 * @param b - not 0 for a division
+	 * @return
+	 */
+	public static int evaluate(int op, int a, int b) {
+		switch (op) {
+		case ADD: return a + b;
+		case SUB: return a - b;
+		case MUL: return a * b;
+		case DIV: return a / b;
+		case EQ: return a == b ? 1 : 0;
+		case NE: return a != b ? 1 : 0;
+		case LT: return a < b ? 1 : 0;
+		case LE: return a <= b ? 1 : 0;
+		case GT: return a > b ? 1 : 0;
+		default: return a >= b ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Verifies if the instruction ends a block
+	 * @return
+	 */
+	public boolean isTerminator() {
+		return this.op >= JUMP;
+	}
+
+	/**
+	 * Verifies if the instruction only computes a value: removing it when
+	 * the value is not used, or computing it somewhere else, changes nothing.
+	 * A division may fail unless it divides by a constant other than 0
+	 * @return
+	 */
+	public boolean isPure() {
+		if ( this.op == DIV ) {
+			return this.operands[1].op == CONST && this.operands[1].constant != 0;
+		}
+		return this.op <= GE && this.op != PARAM && this.op != PHI;
+	}
+
+	/**
+	 * Verifies if the instruction is a constant with the given value
+	 * @param value
+	 * @return
+	 */
+	public boolean isConstant(int value) {
+		return this.op == CONST && this.constant == value;
+	}
+
+	/**
+	 * Follows the replacements of an instruction
+	 * @return the instruction that stands for this one now
+	 */
+	public Instruction resolve() {
+		Instruction instruction = this;
+		while (instruction.replacement != null) {
+			instruction = instruction.replacement;
+		}
+		// Shortens the chain for later lookups
+		Instruction step = this;
+		while (step.replacement != null && step.replacement != instruction) {
+			Instruction next = step.replacement;
+			step.replacement = instruction;
+			step = next;
+		}
+		return instruction;
+	}
+
+	/**
+	 * Replaces the instruction by another one (its uses are resolved later)
+	 * and removes it from its block
+	 * @param instruction
+	 */
+	public void replaceWith(Instruction instruction) {
+		this.replacement = instruction;
+		if ( this.block != null ) {
+			this.block.remove(this);
+		}
+	}
+
+	/**
+	 * Points every operand at the instruction that stands for it now
+	 */
+	public void resolveOperands() {
+		for (int i = 0; i < this.operands.length; i++) {
+			this.operands[i] = this.operands[i].resolve();
+		}
+	}
+
+	public int getOp() {
+		return this.op;
+	}
+
+	public void setOp(int op) {
+		this.op = op;
+	}
+
+	public int getConstant() {
+		return this.constant;
+	}
+
+	public void setConstant(int constant) {
+		this.constant = constant;
+	}
+
+	public Instruction[] getOperands() {
+		return this.operands;
+	}
+
+	public Instruction getOperand(int i) {
+		return this.operands[i];
+	}
+
+	public void setOperands(Instruction... operands) {
+		this.operands = operands.length == 0 ? NONE : operands;
+	}
+
+	public Block getBlock() {
+		return this.block;
+	}
+
+	void setBlock(Block block) {
+		this.block = block;
+	}
+
+	public int getId() {
+		return this.id;
+	}
+
+	void setId(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Returns the instruction listing
+	 */
+	public String toString() {
+		StringBuffer str = new StringBuffer();
+		if ( this.op < GSTORE || this.op == CALL ) {
+			str.append('v').append(this.id).append(" = ");
+		}
+		str.append(NAMES[this.op]);
+		if ( this.op == CONST || this.op == PARAM || this.op == GLOAD || this.op == GSTORE || this.op == CALL ) {
+			str.append(' ').append(this.constant);
+		}
+		for (Instruction operand : this.operands) {
+			str.append(" v").append(operand.id);
+		}
+		if ( this.op == JUMP || this.op == BRANCH ) {
+			for (Block successor : this.block.getSuccessors()) {
+				str.append(" b").append(successor.getId());
+			}
+		}
+		return str.toString();
+	}
+
+}
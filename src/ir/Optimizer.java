@@ -0,0 +1,467 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IR optimizer
+ * Runs the passes shared by every backend over a function in SSA form:
+ * removal of unreachable blocks, copy propagation (with the removal of
+ * trivial phis, constant folding and branches on constants), common
+ * subexpression elimination (value numbering over the dominator tree, and
+ * global loads forwarded inside a block), loop invariant code motion (to the
+ * block before the loop test) and dead code elimination. No pass changes
+ * what a program prints or when it fails: a division that may fail by zero
+ * is never removed or moved, and global loads are never moved across a call
+ * or a store to the same global
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Optimizer {
+
+	// Instructions removed by each pass and instructions hoisted out of loops
+	private int copies, subexpressions, dead, hoisted;
+
+	/**
+	 * Optimizes every function
+	 * @param functions
+	 */
+	public void optimize(Function[] functions) {
+		for (Function function : functions) {
+			this.optimize(function);
+		}
+	}
+
+	/**
+	 * Optimizes a function
+	 * @param function
+	 */
+	public void optimize(Function function) {
+		removeUnreachableBlocks(function);
+		this.propagateCopies(function);
+		this.eliminateCommonSubexpressions(function);
+		this.propagateCopies(function);
+		this.hoistLoopInvariants(function);
+		this.eliminateDeadCode(function);
+	}
+
+	/**
+	 * Removes the blocks no path from the entry reaches (the code after a
+	 * break or continue, the branch a constant condition never takes)
+	 * @param function
+	 * @return whether a block was removed
+	 */
+	static boolean removeUnreachableBlocks(Function function) {
+		boolean[] reached = new boolean[function.getBlockCount()];
+		List<Block> stack = new ArrayList<Block>();
+		stack.add(function.getEntry());
+		reached[function.getEntry().getId()] = true;
+		while (!stack.isEmpty()) {
+			Block block = stack.remove(stack.size() - 1);
+			for (Block successor : block.getSuccessors()) {
+				if ( !reached[successor.getId()] ) {
+					reached[successor.getId()] = true;
+					stack.add(successor);
+				}
+			}
+		}
+		boolean removed = false;
+		for (Block block : function.getBlocks()) {
+			if ( !reached[block.getId()] ) {
+				for (int i = block.getSuccessors().length - 1; i >= 0; i--) {
+					block.removeSuccessor(i);
+				}
+				removed = true;
+			}
+		}
+		if ( removed ) {
+			function.getBlocks().removeIf(block -> !reached[block.getId()]);
+		}
+		return removed;
+	}
+
+	/**
+	 * Simplifies one instruction: copies and phis with a single value are
+	 * replaced by the value, operations on constants become constants and
+	 * x + 0, x - 0, x * 1, x / 1 and x * 0 are simplified
+	 * @param instruction
+	 * @return whether the instruction changed
+	 */
+	private boolean simplify(Instruction instruction) {
+		int op = instruction.getOp();
+		Instruction[] operands = instruction.getOperands();
+		if ( op == Instruction.COPY ) {
+			instruction.replaceWith(operands[0]);
+			this.copies++;
+			return true;
+		}
+		if ( op == Instruction.PHI ) {
+			Instruction value = null;
+			for (Instruction operand : operands) {
+				if ( operand != instruction && operand != value ) {
+					if ( value != null ) {
+						return false;
+					}
+					value = operand;
+				}
+			}
+			if ( value == null ) {
+				return false;
+			}
+			instruction.replaceWith(value);
+			this.copies++;
+			return true;
+		}
+		if ( !Instruction.isArithmetic(op) && !Instruction.isRelation(op) ) {
+			return false;
+		}
+		Instruction left = operands[0], right = operands[1];
+		if ( left.getOp() == Instruction.CONST && right.getOp() == Instruction.CONST ) {
+			if ( op == Instruction.DIV && right.getConstant() == 0 ) {
+				// Fails when it runs
+				return false;
+			}
+			instruction.setConstant(Instruction.evaluate(op, left.getConstant(), right.getConstant()));
+			instruction.setOp(Instruction.CONST);
+			instruction.setOperands();
+			return true;
+		}
+		if ( (op == Instruction.ADD && left.isConstant(0)) || (op == Instruction.MUL && left.isConstant(1)) ) {
+			instruction.replaceWith(right);
+			return true;
+		}
+		if ( ((op == Instruction.ADD || op == Instruction.SUB) && right.isConstant(0)) ||
+				((op == Instruction.MUL || op == Instruction.DIV) && right.isConstant(1)) ) {
+			instruction.replaceWith(left);
+			return true;
+		}
+		if ( op == Instruction.MUL && (left.isConstant(0) || right.isConstant(0)) ) {
+			instruction.setConstant(0);
+			instruction.setOp(Instruction.CONST);
+			instruction.setOperands();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Propagates copies and constants until nothing changes; a branch on a
+	 * constant becomes a jump and the blocks it no longer reaches go away
+	 * @param function
+	 */
+	void propagateCopies(Function function) {
+		for (boolean changed = true; changed; ) {
+			changed = false;
+			for (Block block : function.getBlocks()) {
+				List<Instruction> instructions = block.getInstructions();
+				for (int i = 0; i < instructions.size(); i++) {
+					Instruction instruction = instructions.get(i);
+					if ( instruction.getBlock() != block ) {
+						continue;
+					}
+					instruction.resolveOperands();
+					changed |= this.simplify(instruction);
+				}
+				Instruction terminator = block.getTerminator();
+				if ( terminator.getOp() == Instruction.BRANCH && terminator.getOperand(0).getOp() == Instruction.CONST ) {
+					// Keeps the edge taken
+					block.removeSuccessor(terminator.getOperand(0).getConstant() != 0 ? 1 : 0);
+					terminator.setOp(Instruction.JUMP);
+					terminator.setOperands();
+					changed = true;
+				}
+			}
+			if ( removeUnreachableBlocks(function) ) {
+				changed = true;
+			}
+		}
+		function.resolveOperands();
+	}
+
+	/**
+	 * Value number of a pure instruction: operation, constant and operands
+	 */
+	private static class Key {
+
+		private int op, constant;
+		private Instruction[] operands;
+
+		private Key(Instruction instruction) {
+			this.op = instruction.getOp();
+			this.constant = instruction.getConstant();
+			this.operands = instruction.getOperands();
+			if ( Instruction.isCommutative(this.op) && this.operands[0].getId() > this.operands[1].getId() ) {
+				this.operands = new Instruction[] { this.operands[1], this.operands[0] };
+			}
+		}
+
+		public int hashCode() {
+			int hash = this.op * 31 + this.constant;
+			for (Instruction operand : this.operands) {
+				hash = hash * 31 + operand.getId();
+			}
+			return hash;
+		}
+
+		public boolean equals(Object object) {
+			if ( !(object instanceof Key) ) {
+				return false;
+			}
+			Key key = (Key) object;
+			return this.op == key.op && this.constant == key.constant && Arrays.equals(this.operands, key.operands);
+		}
+
+	}
+
+	/**
+	 * Replaces every instruction that computes what a dominating one already
+	 * computed (a division too: the first one would have failed already) and
+	 * every global load whose value the same block already loaded or stored
+	 * @param function
+	 */
+	void eliminateCommonSubexpressions(Function function) {
+		Dominators dominators = new Dominators(function);
+		Map<Key, Instruction> values = new HashMap<Key, Instruction>();
+		// Walks the dominator tree; the values of a block are forgotten when it is left
+		List<Block> stack = new ArrayList<Block>();
+		List<List<Key>> added = new ArrayList<List<Key>>();
+		stack.add(function.getEntry());
+		while (!stack.isEmpty()) {
+			Block block = stack.remove(stack.size() - 1);
+			if ( block == null ) {
+				for (Key key : added.remove(added.size() - 1)) {
+					values.remove(key);
+				}
+				continue;
+			}
+			List<Key> keys = new ArrayList<Key>();
+			Map<Integer, Instruction> globals = new HashMap<Integer, Instruction>();
+			List<Instruction> instructions = block.getInstructions();
+			for (int i = 0; i < instructions.size(); i++) {
+				Instruction instruction = instructions.get(i);
+				instruction.resolveOperands();
+				int op = instruction.getOp();
+				if ( op == Instruction.GLOAD ) {
+					Instruction known = globals.get(instruction.getConstant());
+					if ( known != null ) {
+						instruction.replaceWith(known);
+						this.subexpressions++;
+					} else {
+						globals.put(instruction.getConstant(), instruction);
+					}
+				} else if ( op == Instruction.GSTORE ) {
+					globals.put(instruction.getConstant(), instruction.getOperand(0));
+				} else if ( op == Instruction.CALL ) {
+					globals.clear();
+				} else if ( op == Instruction.CONST || Instruction.isArithmetic(op) || Instruction.isRelation(op) ) {
+					Key key = new Key(instruction);
+					Instruction known = values.get(key);
+					if ( known != null ) {
+						instruction.replaceWith(known);
+						this.subexpressions++;
+					} else {
+						values.put(key, instruction);
+						keys.add(key);
+					}
+				}
+			}
+			stack.add(null);
+			added.add(keys);
+			List<Block> children = dominators.getChildren(block);
+			for (int i = children.size() - 1; i >= 0; i--) {
+				stack.add(children.get(i));
+			}
+		}
+		function.resolveOperands();
+	}
+
+	/**
+	 * Moves the instructions of each loop that compute the same value on
+	 * every iteration to the block before the loop, inner loops first. Only
+	 * pure instructions move, and global loads when the loop neither calls
+	 * nor stores to that global
+	 * @param function
+	 */
+	void hoistLoopInvariants(Function function) {
+		Dominators dominators = new Dominators(function);
+		List<Block> order = dominators.getOrder();
+		// Natural loops: the blocks that reach a back edge without passing its header
+		List<boolean[]> loops = new ArrayList<boolean[]>();
+		List<Block> headers = new ArrayList<Block>();
+		List<Integer> sizes = new ArrayList<Integer>();
+		for (Block header : order) {
+			boolean[] loop = null;
+			int size = 0;
+			for (Block latch : header.getPredecessors()) {
+				if ( !dominators.dominates(header, latch) ) {
+					continue;
+				}
+				if ( loop == null ) {
+					loop = new boolean[function.getBlockCount()];
+					loop[header.getId()] = true;
+					size = 1;
+				}
+				List<Block> stack = new ArrayList<Block>();
+				if ( !loop[latch.getId()] ) {
+					loop[latch.getId()] = true;
+					size++;
+					stack.add(latch);
+				}
+				while (!stack.isEmpty()) {
+					for (Block predecessor : stack.remove(stack.size() - 1).getPredecessors()) {
+						if ( !loop[predecessor.getId()] ) {
+							loop[predecessor.getId()] = true;
+							size++;
+							stack.add(predecessor);
+						}
+					}
+				}
+			}
+			if ( loop != null ) {
+				loops.add(loop);
+				headers.add(header);
+				sizes.add(size);
+			}
+		}
+		Integer[] bySize = new Integer[loops.size()];
+		for (int i = 0; i < bySize.length; i++) {
+			bySize[i] = i;
+		}
+		Arrays.sort(bySize, (a, b) -> sizes.get(a) - sizes.get(b));
+		for (int index : bySize) {
+			boolean[] loop = loops.get(index);
+			Block preheader = null;
+			int entries = 0;
+			for (Block predecessor : headers.get(index).getPredecessors()) {
+				if ( !loop[predecessor.getId()] ) {
+					preheader = predecessor;
+					entries++;
+				}
+			}
+			if ( entries != 1 || preheader.getSuccessors().length != 1 ) {
+				// Not a single way in
+				continue;
+			}
+			this.hoist(order, loop, preheader);
+		}
+	}
+
+	/**
+	 * Moves the invariant instructions of a loop to its preheader
+	 * @param order - the blocks in reverse postorder
+	 * @param loop - the loop blocks (indexed by block number)
+	 * @param preheader
+	 */
+	private void hoist(List<Block> order, boolean[] loop, Block preheader) {
+		// Globals the loop stores to (null: all of them, it calls)
+		List<Integer> stored = new ArrayList<Integer>();
+		for (Block block : order) {
+			if ( !loop[block.getId()] ) {
+				continue;
+			}
+			for (Instruction instruction : block.getInstructions()) {
+				if ( instruction.getOp() == Instruction.CALL ) {
+					stored = null;
+					break;
+				} else if ( instruction.getOp() == Instruction.GSTORE ) {
+					stored.add(instruction.getConstant());
+				}
+			}
+			if ( stored == null ) {
+				break;
+			}
+		}
+		for (Block block : order) {
+			if ( !loop[block.getId()] ) {
+				continue;
+			}
+			List<Instruction> instructions = block.getInstructions();
+			for (int i = 0; i < instructions.size(); i++) {
+				Instruction instruction = instructions.get(i);
+				if ( instruction.getBlock() != block ) {
+					continue;
+				}
+				boolean movable = instruction.isPure() ||
+						(instruction.getOp() == Instruction.GLOAD && stored != null && !stored.contains(instruction.getConstant()));
+				for (Instruction operand : instruction.getOperands()) {
+					movable &= !loop[operand.getBlock().getId()];
+				}
+				if ( movable ) {
+					preheader.moveBeforeTerminator(instruction);
+					this.hoisted++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the instructions whose values are never used and that have no
+	 * other effect
+	 * @param function
+	 */
+	void eliminateDeadCode(Function function) {
+		boolean[] live = new boolean[function.getInstructionCount()];
+		List<Instruction> worklist = new ArrayList<Instruction>();
+		for (Block block : function.getBlocks()) {
+			for (Instruction instruction : block.getInstructions()) {
+				int op = instruction.getOp();
+				if ( op >= Instruction.GSTORE || (op == Instruction.DIV && !instruction.isPure()) ) {
+					live[instruction.getId()] = true;
+					worklist.add(instruction);
+				}
+			}
+		}
+		while (!worklist.isEmpty()) {
+			for (Instruction operand : worklist.remove(worklist.size() - 1).getOperands()) {
+				if ( !live[operand.getId()] ) {
+					live[operand.getId()] = true;
+					worklist.add(operand);
+				}
+			}
+		}
+		for (Block block : function.getBlocks()) {
+			for (Instruction instruction : block.getInstructions()) {
+				if ( !live[instruction.getId()] ) {
+					instruction.replaceWith(null);
+					this.dead++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of copies and trivial phis removed
+	 * @return
+	 */
+	public int getCopies() {
+		return this.copies;
+	}
+
+	/**
+	 * Returns the number of common subexpressions removed
+	 * @return
+	 */
+	public int getSubexpressions() {
+		return this.subexpressions;
+	}
+
+	/**
+	 * Returns the number of dead instructions removed
+	 * @return
+	 */
+	public int getDead() {
+		return this.dead;
+	}
+
+	/**
+	 * Returns the number of instructions moved out of loops
+	 * @return
+	 */
+	public int getHoisted() {
+		return this.hoisted;
+	}
+
+}
@@ -0,0 +1,508 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import util.AST.AST;
+import util.AST.Aexp;
+import util.AST.AssignCmd;
+import util.AST.Bexp;
+import util.AST.BooleanFactor;
+import util.AST.BreakCmd;
+import util.AST.CallCmd;
+import util.AST.CallFactor;
+import util.AST.Cmd;
+import util.AST.ContinueCmd;
+import util.AST.Expression;
+import util.AST.FuncDec;
+import util.AST.IfCmd;
+import util.AST.NumberFactor;
+import util.AST.Operator;
+import util.AST.ProcDec;
+import util.AST.Program;
+import util.AST.SubprogramDec;
+import util.AST.Term;
+import util.AST.Type;
+import util.AST.VarDec;
+import util.AST.VariableFactor;
+import util.AST.Visitor;
+import util.AST.WhileCmd;
+import util.AST.WriteCmd;
+
+/**
+ * Constant folder
+ * Simplifies a checked AST: folds constant operands (integer arithmetic
+ * wraps, as in every backend), drops x+0, x-0, x*1 and x/1, turns x*0 into
+ * 0 when x cannot fail or call anything, folds comparisons of constants and
+ * removes if and while commands with constant conditions (the branch taken
+ * replaces the if). A division by a constant zero is never folded, so it
+ * still fails at run time. Nodes are immutable: the changed ones are
+ * rebuilt (keeping the checker annotations) and the others shared.
+ * Expression visits return the simplified expression; command visits add
+ * the commands that replace them to the list given as argument
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ConstantFolder implements Visitor {
+
+	// Nodes removed by the last fold
+	private int eliminated;
+
+	/**
+	 * Simplifies a program
+	 * @param program - a program annotated by the checker
+	 * @return the simplified program (the same one if nothing changed)
+	 */
+	public Program fold(Program program) {
+		Program folded = (Program) program.visit(this, null);
+		this.eliminated = size(program) - size(folded);
+		return folded;
+	}
+
+	/**
+	 * Returns the number of nodes the last fold removed
+	 * @return
+	 */
+	public int getEliminated() {
+		return this.eliminated;
+	}
+
+	/**
+	 * Counts the nodes of a tree
+	 * @param node
+	 * @return
+	 */
+	public static int size(AST node) {
+		if ( node instanceof Program ) {
+			Program program = (Program) node;
+			return 1 + size(program.getVariables()) + size(program.getFunctions()) +
+					size(program.getProcedures()) + size(program.getCommands());
+		} else if ( node instanceof FuncDec || node instanceof ProcDec ) {
+			SubprogramDec subprogram = (SubprogramDec) node;
+			return 1 + size(subprogram.getParameters()) + size(subprogram.getVariables()) +
+					size(subprogram.getCommands());
+		} else if ( node instanceof AssignCmd ) {
+			return 1 + size(((AssignCmd) node).getValue());
+		} else if ( node instanceof CallCmd ) {
+			return 1 + size(((CallCmd) node).getArguments());
+		} else if ( node instanceof IfCmd ) {
+			IfCmd cmd = (IfCmd) node;
+			return 1 + size(cmd.getCondition()) + size(cmd.getThenCommands()) +
+					(cmd.getElseCommands() == null ? 0 : size(cmd.getElseCommands()));
+		} else if ( node instanceof WhileCmd ) {
+			return 1 + size(((WhileCmd) node).getCondition()) + size(((WhileCmd) node).getCommands());
+		} else if ( node instanceof WriteCmd ) {
+			return 1 + size(((WriteCmd) node).getValue());
+		} else if ( node instanceof Bexp ) {
+			return 1 + size(((Bexp) node).getLeft()) + size(((Bexp) node).getRight());
+		} else if ( node instanceof Aexp ) {
+			return 1 + size(((Aexp) node).getOperands());
+		} else if ( node instanceof Term ) {
+			return 1 + size(((Term) node).getOperands());
+		} else if ( node instanceof CallFactor ) {
+			return 1 + size(((CallFactor) node).getArguments());
+		}
+		return 1;
+	}
+
+	private static int size(AST[] nodes) {
+		int size = 0;
+		for (AST node : nodes) {
+			size += size(node);
+		}
+		return size;
+	}
+
+	private static NumberFactor number(int value) {
+		NumberFactor factor = new NumberFactor(value);
+		factor.setType(Type.INTEGER);
+		return factor;
+	}
+
+	private static BooleanFactor bool(boolean value) {
+		BooleanFactor factor = new BooleanFactor(value);
+		factor.setType(Type.BOOLEAN);
+		return factor;
+	}
+
+	/**
+	 * Verifies if an expression is an integer constant with the given value
+	 * @param expression
+	 * @param value
+	 * @return
+	 */
+	private static boolean isNumber(Expression expression, int value) {
+		return expression instanceof NumberFactor && ((NumberFactor) expression).getValue() == value;
+	}
+
+	/**
+	 * Verifies if evaluating an expression can be skipped: it calls nothing
+	 * and divides only by constants other than zero
+	 * @param expression
+	 * @return
+	 */
+	static boolean isSafe(Expression expression) {
+		if ( expression instanceof CallFactor ) {
+			return false;
+		} else if ( expression instanceof Bexp ) {
+			return isSafe(((Bexp) expression).getLeft()) && isSafe(((Bexp) expression).getRight());
+		} else if ( expression instanceof Aexp ) {
+			for (Expression operand : ((Aexp) expression).getOperands()) {
+				if ( !isSafe(operand) ) {
+					return false;
+				}
+			}
+		} else if ( expression instanceof Term ) {
+			Term term = (Term) expression;
+			for (int i = 0; i < term.getOperands().length; i++) {
+				Expression operand = term.getOperands()[i];
+				if ( !isSafe(operand) || (i > 0 && term.getOperators()[i - 1] == Operator.DIV &&
+						(!(operand instanceof NumberFactor) || isNumber(operand, 0))) ) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private Expression fold(Expression expression) {
+		return (Expression) expression.visit(this, null);
+	}
+
+	private Expression[] fold(Expression[] expressions) {
+		Expression[] folded = null;
+		for (int i = 0; i < expressions.length; i++) {
+			Expression expression = this.fold(expressions[i]);
+			if ( expression != expressions[i] && folded == null ) {
+				folded = expressions.clone();
+			}
+			if ( folded != null ) {
+				folded[i] = expression;
+			}
+		}
+		return folded != null ? folded : expressions;
+	}
+
+	/**
+	 * Simplifies commands
+	 * @param commands
+	 * @return the commands that replace them (the same array if nothing changed)
+	 */
+	private Cmd[] fold(Cmd[] commands) {
+		List<Cmd> folded = new ArrayList<Cmd>(commands.length);
+		for (Cmd cmd : commands) {
+			cmd.visit(this, folded);
+		}
+		if ( folded.size() == commands.length ) {
+			boolean same = true;
+			for (int i = 0; i < commands.length && same; i++) {
+				same = folded.get(i) == commands[i];
+			}
+			if ( same ) {
+				return commands;
+			}
+		}
+		return folded.toArray(new Cmd[folded.size()]);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void add(Object arg, Cmd cmd) {
+		((List<Cmd>) arg).add(cmd);
+	}
+
+	public Object visitProgram(Program program, Object arg) {
+		FuncDec[] functions = program.getFunctions().clone();
+		boolean changed = false;
+		for (int i = 0; i < functions.length; i++) {
+			functions[i] = (FuncDec) functions[i].visit(this, null);
+			changed |= functions[i] != program.getFunctions()[i];
+		}
+		ProcDec[] procedures = program.getProcedures().clone();
+		for (int i = 0; i < procedures.length; i++) {
+			procedures[i] = (ProcDec) procedures[i].visit(this, null);
+			changed |= procedures[i] != program.getProcedures()[i];
+		}
+		Cmd[] commands = this.fold(program.getCommands());
+		if ( !changed && commands == program.getCommands() ) {
+			return program;
+		}
+		return new Program(program.getName(), program.getVariables(), functions, procedures, commands);
+	}
+
+	public Object visitVarDec(VarDec varDec, Object arg) {
+		return varDec;
+	}
+
+	public Object visitFuncDec(FuncDec funcDec, Object arg) {
+		Cmd[] commands = this.fold(funcDec.getCommands());
+		if ( commands == funcDec.getCommands() ) {
+			return funcDec;
+		}
+		return new FuncDec(funcDec.getName(), funcDec.getParameters(), funcDec.getReturnType(),
+				funcDec.getVariables(), commands, funcDec.getLine(), funcDec.getColumn());
+	}
+
+	public Object visitProcDec(ProcDec procDec, Object arg) {
+		Cmd[] commands = this.fold(procDec.getCommands());
+		if ( commands == procDec.getCommands() ) {
+			return procDec;
+		}
+		return new ProcDec(procDec.getName(), procDec.getParameters(), procDec.getVariables(), commands,
+				procDec.getLine(), procDec.getColumn());
+	}
+
+	public Object visitAssignCmd(AssignCmd cmd, Object arg) {
+		Expression value = this.fold(cmd.getValue());
+		if ( value != cmd.getValue() ) {
+			AssignCmd folded = new AssignCmd(cmd.getName(), value, cmd.getLine(), cmd.getColumn());
+			folded.setAttribute(cmd.getAttribute());
+			cmd = folded;
+		}
+		add(arg, cmd);
+		return null;
+	}
+
+	public Object visitCallCmd(CallCmd cmd, Object arg) {
+		Expression[] arguments = this.fold(cmd.getArguments());
+		if ( arguments != cmd.getArguments() ) {
+			CallCmd folded = new CallCmd(cmd.getName(), arguments, cmd.getLine(), cmd.getColumn());
+			folded.setAttribute(cmd.getAttribute());
+			cmd = folded;
+		}
+		add(arg, cmd);
+		return null;
+	}
+
+	public Object visitIfCmd(IfCmd cmd, Object arg) {
+		Expression condition = this.fold(cmd.getCondition());
+		Cmd[] thenCommands = this.fold(cmd.getThenCommands());
+		Cmd[] elseCommands = cmd.getElseCommands() == null ? null : this.fold(cmd.getElseCommands());
+		if ( condition instanceof BooleanFactor ) {
+			// Only the branch taken is left
+			Cmd[] taken = ((BooleanFactor) condition).getValue() ? thenCommands : elseCommands;
+			if ( taken != null ) {
+				for (Cmd takenCmd : taken) {
+					add(arg, takenCmd);
+				}
+			}
+			return null;
+		}
+		if ( thenCommands.length == 0 && (elseCommands == null || elseCommands.length == 0) && isSafe(condition) ) {
+			return null;
+		}
+		if ( condition != cmd.getCondition() || thenCommands != cmd.getThenCommands() ||
+				elseCommands != cmd.getElseCommands() ) {
+			cmd = new IfCmd(condition, thenCommands, elseCommands, cmd.getLine(), cmd.getColumn());
+		}
+		add(arg, cmd);
+		return null;
+	}
+
+	public Object visitWhileCmd(WhileCmd cmd, Object arg) {
+		Expression condition = this.fold(cmd.getCondition());
+		if ( condition instanceof BooleanFactor && !((BooleanFactor) condition).getValue() ) {
+			// Never runs
+			return null;
+		}
+		Cmd[] commands = this.fold(cmd.getCommands());
+		if ( condition != cmd.getCondition() || commands != cmd.getCommands() ) {
+			cmd = new WhileCmd(condition, commands, cmd.getLine(), cmd.getColumn());
+		}
+		add(arg, cmd);
+		return null;
+	}
+
+	public Object visitWriteCmd(WriteCmd cmd, Object arg) {
+		Expression value = this.fold(cmd.getValue());
+		if ( value != cmd.getValue() ) {
+			cmd = new WriteCmd(value, cmd.getLine(), cmd.getColumn());
+		}
+		add(arg, cmd);
+		return null;
+	}
+
+	public Object visitBreakCmd(BreakCmd cmd, Object arg) {
+		add(arg, cmd);
+		return null;
+	}
+
+	public Object visitContinueCmd(ContinueCmd cmd, Object arg) {
+		add(arg, cmd);
+		return null;
+	}
+
+	/**
+	 * Returns the value of a constant as an int (booleans compare as 0 and 1)
+	 * @param expression
+	 * @return
+	 */
+	private static int valueOf(Expression expression) {
+		if ( expression instanceof BooleanFactor ) {
+			return ((BooleanFactor) expression).getValue() ? 1 : 0;
+		}
+		return ((NumberFactor) expression).getValue();
+	}
+
+	private static boolean isConstant(Expression expression) {
+		return expression instanceof NumberFactor || expression instanceof BooleanFactor;
+	}
+
+	public Object visitBexp(Bexp bexp, Object arg) {
+		Expression left = this.fold(bexp.getLeft());
+		Expression right = this.fold(bexp.getRight());
+		if ( isConstant(left) && isConstant(right) ) {
+			int a = valueOf(left), b = valueOf(right);
+			switch (bexp.getOperator()) {
+			case EQUALS: return bool(a == b);
+			case NOTEQUALS: return bool(a != b);
+			case GT: return bool(a > b);
+			case LT: return bool(a < b);
+			case GE: return bool(a >= b);
+			default: return bool(a <= b);
+			}
+		}
+		if ( left == bexp.getLeft() && right == bexp.getRight() ) {
+			return bexp;
+		}
+		Bexp folded = new Bexp(left, bexp.getOperator(), right);
+		folded.setType(Type.BOOLEAN);
+		return folded;
+	}
+
+	public Object visitAexp(Aexp aexp, Object arg) {
+		Expression[] operands = this.fold(aexp.getOperands());
+		Operator[] operators = aexp.getOperators();
+		// Constants are added apart (wrapping addition does not depend on the order)
+		int constant = 0, constants = 0;
+		List<Expression> terms = new ArrayList<Expression>(operands.length);
+		List<Operator> signs = new ArrayList<Operator>(operands.length);
+		for (int i = 0; i < operands.length; i++) {
+			Operator sign = i == 0 ? Operator.ADD : operators[i - 1];
+			if ( operands[i] instanceof NumberFactor ) {
+				int value = ((NumberFactor) operands[i]).getValue();
+				constant = sign == Operator.ADD ? constant + value : constant - value;
+				constants++;
+			} else {
+				terms.add(operands[i]);
+				signs.add(sign);
+			}
+		}
+		if ( terms.isEmpty() ) {
+			return number(constant);
+		}
+		if ( constants == 0 || (constants == 1 && operands[operands.length - 1] instanceof NumberFactor && constant != 0) ) {
+			// Nothing to fold (a single constant is already last, as an immediate operand)
+			if ( operands == aexp.getOperands() ) {
+				return aexp;
+			}
+			return this.aexp(operands, operators);
+		}
+		List<Expression> folded = new ArrayList<Expression>(terms.size() + 1);
+		List<Operator> foldedOperators = new ArrayList<Operator>(terms.size());
+		if ( signs.get(0) == Operator.SUB ) {
+			// Subtracted first operand: the constant (even 0) goes first
+			folded.add(number(constant));
+			foldedOperators.add(Operator.SUB);
+			constant = 0;
+		}
+		folded.add(terms.get(0));
+		for (int i = 1; i < terms.size(); i++) {
+			foldedOperators.add(signs.get(i));
+			folded.add(terms.get(i));
+		}
+		if ( constant != 0 ) {
+			boolean add = constant > 0 || constant == Integer.MIN_VALUE;
+			foldedOperators.add(add ? Operator.ADD : Operator.SUB);
+			folded.add(number(add ? constant : -constant));
+		}
+		if ( folded.size() == 1 ) {
+			return folded.get(0);
+		}
+		return this.aexp(folded.toArray(new Expression[folded.size()]),
+				foldedOperators.toArray(new Operator[foldedOperators.size()]));
+	}
+
+	private Aexp aexp(Expression[] operands, Operator[] operators) {
+		Aexp aexp = new Aexp(operands, operators);
+		aexp.setType(Type.INTEGER);
+		return aexp;
+	}
+
+	public Object visitTerm(Term term, Object arg) {
+		Expression[] operands = this.fold(term.getOperands());
+		Operator[] operators = term.getOperators();
+		// Left to right: constants fold into the value before them while that
+		// value is constant; after that a run of * c folds into one (wrapping
+		// multiplication is associative); divisions by zero are left alone
+		List<Expression> folded = new ArrayList<Expression>(operands.length);
+		List<Operator> foldedOperators = new ArrayList<Operator>(operands.length);
+		folded.add(operands[0]);
+		boolean zero = isNumber(operands[0], 0);
+		for (int i = 1; i < operands.length; i++) {
+			Operator operator = operators[i - 1];
+			Expression operand = operands[i];
+			int last = folded.size() - 1;
+			if ( operand instanceof NumberFactor ) {
+				int value = ((NumberFactor) operand).getValue();
+				if ( value == 1 ) {
+					// x * 1, x / 1
+					continue;
+				}
+				if ( operator == Operator.MUL ) {
+					zero |= value == 0;
+					if ( folded.get(last) instanceof NumberFactor && (last == 0 || foldedOperators.get(last - 1) == Operator.MUL) ) {
+						folded.set(last, number(((NumberFactor) folded.get(last)).getValue() * value));
+						continue;
+					}
+				} else if ( value != 0 && last == 0 && folded.get(0) instanceof NumberFactor ) {
+					folded.set(0, number(((NumberFactor) folded.get(0)).getValue() / value));
+					continue;
+				}
+			}
+			if ( operator == Operator.MUL && isNumber(folded.get(last), 1) && last == 0 ) {
+				// 1 * x
+				folded.set(0, operand);
+				continue;
+			}
+			foldedOperators.add(operator);
+			folded.add(operand);
+		}
+		if ( folded.size() == 1 ) {
+			return folded.get(0);
+		}
+		Term result = operands == term.getOperands() && folded.size() == operands.length ? term :
+			new Term(folded.toArray(new Expression[folded.size()]), foldedOperators.toArray(new Operator[foldedOperators.size()]));
+		if ( result != term ) {
+			result.setType(Type.INTEGER);
+		}
+		if ( zero && isSafe(result) ) {
+			// x * 0, 0 * x, 0 / c: nothing to evaluate
+			return number(0);
+		}
+		return result;
+	}
+
+	public Object visitVariableFactor(VariableFactor factor, Object arg) {
+		return factor;
+	}
+
+	public Object visitCallFactor(CallFactor factor, Object arg) {
+		Expression[] arguments = this.fold(factor.getArguments());
+		if ( arguments == factor.getArguments() ) {
+			return factor;
+		}
+		CallFactor folded = new CallFactor(factor.getName(), arguments, factor.getLine(), factor.getColumn());
+		folded.setAttribute(factor.getAttribute());
+		folded.setType(factor.getType());
+		return folded;
+	}
+
+	public Object visitNumberFactor(NumberFactor factor, Object arg) {
+		return factor;
+	}
+
+	public Object visitBooleanFactor(BooleanFactor factor, Object arg) {
+		return factor;
+	}
+
+}
@@ -0,0 +1,718 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import util.AST.Aexp;
+import util.AST.AssignCmd;
+import util.AST.Bexp;
+import util.AST.BooleanFactor;
+import util.AST.BreakCmd;
+import util.AST.CallCmd;
+import util.AST.CallFactor;
+import util.AST.Cmd;
+import util.AST.ContinueCmd;
+import util.AST.Expression;
+import util.AST.FuncDec;
+import util.AST.IfCmd;
+import util.AST.NumberFactor;
+import util.AST.ProcDec;
+import util.AST.Program;
+import util.AST.SubprogramDec;
+import util.AST.Term;
+import util.AST.Type;
+import util.AST.VarDec;
+import util.AST.VariableFactor;
+import util.AST.Visitor;
+import util.AST.WhileCmd;
+import util.AST.WriteCmd;
+import util.symbolsTable.Attribute;
+
+/**
+ * Tail call eliminator
+ * Turns the calls a subprogram makes to itself as the last thing it runs (a
+ * procedure call, or a call assigned to the function result, last in the
+ * body or last in a branch of an if that is itself last) into a loop: the
+ * body runs inside a while true, every path that ends in a tail call
+ * assigns the arguments to the parameters, sets the local variables it
+ * reads and the result back to zero (false), as a new frame would, and goes
+ * around again, and every other path ends with a break. Tail recursion then
+ * runs in constant stack in every backend.
+ * The arguments are assigned in an order where none reads a parameter that
+ * was already assigned; when there is no such order (or the order differs
+ * from the source and an argument may call or fail) they go through
+ * temporaries, new local variables named after the parameters with a quote
+ * (not a valid identifier). The temporaries move the result slot, so the
+ * nodes that use the result are rebuilt. Works on a checked AST and keeps
+ * its annotations; the other nodes are shared
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class TailCallEliminator implements Visitor {
+
+	// Tail calls turned into loops by the last run
+	private int eliminated;
+	// The result of the subprogram being rewritten and where it moved
+	private Attribute result, moved;
+
+	/**
+	 * Turns the tail calls of every subprogram into loops
+	 * @param program - a program annotated by the checker
+	 * @return the program without tail calls (the same one if it had none)
+	 */
+	public Program eliminate(Program program) {
+		this.eliminated = 0;
+		int number = 1;
+		boolean changed = false;
+		FuncDec[] functions = program.getFunctions().clone();
+		for (int i = 0; i < functions.length; i++) {
+			functions[i] = (FuncDec) this.eliminate(functions[i], number++);
+			changed |= functions[i] != program.getFunctions()[i];
+		}
+		ProcDec[] procedures = program.getProcedures().clone();
+		for (int i = 0; i < procedures.length; i++) {
+			procedures[i] = (ProcDec) this.eliminate(procedures[i], number++);
+			changed |= procedures[i] != program.getProcedures()[i];
+		}
+		if ( !changed ) {
+			return program;
+		}
+		return new Program(program.getName(), program.getVariables(), functions, procedures, program.getCommands());
+	}
+
+	/**
+	 * Returns the number of tail calls the last run turned into loops
+	 * @return
+	 */
+	public int getEliminated() {
+		return this.eliminated;
+	}
+
+	/**
+	 * Turns the tail calls of a subprogram into a loop
+	 * @param subprogram
+	 * @param number - the subprogram slot (the one its calls refer to)
+	 * @return the rewritten subprogram (the same one if it has no tail calls)
+	 */
+	private SubprogramDec eliminate(SubprogramDec subprogram, int number) {
+		List<Expression[]> calls = new ArrayList<Expression[]>();
+		this.tailCalls(subprogram.getCommands(), subprogram, number, calls);
+		if ( calls.isEmpty() ) {
+			return subprogram;
+		}
+		// Parameters (by slot), then the temporaries the calls need
+		int parameters = subprogram.getParameterCount();
+		VarDec[] declarations = new VarDec[parameters];
+		String[] names = new String[parameters];
+		int slot = 0;
+		for (VarDec parameter : subprogram.getParameters()) {
+			for (String name : parameter.getNames()) {
+				declarations[slot] = parameter;
+				names[slot++] = name;
+			}
+		}
+		boolean[] temporary = new boolean[parameters];
+		int temporaries = 0;
+		for (Expression[] arguments : calls) {
+			if ( order(arguments) == null ) {
+				for (int i = 0; i < parameters; i++) {
+					if ( !temporary[i] && changes(arguments, i) ) {
+						temporary[i] = true;
+						temporaries++;
+					}
+				}
+			}
+		}
+		int variables = subprogram.getVariableCount();
+		List<VarDec> locals = new ArrayList<VarDec>();
+		for (VarDec variable : subprogram.getVariables()) {
+			locals.add(variable);
+		}
+		Attribute[] temporarySlots = new Attribute[parameters];
+		for (int i = 0, next = parameters + variables; i < parameters; i++) {
+			if ( temporary[i] ) {
+				VarDec variable = new VarDec(new String[] { names[i] + "'" }, declarations[i].getType(),
+						declarations[i].getLine(), declarations[i].getColumn());
+				locals.add(variable);
+				temporarySlots[i] = new Attribute(variable, next++, 1);
+			}
+		}
+		Cmd[] commands = subprogram.getCommands();
+		this.result = this.moved = null;
+		if ( subprogram instanceof FuncDec ) {
+			// The checker shares one attribute among the uses of the result
+			this.result = this.findResult(commands, parameters + variables);
+			if ( this.result != null && temporaries > 0 ) {
+				this.moved = new Attribute(this.result.getAst(), parameters + variables + temporaries, 1);
+				commands = this.rebuild(commands);
+			}
+		}
+		// Local variables read somewhere start each round at zero again
+		boolean[] read = new boolean[parameters + variables];
+		this.reads(commands, read);
+		List<Cmd> reset = new ArrayList<Cmd>();
+		slot = parameters;
+		for (VarDec variable : subprogram.getVariables()) {
+			for (String name : variable.getNames()) {
+				if ( read[slot] ) {
+					reset.add(assign(name, zero(variable.getType()), new Attribute(variable, slot, 1), subprogram));
+				}
+				slot++;
+			}
+		}
+		if ( subprogram instanceof FuncDec ) {
+			FuncDec function = (FuncDec) subprogram;
+			Attribute attribute = this.moved != null ? this.moved : this.result != null ? this.result :
+				new Attribute(function, parameters + variables + temporaries, 1);
+			reset.add(assign(function.getName(), zero(function.getReturnType()), attribute, subprogram));
+		}
+		Context context = new Context(subprogram, number, names, declarations, temporarySlots, reset);
+		BooleanFactor always = new BooleanFactor(true);
+		always.setType(Type.BOOLEAN);
+		Cmd[] loop = { new WhileCmd(always, this.loop(commands, context), subprogram.getLine(), subprogram.getColumn()) };
+		VarDec[] variableDecs = locals.toArray(new VarDec[locals.size()]);
+		this.result = this.moved = null;
+		if ( subprogram instanceof FuncDec ) {
+			FuncDec function = (FuncDec) subprogram;
+			return new FuncDec(function.getName(), function.getParameters(), function.getReturnType(),
+					variableDecs, loop, function.getLine(), function.getColumn());
+		}
+		return new ProcDec(subprogram.getName(), subprogram.getParameters(), variableDecs, loop,
+				subprogram.getLine(), subprogram.getColumn());
+	}
+
+	/**
+	 * What the rewriting of the tail calls of a subprogram needs
+	 */
+	private static class Context {
+
+		// The subprogram and its slot
+		private final SubprogramDec subprogram;
+		private final int number;
+		// Parameter names and declarations, by slot
+		private final String[] names;
+		private final VarDec[] declarations;
+		// Temporary of each parameter (null if it has none)
+		private final Attribute[] temporaries;
+		// Commands that set the locals and the result back to zero
+		private final List<Cmd> reset;
+
+		private Context(SubprogramDec subprogram, int number, String[] names, VarDec[] declarations,
+				Attribute[] temporaries, List<Cmd> reset) {
+			this.subprogram = subprogram;
+			this.number = number;
+			this.names = names;
+			this.declarations = declarations;
+			this.temporaries = temporaries;
+			this.reset = reset;
+		}
+
+	}
+
+	/**
+	 * Returns the arguments of a command if it is a tail call of the subprogram
+	 * @param cmd
+	 * @param subprogram
+	 * @param number
+	 * @return the arguments (null if it is not a call to the subprogram)
+	 */
+	private static Expression[] selfCall(Cmd cmd, SubprogramDec subprogram, int number) {
+		if ( subprogram instanceof ProcDec && cmd instanceof CallCmd ) {
+			CallCmd call = (CallCmd) cmd;
+			if ( isSubprogram(call.getAttribute(), number) ) {
+				return call.getArguments();
+			}
+		} else if ( subprogram instanceof FuncDec && cmd instanceof AssignCmd ) {
+			AssignCmd assign = (AssignCmd) cmd;
+			if ( assign.getAttribute().getAst() instanceof FuncDec && assign.getAttribute().getScope() != 0 &&
+					assign.getValue() instanceof CallFactor ) {
+				CallFactor call = (CallFactor) assign.getValue();
+				if ( isSubprogram(call.getAttribute(), number) ) {
+					return call.getArguments();
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean isSubprogram(Attribute attribute, int number) {
+		return attribute.getScope() == 0 && attribute.getSlot() == number;
+	}
+
+	/**
+	 * Collects the arguments of the tail calls of a command list
+	 * @param commands
+	 * @param subprogram
+	 * @param number
+	 * @param calls
+	 */
+	private void tailCalls(Cmd[] commands, SubprogramDec subprogram, int number, List<Expression[]> calls) {
+		if ( commands.length == 0 ) {
+			return;
+		}
+		Cmd last = commands[commands.length - 1];
+		Expression[] arguments = selfCall(last, subprogram, number);
+		if ( arguments != null ) {
+			calls.add(arguments);
+		} else if ( last instanceof IfCmd ) {
+			IfCmd cmd = (IfCmd) last;
+			this.tailCalls(cmd.getThenCommands(), subprogram, number, calls);
+			if ( cmd.getElseCommands() != null ) {
+				this.tailCalls(cmd.getElseCommands(), subprogram, number, calls);
+			}
+		}
+	}
+
+	/**
+	 * Rewrites a command list that ends the loop body: tail calls become
+	 * assignments (the loop goes around), the other paths end with a break
+	 * @param commands
+	 * @param context
+	 * @return
+	 */
+	private Cmd[] loop(Cmd[] commands, Context context) {
+		List<Cmd> rewritten = new ArrayList<Cmd>(commands.length + 1);
+		for (int i = 0; i < commands.length - 1; i++) {
+			rewritten.add(commands[i]);
+		}
+		Cmd last = commands.length == 0 ? null : commands[commands.length - 1];
+		Expression[] arguments = last == null ? null : selfCall(last, context.subprogram, context.number);
+		if ( arguments != null ) {
+			this.jump(last, arguments, context, rewritten);
+			this.eliminated++;
+		} else if ( last instanceof IfCmd ) {
+			IfCmd cmd = (IfCmd) last;
+			Cmd[] elseCommands = cmd.getElseCommands() == null ? new Cmd[0] : cmd.getElseCommands();
+			rewritten.add(new IfCmd(cmd.getCondition(), this.loop(cmd.getThenCommands(), context),
+					this.loop(elseCommands, context), cmd.getLine(), cmd.getColumn()));
+		} else {
+			if ( last != null ) {
+				rewritten.add(last);
+			}
+			int line = last == null ? context.subprogram.getLine() : last.getLine();
+			int column = last == null ? context.subprogram.getColumn() : last.getColumn();
+			rewritten.add(new BreakCmd(line, column));
+		}
+		return rewritten.toArray(new Cmd[rewritten.size()]);
+	}
+
+	/**
+	 * Adds the commands that replace a tail call: the arguments go to the
+	 * parameters, then the locals and the result are set back to zero
+	 * @param call
+	 * @param arguments
+	 * @param context
+	 * @param commands
+	 */
+	private void jump(Cmd call, Expression[] arguments, Context context, List<Cmd> commands) {
+		int[] order = order(arguments);
+		if ( order == null ) {
+			// Every argument is evaluated, in order, before any parameter changes
+			for (int i = 0; i < arguments.length; i++) {
+				if ( changes(arguments, i) ) {
+					Attribute temporary = context.temporaries[i];
+					commands.add(assign(((VarDec) temporary.getAst()).getNames()[0], arguments[i], temporary, call));
+				}
+			}
+			for (int i = 0; i < arguments.length; i++) {
+				if ( changes(arguments, i) ) {
+					Attribute temporary = context.temporaries[i];
+					VariableFactor value = new VariableFactor(((VarDec) temporary.getAst()).getNames()[0],
+							call.getLine(), call.getColumn());
+					value.setAttribute(temporary);
+					value.setType(arguments[i].getType());
+					commands.add(this.assignParameter(i, value, context, call));
+				}
+			}
+		} else {
+			for (int i : order) {
+				commands.add(this.assignParameter(i, arguments[i], context, call));
+			}
+		}
+		commands.addAll(context.reset);
+	}
+
+	private AssignCmd assignParameter(int slot, Expression value, Context context, Cmd call) {
+		return assign(context.names[slot], value, new Attribute(context.declarations[slot], slot, 1), call);
+	}
+
+	/**
+	 * Creates an annotated assignment
+	 * @param name
+	 * @param value
+	 * @param attribute
+	 * @param position - the node whose line and column the assignment takes
+	 * @return
+	 */
+	private static AssignCmd assign(String name, Expression value, Attribute attribute, Object position) {
+		int line = position instanceof Cmd ? ((Cmd) position).getLine() : ((SubprogramDec) position).getLine();
+		int column = position instanceof Cmd ? ((Cmd) position).getColumn() : ((SubprogramDec) position).getColumn();
+		AssignCmd assign = new AssignCmd(name, value, line, column);
+		assign.setAttribute(attribute);
+		return assign;
+	}
+
+	private static Expression zero(Type type) {
+		if ( type == Type.BOOLEAN ) {
+			BooleanFactor factor = new BooleanFactor(false);
+			factor.setType(Type.BOOLEAN);
+			return factor;
+		}
+		NumberFactor factor = new NumberFactor(0);
+		factor.setType(Type.INTEGER);
+		return factor;
+	}
+
+	/**
+	 * Verifies if the argument of a parameter is anything but the parameter itself
+	 * @param arguments
+	 * @param slot
+	 * @return
+	 */
+	private static boolean changes(Expression[] arguments, int slot) {
+		Expression argument = arguments[slot];
+		if ( argument instanceof VariableFactor ) {
+			Attribute attribute = ((VariableFactor) argument).getAttribute();
+			return attribute.getScope() == 0 || attribute.getSlot() != slot || !(attribute.getAst() instanceof VarDec);
+		}
+		return true;
+	}
+
+	/**
+	 * Orders the assignments of the changed parameters so that no argument
+	 * reads a parameter already assigned. Without temporaries the arguments
+	 * are evaluated in that order, so an order other than the source one is
+	 * only taken when no argument may call or fail
+	 * @param arguments
+	 * @return the parameters in assignment order (null if there is no order)
+	 */
+	private static int[] order(Expression[] arguments) {
+		int count = arguments.length;
+		boolean[][] reads = new boolean[count][count];
+		boolean[] pending = new boolean[count];
+		int left = 0;
+		boolean safe = true;
+		for (int i = 0; i < count; i++) {
+			if ( changes(arguments, i) ) {
+				pending[i] = true;
+				left++;
+				readParameters(arguments[i], reads[i]);
+				safe &= ConstantFolder.isSafe(arguments[i]);
+			}
+		}
+		int[] order = new int[left];
+		boolean inOrder = true;
+		for (int n = 0; n < order.length; n++) {
+			// The first parameter no other pending argument reads
+			int next = -1;
+			for (int i = 0; i < count && next < 0; i++) {
+				if ( pending[i] ) {
+					boolean free = true;
+					for (int j = 0; j < count && free; j++) {
+						free = j == i || !pending[j] || !reads[j][i];
+					}
+					if ( free ) {
+						next = i;
+					}
+				}
+			}
+			if ( next < 0 ) {
+				return null;
+			}
+			inOrder &= n == 0 || next > order[n - 1];
+			order[n] = next;
+			pending[next] = false;
+		}
+		return inOrder || safe ? order : null;
+	}
+
+	/**
+	 * Marks the parameters an expression reads
+	 * @param expression
+	 * @param read - indexed by slot
+	 */
+	private static void readParameters(Expression expression, boolean[] read) {
+		if ( expression instanceof VariableFactor ) {
+			Attribute attribute = ((VariableFactor) expression).getAttribute();
+			if ( attribute.getScope() != 0 && attribute.getAst() instanceof VarDec && attribute.getSlot() < read.length ) {
+				read[attribute.getSlot()] = true;
+			}
+		} else if ( expression instanceof Bexp ) {
+			readParameters(((Bexp) expression).getLeft(), read);
+			readParameters(((Bexp) expression).getRight(), read);
+		} else if ( expression instanceof Aexp || expression instanceof Term || expression instanceof CallFactor ) {
+			for (Expression operand : operands(expression)) {
+				readParameters(operand, read);
+			}
+		}
+	}
+
+	private static Expression[] operands(Expression expression) {
+		if ( expression instanceof Aexp ) {
+			return ((Aexp) expression).getOperands();
+		} else if ( expression instanceof Term ) {
+			return ((Term) expression).getOperands();
+		}
+		return ((CallFactor) expression).getArguments();
+	}
+
+	/**
+	 * Marks the parameters and local variables the commands read
+	 * @param commands
+	 * @param read - indexed by slot
+	 */
+	private void reads(Cmd[] commands, boolean[] read) {
+		for (Cmd cmd : commands) {
+			if ( cmd instanceof AssignCmd ) {
+				readParameters(((AssignCmd) cmd).getValue(), read);
+			} else if ( cmd instanceof CallCmd ) {
+				for (Expression argument : ((CallCmd) cmd).getArguments()) {
+					readParameters(argument, read);
+				}
+			} else if ( cmd instanceof IfCmd ) {
+				IfCmd ifCmd = (IfCmd) cmd;
+				readParameters(ifCmd.getCondition(), read);
+				this.reads(ifCmd.getThenCommands(), read);
+				if ( ifCmd.getElseCommands() != null ) {
+					this.reads(ifCmd.getElseCommands(), read);
+				}
+			} else if ( cmd instanceof WhileCmd ) {
+				readParameters(((WhileCmd) cmd).getCondition(), read);
+				this.reads(((WhileCmd) cmd).getCommands(), read);
+			} else if ( cmd instanceof WriteCmd ) {
+				readParameters(((WriteCmd) cmd).getValue(), read);
+			}
+		}
+	}
+
+	/**
+	 * Finds the attribute the checker gave to the result of a function
+	 * @param commands
+	 * @param slot - the result slot
+	 * @return the attribute (null if the body never uses the result)
+	 */
+	private Attribute findResult(Cmd[] commands, int slot) {
+		for (Cmd cmd : commands) {
+			Attribute found = null;
+			if ( cmd instanceof AssignCmd ) {
+				AssignCmd assign = (AssignCmd) cmd;
+				found = isResult(assign.getAttribute(), slot) ? assign.getAttribute() : findResult(assign.getValue(), slot);
+			} else if ( cmd instanceof CallCmd ) {
+				found = findResult(((CallCmd) cmd).getArguments(), slot);
+			} else if ( cmd instanceof IfCmd ) {
+				IfCmd ifCmd = (IfCmd) cmd;
+				found = findResult(ifCmd.getCondition(), slot);
+				if ( found == null ) {
+					found = this.findResult(ifCmd.getThenCommands(), slot);
+				}
+				if ( found == null && ifCmd.getElseCommands() != null ) {
+					found = this.findResult(ifCmd.getElseCommands(), slot);
+				}
+			} else if ( cmd instanceof WhileCmd ) {
+				found = findResult(((WhileCmd) cmd).getCondition(), slot);
+				if ( found == null ) {
+					found = this.findResult(((WhileCmd) cmd).getCommands(), slot);
+				}
+			} else if ( cmd instanceof WriteCmd ) {
+				found = findResult(((WriteCmd) cmd).getValue(), slot);
+			}
+			if ( found != null ) {
+				return found;
+			}
+		}
+		return null;
+	}
+
+	private static Attribute findResult(Expression expression, int slot) {
+		if ( expression instanceof VariableFactor ) {
+			Attribute attribute = ((VariableFactor) expression).getAttribute();
+			return isResult(attribute, slot) ? attribute : null;
+		} else if ( expression instanceof Bexp ) {
+			Attribute found = findResult(((Bexp) expression).getLeft(), slot);
+			return found != null ? found : findResult(((Bexp) expression).getRight(), slot);
+		} else if ( expression instanceof Aexp || expression instanceof Term || expression instanceof CallFactor ) {
+			return findResult(operands(expression), slot);
+		}
+		return null;
+	}
+
+	private static Attribute findResult(Expression[] expressions, int slot) {
+		for (Expression expression : expressions) {
+			Attribute found = findResult(expression, slot);
+			if ( found != null ) {
+				return found;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isResult(Attribute attribute, int slot) {
+		return attribute.getScope() != 0 && attribute.getAst() instanceof FuncDec && attribute.getSlot() == slot;
+	}
+
+	// Rebuilding with the moved result: expression visits return the
+	// expression, command visits the command (the same node if unchanged)
+
+	private Cmd[] rebuild(Cmd[] commands) {
+		Cmd[] rebuilt = null;
+		for (int i = 0; i < commands.length; i++) {
+			Cmd cmd = (Cmd) commands[i].visit(this, null);
+			if ( cmd != commands[i] && rebuilt == null ) {
+				rebuilt = commands.clone();
+			}
+			if ( rebuilt != null ) {
+				rebuilt[i] = cmd;
+			}
+		}
+		return rebuilt != null ? rebuilt : commands;
+	}
+
+	private Expression rebuild(Expression expression) {
+		return (Expression) expression.visit(this, null);
+	}
+
+	private Expression[] rebuild(Expression[] expressions) {
+		Expression[] rebuilt = null;
+		for (int i = 0; i < expressions.length; i++) {
+			Expression expression = this.rebuild(expressions[i]);
+			if ( expression != expressions[i] && rebuilt == null ) {
+				rebuilt = expressions.clone();
+			}
+			if ( rebuilt != null ) {
+				rebuilt[i] = expression;
+			}
+		}
+		return rebuilt != null ? rebuilt : expressions;
+	}
+
+	public Object visitProgram(Program program, Object arg) {
+		return this.eliminate(program);
+	}
+
+	public Object visitVarDec(VarDec varDec, Object arg) {
+		return varDec;
+	}
+
+	public Object visitFuncDec(FuncDec funcDec, Object arg) {
+		return funcDec;
+	}
+
+	public Object visitProcDec(ProcDec procDec, Object arg) {
+		return procDec;
+	}
+
+	public Object visitAssignCmd(AssignCmd cmd, Object arg) {
+		Expression value = this.rebuild(cmd.getValue());
+		Attribute attribute = cmd.getAttribute() == this.result ? this.moved : cmd.getAttribute();
+		if ( value == cmd.getValue() && attribute == cmd.getAttribute() ) {
+			return cmd;
+		}
+		AssignCmd rebuilt = new AssignCmd(cmd.getName(), value, cmd.getLine(), cmd.getColumn());
+		rebuilt.setAttribute(attribute);
+		return rebuilt;
+	}
+
+	public Object visitCallCmd(CallCmd cmd, Object arg) {
+		Expression[] arguments = this.rebuild(cmd.getArguments());
+		if ( arguments == cmd.getArguments() ) {
+			return cmd;
+		}
+		CallCmd rebuilt = new CallCmd(cmd.getName(), arguments, cmd.getLine(), cmd.getColumn());
+		rebuilt.setAttribute(cmd.getAttribute());
+		return rebuilt;
+	}
+
+	public Object visitIfCmd(IfCmd cmd, Object arg) {
+		Expression condition = this.rebuild(cmd.getCondition());
+		Cmd[] thenCommands = this.rebuild(cmd.getThenCommands());
+		Cmd[] elseCommands = cmd.getElseCommands() == null ? null : this.rebuild(cmd.getElseCommands());
+		if ( condition == cmd.getCondition() && thenCommands == cmd.getThenCommands() &&
+				elseCommands == cmd.getElseCommands() ) {
+			return cmd;
+		}
+		return new IfCmd(condition, thenCommands, elseCommands, cmd.getLine(), cmd.getColumn());
+	}
+
+	public Object visitWhileCmd(WhileCmd cmd, Object arg) {
+		Expression condition = this.rebuild(cmd.getCondition());
+		Cmd[] commands = this.rebuild(cmd.getCommands());
+		if ( condition == cmd.getCondition() && commands == cmd.getCommands() ) {
+			return cmd;
+		}
+		return new WhileCmd(condition, commands, cmd.getLine(), cmd.getColumn());
+	}
+
+	public Object visitWriteCmd(WriteCmd cmd, Object arg) {
+		Expression value = this.rebuild(cmd.getValue());
+		return value == cmd.getValue() ? cmd : new WriteCmd(value, cmd.getLine(), cmd.getColumn());
+	}
+
+	public Object visitBreakCmd(BreakCmd cmd, Object arg) {
+		return cmd;
+	}
+
+	public Object visitContinueCmd(ContinueCmd cmd, Object arg) {
+		return cmd;
+	}
+
+	public Object visitBexp(Bexp bexp, Object arg) {
+		Expression left = this.rebuild(bexp.getLeft());
+		Expression right = this.rebuild(bexp.getRight());
+		if ( left == bexp.getLeft() && right == bexp.getRight() ) {
+			return bexp;
+		}
+		Bexp rebuilt = new Bexp(left, bexp.getOperator(), right);
+		rebuilt.setType(bexp.getType());
+		return rebuilt;
+	}
+
+	public Object visitAexp(Aexp aexp, Object arg) {
+		Expression[] operands = this.rebuild(aexp.getOperands());
+		if ( operands == aexp.getOperands() ) {
+			return aexp;
+		}
+		Aexp rebuilt = new Aexp(operands, aexp.getOperators());
+		rebuilt.setType(aexp.getType());
+		return rebuilt;
+	}
+
+	public Object visitTerm(Term term, Object arg) {
+		Expression[] operands = this.rebuild(term.getOperands());
+		if ( operands == term.getOperands() ) {
+			return term;
+		}
+		Term rebuilt = new Term(operands, term.getOperators());
+		rebuilt.setType(term.getType());
+		return rebuilt;
+	}
+
+	public Object visitVariableFactor(VariableFactor factor, Object arg) {
+		if ( factor.getAttribute() != this.result ) {
+			return factor;
+		}
+		VariableFactor rebuilt = new VariableFactor(factor.getName(), factor.getLine(), factor.getColumn());
+		rebuilt.setAttribute(this.moved);
+		rebuilt.setType(factor.getType());
+		return rebuilt;
+	}
+
+	public Object visitCallFactor(CallFactor factor, Object arg) {
+		Expression[] arguments = this.rebuild(factor.getArguments());
+		if ( arguments == factor.getArguments() ) {
+			return factor;
+		}
+		CallFactor rebuilt = new CallFactor(factor.getName(), arguments, factor.getLine(), factor.getColumn());
+		rebuilt.setAttribute(factor.getAttribute());
+		rebuilt.setType(factor.getType());
+		return rebuilt;
+	}
+
+	public Object visitNumberFactor(NumberFactor factor, Object arg) {
+		return factor;
+	}
+
+	public Object visitBooleanFactor(BooleanFactor factor, Object arg) {
+		return factor;
+	}
+
+}
@@ -0,0 +1,675 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import scanner.IncrementalScanner;
+import scanner.LexicalException;
+import scanner.Token;
+import scanner.TokenStream;
+import util.EditableSource;
+import util.AST.AST;
+import util.AST.Cmd;
+import util.AST.FuncDec;
+import util.AST.IfCmd;
+import util.AST.ProcDec;
+import util.AST.Program;
+import util.AST.VarDec;
+import util.AST.WhileCmd;
+import util.diagnostics.Diagnostic;
+
+/**
+ * Incremental parser
+ * Keeps the AST of an editable source up to date. The program is split in
+ * units (each function, procedure and main program command), and each unit
+ * in the units of the commands of its blocks. After an edit only the
+ * commands of the innermost block holding the changed tokens (or the token
+ * right after them, which the parser looks at) are parsed again, and the
+ * nodes around them are rebuilt; when no block holds them, the top level
+ * units that changed are. Edits to the program header or to the begin and
+ * end of the main program parse the whole source again.
+ * The nodes of a unit have lines relative to the line of its first token
+ * (and the token indexes of a unit are relative to its parent), so the
+ * units after an edit that adds or removes lines only move; getLine and
+ * locate give the lines in the source
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class IncrementalParser {
+
+	/**
+	 * A parsed unit and its tokens (start inclusive, end exclusive; relative
+	 * to the start of the unit it is in, at the top level to the source)
+	 */
+	private static class Unit {
+
+		private AST node;
+		private int start, end;
+		// The units of the commands of its blocks (null if none); of an if, the then commands come first
+		private List<Unit> units;
+		// Number of units in the first block
+		private int split;
+		// Begin of the first block and of the else block (relative to start; -1 when the block is empty)
+		private int begin = -1, elseBegin = -1;
+
+		private Unit(AST node, int start, int end, List<Unit> units) {
+			this.node = node;
+			this.start = start;
+			this.end = end;
+			this.units = units;
+			if ( units != null ) {
+				for (Unit unit : units) {
+					unit.start -= start;
+					unit.end -= start;
+				}
+				this.split = node instanceof IfCmd ? ((IfCmd) node).getThenCommands().length : units.size();
+				if ( this.split > 0 ) {
+					this.begin = units.get(0).start - 1;
+				}
+				if ( this.split < units.size() ) {
+					this.elseBegin = units.get(this.split).start - 1;
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * The tokens of the source, with lines relative to the first line of
+	 * the unit being parsed
+	 */
+	private static class Lines implements TokenStream {
+
+		private final IncrementalScanner.Cursor cursor;
+		// Line of the first token of the unit being parsed
+		private int base;
+
+		private Lines(IncrementalScanner.Cursor cursor) {
+			this.cursor = cursor;
+		}
+
+		public GrammarSymbols advance() throws LexicalException {
+			return this.cursor.advance();
+		}
+
+		public GrammarSymbols getKind() {
+			return this.cursor.getKind();
+		}
+
+		public String getSpelling() {
+			return this.cursor.getSpelling();
+		}
+
+		public int getLine() {
+			return this.cursor.getLine() - this.base;
+		}
+
+		public int getColumn() {
+			return this.cursor.getColumn();
+		}
+
+		public Token getToken() {
+			// Errors keep the line in the source
+			return this.cursor.getToken();
+		}
+
+	}
+
+	/**
+	 * A parser that makes a unit of each command it parses
+	 */
+	private static class UnitParser extends Parser {
+
+		private final Lines tokens;
+		// Units of the commands parsed in the current block (null if none)
+		private List<Unit> units;
+
+		private UnitParser(IncrementalScanner.Cursor cursor) throws LexicalException {
+			this(new Lines(cursor));
+		}
+
+		private UnitParser(Lines tokens) throws LexicalException {
+			super(tokens);
+			this.tokens = tokens;
+		}
+
+		/**
+		 * Returns the index of the current token
+		 * @return
+		 */
+		private int getIndex() {
+			return this.tokens.cursor.getIndex();
+		}
+
+		/**
+		 * Parses a function, a procedure or (for any other kind, or null) a command
+		 * @param kind
+		 * @return its unit (with the token indexes of the source)
+		 * @throws SyntacticException
+		 * @throws LexicalException
+		 */
+		private Unit parseUnit(GrammarSymbols kind) throws SyntacticException, LexicalException {
+			int start = this.getIndex();
+			int base = this.tokens.base;
+			List<Unit> units = this.units;
+			this.tokens.base = this.tokens.cursor.getLine();
+			this.units = null;
+			AST node;
+			if ( kind == GrammarSymbols.FUNCTION ) {
+				node = super.parseFuncDec();
+			} else if ( kind == GrammarSymbols.PROCEDURE ) {
+				node = super.parseProcDec();
+			} else {
+				node = super.parseCmd();
+			}
+			Unit unit = new Unit(node, start, this.getIndex(), this.units);
+			this.tokens.base = base;
+			this.units = units;
+			return unit;
+		}
+
+		Cmd parseCmd() throws SyntacticException, LexicalException {
+			Unit unit = this.parseUnit(null);
+			if ( this.units == null ) {
+				this.units = new ArrayList<Unit>();
+			}
+			this.units.add(unit);
+			return (Cmd) unit.node;
+		}
+
+	}
+
+	// The tokens of the source
+	private IncrementalScanner scanner;
+	// The program name and global variables
+	private String name;
+	private VarDec[] variables;
+	// The units, in source order (null when the whole source must be parsed again)
+	private List<Unit> units;
+	// Index of the first token after the header, of the main program begin and of its end
+	private int headerEnd, beginIndex, endIndex;
+	// Tokens not parsed since a syntactic error (from inclusive, to exclusive; from < 0 if none)
+	private int pendingFrom = -1, pendingTo;
+	// The program (null when the source has errors)
+	private Program program;
+	// The first error of the source (if any)
+	private Exception error;
+
+	/**
+	 * Default constructor
+	 * @param source
+	 */
+	public IncrementalParser(EditableSource source) {
+		this.scanner = new IncrementalScanner(source);
+		this.parseAll();
+	}
+
+	/**
+	 * Returns the tokens of the source
+	 * @return
+	 */
+	public IncrementalScanner getScanner() {
+		return this.scanner;
+	}
+
+	/**
+	 * Returns the program (null when the source has errors)
+	 * @return
+	 */
+	public Program getProgram() {
+		return this.program;
+	}
+
+	/**
+	 * Returns the first lexical or syntactic error of the source (or null)
+	 * @return
+	 */
+	public Exception getError() {
+		return this.error;
+	}
+
+	/**
+	 * Returns the line in the source of the first token of a command or
+	 * subprogram of the program: the line its positions are relative to
+	 * @param node
+	 * @return the line, or -1 if the node is not a command or subprogram of the program
+	 */
+	public int getLine(AST node) {
+		return this.units == null ? -1 : this.getLine(this.units, 0, node);
+	}
+
+	private int getLine(List<Unit> units, int base, AST node) {
+		for (Unit unit : units) {
+			if ( unit.node == node ) {
+				return this.scanner.getLine(base + unit.start);
+			}
+			if ( unit.units != null ) {
+				int line = this.getLine(unit.units, base + unit.start, node);
+				if ( line >= 0 ) {
+					return line;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns a diagnostic found in the program (by the checker) at its line
+	 * in the source
+	 * @param diagnostic
+	 * @param node - the command or subprogram it was found in (its line is relative to it)
+	 * @return
+	 */
+	public Diagnostic locate(Diagnostic diagnostic, AST node) {
+		int line = this.getLine(node);
+		if ( line <= 0 || diagnostic.getLine() < 0 ) {
+			return diagnostic;
+		}
+		return new Diagnostic(diagnostic.getCode(), diagnostic.getLine() + line, diagnostic.getColumn(),
+				diagnostic.getArguments());
+	}
+
+	/**
+	 * Replaces a range of the source text and updates the AST
+	 * @param offset - where the edit starts
+	 * @param removed - number of characters removed
+	 * @param text - the text inserted in their place
+	 */
+	public void edit(int offset, int removed, CharSequence text) {
+		this.scanner.edit(offset, removed, text);
+		int first = this.scanner.getFirst();
+		int oldEnd = first + this.scanner.getRemoved();
+		int newEnd = first + this.scanner.getInserted();
+		if ( this.units == null || this.scanner.getError() != null ) {
+			this.parseAll();
+			return;
+		}
+		// Changes to the header or to the main program begin and end
+		if ( first <= this.headerEnd || first > this.endIndex ||
+				(this.beginIndex >= first && this.beginIndex < oldEnd) ||
+				(this.endIndex >= first && this.endIndex < oldEnd) ) {
+			this.parseAll();
+			return;
+		}
+
+		// Moves the units after the changed tokens
+		shift(this.units, 0, first, oldEnd, newEnd);
+		this.beginIndex = shift(this.beginIndex, first, oldEnd, newEnd, true);
+		this.endIndex = shift(this.endIndex, first, oldEnd, newEnd, true);
+
+		// Tokens to parse again: the changed ones, the ones that changed
+		// column (their nodes keep it) and those left from a syntactic error.
+		// Lines are relative to the unit, so the units that only moved to
+		// other lines need not be parsed again. After a deletion the units
+		// that were removed start at first too, so the token there is parsed
+		// again as well
+		int from = first;
+		int to = Math.max(newEnd, this.scanner.getLastMoved());
+		if ( oldEnd > first ) {
+			to = Math.max(to, first + 1);
+		}
+		if ( this.pendingFrom >= 0 ) {
+			from = Math.min(from, this.pendingFrom);
+			to = Math.max(to, shift(this.pendingTo, first, oldEnd, newEnd, false));
+		}
+
+		try {
+			if ( this.pendingFrom < 0 && this.parseBlock(from, to, oldEnd > first) ) {
+				return;
+			}
+			if ( !this.parse(from, to) ) {
+				this.parseAll();
+			}
+		} catch (SyntacticException e) {
+			this.fail(e, from, to);
+		} catch (LexicalException e) {
+			this.fail(e, from, to);
+		}
+	}
+
+	/**
+	 * Moves a token index past an edit that replaced the tokens [first, oldEnd)
+	 * with [first, newEnd)
+	 * @param index
+	 * @param first
+	 * @param oldEnd
+	 * @param newEnd
+	 * @param start - whether an index inside the edit goes to its start (or to its end)
+	 * @return
+	 */
+	private static int shift(int index, int first, int oldEnd, int newEnd, boolean start) {
+		if ( index < first ) {
+			return index;
+		} else if ( index >= oldEnd ) {
+			return index + newEnd - oldEnd;
+		}
+		return start ? first : newEnd;
+	}
+
+	/**
+	 * Moves the units of a list past an edit; in the units that start before
+	 * the edit and end after it, the units of their commands are moved too
+	 * @param units
+	 * @param base - the token index the units are relative to
+	 * @param first
+	 * @param oldEnd
+	 * @param newEnd
+	 */
+	private static void shift(List<Unit> units, int base, int first, int oldEnd, int newEnd) {
+		for (Unit unit : units) {
+			int start = base + unit.start, end = base + unit.end;
+			if ( end < first ) {
+				continue;
+			}
+			if ( start < first && unit.units != null ) {
+				shift(unit.units, start, first, oldEnd, newEnd);
+				if ( unit.elseBegin >= 0 ) {
+					unit.elseBegin = shift(start + unit.elseBegin, first, oldEnd, newEnd, true) - start;
+				}
+			}
+			unit.start = shift(start, first, oldEnd, newEnd, true) - base;
+			unit.end = shift(end, first, oldEnd, newEnd, false) - base;
+		}
+	}
+
+	/**
+	 * Keeps the old units and the tokens left to parse after a syntactic error
+	 * @param e
+	 * @param from
+	 * @param to
+	 */
+	private void fail(Exception e, int from, int to) {
+		this.error = e;
+		this.program = null;
+		this.pendingFrom = from;
+		this.pendingTo = to;
+	}
+
+	/**
+	 * Parses again the commands of the innermost block that holds the tokens
+	 * [from, to), from the first one that ends at or after from to the first
+	 * old one that starts at or after to, and rebuilds the nodes around them
+	 * @param from
+	 * @param to
+	 * @param removed - whether the edit removed tokens (then the token at its
+	 * new end may be one that replaced the end of a block)
+	 * @return false if no block holds them (or the commands no longer fit it)
+	 * @throws SyntacticException
+	 * @throws LexicalException
+	 */
+	private boolean parseBlock(int from, int to, boolean removed) throws SyntacticException, LexicalException {
+		// The units around the block, outermost first, and the block: units [low, high) of a list
+		List<Unit> path = new ArrayList<Unit>();
+		List<Unit> list = this.units;
+		int base = 0, low = 0, high = list.size();
+		for (int i = low; i < high; i++) {
+			Unit unit = list.get(i);
+			int start = base + unit.start;
+			if ( start >= from ) {
+				break;
+			}
+			if ( unit.units == null ) {
+				continue;
+			}
+			// Its then or else block, if it holds the tokens with its begin and end
+			int a = 0, b = unit.split, begin = unit.begin;
+			if ( unit.elseBegin >= 0 && start + unit.elseBegin < from ) {
+				a = unit.split;
+				b = unit.units.size();
+				begin = unit.elseBegin;
+			}
+			if ( a == b || begin < 0 || start + begin >= from ) {
+				continue;
+			}
+			int end = start + unit.units.get(b - 1).end;
+			if ( to > end || (to == end && removed) ) {
+				continue;
+			}
+			path.add(unit);
+			list = unit.units;
+			base = start;
+			low = a;
+			high = b;
+			i = low - 1;
+		}
+		if ( path.isEmpty() ) {
+			return false;
+		}
+
+		int blockEnd = base + list.get(high - 1).end;
+		int a = low;
+		while (base + list.get(a).end < from) {
+			a++;
+		}
+		// New tokens right after the begin come before the first unit
+		IncrementalScanner.Cursor cursor = this.scanner.stream(Math.min(from, base + list.get(a).start));
+		UnitParser parser = new UnitParser(cursor);
+		List<Unit> parsed = new ArrayList<Unit>();
+		int j = a;
+		for (;;) {
+			int position = cursor.getIndex();
+			if ( position > blockEnd ) {
+				return false;
+			}
+			while (j < high && base + list.get(j).start < position) {
+				j++;
+			}
+			// Back to the old units, or at the end of the block (the old units
+			// left there were removed by the edit)
+			if ( position >= to && j < high && base + list.get(j).start == position ) {
+				break;
+			} else if ( position == blockEnd ) {
+				j = high;
+				break;
+			} else if ( parser.getCurrentKind() == GrammarSymbols.END ) {
+				return false;
+			}
+			Unit unit = parser.parseUnit(null);
+			unit.start -= base;
+			unit.end -= base;
+			parsed.add(unit);
+		}
+
+		Unit owner = path.get(path.size() - 1);
+		List<Unit> units = new ArrayList<Unit>(list.size() - (j - a) + parsed.size());
+		units.addAll(list.subList(0, a));
+		units.addAll(parsed);
+		units.addAll(list.subList(j, list.size()));
+		owner.units = units;
+		if ( low < owner.split ) {
+			owner.split += parsed.size() - (j - a);
+		}
+		for (int i = path.size() - 1; i >= 0; i--) {
+			Unit unit = path.get(i);
+			unit.node = rebuild(unit);
+		}
+		this.error = null;
+		this.program = this.build();
+		return true;
+	}
+
+	/**
+	 * Builds the node of a unit again with the nodes of its units
+	 * @param unit
+	 * @return
+	 */
+	private static AST rebuild(Unit unit) {
+		Cmd[] commands = commands(unit.units, 0, unit.split);
+		if ( unit.node instanceof IfCmd ) {
+			IfCmd cmd = (IfCmd) unit.node;
+			Cmd[] elseCommands = cmd.getElseCommands() == null ? null : commands(unit.units, unit.split, unit.units.size());
+			return new IfCmd(cmd.getCondition(), commands, elseCommands, cmd.getLine(), cmd.getColumn());
+		} else if ( unit.node instanceof WhileCmd ) {
+			WhileCmd cmd = (WhileCmd) unit.node;
+			return new WhileCmd(cmd.getCondition(), commands, cmd.getLine(), cmd.getColumn());
+		} else if ( unit.node instanceof FuncDec ) {
+			FuncDec function = (FuncDec) unit.node;
+			return new FuncDec(function.getName(), function.getParameters(), function.getReturnType(),
+					function.getVariables(), commands, function.getLine(), function.getColumn());
+		}
+		ProcDec procedure = (ProcDec) unit.node;
+		return new ProcDec(procedure.getName(), procedure.getParameters(), procedure.getVariables(),
+				commands, procedure.getLine(), procedure.getColumn());
+	}
+
+	/**
+	 * Returns the nodes of units [from, to) of a list
+	 * @param units
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	private static Cmd[] commands(List<Unit> units, int from, int to) {
+		Cmd[] commands = new Cmd[to - from];
+		for (int i = from; i < to; i++) {
+			commands[i - from] = (Cmd) units.get(i).node;
+		}
+		return commands;
+	}
+
+	/**
+	 * Parses again the top level units that have tokens in [from, to) or that end at
+	 * from, stopping at the first old unit that starts at or after to
+	 * @param from
+	 * @param to
+	 * @return false if the units no longer fit the program structure
+	 * @throws SyntacticException
+	 * @throws LexicalException
+	 */
+	private boolean parse(int from, int to) throws SyntacticException, LexicalException {
+		int a = 0;
+		while (a < this.units.size() && this.units.get(a).end < from) {
+			a++;
+		}
+		if ( a == this.units.size() ) {
+			return false;
+		}
+		// New tokens right after the begin come before the first unit
+		IncrementalScanner.Cursor cursor = this.scanner.stream(Math.min(from, this.units.get(a).start));
+		UnitParser parser = new UnitParser(cursor);
+		List<Unit> parsed = new ArrayList<Unit>();
+		boolean commands = this.units.get(a).node instanceof Cmd;
+		int j = a;
+		for (;;) {
+			int position = cursor.getIndex();
+			if ( position > (commands ? this.endIndex : this.beginIndex) ) {
+				return false;
+			}
+			while (j < this.units.size() && this.units.get(j).start < position) {
+				j++;
+			}
+			// Back to the old units
+			if ( position >= to && j < this.units.size() && this.units.get(j).start == position ) {
+				break;
+			}
+			GrammarSymbols kind = parser.getCurrentKind();
+			if ( !commands ) {
+				if ( position == this.beginIndex ) {
+					if ( position >= to ) {
+						break;
+					}
+					parser.accept(GrammarSymbols.BEGIN);
+					commands = true;
+					continue;
+				} else if ( kind != GrammarSymbols.FUNCTION && kind != GrammarSymbols.PROCEDURE ) {
+					return false;
+				}
+			} else {
+				if ( position == this.endIndex ) {
+					// The old units left were removed by the edit
+					j = this.units.size();
+					break;
+				} else if ( kind == GrammarSymbols.END ) {
+					return false;
+				}
+			}
+			parsed.add(parser.parseUnit(commands ? null : kind));
+		}
+
+		List<Unit> units = new ArrayList<Unit>(this.units.size() - (j - a) + parsed.size());
+		units.addAll(this.units.subList(0, a));
+		units.addAll(parsed);
+		units.addAll(this.units.subList(j, this.units.size()));
+		// Functions must still come before procedures
+		boolean procedures = false;
+		for (Unit unit : units) {
+			if ( unit.node instanceof ProcDec ) {
+				procedures = true;
+			} else if ( unit.node instanceof FuncDec && procedures ) {
+				return false;
+			}
+		}
+		this.units = units;
+		this.pendingFrom = -1;
+		this.error = null;
+		this.program = this.build();
+		return true;
+	}
+
+	/**
+	 * Parses the whole source
+	 */
+	private void parseAll() {
+		this.units = new ArrayList<Unit>();
+		this.pendingFrom = -1;
+		this.error = null;
+		this.program = null;
+		try {
+			IncrementalScanner.Cursor cursor = this.scanner.stream(0);
+			UnitParser parser = new UnitParser(cursor);
+			parser.accept(GrammarSymbols.PROGRAM);
+			this.name = parser.acceptName();
+			parser.accept(GrammarSymbols.SEMICOLON);
+			List<VarDec> variables = parser.parseGlobalVariables();
+			this.variables = variables.toArray(new VarDec[variables.size()]);
+			this.headerEnd = cursor.getIndex();
+
+			while (parser.getCurrentKind() == GrammarSymbols.FUNCTION) {
+				this.units.add(parser.parseUnit(GrammarSymbols.FUNCTION));
+			}
+			while (parser.getCurrentKind() == GrammarSymbols.PROCEDURE) {
+				this.units.add(parser.parseUnit(GrammarSymbols.PROCEDURE));
+			}
+			this.beginIndex = cursor.getIndex();
+			parser.accept(GrammarSymbols.BEGIN);
+			while (parser.getCurrentKind() != GrammarSymbols.END) {
+				this.units.add(parser.parseUnit(null));
+			}
+			this.endIndex = cursor.getIndex();
+			parser.accept(GrammarSymbols.END);
+			parser.accept(GrammarSymbols.DOT);
+			parser.accept(GrammarSymbols.EOF);
+			this.program = this.build();
+		} catch (SyntacticException e) {
+			this.error = e;
+			this.units = null;
+		} catch (LexicalException e) {
+			this.error = e;
+			this.units = null;
+		}
+	}
+
+	/**
+	 * Builds the program node from the units
+	 * @return
+	 */
+	private Program build() {
+		List<FuncDec> functions = new ArrayList<FuncDec>();
+		List<ProcDec> procedures = new ArrayList<ProcDec>();
+		List<Cmd> commands = new ArrayList<Cmd>();
+		for (Unit unit : this.units) {
+			if ( unit.node instanceof FuncDec ) {
+				functions.add((FuncDec) unit.node);
+			} else if ( unit.node instanceof ProcDec ) {
+				procedures.add((ProcDec) unit.node);
+			} else {
+				commands.add((Cmd) unit.node);
+			}
+		}
+		return new Program(this.name, this.variables,
+				functions.toArray(new FuncDec[functions.size()]),
+				procedures.toArray(new ProcDec[procedures.size()]),
+				commands.toArray(new Cmd[commands.size()]));
+	}
+
+}
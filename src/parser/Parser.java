@@ -1,9 +1,39 @@
 package parser;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
 import scanner.LexicalException;
 import scanner.Scanner;
-import scanner.Token;
-import util.AST.AST;
+import scanner.TokenBuffer;
+import scanner.TokenStream;
+import util.Source;
+import util.AST.Aexp;
+import util.AST.AssignCmd;
+import util.AST.Bexp;
+import util.AST.BooleanFactor;
+import util.AST.BreakCmd;
+import util.AST.CallCmd;
+import util.AST.CallFactor;
+import util.AST.Cmd;
+import util.AST.ContinueCmd;
+import util.AST.Expression;
+import util.AST.FuncDec;
+import util.AST.IfCmd;
+import util.AST.NumberFactor;
+import util.AST.Operator;
+import util.AST.ProcDec;
+import util.AST.Program;
+import util.AST.Term;
+import util.AST.Type;
+import util.AST.VarDec;
+import util.AST.VariableFactor;
+import util.AST.WhileCmd;
+import util.AST.WriteCmd;
+import util.diagnostics.Code;
 
 /**
  * Parser class
@@ -14,10 +44,19 @@ import util.AST.AST;
  */
 public class Parser {
 
-	// The current token
-	private Token currentToken = null;
-	// The scanner
-	private Scanner scanner = null;
+	// The current token kind
+	private GrammarSymbols currentKind = null;
+	// The token stream (the scanner itself or a token buffer)
+	private TokenStream tokens = null;
+	// Identifier names, so each distinct name is kept only once in the AST
+	private HashMap<String, String> names = new HashMap<String, String>();
+	// Syntax errors recovered from (null: the first error is thrown) and how many are kept
+	private List<SyntacticException> errors = null;
+	private int maxErrors = 0;
+	// Whether the parser gave up (errors are no longer recovered from)
+	private boolean stopped = false;
+	// Errors kept by default when recovering
+	public static final int MAX_ERRORS = 100;
 	
 	/**
 	 * Parser constructor
@@ -25,8 +64,111 @@ public class Parser {
 	 */
 	public Parser() throws LexicalException {
 		// Initializes the scanner object
-		this.scanner = new Scanner();
-		this.currentToken = this.scanner.getNextToken();
+		this(new Scanner());
+	}
+	
+	/**
+	 * Creates a parser that reads the given source
+	 * @param source
+	 * @throws LexicalException 
+	 */
+	public Parser(Source source) throws LexicalException {
+		this(new Scanner(source));
+	}
+	
+	/**
+	 * Creates a parser that reads a char sequence
+	 * @param text
+	 * @throws LexicalException 
+	 */
+	public Parser(CharSequence text) throws LexicalException {
+		this(new Scanner(text));
+	}
+	
+	/**
+	 * Creates a parser that reads a slice of a char array
+	 * @param chars
+	 * @param start
+	 * @param length
+	 * @throws LexicalException 
+	 */
+	public Parser(char[] chars, int start, int length) throws LexicalException {
+		this(new Scanner(chars, start, length));
+	}
+	
+	/**
+	 * Creates a parser that reads the bytes of a buffer (ISO-8859-1)
+	 * @param bytes
+	 * @throws LexicalException 
+	 */
+	public Parser(ByteBuffer bytes) throws LexicalException {
+		this(new Scanner(bytes));
+	}
+	
+	/**
+	 * Creates a parser that reads a byte channel in chunks (ISO-8859-1)
+	 * @param channel
+	 * @throws LexicalException 
+	 */
+	public Parser(ReadableByteChannel channel) throws LexicalException {
+		this(new Scanner(channel));
+	}
+	
+	/**
+	 * Creates a parser that reads the tokens of the given scanner
+	 * @param scanner
+	 * @throws LexicalException 
+	 */
+	public Parser(Scanner scanner) throws LexicalException {
+		this((TokenStream) scanner);
+	}
+	
+	/**
+	 * Creates a parser that reads the tokens of the given token buffer
+	 * @param buffer
+	 * @throws LexicalException 
+	 */
+	public Parser(TokenBuffer buffer) throws LexicalException {
+		this(buffer.stream());
+	}
+	
+	/**
+	 * Creates a parser that reads the given token stream
+	 * @param tokens
+	 * @throws LexicalException 
+	 */
+	public Parser(TokenStream tokens) throws LexicalException {
+		this.tokens = tokens;
+		this.currentKind = this.tokens.advance();
+	}
+	
+	/**
+	 * Makes the parser recover from syntax errors: a command, a variable
+	 * declaration or a subprogram with an error is skipped up to the next
+	 * ';', 'end' or 'begin' and parsing goes on, so one parse finds every
+	 * error. parse() then throws the first error, with the others as
+	 * suppressed exceptions. Recovery costs nothing on valid sources
+	 * @param maxErrors - errors kept before giving up (0: no recovery)
+	 */
+	public void setMaxErrors(int maxErrors) {
+		this.maxErrors = maxErrors;
+		this.errors = maxErrors > 0 ? new ArrayList<SyntacticException>() : null;
+	}
+	
+	/**
+	 * Returns the syntax errors recovered from so far
+	 * @return
+	 */
+	public List<SyntacticException> getErrors() {
+		return this.errors;
+	}
+	
+	/**
+	 * Returns the current token kind
+	 * @return
+	 */
+	GrammarSymbols getCurrentKind() {
+		return this.currentKind;
 	}
 	
 	/**
@@ -35,11 +177,11 @@ public class Parser {
 	 * @throws SyntacticException
 	 * @throws LexicalException 
 	 */
-	private void accept(GrammarSymbols kind) throws SyntacticException, LexicalException {
-		if (this.currentToken.getKind() == kind) {
+	void accept(GrammarSymbols kind) throws SyntacticException, LexicalException {
+		if (this.currentKind == kind) {
 			this.acceptIt();
 		} else {
-			throw new SyntacticException("Syntactic error: expecting " + kind + ", but found " + this.currentToken.getKind(), this.currentToken);
+			throw new SyntacticException(Code.EXPECTED_TOKEN, this.tokens.getToken(), kind, this.currentKind);
 		}
 	}
 	
@@ -47,272 +189,577 @@ public class Parser {
 	 * Gets next token
 	 * @throws LexicalException 
 	 */
-	private void acceptIt() throws LexicalException {
-		this.currentToken = this.scanner.getNextToken();
+	void acceptIt() throws LexicalException {
+		this.currentKind = this.tokens.advance();
+	}
+	
+	/**
+	 * Accepts an identifier and returns its (interned) name
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	String acceptName() throws SyntacticException, LexicalException {
+		String name = null;
+		if (this.currentKind == GrammarSymbols.ID) {
+			String spelling = this.tokens.getSpelling();
+			name = this.names.get(spelling);
+			if (name == null) {
+				name = spelling;
+				this.names.put(name, name);
+			}
+		}
+		accept(GrammarSymbols.ID);
+		return name;
+	}
+
+	/**
+	 * Records a syntax error to go on parsing after it; throws it if the
+	 * parser does not recover, and throws all of them when there are too many
+	 * @param e
+	 * @throws SyntacticException
+	 */
+	private void recover(SyntacticException e) throws SyntacticException {
+		if (this.errors == null || this.stopped) {
+			throw e;
+		}
+		this.errors.add(e);
+		if (this.errors.size() >= this.maxErrors) {
+			throw this.report();
+		}
+	}
+	
+	/**
+	 * Skips the current token while recovering (gives up at the end of the source)
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	private void skip() throws SyntacticException, LexicalException {
+		if (this.currentKind == GrammarSymbols.EOF) {
+			throw this.report();
+		}
+		acceptIt();
+	}
+	
+	/**
+	 * Stops recovering and returns the first error, holding the others
+	 * @return
+	 */
+	private SyntacticException report() {
+		this.stopped = true;
+		SyntacticException first = this.errors.get(0);
+		for (int i = 1; i < this.errors.size(); i++) {
+			first.addSuppressed(this.errors.get(i));
+		}
+		return first;
 	}
 
 	/**
-	 * Verifies if the source program is syntactically correct
+	 * Verifies if the source program is syntactically correct and builds its AST
 	 * @throws SyntacticException
 	 * @throws LexicalException 
 	 */
-	public AST parse() throws SyntacticException, LexicalException {
-		this.parseProgram();
-		accept(GrammarSymbols.EOF);
+	public Program parse() throws SyntacticException, LexicalException {
+		Program program;
+		try {
+			program = this.parseProgram();
+			accept(GrammarSymbols.EOF);
+		} catch (SyntacticException e) {
+			if (this.errors == null || this.stopped || this.errors.isEmpty()) {
+				throw e;
+			}
+			// An error outside the recovered parts ends the parse
+			this.errors.add(e);
+			throw this.report();
+		} catch (LexicalException e) {
+			if (this.errors == null || this.stopped || this.errors.isEmpty()) {
+				throw e;
+			}
+			// The scanner does not recover: ends the parse, reported after the syntax errors before it
+			SyntacticException first = this.report();
+			first.addSuppressed(e);
+			throw first;
+		}
+		if (this.errors != null && !this.errors.isEmpty()) {
+			throw this.report();
+		}
 		
-		return null;
+		return program;
 	}
 
-	public void parseProgram() throws SyntacticException, LexicalException {
+	public Program parseProgram() throws SyntacticException, LexicalException {
 		accept(GrammarSymbols.PROGRAM);
-		accept(GrammarSymbols.ID);
+		String name = acceptName();
 		accept(GrammarSymbols.SEMICOLON);
 		
-		if (this.currentToken.getKind() == GrammarSymbols.VAR) {
-			acceptIt();
-			parseVarDec();
-			accept(GrammarSymbols.SEMICOLON);
-			while (this.currentToken.getKind() != GrammarSymbols.FUNCTION && 
-					this.currentToken.getKind() != GrammarSymbols.PROCEDURE && 
-					this.currentToken.getKind() != GrammarSymbols.BEGIN) {
-				parseVarDec();
-				accept(GrammarSymbols.SEMICOLON);
-			}
-		}
+		List<VarDec> variables = parseGlobalVariables();
 		
-		while (this.currentToken.getKind() == GrammarSymbols.FUNCTION) {
-			parseFuncDec();
+		List<FuncDec> functions = new ArrayList<FuncDec>();
+		while (this.currentKind == GrammarSymbols.FUNCTION) {
+			FuncDec function = parseFuncDec();
+			if (function != null) {
+				functions.add(function);
+			}
 		}
 		
-		while (this.currentToken.getKind() == GrammarSymbols.PROCEDURE) {
-			parseProcDec();
+		List<ProcDec> procedures = new ArrayList<ProcDec>();
+		while (this.currentKind == GrammarSymbols.PROCEDURE) {
+			ProcDec procedure = parseProcDec();
+			if (procedure != null) {
+				procedures.add(procedure);
+			}
 		}
 		
 		accept(GrammarSymbols.BEGIN);
 		
-		while (this.currentToken.getKind() != GrammarSymbols.END) {
-			parseCmd();
-		}
+		List<Cmd> commands = parseCommands();
 		
 		accept(GrammarSymbols.END);
 		accept(GrammarSymbols.DOT);
+		
+		return new Program(name,
+				variables.toArray(new VarDec[variables.size()]),
+				functions.toArray(new FuncDec[functions.size()]),
+				procedures.toArray(new ProcDec[procedures.size()]),
+				commands.toArray(new Cmd[commands.size()]));
 	}
 
-	private void parseVarDec() throws SyntacticException, LexicalException {
-		accept(GrammarSymbols.ID);
-		
-		while (this.currentToken.getKind() == GrammarSymbols.COMMA) {
+	/**
+	 * Parses the global variable declarations (if any)
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	List<VarDec> parseGlobalVariables() throws SyntacticException, LexicalException {
+		List<VarDec> variables = new ArrayList<VarDec>();
+		if (this.currentKind == GrammarSymbols.VAR) {
 			acceptIt();
-			accept(GrammarSymbols.ID);
+			boolean more = parseVarDecLine(variables);
+			while (more && this.currentKind != GrammarSymbols.FUNCTION && 
+					this.currentKind != GrammarSymbols.PROCEDURE && 
+					this.currentKind != GrammarSymbols.BEGIN) {
+				more = parseVarDecLine(variables);
+			}
 		}
-		
-		accept(GrammarSymbols.COLON);
-		
-		if (this.currentToken.getKind() == GrammarSymbols.INTEGER) {
+		return variables;
+	}
+	
+	/**
+	 * Parses a variable declaration and the ';' after it; after a syntax
+	 * error, skips to the next ';' or to what ends the declarations
+	 * @param variables - where the declaration is added
+	 * @return false if an error ended the declarations
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	private boolean parseVarDecLine(List<VarDec> variables) throws SyntacticException, LexicalException {
+		try {
+			variables.add(parseVarDec());
+			accept(GrammarSymbols.SEMICOLON);
+		} catch (SyntacticException e) {
+			recover(e);
+			while (this.currentKind != GrammarSymbols.SEMICOLON) {
+				if (this.currentKind == GrammarSymbols.BEGIN ||
+						this.currentKind == GrammarSymbols.FUNCTION ||
+						this.currentKind == GrammarSymbols.PROCEDURE) {
+					return false;
+				}
+				skip();
+			}
 			acceptIt();
-		} else {
-			accept(GrammarSymbols.BOOLEAN);
 		}
+		return true;
 	}
 
-	private void parseFuncDec() throws SyntacticException, LexicalException {
-		accept(GrammarSymbols.FUNCTION);
-		accept(GrammarSymbols.ID);
-		accept(GrammarSymbols.LP);
+	private VarDec parseVarDec() throws SyntacticException, LexicalException {
+		int line = this.tokens.getLine(), column = this.tokens.getColumn();
+		List<String> names = new ArrayList<String>();
+		names.add(acceptName());
 		
-		if (this.currentToken.getKind() != GrammarSymbols.RP) {
-			parseParLst();
+		while (this.currentKind == GrammarSymbols.COMMA) {
+			acceptIt();
+			names.add(acceptName());
 		}
 		
-		accept(GrammarSymbols.RP);
 		accept(GrammarSymbols.COLON);
 		
-		if (this.currentToken.getKind() == GrammarSymbols.INTEGER) {
+		Type type = parseType();
+		
+		return new VarDec(names.toArray(new String[names.size()]), type, line, column);
+	}
+	
+	private Type parseType() throws SyntacticException, LexicalException {
+		if (this.currentKind == GrammarSymbols.INTEGER) {
 			acceptIt();
+			return Type.INTEGER;
 		} else {
 			accept(GrammarSymbols.BOOLEAN);
+			return Type.BOOLEAN;
 		}
-		
-		accept(GrammarSymbols.SEMICOLON);
-		
-		if (this.currentToken.getKind() == GrammarSymbols.VAR) {
-			acceptIt();
-			parseVarDec();
+	}
+
+	/**
+	 * Parses a function (null if it had a syntax error the parser recovered from)
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	FuncDec parseFuncDec() throws SyntacticException, LexicalException {
+		int line = this.tokens.getLine(), column = this.tokens.getColumn();
+		Cmd[] commands = null;
+		try {
+			accept(GrammarSymbols.FUNCTION);
+			String name = acceptName();
+			accept(GrammarSymbols.LP);
+			
+			VarDec[] parameters = parseParLst();
+			
+			accept(GrammarSymbols.RP);
+			accept(GrammarSymbols.COLON);
+			
+			Type returnType = parseType();
+			
 			accept(GrammarSymbols.SEMICOLON);
-			while (this.currentToken.getKind() != GrammarSymbols.BEGIN) {
-				parseVarDec();
-				accept(GrammarSymbols.SEMICOLON);
-			}
+			
+			VarDec[] variables = parseLocalVariables();
+			commands = parseBlock();
+			
+			accept(GrammarSymbols.SEMICOLON);
+			
+			return new FuncDec(name, parameters, returnType, variables, commands, line, column);
+		} catch (SyntacticException e) {
+			recover(e);
+			skipSubprogram(commands != null);
+			return null;
 		}
-		
-		accept(GrammarSymbols.BEGIN);
-
-		while (this.currentToken.getKind() != GrammarSymbols.END) {
-			parseCmd();
+	}
+	
+	/**
+	 * Parses a procedure (null if it had a syntax error the parser recovered from)
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	ProcDec parseProcDec() throws SyntacticException, LexicalException {
+		int line = this.tokens.getLine(), column = this.tokens.getColumn();
+		Cmd[] commands = null;
+		try {
+			accept(GrammarSymbols.PROCEDURE);
+			String name = acceptName();
+			accept(GrammarSymbols.LP);
+			
+			VarDec[] parameters = parseParLst();
+			
+			accept(GrammarSymbols.RP);
+			accept(GrammarSymbols.SEMICOLON);
+			
+			VarDec[] variables = parseLocalVariables();
+			commands = parseBlock();
+			
+			accept(GrammarSymbols.SEMICOLON);
+			
+			return new ProcDec(name, parameters, variables, commands, line, column);
+		} catch (SyntacticException e) {
+			recover(e);
+			skipSubprogram(commands != null);
+			return null;
 		}
-
-		accept(GrammarSymbols.END);
-		accept(GrammarSymbols.SEMICOLON);
 	}
 	
-	private void parseProcDec() throws SyntacticException, LexicalException {
-		accept(GrammarSymbols.PROCEDURE);
-		accept(GrammarSymbols.ID);
-		accept(GrammarSymbols.LP);
-		
-		if (this.currentToken.getKind() != GrammarSymbols.RP) {
-			parseParLst();
+	/**
+	 * Skips the rest of a subprogram with a syntax error, up to the next
+	 * subprogram or the main program 'begin'; a body not parsed yet is
+	 * parsed (recovering from its own errors) and skipped
+	 * @param body - whether the body was already parsed
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	private void skipSubprogram(boolean body) throws SyntacticException, LexicalException {
+		while (this.currentKind != GrammarSymbols.FUNCTION &&
+				this.currentKind != GrammarSymbols.PROCEDURE) {
+			if (this.currentKind == GrammarSymbols.BEGIN) {
+				if (body) {
+					return;
+				}
+				parseBlock();
+				if (this.currentKind == GrammarSymbols.SEMICOLON) {
+					acceptIt();
+				}
+				return;
+			}
+			skip();
 		}
-		
-		accept(GrammarSymbols.RP);
-		accept(GrammarSymbols.SEMICOLON);
-		
-		if (this.currentToken.getKind() == GrammarSymbols.VAR) {
+	}
+	
+	/**
+	 * Parses the optional local variable declarations of a subprogram
+	 * (var (VarDec;)+ )?
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	private VarDec[] parseLocalVariables() throws SyntacticException, LexicalException {
+		List<VarDec> variables = new ArrayList<VarDec>();
+		if (this.currentKind == GrammarSymbols.VAR) {
 			acceptIt();
-			parseVarDec();
-			accept(GrammarSymbols.SEMICOLON);
-			while (this.currentToken.getKind() != GrammarSymbols.BEGIN) {
-				parseVarDec();
-				accept(GrammarSymbols.SEMICOLON);
+			boolean more = parseVarDecLine(variables);
+			while (more && this.currentKind != GrammarSymbols.BEGIN) {
+				more = parseVarDecLine(variables);
 			}
 		}
-		
+		return variables.toArray(new VarDec[variables.size()]);
+	}
+	
+	/**
+	 * Parses a command block (without the ';' after it)
+	 * begin Cmd* end
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	private Cmd[] parseBlock() throws SyntacticException, LexicalException {
 		accept(GrammarSymbols.BEGIN);
-
-		while (this.currentToken.getKind() != GrammarSymbols.END) {
-			parseCmd();
-		}
-
+		
+		List<Cmd> commands = parseCommands();
+		
 		accept(GrammarSymbols.END);
-		accept(GrammarSymbols.SEMICOLON);
+		return commands.toArray(new Cmd[commands.size()]);
+	}
+	
+	/**
+	 * Parses the commands of a block, up to its 'end'
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	private List<Cmd> parseCommands() throws SyntacticException, LexicalException {
+		List<Cmd> commands = new ArrayList<Cmd>();
+		while (this.currentKind != GrammarSymbols.END) {
+			Cmd cmd = parseCmd();
+			if (cmd != null) {
+				commands.add(cmd);
+			}
+		}
+		return commands;
 	}
 
-	private void parseParLst() throws SyntacticException, LexicalException {
-		parseVarDec();
-		while (this.currentToken.getKind() == GrammarSymbols.SEMICOLON) {
-			acceptIt();
-			parseVarDec();
+	/**
+	 * Parses an optional parameter list (nothing if the next token is ')')
+	 * ParLst ::= VarDec (;VarDec)*
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	private VarDec[] parseParLst() throws SyntacticException, LexicalException {
+		List<VarDec> parameters = new ArrayList<VarDec>();
+		if (this.currentKind != GrammarSymbols.RP) {
+			parameters.add(parseVarDec());
+			while (this.currentKind == GrammarSymbols.SEMICOLON) {
+				acceptIt();
+				parameters.add(parseVarDec());
+			}
 		}
+		return parameters.toArray(new VarDec[parameters.size()]);
 	}
 	
-	private void parseCmd() throws SyntacticException, LexicalException {
-		if (this.currentToken.getKind() == GrammarSymbols.ID) {
-			acceptIt();
-			if (this.currentToken.getKind() == GrammarSymbols.ATTR) {
+	/**
+	 * Parses a command (null if it had a syntax error the parser recovered from)
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	Cmd parseCmd() throws SyntacticException, LexicalException {
+		try {
+			return parseCommand();
+		} catch (SyntacticException e) {
+			recover(e);
+			skipCommand();
+			return null;
+		}
+	}
+	
+	/**
+	 * Skips the rest of a command with a syntax error: up to the ';' after it
+	 * (and an 'else' part after that) or up to the 'end' of its block; blocks
+	 * inside it are parsed, recovering from their own errors, and skipped
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	private void skipCommand() throws SyntacticException, LexicalException {
+		while (this.currentKind != GrammarSymbols.END) {
+			if (this.currentKind == GrammarSymbols.BEGIN) {
+				parseBlock();
+			} else if (this.currentKind == GrammarSymbols.SEMICOLON) {
 				acceptIt();
-				parseBexp();
+				if (this.currentKind != GrammarSymbols.ELSE) {
+					return;
+				}
+			} else {
+				skip();
+			}
+		}
+	}
+	
+	private Cmd parseCommand() throws SyntacticException, LexicalException {
+		int line = this.tokens.getLine(), column = this.tokens.getColumn();
+		Cmd cmd;
+		if (this.currentKind == GrammarSymbols.ID) {
+			String name = acceptName();
+			if (this.currentKind == GrammarSymbols.ATTR) {
+				acceptIt();
+				cmd = new AssignCmd(name, parseBexp(), line, column);
 			} else {
 				accept(GrammarSymbols.LP);
-				parseArgLst();
+				Expression[] arguments = parseArgLst();
 				accept(GrammarSymbols.RP);
+				cmd = new CallCmd(name, arguments, line, column);
 			}
 			accept(GrammarSymbols.SEMICOLON);
-		} else if (this.currentToken.getKind() == GrammarSymbols.IF) {
+		} else if (this.currentKind == GrammarSymbols.IF) {
 			acceptIt();
-			parseBexp();
+			Expression condition = parseBexp();
 			accept(GrammarSymbols.THEN);
-			accept(GrammarSymbols.BEGIN);
-			while (this.currentToken.getKind() != GrammarSymbols.END) {
-				parseCmd();
-			}
-			accept(GrammarSymbols.END);
+			Cmd[] thenCommands = parseBlock();
 			accept(GrammarSymbols.SEMICOLON);
-			if (this.currentToken.getKind() == GrammarSymbols.ELSE) {
+			Cmd[] elseCommands = null;
+			if (this.currentKind == GrammarSymbols.ELSE) {
 				acceptIt();
-				accept(GrammarSymbols.BEGIN);
-				while (this.currentToken.getKind() != GrammarSymbols.END) {
-					parseCmd();
-				}
-				accept(GrammarSymbols.END);
+				elseCommands = parseBlock();
 				accept(GrammarSymbols.SEMICOLON);
 			}
-		} else if (this.currentToken.getKind() == GrammarSymbols.WHILE) {
+			cmd = new IfCmd(condition, thenCommands, elseCommands, line, column);
+		} else if (this.currentKind == GrammarSymbols.WHILE) {
 			acceptIt();
-			parseBexp();
+			Expression condition = parseBexp();
 			accept(GrammarSymbols.DO);
-			accept(GrammarSymbols.BEGIN);
-			while (this.currentToken.getKind() != GrammarSymbols.END) {
-				parseCmd();
-			}
-			accept(GrammarSymbols.END);
+			Cmd[] commands = parseBlock();
 			accept(GrammarSymbols.SEMICOLON);
-		} else if (this.currentToken.getKind() == GrammarSymbols.WRITE) {
+			cmd = new WhileCmd(condition, commands, line, column);
+		} else if (this.currentKind == GrammarSymbols.WRITE) {
 			acceptIt();
 			accept(GrammarSymbols.LP);
-			parseBexp();
+			Expression value = parseBexp();
 			accept(GrammarSymbols.RP);
 			accept(GrammarSymbols.SEMICOLON);
-		} else if (this.currentToken.getKind() == GrammarSymbols.BREAK) {
+			cmd = new WriteCmd(value, line, column);
+		} else if (this.currentKind == GrammarSymbols.BREAK) {
 			acceptIt();
 			accept(GrammarSymbols.SEMICOLON);
+			cmd = new BreakCmd(line, column);
 		} else {
 			accept(GrammarSymbols.CONTINUE);
 			accept(GrammarSymbols.SEMICOLON);
+			cmd = new ContinueCmd(line, column);
 		}
+		return cmd;
 	}
 	
-	private void parseBexp() throws SyntacticException, LexicalException {
-		parseAexp();
-		if (this.currentToken.getKind() == GrammarSymbols.EQUALS ||
-			this.currentToken.getKind() == GrammarSymbols.NOTEQUALS ||
-			this.currentToken.getKind() == GrammarSymbols.GT ||
-			this.currentToken.getKind() == GrammarSymbols.LT ||
-			this.currentToken.getKind() == GrammarSymbols.GE ||
-			this.currentToken.getKind() == GrammarSymbols.LE) {
-			acceptIt();
-			parseAexp();
+	private Expression parseBexp() throws SyntacticException, LexicalException {
+		Expression left = parseAexp();
+		Operator operator = null;
+		switch (this.currentKind) {
+		case EQUALS: operator = Operator.EQUALS; break;
+		case NOTEQUALS: operator = Operator.NOTEQUALS; break;
+		case GT: operator = Operator.GT; break;
+		case LT: operator = Operator.LT; break;
+		case GE: operator = Operator.GE; break;
+		case LE: operator = Operator.LE; break;
+		default: return left;
 		}
+		acceptIt();
+		return new Bexp(left, operator, parseAexp());
 	}	
 
-	private void parseAexp() throws SyntacticException, LexicalException {
-		parseTerm();
-		while (this.currentToken.getKind() == GrammarSymbols.ADD ||
-				this.currentToken.getKind() == GrammarSymbols.SUB) {
+	private Expression parseAexp() throws SyntacticException, LexicalException {
+		Expression first = parseTerm();
+		if (this.currentKind != GrammarSymbols.ADD &&
+				this.currentKind != GrammarSymbols.SUB) {
+			return first;
+		}
+		List<Expression> operands = new ArrayList<Expression>();
+		List<Operator> operators = new ArrayList<Operator>();
+		operands.add(first);
+		while (this.currentKind == GrammarSymbols.ADD ||
+				this.currentKind == GrammarSymbols.SUB) {
+			operators.add(this.currentKind == GrammarSymbols.ADD ? Operator.ADD : Operator.SUB);
 			acceptIt();
-			parseTerm();
+			operands.add(parseTerm());
 		}
+		return new Aexp(operands.toArray(new Expression[operands.size()]),
+				operators.toArray(new Operator[operators.size()]));
 	}	
 
-	private void parseTerm() throws SyntacticException, LexicalException {
-		parseFactor();
-		while (this.currentToken.getKind() == GrammarSymbols.MUL ||
-				this.currentToken.getKind() == GrammarSymbols.DIV) {
+	private Expression parseTerm() throws SyntacticException, LexicalException {
+		Expression first = parseFactor();
+		if (this.currentKind != GrammarSymbols.MUL &&
+				this.currentKind != GrammarSymbols.DIV) {
+			return first;
+		}
+		List<Expression> operands = new ArrayList<Expression>();
+		List<Operator> operators = new ArrayList<Operator>();
+		operands.add(first);
+		while (this.currentKind == GrammarSymbols.MUL ||
+				this.currentKind == GrammarSymbols.DIV) {
+			operators.add(this.currentKind == GrammarSymbols.MUL ? Operator.MUL : Operator.DIV);
 			acceptIt();
-			parseFactor();
+			operands.add(parseFactor());
 		}
+		return new Term(operands.toArray(new Expression[operands.size()]),
+				operators.toArray(new Operator[operators.size()]));
 	}
 	
-	private void parseFactor() throws SyntacticException, LexicalException {
-		if (this.currentToken.getKind() == GrammarSymbols.ID) {
-			acceptIt();
-			if (this.currentToken.getKind() == GrammarSymbols.LP) {
+	private Expression parseFactor() throws SyntacticException, LexicalException {
+		if (this.currentKind == GrammarSymbols.ID) {
+			int line = this.tokens.getLine(), column = this.tokens.getColumn();
+			String name = acceptName();
+			if (this.currentKind == GrammarSymbols.LP) {
 				acceptIt();
-				if (this.currentToken.getKind() != GrammarSymbols.RP) {
-					parseArgLst();
-					accept(GrammarSymbols.RP);
-				} else {
-					acceptIt();
-				}
+				Expression[] arguments = parseArgLst();
+				accept(GrammarSymbols.RP);
+				return new CallFactor(name, arguments, line, column);
+			}
+			return new VariableFactor(name, line, column);
+		} else if (this.currentKind == GrammarSymbols.NUM) {
+			String spelling = this.tokens.getSpelling();
+			int value;
+			try {
+				value = Integer.parseInt(spelling);
+			} catch (NumberFormatException e) {
+				throw new SyntacticException(Code.INTEGER_TOO_LARGE, this.tokens.getToken(), spelling);
 			}
-		} else if (this.currentToken.getKind() == GrammarSymbols.NUM) {
 			acceptIt();
-		} else if (this.currentToken.getKind() == GrammarSymbols.TRUE) {
+			return new NumberFactor(value);
+		} else if (this.currentKind == GrammarSymbols.TRUE) {
 			acceptIt();
-		} else if (this.currentToken.getKind() == GrammarSymbols.FALSE) {
+			return new BooleanFactor(true);
+		} else if (this.currentKind == GrammarSymbols.FALSE) {
 			acceptIt();
+			return new BooleanFactor(false);
 		} else {
 			accept(GrammarSymbols.LP);
-			parseBexp();
+			Expression expression = parseBexp();
 			accept(GrammarSymbols.RP);
+			return expression;
 		}
 	}
 
-	private void parseArgLst() throws SyntacticException, LexicalException {
-		parseBexp();
-		while (this.currentToken.getKind() == GrammarSymbols.COMMA) {
-			acceptIt();
-			parseBexp();
+	/**
+	 * Parses an optional argument list (nothing if the next token is ')')
+	 * ArgLst ::= Bexp(,Bexp)*
+	 * @return
+	 * @throws SyntacticException
+	 * @throws LexicalException 
+	 */
+	private Expression[] parseArgLst() throws SyntacticException, LexicalException {
+		List<Expression> arguments = new ArrayList<Expression>();
+		if (this.currentKind != GrammarSymbols.RP) {
+			arguments.add(parseBexp());
+			while (this.currentKind == GrammarSymbols.COMMA) {
+				acceptIt();
+				arguments.add(parseBexp());
+			}
 		}
+		return arguments.toArray(new Expression[arguments.size()]);
 	}	
 	
 }
@@ -1,6 +1,9 @@
 package parser;
 
 import scanner.Token;
+import util.diagnostics.Code;
+import util.diagnostics.Diagnostic;
+import util.diagnostics.DiagnosticException;
 
 /**
  * Synticatic Exception
@@ -9,7 +12,7 @@ import scanner.Token;
  * @author Gustavo H P Carvalho
  * @email gustavohpcarvalho@ecomp.poli.br
  */
-public class SyntacticException extends Exception {
+public class SyntacticException extends DiagnosticException {
 
 	private static final long serialVersionUID = 3457448332803077642L;
 	
@@ -20,26 +23,33 @@ public class SyntacticException extends Exception {
 	 * Default constructor
 	 * @param message
 	 * @param token
-	 * @param symbols
 	 */
 	public SyntacticException(String message, Token token) {
-		super(message);
-		this.token = token;
+		this(Code.SYNTACTIC_ERROR, token, message);
 	}
 	
 	/**
-	 * Creates the error report
+	 * Creates an exception at a token (its spelling is added as the last
+	 * argument of the diagnostic, and its offset, when known, is kept)
+	 * @param code
+	 * @param token
+	 * @param arguments
 	 */
-	public String toString() {
-		String errorMessage =
-			"----------------------------- SYNTACTIC ERROR REPORT - BEGIN -----------------------------\n" +
-			">> Message: " + super.getMessage() + "\n" +
-			">> Token: " + this.token.getSpelling() + "\n" +
-			"   at line: " + (this.token.getLine()+1) + "\n" +
-			"   at column: " + (this.token.getColumn()+1) + "\n" +
-			"------------------------------ SYNTACTIC ERROR REPORT - END ------------------------------\n";
-			
-		return errorMessage;
+	public SyntacticException(Code code, Token token, Object... arguments) {
+		super(new Diagnostic(code, token.getLine(), token.getColumn(), token.getStart(),
+				subject(arguments, token.getSpelling())));
+		this.token = token;
+	}
+	
+	private static Object[] subject(Object[] arguments, String spelling) {
+		Object[] all = new Object[arguments.length + 1];
+		System.arraycopy(arguments, 0, all, 0, arguments.length);
+		all[arguments.length] = spelling;
+		return all;
+	}
+	
+	public Token getToken() {
+		return token;
 	}
 	
 }
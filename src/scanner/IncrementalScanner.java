@@ -0,0 +1,423 @@
+package scanner;
+
+import parser.GrammarSymbols;
+import util.EditableSource;
+
+/**
+ * Incremental scanner
+ * Keeps the tokens of an editable source and, after each edit, scans again
+ * only the damaged tokens: scanning restarts at the end of the last token
+ * before the edit and stops as soon as a new token starts where an old one
+ * (moved by the edit) started, since from there on the tokens are the same.
+ * The tokens are kept in parallel int arrays with a gap at the last edit;
+ * tokens after the gap keep their offset relative to the end of the source
+ * and their line relative to the line of the last token, so an edit does
+ * not have to move them
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class IncrementalScanner {
+
+	// Token kinds by ordinal
+	private static final GrammarSymbols[] KINDS = GrammarSymbols.values();
+	// Initial capacity
+	private static final int INITIAL_CAPACITY = 256;
+
+	// The source
+	private EditableSource source;
+	// Token fields
+	private int[] kinds, starts, lengths, lines, columns;
+	// The gap bounds (start inclusive, end exclusive)
+	private int gapStart, gapEnd;
+	// Line of the last token (tokens after the gap keep lines relative to it)
+	private int lastLine;
+	// Lexical error found after the last token (if any)
+	private LexicalException error;
+	// Last edit: first damaged token, number of tokens removed and inserted there
+	private int first, removed, inserted;
+	// Last edit: line change of the tokens after it and end of the tokens whose column changed
+	private int lineDelta, lastMoved;
+
+	/**
+	 * Default constructor
+	 * @param source
+	 */
+	public IncrementalScanner(EditableSource source) {
+		this.source = source;
+		this.kinds = new int[INITIAL_CAPACITY];
+		this.starts = new int[INITIAL_CAPACITY];
+		this.lengths = new int[INITIAL_CAPACITY];
+		this.lines = new int[INITIAL_CAPACITY];
+		this.columns = new int[INITIAL_CAPACITY];
+		this.gapStart = 0;
+		this.gapEnd = INITIAL_CAPACITY;
+		this.rescan(new Scanner(source), 0);
+	}
+
+	/**
+	 * Returns the number of tokens
+	 * @return
+	 */
+	public int size() {
+		return this.kinds.length - (this.gapEnd - this.gapStart);
+	}
+
+	/**
+	 * Returns the array index of the i-th token
+	 * @param i
+	 * @return
+	 */
+	private int index(int i) {
+		return i < this.gapStart ? i : i + this.gapEnd - this.gapStart;
+	}
+
+	public EditableSource getSource() {
+		return this.source;
+	}
+
+	public GrammarSymbols getKind(int i) {
+		return KINDS[this.kinds[this.index(i)]];
+	}
+
+	public int getStart(int i) {
+		return i < this.gapStart ? this.starts[i] : this.starts[this.index(i)] + this.source.length();
+	}
+
+	public int getLength(int i) {
+		return this.lengths[this.index(i)];
+	}
+
+	public int getLine(int i) {
+		return i < this.gapStart ? this.lines[i] : this.lines[this.index(i)] + this.lastLine;
+	}
+
+	public int getColumn(int i) {
+		return this.columns[this.index(i)];
+	}
+
+	/**
+	 * Reads the spelling of the i-th token from the source
+	 * @param i
+	 * @return
+	 */
+	public String getSpelling(int i) {
+		int start = this.getStart(i);
+		return this.source.substring(start, start + this.getLength(i));
+	}
+
+	/**
+	 * Returns the i-th token as a Token object
+	 * @param i
+	 * @return
+	 */
+	public Token getToken(int i) {
+		return new Token(this.getKind(i), this.getSpelling(i), this.getStart(i), this.getLine(i), this.getColumn(i));
+	}
+
+	/**
+	 * Finds the token found at a line and column (the position the scanner
+	 * reached at its end, as in the diagnostics)
+	 * @param line
+	 * @param column
+	 * @return the token index, or -1 if no token is there
+	 */
+	public int find(int line, int column) {
+		int low = 0, high = this.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			int tokenLine = this.getLine(middle);
+			if ( tokenLine < line || (tokenLine == line && this.getColumn(middle) < column) ) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low < this.size() && this.getLine(low) == line && this.getColumn(low) == column ? low : -1;
+	}
+
+	/**
+	 * Returns the lexical error found after the last token (or null)
+	 * @return
+	 */
+	public LexicalException getError() {
+		return this.error;
+	}
+
+	/**
+	 * Returns the first token changed by the last edit
+	 * @return
+	 */
+	public int getFirst() {
+		return this.first;
+	}
+
+	/**
+	 * Returns the number of old tokens the last edit replaced
+	 * @return
+	 */
+	public int getRemoved() {
+		return this.removed;
+	}
+
+	/**
+	 * Returns the number of new tokens the last edit put in their place
+	 * @return
+	 */
+	public int getInserted() {
+		return this.inserted;
+	}
+
+	/**
+	 * Returns how many lines the tokens after the last edit moved
+	 * @return
+	 */
+	public int getLineDelta() {
+		return this.lineDelta;
+	}
+
+	/**
+	 * Returns the end of the tokens whose position changed in the last edit
+	 * (the new tokens and the old ones after them on the same line)
+	 * @return
+	 */
+	public int getLastMoved() {
+		return this.lastMoved;
+	}
+
+	/**
+	 * Replaces a range of the source text and updates the tokens
+	 * @param offset - where the edit starts
+	 * @param removed - number of characters removed
+	 * @param text - the text inserted in their place
+	 */
+	public void edit(int offset, int removed, CharSequence text) {
+		// The first token that may change is the first one ending at or after
+		// the edit (the char after a token decides where it ends)
+		int low = 0, high = this.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if ( this.getStart(middle) + this.getLength(middle) < offset ) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		this.moveGap(low);
+		this.source.replace(offset, removed, text);
+
+		this.first = low;
+		this.removed = 0;
+		this.inserted = 0;
+		this.lineDelta = 0;
+		Scanner scanner;
+		if ( low == 0 ) {
+			scanner = new Scanner(this.source);
+		} else {
+			int previous = low - 1;
+			scanner = new Scanner(this.source, this.starts[previous] + this.lengths[previous],
+					this.lines[previous], this.columns[previous]);
+		}
+		this.rescan(scanner, offset + text.length());
+	}
+
+	/**
+	 * Scans new tokens into the gap until they meet the old ones again
+	 * @param scanner
+	 * @param editEnd - offset where the unchanged text after the edit starts
+	 */
+	private void rescan(Scanner scanner, int editEnd) {
+		int length = this.source.length();
+		// After a lexical error it scans up to the end, so the error position is right
+		boolean reuse = this.error == null;
+		try {
+			for (;;) {
+				GrammarSymbols kind = scanner.scan();
+				int start = scanner.getStart();
+				// Old tokens this one went past are gone
+				while (this.gapEnd < this.kinds.length && this.starts[this.gapEnd] + length < start) {
+					this.gapEnd++;
+					this.removed++;
+				}
+				// Same start in the unchanged text: the old tokens from here on are still valid
+				if ( reuse && start >= editEnd && this.gapEnd < this.kinds.length && this.starts[this.gapEnd] + length == start ) {
+					this.resynchronize(scanner.getLine(), scanner.getColumn());
+					return;
+				}
+				this.insert(kind, start, scanner.getEnd() - start, scanner.getLine(), scanner.getColumn());
+				if ( kind == GrammarSymbols.EOF ) {
+					break;
+				}
+			}
+			this.error = null;
+		} catch (LexicalException e) {
+			this.error = e;
+		}
+		// Scanned up to the end: no old token is left
+		this.removed += this.kinds.length - this.gapEnd;
+		this.gapEnd = this.kinds.length;
+		this.lastLine = this.gapStart > 0 ? this.lines[this.gapStart - 1] : 0;
+		this.lastMoved = this.size();
+	}
+
+	/**
+	 * Moves the old tokens after the gap to the position the new scan found
+	 * Only the tokens on the same line as the first of them change column
+	 * @param line - the new line of the first old token
+	 * @param column - the new column of the first old token
+	 */
+	private void resynchronize(int line, int column) {
+		int relativeLine = this.lines[this.gapEnd];
+		this.lineDelta = line - (relativeLine + this.lastLine);
+		this.lastLine += this.lineDelta;
+		int columnDelta = column - this.columns[this.gapEnd];
+		int i = this.gapEnd;
+		if ( columnDelta != 0 ) {
+			while (i < this.kinds.length && this.lines[i] == relativeLine) {
+				this.columns[i] += columnDelta;
+				i++;
+			}
+		}
+		this.lastMoved = i - (this.gapEnd - this.gapStart);
+	}
+
+	/**
+	 * Adds a token at the gap (absolute offset and line)
+	 * @param kind
+	 * @param start
+	 * @param length
+	 * @param line
+	 * @param column
+	 */
+	private void insert(GrammarSymbols kind, int start, int length, int line, int column) {
+		if ( this.gapStart == this.gapEnd ) {
+			this.grow();
+		}
+		this.kinds[this.gapStart] = kind.ordinal();
+		this.starts[this.gapStart] = start;
+		this.lengths[this.gapStart] = length;
+		this.lines[this.gapStart] = line;
+		this.columns[this.gapStart] = column;
+		this.gapStart++;
+		this.inserted++;
+	}
+
+	/**
+	 * Moves the gap before the i-th token, converting the offsets and lines
+	 * of the tokens that cross it
+	 * @param i
+	 */
+	private void moveGap(int i) {
+		int length = this.source.length();
+		while (this.gapStart > i) {
+			this.gapStart--;
+			this.gapEnd--;
+			this.move(this.gapStart, this.gapEnd, -length, -this.lastLine);
+		}
+		while (this.gapStart < i) {
+			this.move(this.gapEnd, this.gapStart, length, this.lastLine);
+			this.gapStart++;
+			this.gapEnd++;
+		}
+	}
+
+	/**
+	 * Moves a token from one array index to another
+	 * @param from
+	 * @param to
+	 * @param startDelta
+	 * @param lineDelta
+	 */
+	private void move(int from, int to, int startDelta, int lineDelta) {
+		this.kinds[to] = this.kinds[from];
+		this.starts[to] = this.starts[from] + startDelta;
+		this.lengths[to] = this.lengths[from];
+		this.lines[to] = this.lines[from] + lineDelta;
+		this.columns[to] = this.columns[from];
+	}
+
+	/**
+	 * Doubles the capacity of the arrays (the gap grows)
+	 */
+	private void grow() {
+		int capacity = this.kinds.length * 2;
+		int after = this.kinds.length - this.gapEnd;
+		this.kinds = this.grow(this.kinds, capacity, after);
+		this.starts = this.grow(this.starts, capacity, after);
+		this.lengths = this.grow(this.lengths, capacity, after);
+		this.lines = this.grow(this.lines, capacity, after);
+		this.columns = this.grow(this.columns, capacity, after);
+		this.gapEnd = capacity - after;
+	}
+
+	private int[] grow(int[] array, int capacity, int after) {
+		int[] grown = new int[capacity];
+		System.arraycopy(array, 0, grown, 0, this.gapStart);
+		System.arraycopy(array, array.length - after, grown, capacity - after, after);
+		return grown;
+	}
+
+	/**
+	 * Returns a token stream that reads from the i-th token
+	 * @param i
+	 * @return
+	 */
+	public Cursor stream(int i) {
+		return new Cursor(i);
+	}
+
+	/**
+	 * Token stream over the tokens
+	 * The lexical error (if any) is thrown when the stream moves past the last token
+	 */
+	public class Cursor implements TokenStream {
+
+		// Index of the current token
+		private int index;
+
+		private Cursor(int first) {
+			this.index = first - 1;
+		}
+
+		/**
+		 * Returns the index of the current token
+		 * @return
+		 */
+		public int getIndex() {
+			return this.index;
+		}
+
+		public GrammarSymbols advance() throws LexicalException {
+			if ( this.index + 1 >= size() ) {
+				if ( error != null ) {
+					throw error;
+				}
+				// Stays on the last token (EOF)
+				return IncrementalScanner.this.getKind(this.index);
+			}
+			this.index++;
+			return IncrementalScanner.this.getKind(this.index);
+		}
+
+		public GrammarSymbols getKind() {
+			return IncrementalScanner.this.getKind(this.index);
+		}
+
+		public String getSpelling() {
+			return IncrementalScanner.this.getSpelling(this.index);
+		}
+
+		public int getLine() {
+			return IncrementalScanner.this.getLine(this.index);
+		}
+
+		public int getColumn() {
+			return IncrementalScanner.this.getColumn(this.index);
+		}
+
+		public Token getToken() {
+			return IncrementalScanner.this.getToken(this.index);
+		}
+
+	}
+
+}
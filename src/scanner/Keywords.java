@@ -0,0 +1,126 @@
+package scanner;
+
+import parser.GrammarSymbols;
+import util.Source;
+
+/**
+ * Keywords class
+ * Classifies an identifier spelling straight from the source, switching on
+ * its length and first char, so no String is built for it
+ * Keywords are case insensitive, as in Pascal
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public final class Keywords {
+
+	private Keywords() {
+	}
+
+	/**
+	 * Returns the keyword kind of the identifier at the given offsets, or ID
+	 * @param source
+	 * @param start
+	 * @param length
+	 * @return
+	 */
+	public static GrammarSymbols lookup(Source source, int start, int length) {
+		switch (length) {
+		case 2:
+			switch (lower(source.charAt(start))) {
+			case 'i':
+				return match(source, start, "if", GrammarSymbols.IF);
+			case 'd':
+				return match(source, start, "do", GrammarSymbols.DO);
+			}
+			break;
+		case 3:
+			switch (lower(source.charAt(start))) {
+			case 'v':
+				return match(source, start, "var", GrammarSymbols.VAR);
+			case 'e':
+				return match(source, start, "end", GrammarSymbols.END);
+			}
+			break;
+		case 4:
+			switch (lower(source.charAt(start))) {
+			case 't':
+				if (lower(source.charAt(start + 1)) == 'h') {
+					return match(source, start, "then", GrammarSymbols.THEN);
+				}
+				return match(source, start, "true", GrammarSymbols.TRUE);
+			case 'e':
+				return match(source, start, "else", GrammarSymbols.ELSE);
+			}
+			break;
+		case 5:
+			switch (lower(source.charAt(start))) {
+			case 'f':
+				return match(source, start, "false", GrammarSymbols.FALSE);
+			case 'b':
+				if (lower(source.charAt(start + 1)) == 'e') {
+					return match(source, start, "begin", GrammarSymbols.BEGIN);
+				}
+				return match(source, start, "break", GrammarSymbols.BREAK);
+			case 'w':
+				if (lower(source.charAt(start + 1)) == 'h') {
+					return match(source, start, "while", GrammarSymbols.WHILE);
+				}
+				return match(source, start, "write", GrammarSymbols.WRITE);
+			}
+			break;
+		case 7:
+			switch (lower(source.charAt(start))) {
+			case 'p':
+				return match(source, start, "program", GrammarSymbols.PROGRAM);
+			case 'b':
+				return match(source, start, "boolean", GrammarSymbols.BOOLEAN);
+			case 'i':
+				return match(source, start, "integer", GrammarSymbols.INTEGER);
+			}
+			break;
+		case 8:
+			switch (lower(source.charAt(start))) {
+			case 'f':
+				return match(source, start, "function", GrammarSymbols.FUNCTION);
+			case 'c':
+				return match(source, start, "continue", GrammarSymbols.CONTINUE);
+			}
+			break;
+		case 9:
+			if (lower(source.charAt(start)) == 'p') {
+				return match(source, start, "procedure", GrammarSymbols.PROCEDURE);
+			}
+			break;
+		}
+		return GrammarSymbols.ID;
+	}
+
+	/**
+	 * Returns kind if the chars at start spell the keyword (ignoring case), or ID
+	 * The first char is already known to match
+	 * @param source
+	 * @param start
+	 * @param keyword
+	 * @param kind
+	 * @return
+	 */
+	private static GrammarSymbols match(Source source, int start, String keyword, GrammarSymbols kind) {
+		for (int i = 1; i < keyword.length(); i++) {
+			if (lower(source.charAt(start + i)) != keyword.charAt(i)) {
+				return GrammarSymbols.ID;
+			}
+		}
+		return kind;
+	}
+
+	/**
+	 * Lower case of an identifier char (a letter or a digit)
+	 * Setting bit 0x20 maps 'A'-'Z' to 'a'-'z' and keeps digits unchanged
+	 * @param c
+	 * @return
+	 */
+	private static char lower(char c) {
+		return (char) (c | 0x20);
+	}
+
+}
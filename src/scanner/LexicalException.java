@@ -1,5 +1,9 @@
 package scanner;
 
+import util.diagnostics.Code;
+import util.diagnostics.Diagnostic;
+import util.diagnostics.DiagnosticException;
+
 /**
  * Lexical Exception
  * @version 2010-september-04
@@ -7,15 +11,10 @@ package scanner;
  * @author Gustavo H P Carvalho
  * @email gustavohpcarvalho@ecomp.poli.br
  */
-public class LexicalException extends Exception {
+public class LexicalException extends DiagnosticException {
 
 	private static final long serialVersionUID = 3457448332803077642L;
 	
-	// Not expected char
-	private char c;
-	// Line and column of error
-	private int line, column;
-	
 	/**
 	 * Default constructor
 	 * @param message
@@ -24,25 +23,23 @@ public class LexicalException extends Exception {
 	 * @param column
 	 */
 	public LexicalException(String message, char c, int line, int column) {
-		super(message);
-		this.c = c;
-		this.line = line;
-		this.column = column;
+		this(new Diagnostic(Code.LEXICAL_ERROR, line, column, message, c));
 	}
 	
 	/**
-	 * Creates the error report
-	 */	
-	public String toString() {
-		String errorMessage =
-			"----------------------------- LEXICAL ERROR REPORT - BEGIN -----------------------------\n" +
-			">> Message: " + super.getMessage() + "\n" +
-			">> Character: " + this.c + "\n" +
-			"   at line: " + (this.line+1) + "\n" +
-			"   at column: " + (this.column+1) + "\n" +
-			"------------------------------ LEXICAL ERROR REPORT - END ------------------------------\n";
-			
-		return errorMessage;
+	 * Creates an exception with a diagnostic (whose last argument is the not expected char)
+	 * @param diagnostic
+	 */
+	public LexicalException(Diagnostic diagnostic) {
+		super(diagnostic);
+	}
+	
+	public int getLine() {
+		return this.getDiagnostic().getLine();
+	}
+	
+	public int getColumn() {
+		return this.getDiagnostic().getColumn();
 	}
 	
 }	
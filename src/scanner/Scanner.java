@@ -1,11 +1,18 @@
 package scanner;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 
 import compiler.Properties;
 import parser.GrammarSymbols;
-import util.Arquivo;
+import util.ByteBufferSource;
+import util.CharArraySource;
+import util.CharSequenceSource;
+import util.ChannelSource;
+import util.MappedSource;
+import util.Source;
+import util.diagnostics.Code;
+import util.diagnostics.Diagnostic;
 
 /**
  * Scanner class
@@ -14,50 +21,96 @@ import util.Arquivo;
  * @author Gustavo H P Carvalho
  * @email gustavohpcarvalho@ecomp.poli.br
  */
-public class Scanner {
+public class Scanner implements TokenStream {
 
-	// The file object that will be used to read the source code
-	private Arquivo file;
+	// Name of the sources given without one
+	public static final String INPUT = "<input>";
+	// The source object that will be used to read the source code
+	private Source source;
+	// The offset of the current char in the source code and of the one after it
+	private int offset, nextOffset;
 	// The last char read from the source code
 	private char currentChar;
 	// The kind of the current token
 	private GrammarSymbols currentKind;
-	// Buffer to append characters read from file
-	private StringBuffer currentSpelling;
+	// The offsets where the current token starts and ends
+	private int tokenStart, tokenEnd;
 	// Current line and column in the source file
 	private int line, column;
-	// Keywords
-	private Map<String,GrammarSymbols> keywords;
 	
 	/**
 	 * Default constructor
 	 */
 	public Scanner() {
-		this.file = new Arquivo(Properties.sourceCodeLocation);		
+		this(new MappedSource(Properties.sourceCodeLocation));
+	}
+	
+	/**
+	 * Creates a scanner that reads the given source
+	 * @param source
+	 */
+	public Scanner(Source source) {
+		this.source = source;
+		this.nextOffset = 0;
 		this.line = 0;
 		this.column = 0;
-		this.currentChar = this.file.readChar();
-		this.currentSpelling = new StringBuffer();
-		
-		keywords = new HashMap<String,GrammarSymbols>();
-		keywords.put("program", GrammarSymbols.PROGRAM);
-		keywords.put("var", GrammarSymbols.VAR);
-		keywords.put("function", GrammarSymbols.FUNCTION);
-		keywords.put("procedure", GrammarSymbols.PROCEDURE);
-		keywords.put("true", GrammarSymbols.TRUE);
-		keywords.put("false", GrammarSymbols.FALSE);
-		keywords.put("begin", GrammarSymbols.BEGIN);
-		keywords.put("end", GrammarSymbols.END);
-		keywords.put("if", GrammarSymbols.IF);
-		keywords.put("then", GrammarSymbols.THEN);
-		keywords.put("else", GrammarSymbols.ELSE);
-		keywords.put("while", GrammarSymbols.WHILE);
-		keywords.put("do", GrammarSymbols.DO);
-		keywords.put("break", GrammarSymbols.BREAK);
-		keywords.put("continue", GrammarSymbols.CONTINUE);
-		keywords.put("write", GrammarSymbols.WRITE);
-		keywords.put("boolean", GrammarSymbols.BOOLEAN);
-		keywords.put("integer", GrammarSymbols.INTEGER);
+		this.readChar();
+	}
+	
+	/**
+	 * Creates a scanner that reads a char sequence
+	 * @param text
+	 */
+	public Scanner(CharSequence text) {
+		this(new CharSequenceSource(INPUT, text));
+	}
+	
+	/**
+	 * Creates a scanner that reads a slice of a char array
+	 * @param chars
+	 * @param start
+	 * @param length
+	 */
+	public Scanner(char[] chars, int start, int length) {
+		this(new CharArraySource(INPUT, chars, start, length));
+	}
+	
+	/**
+	 * Creates a scanner that reads the bytes of a buffer (ISO-8859-1)
+	 * @param bytes
+	 */
+	public Scanner(ByteBuffer bytes) {
+		this(new ByteBufferSource(INPUT, bytes));
+	}
+	
+	/**
+	 * Creates a scanner that reads a byte channel in chunks (ISO-8859-1)
+	 * Only the chars of the current token are kept in memory
+	 * @param channel
+	 */
+	public Scanner(ReadableByteChannel channel) {
+		this(new ChannelSource(INPUT, channel));
+	}
+	
+	/**
+	 * Creates a scanner that resumes reading right after a token
+	 * The scanner state between tokens is only the offset and the line and
+	 * column reached there (a token keeps the line and column of the char
+	 * after it), so scanning from the end of a token gives the same tokens
+	 * a scan from the start of the source would
+	 * @param source
+	 * @param offset - the end of the token
+	 * @param line - the line of the token
+	 * @param column - the column of the token
+	 */
+	public Scanner(Source source, int offset, int line, int column) {
+		this.source = source;
+		this.nextOffset = offset;
+		this.line = line;
+		this.column = column;
+		// The last char of the token (only matters at the end of the source)
+		this.currentChar = offset > 0 ? source.charAt(offset - 1) : Source.EOT;
+		this.readChar();
 	}
 	
 	/**
@@ -66,15 +119,116 @@ public class Scanner {
 	 * @throws LexicalException
 	 */
 	public Token getNextToken() throws LexicalException {
+		this.advance();
+		
+		return this.getToken();
+	}
+	
+	/**
+	 * Scans the next token without creating a Token object
+	 * The chars of the previous tokens are released, so a source read from
+	 * a stream may drop them
+	 * @return
+	 * @throws LexicalException
+	 */
+	public GrammarSymbols advance() throws LexicalException {
+		this.source.release(this.offset);
+		return this.scan();
+	}
+	
+	/**
+	 * Scans the next token, keeping the chars of the previous ones (token
+	 * buffers read their spellings from the source later)
+	 * @return
+	 * @throws LexicalException
+	 */
+	GrammarSymbols scan() throws LexicalException {
 		while (this.isSeparator(this.currentChar)) {
 			this.scanSeparator();
 		}
 		
-		currentSpelling.delete(0, currentSpelling.length());
-		GrammarSymbols kind = this.scanToken();
+		this.tokenStart = this.offset;
+		this.currentKind = this.scanToken();
+		this.tokenEnd = this.offset;
 		
-		return new Token(kind,
-				currentSpelling.toString(),
+		return this.currentKind;
+	}
+	
+	/**
+	 * Scans every token of the source into a token buffer
+	 * A lexical error ends the buffer and is kept in it, so it is only thrown
+	 * when a stream over the buffer reaches it
+	 * @return
+	 */
+	public TokenBuffer tokenize() {
+		TokenBuffer buffer = new TokenBuffer(this.source);
+		try {
+			do {
+				this.scan();
+				buffer.add(this.currentKind, this.tokenStart,
+						this.tokenEnd - this.tokenStart, this.line, this.column);
+			} while (this.currentKind != GrammarSymbols.EOF);
+		} catch (LexicalException e) {
+			buffer.setError(e);
+		}
+		return buffer;
+	}
+	
+	/**
+	 * Returns the current token kind
+	 * @return
+	 */
+	public GrammarSymbols getKind() {
+		return this.currentKind;
+	}
+	
+	/**
+	 * Returns the current token spelling
+	 * @return
+	 */
+	public String getSpelling() {
+		return this.source.substring(this.tokenStart, this.tokenEnd);
+	}
+	
+	/**
+	 * Returns the line where the current token was found
+	 * @return
+	 */
+	public int getLine() {
+		return this.line;
+	}
+	
+	/**
+	 * Returns the column where the current token was found
+	 * @return
+	 */
+	public int getColumn() {
+		return this.column;
+	}
+	
+	/**
+	 * Returns the offset where the current token starts
+	 * @return
+	 */
+	int getStart() {
+		return this.tokenStart;
+	}
+	
+	/**
+	 * Returns the offset where the current token ends
+	 * @return
+	 */
+	int getEnd() {
+		return this.tokenEnd;
+	}
+	
+	/**
+	 * Returns the current token
+	 * @return
+	 */
+	public Token getToken() {
+		return new Token(this.currentKind,
+				this.getSpelling(), this.tokenStart,
 				line, column);
 	}
 	
@@ -97,7 +251,7 @@ public class Scanner {
 	 */
 	private void scanSeparator() {
 		if ( this.currentChar == '#' ) {
-			while (this.currentChar != '\n') {
+			while (this.currentChar != '\n' && this.currentChar != Source.EOT) {
 				this.getNextChar();
 			}
 		} else {
@@ -109,14 +263,31 @@ public class Scanner {
 	 * Gets the next char
 	 */
 	private void getNextChar() {
-		// Appends the current char to the string buffer
-		this.currentSpelling.append(this.currentChar);
 		// Reads the next one
-		this.currentChar = this.file.readChar();
+		this.readChar();
 		// Increments the line and column
 		this.incrementLineColumn();
 	}
 	
+	/**
+	 * Moves to the next offset of the source and reads its char
+	 * A "\r\n" pair or a single '\r' is read as one '\n', and the last line
+	 * always ends with a '\n', even if the source does not
+	 */
+	private void readChar() {
+		this.offset = this.nextOffset++;
+		char c = this.source.charAt(this.offset);
+		if ( c == '\r' ) {
+			if ( this.source.charAt(this.nextOffset) == '\n' ) {
+				this.nextOffset++;
+			}
+			c = '\n';
+		} else if ( c == Source.EOT && this.currentChar != '\n' && this.currentChar != Source.EOT ) {
+			c = '\n';
+		}
+		this.currentChar = c;
+	}
+	
 	/**
 	 * Increments line and column
 	 */
@@ -137,177 +308,38 @@ public class Scanner {
 		}
 	}
 	
-	/**
-	 * Returns if a char is a digit (between 0 and 9)
-	 * @param c
-	 * @return
-	 */
-	private boolean isDigit(char c) {
-		return c >= '0' && c <= '9';
-	}
-	
-	/**
-	 * Returns if a char is a letter (between a and z or between A and Z)
-	 * @param c
-	 * @return
-	 */
-	private boolean isLetter(char c) {
-		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
-	}
-	
 	/**
 	 * Scans the next token
-	 * Simulates the DFA that recognizes the language described by the lexical grammar
+	 * Runs the DFA that recognizes the language described by the lexical grammar;
+	 * its tables (ScannerTables) are generated from grammar.txt by ScannerGenerator
 	 * @return
 	 * @throws LexicalException
 	 */
 	private GrammarSymbols scanToken() throws LexicalException {
+		if (currentChar == Source.EOT) {
+			return GrammarSymbols.EOF;
+		}
+		
+		int[][] transitions = ScannerTables.TRANSITIONS;
+		byte[] charClass = ScannerTables.CHAR_CLASS;
 		int estado = 0;
+		int proximo = transitions[0][currentChar < 128 ? charClass[currentChar] : 0];
+		while (proximo >= 0) {
+			estado = proximo;
+			getNextChar();
+			proximo = transitions[estado][currentChar < 128 ? charClass[currentChar] : 0];
+		}
 		
-		while (true) {
-			switch(estado) {
-			case 0:
-				if (currentChar == ';') {
-					estado = 1;
-				} else if (currentChar == ':' ) {
-					estado = 2;
-				} else if (isLetter(currentChar)) {
-					estado = 3;
-				} else if (currentChar == '(') {
-					estado = 4;
-				} else if (currentChar == ')') {
-					estado = 5;
-				} else if (currentChar == '-') {
-					estado = 6;
-				} else if (currentChar == '/') {
-					estado = 7;
-				} else if (currentChar == ',') {
-					estado = 8;
-				} else if (currentChar == '=') {
-					estado = 9;
-				} else if (currentChar == '+') {
-					estado = 10;
-				} else if (currentChar == '*') {
-					estado = 11;
-				} else if (isDigit(currentChar)) {
-					estado = 12;
-				} else if (currentChar == '\000') {
-					estado = 13;
-					break;
-				} else if (currentChar == '.') {
-					estado = 17;
-				} else if (currentChar == '<') {
-					estado = 16;
-				} else if (currentChar == '>') {
-					estado = 18;
-				} else {
-					estado = 14;
-					break;
-				}
-				getNextChar();
-				break;
-				
-			case 1:
-				return GrammarSymbols.SEMICOLON;
-			
-			case 2:
-				if (currentChar == '=') {
-					estado = 15;
-					getNextChar();
-				} else {
-					return GrammarSymbols.COLON;
-				}
-				break;
-				
-			case 3:
-				while (isLetter(currentChar) || isDigit(currentChar)) {
-					getNextChar();
-				}
-				
-				if (keywords.containsKey(currentSpelling.toString())) {
-					return keywords.get(currentSpelling.toString());
-				} else {
-					return GrammarSymbols.ID;
-				}
-
-			case 4:
-				return GrammarSymbols.LP;
-				
-			case 5:
-				return GrammarSymbols.RP;
-				
-			case 6:
-				return GrammarSymbols.SUB;
-
-			case 7:
-				return GrammarSymbols.DIV;
-				
-			case 8:
-				return GrammarSymbols.COMMA;
-				
-			case 9:
-				return GrammarSymbols.EQUALS;
-				
-			case 10:
-				return GrammarSymbols.ADD;
-				
-			case 11:
-				return GrammarSymbols.MUL;
-				
-			case 12:
-				while (isDigit(currentChar)) {
-					getNextChar();
-				}
-				
-				return GrammarSymbols.NUM;
-
-			case 13:
-				return GrammarSymbols.EOF;
-			
-			case 14:
-				throw new LexicalException(
-						"I found a lexical error!",
-						this.currentChar, this.line, this.column);
-			
-			case 15:
-				return GrammarSymbols.ATTR;
-				
-			case 16:
-				if (currentChar == '=') {
-					estado = 19;
-					getNextChar();
-				} else if(currentChar == '>') {
-					estado = 20;
-					getNextChar();
-				} else {
-					return GrammarSymbols.LT;
-				}
-				break;
-				
-			case 17:
-				return GrammarSymbols.DOT;
-
-			case 18:
-				if (currentChar == '=') {
-					estado = 21;
-					getNextChar();
-				} else {
-					return GrammarSymbols.GT;
-				}
-				break;
-
-			case 19:
-				return GrammarSymbols.LE;
-
-			case 20:
-				return GrammarSymbols.NOTEQUALS;
-
-			case 21:
-				return GrammarSymbols.GE;
-
-			}
+		GrammarSymbols kind = ScannerTables.ACCEPT[estado];
+		if (kind == null) {
+			throw new LexicalException(new Diagnostic(Code.UNEXPECTED_CHARACTER, this.line, this.column,
+					this.offset, new Object[] { this.currentChar }));
 		}
+		if (kind == GrammarSymbols.ID) {
+			return Keywords.lookup(this.source, this.tokenStart, this.offset - this.tokenStart);
+		}
+		return kind;
 	}
 	
-	
+
 }
@@ -0,0 +1,577 @@
+package scanner;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import parser.GrammarSymbols;
+
+/**
+ * Scanner generator
+ * Reads the lexical grammar (first section of grammar.txt), builds the DFA
+ * that recognizes its tokens and writes it as the ScannerTables class
+ * Keywords are left to the id token (they are classified by Keywords), '#'
+ * starts a comment and EOF is the end of the source, so none of them is
+ * part of the DFA
+ * Usage: ScannerGenerator grammar.txt src/scanner/ScannerTables.java
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ScannerGenerator {
+
+	// Number of chars handled by the tables (other chars have no transitions)
+	private static final int CHARS = 128;
+	// The production that lists every token
+	private static final String TOKEN = "token";
+	// The comment symbol (see the Obs. in the lexical grammar)
+	private static final String COMMENT = "#";
+	// The end of source symbol
+	private static final String EOF = "EOF";
+
+	// Kinds of the symbol tokens (named ones are found by name in GrammarSymbols)
+	private static final Map<String, GrammarSymbols> SYMBOLS = new HashMap<String, GrammarSymbols>();
+	static {
+		SYMBOLS.put(":", GrammarSymbols.COLON);
+		SYMBOLS.put(":=", GrammarSymbols.ATTR);
+		SYMBOLS.put("(", GrammarSymbols.LP);
+		SYMBOLS.put(")", GrammarSymbols.RP);
+		SYMBOLS.put(";", GrammarSymbols.SEMICOLON);
+		SYMBOLS.put(",", GrammarSymbols.COMMA);
+		SYMBOLS.put(".", GrammarSymbols.DOT);
+		SYMBOLS.put("+", GrammarSymbols.ADD);
+		SYMBOLS.put("-", GrammarSymbols.SUB);
+		SYMBOLS.put("*", GrammarSymbols.MUL);
+		SYMBOLS.put("/", GrammarSymbols.DIV);
+		SYMBOLS.put("=", GrammarSymbols.EQUALS);
+		SYMBOLS.put("<>", GrammarSymbols.NOTEQUALS);
+		SYMBOLS.put(">", GrammarSymbols.GT);
+		SYMBOLS.put("<", GrammarSymbols.LT);
+		SYMBOLS.put(">=", GrammarSymbols.GE);
+		SYMBOLS.put("<=", GrammarSymbols.LE);
+	}
+
+	// Lexical grammar productions (name -> alternatives)
+	private Map<String, List<String>> productions = new LinkedHashMap<String, List<String>>();
+
+	// NFA: char edges, epsilon edges and accepted token of each state
+	private List<BitSet[]> charEdges = new ArrayList<BitSet[]>();
+	private List<int[]> charTargets = new ArrayList<int[]>();
+	private List<List<Integer>> epsilonEdges = new ArrayList<List<Integer>>();
+	private List<Integer> nfaAccept = new ArrayList<Integer>();
+	// Accepted tokens, in priority order
+	private List<GrammarSymbols> tokenKinds = new ArrayList<GrammarSymbols>();
+	// Start state of the NFA
+	private int nfaStart;
+
+	// Regular expression being parsed and its position
+	private String regex;
+	private int position;
+
+	/**
+	 * Generator start point
+	 * @param args - grammar file and output file
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		String grammar = args.length > 0 ? args[0] : "grammar.txt";
+		String output = args.length > 1 ? args[1] : "src/scanner/ScannerTables.java";
+
+		String tables = generate(Files.readAllLines(Paths.get(grammar), StandardCharsets.UTF_8));
+		Files.write(Paths.get(output), tables.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Generates the ScannerTables class of a lexical grammar
+	 * @param grammar - the lines of grammar.txt
+	 * @return the source of the class
+	 */
+	public static String generate(List<String> grammar) {
+		ScannerGenerator generator = new ScannerGenerator();
+		generator.readGrammar(grammar);
+		generator.buildNfa();
+		StringWriter text = new StringWriter();
+		try (PrintWriter out = new PrintWriter(text)) {
+			generator.writeTables(out);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Reads the productions of the lexical grammar ("name -> alternatives",
+	 * continuation lines start with '|'); stops at the syntactic grammar
+	 * @param lines
+	 */
+	private void readGrammar(List<String> lines) {
+		String current = null;
+		for (String line : lines) {
+			String text = line.trim();
+			if ( text.contains("::=") ) {
+				break;
+			}
+			int arrow = text.indexOf("->");
+			if ( arrow > 0 ) {
+				current = text.substring(0, arrow).trim();
+				this.productions.put(current, new ArrayList<String>());
+				this.addAlternatives(current, text.substring(arrow + 2));
+			} else if ( current != null && text.startsWith("|") ) {
+				this.addAlternatives(current, text.substring(1));
+			} else {
+				current = null;
+			}
+		}
+		if ( !this.productions.containsKey(TOKEN) ) {
+			throw new RuntimeException("The lexical grammar has no " + TOKEN + " production");
+		}
+	}
+
+	/**
+	 * Splits a right hand side in its alternatives (separated by a '|' between spaces)
+	 * @param name
+	 * @param rhs
+	 */
+	private void addAlternatives(String name, String rhs) {
+		for (String alternative : rhs.trim().split("\\s+\\|\\s+")) {
+			alternative = alternative.trim();
+			if ( alternative.length() > 0 ) {
+				this.productions.get(name).add(alternative);
+			}
+		}
+	}
+
+	/**
+	 * Builds the NFA of every token listed by the token production
+	 */
+	private void buildNfa() {
+		this.nfaStart = this.newState();
+		this.addTokens(TOKEN);
+	}
+
+	/**
+	 * Adds the tokens of the alternatives of a production
+	 * @param name
+	 */
+	private void addTokens(String name) {
+		for (String alternative : this.productions.get(name)) {
+			if ( alternative.equals(COMMENT) || alternative.equals(EOF) ) {
+				continue;
+			}
+			if ( isSymbol(alternative) ) {
+				GrammarSymbols kind = SYMBOLS.get(alternative);
+				if ( kind == null ) {
+					throw new RuntimeException("No token kind for symbol " + alternative);
+				}
+				this.addToken(this.literal(alternative), kind);
+			} else if ( this.productions.containsKey(alternative) && this.isSymbolList(alternative) ) {
+				// A list of symbols or keywords (aop1, bop, type...)
+				this.addTokens(alternative);
+			} else if ( this.productions.containsKey(alternative) ) {
+				// A token described by a regular expression (id, num)
+				this.addToken(this.parseRegex(alternative),
+						GrammarSymbols.valueOf(alternative.toUpperCase()));
+			} else {
+				// A keyword: recognized as an id and classified by Keywords
+				GrammarSymbols.valueOf(alternative.toUpperCase());
+			}
+		}
+	}
+
+	/**
+	 * Verifies if every alternative of a production is a symbol or a keyword
+	 * @param name
+	 * @return
+	 */
+	private boolean isSymbolList(String name) {
+		for (String alternative : this.productions.get(name)) {
+			if ( !isSymbol(alternative) && !isWord(alternative) ) {
+				return false;
+			}
+			if ( isWord(alternative) && this.productions.containsKey(alternative) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds an accepting fragment for a token kind
+	 * @param fragment - start and end states
+	 * @param kind
+	 */
+	private void addToken(int[] fragment, GrammarSymbols kind) {
+		this.epsilonEdges.get(this.nfaStart).add(fragment[0]);
+		this.nfaAccept.set(fragment[1], this.tokenKinds.size());
+		this.tokenKinds.add(kind);
+	}
+
+	/**
+	 * Verifies if a string has no letters, digits or spaces (a literal symbol)
+	 * @param s
+	 * @return
+	 */
+	private static boolean isSymbol(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if ( Character.isLetterOrDigit(s.charAt(i)) || Character.isWhitespace(s.charAt(i)) ) {
+				return false;
+			}
+		}
+		return s.length() > 0;
+	}
+
+	/**
+	 * Verifies if a string is a single word
+	 * @param s
+	 * @return
+	 */
+	private static boolean isWord(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if ( !Character.isLetterOrDigit(s.charAt(i)) ) {
+				return false;
+			}
+		}
+		return s.length() > 0;
+	}
+
+	/* -------------------------------------------- */
+	/* -------------- NFA CONSTRUCTION ------------ */
+	/* -------------------------------------------- */
+
+	/**
+	 * Creates a new NFA state
+	 * @return
+	 */
+	private int newState() {
+		this.charEdges.add(new BitSet[0]);
+		this.charTargets.add(new int[0]);
+		this.epsilonEdges.add(new ArrayList<Integer>());
+		this.nfaAccept.add(-1);
+		return this.charEdges.size() - 1;
+	}
+
+	/**
+	 * Adds a char edge
+	 * @param from
+	 * @param chars
+	 * @param to
+	 */
+	private void addEdge(int from, BitSet chars, int to) {
+		BitSet[] edges = this.charEdges.get(from);
+		int[] targets = this.charTargets.get(from);
+		edges = Arrays.copyOf(edges, edges.length + 1);
+		targets = Arrays.copyOf(targets, targets.length + 1);
+		edges[edges.length - 1] = chars;
+		targets[targets.length - 1] = to;
+		this.charEdges.set(from, edges);
+		this.charTargets.set(from, targets);
+	}
+
+	/**
+	 * Builds the fragment that recognizes a literal string
+	 * @param s
+	 * @return
+	 */
+	private int[] literal(String s) {
+		int start = this.newState();
+		int current = start;
+		for (int i = 0; i < s.length(); i++) {
+			int next = this.newState();
+			BitSet chars = new BitSet(CHARS);
+			chars.set(s.charAt(i));
+			this.addEdge(current, chars, next);
+			current = next;
+		}
+		return new int[] { start, current };
+	}
+
+	/**
+	 * Builds the fragment of the regular expression that defines a production
+	 * Syntax: alternatives (|), sequences, groups, the postfix operators *, + and ?,
+	 * char classes like [A-Za-z] and references to other productions
+	 * @param name
+	 * @return
+	 */
+	private int[] parseRegex(String name) {
+		List<String> alternatives = this.productions.get(name);
+		StringBuilder text = new StringBuilder();
+		for (String alternative : alternatives) {
+			if ( text.length() > 0 ) {
+				text.append('|');
+			}
+			text.append('(').append(alternative).append(')');
+		}
+		String savedRegex = this.regex;
+		int savedPosition = this.position;
+		this.regex = text.toString();
+		this.position = 0;
+		int[] fragment = this.parseAlternatives();
+		if ( this.position < this.regex.length() ) {
+			throw new RuntimeException("Invalid regular expression for " + name + ": " + this.regex);
+		}
+		this.regex = savedRegex;
+		this.position = savedPosition;
+		return fragment;
+	}
+
+	private int[] parseAlternatives() {
+		int[] first = this.parseSequence();
+		if ( this.peek() != '|' ) {
+			return first;
+		}
+		int start = this.newState();
+		int end = this.newState();
+		this.epsilonEdges.get(start).add(first[0]);
+		this.epsilonEdges.get(first[1]).add(end);
+		while (this.peek() == '|') {
+			this.position++;
+			int[] next = this.parseSequence();
+			this.epsilonEdges.get(start).add(next[0]);
+			this.epsilonEdges.get(next[1]).add(end);
+		}
+		return new int[] { start, end };
+	}
+
+	private int[] parseSequence() {
+		int start = this.newState();
+		int end = start;
+		while (this.peek() != '|' && this.peek() != ')' && this.peek() != '\0') {
+			int[] next = this.parsePostfix();
+			this.epsilonEdges.get(end).add(next[0]);
+			end = next[1];
+		}
+		return new int[] { start, end };
+	}
+
+	private int[] parsePostfix() {
+		int[] fragment = this.parseAtom();
+		while (this.peek() == '*' || this.peek() == '+' || this.peek() == '?') {
+			char operator = this.regex.charAt(this.position++);
+			int start = this.newState();
+			int end = this.newState();
+			this.epsilonEdges.get(start).add(fragment[0]);
+			this.epsilonEdges.get(fragment[1]).add(end);
+			if ( operator != '+' ) {
+				this.epsilonEdges.get(start).add(end);
+			}
+			if ( operator != '?' ) {
+				this.epsilonEdges.get(fragment[1]).add(fragment[0]);
+			}
+			fragment = new int[] { start, end };
+		}
+		return fragment;
+	}
+
+	private int[] parseAtom() {
+		char c = this.peek();
+		if ( c == '(' ) {
+			this.position++;
+			int[] fragment = this.parseAlternatives();
+			if ( this.peek() != ')' ) {
+				throw new RuntimeException("Missing ')' in " + this.regex);
+			}
+			this.position++;
+			return fragment;
+		} else if ( c == '[' ) {
+			int close = this.regex.indexOf(']', this.position);
+			BitSet chars = new BitSet(CHARS);
+			for (int i = this.position + 1; i < close; i++) {
+				if ( i + 2 < close && this.regex.charAt(i + 1) == '-' ) {
+					chars.set(this.regex.charAt(i), this.regex.charAt(i + 2) + 1);
+					i += 2;
+				} else {
+					chars.set(this.regex.charAt(i));
+				}
+			}
+			this.position = close + 1;
+			int start = this.newState();
+			int end = this.newState();
+			this.addEdge(start, chars, end);
+			return new int[] { start, end };
+		} else if ( Character.isLetterOrDigit(c) ) {
+			int begin = this.position;
+			while (this.position < this.regex.length()
+					&& Character.isLetterOrDigit(this.regex.charAt(this.position))) {
+				this.position++;
+			}
+			String word = this.regex.substring(begin, this.position);
+			if ( this.productions.containsKey(word) ) {
+				return this.parseRegex(word);
+			}
+			return this.literal(word);
+		}
+		throw new RuntimeException("Unexpected '" + c + "' in " + this.regex);
+	}
+
+	/**
+	 * Returns the next non blank char of the regular expression ('\0' at the end)
+	 * @return
+	 */
+	private char peek() {
+		while (this.position < this.regex.length() && this.regex.charAt(this.position) == ' ') {
+			this.position++;
+		}
+		return this.position < this.regex.length() ? this.regex.charAt(this.position) : '\0';
+	}
+
+	/* -------------------------------------------- */
+	/* -------------- DFA CONSTRUCTION ------------ */
+	/* -------------------------------------------- */
+
+	/**
+	 * Adds to a set every state reached from it by epsilon edges
+	 * @param set
+	 */
+	private void closure(BitSet set) {
+		List<Integer> pending = new ArrayList<Integer>();
+		for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+			pending.add(s);
+		}
+		while (!pending.isEmpty()) {
+			int s = pending.remove(pending.size() - 1);
+			for (int t : this.epsilonEdges.get(s)) {
+				if ( !set.get(t) ) {
+					set.set(t);
+					pending.add(t);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds the DFA (subset construction), groups the chars in classes and
+	 * writes the tables
+	 * @param out
+	 */
+	private void writeTables(PrintWriter out) {
+		List<BitSet> states = new ArrayList<BitSet>();
+		Map<BitSet, Integer> index = new HashMap<BitSet, Integer>();
+		List<int[]> transitions = new ArrayList<int[]>();
+
+		BitSet start = new BitSet();
+		start.set(this.nfaStart);
+		this.closure(start);
+		states.add(start);
+		index.put(start, 0);
+
+		for (int d = 0; d < states.size(); d++) {
+			int[] row = new int[CHARS];
+			for (int c = 0; c < CHARS; c++) {
+				BitSet next = new BitSet();
+				BitSet current = states.get(d);
+				for (int s = current.nextSetBit(0); s >= 0; s = current.nextSetBit(s + 1)) {
+					BitSet[] edges = this.charEdges.get(s);
+					for (int e = 0; e < edges.length; e++) {
+						if ( edges[e].get(c) ) {
+							next.set(this.charTargets.get(s)[e]);
+						}
+					}
+				}
+				if ( next.isEmpty() ) {
+					row[c] = -1;
+					continue;
+				}
+				this.closure(next);
+				Integer target = index.get(next);
+				if ( target == null ) {
+					target = states.size();
+					states.add(next);
+					index.put(next, target);
+				}
+				row[c] = target;
+			}
+			transitions.add(row);
+		}
+
+		// Accepted kind of each DFA state (the token listed first wins)
+		GrammarSymbols[] accept = new GrammarSymbols[states.size()];
+		for (int d = 0; d < states.size(); d++) {
+			int best = Integer.MAX_VALUE;
+			BitSet current = states.get(d);
+			for (int s = current.nextSetBit(0); s >= 0; s = current.nextSetBit(s + 1)) {
+				if ( this.nfaAccept.get(s) >= 0 ) {
+					best = Math.min(best, this.nfaAccept.get(s));
+				}
+			}
+			accept[d] = best == Integer.MAX_VALUE ? null : this.tokenKinds.get(best);
+		}
+
+		// Char classes: chars with the same column share a class; class 0 has no transitions
+		int[] charClass = new int[CHARS];
+		List<int[]> columns = new ArrayList<int[]>();
+		columns.add(filled(states.size(), -1));
+		for (int c = 0; c < CHARS; c++) {
+			int[] column = new int[states.size()];
+			for (int d = 0; d < states.size(); d++) {
+				column[d] = transitions.get(d)[c];
+			}
+			int k = 0;
+			while (k < columns.size() && !Arrays.equals(columns.get(k), column)) {
+				k++;
+			}
+			if ( k == columns.size() ) {
+				columns.add(column);
+			}
+			charClass[c] = k;
+		}
+
+		out.println("package scanner;");
+		out.println();
+		out.println("import parser.GrammarSymbols;");
+		out.println();
+		out.println("/**");
+		out.println(" * Scanner tables");
+		out.println(" * Generated by ScannerGenerator from the lexical grammar in grammar.txt - do not edit");
+		out.println(" * @version 2010-september-04");
+		out.println(" * @discipline Compiladores");
+		out.println(" */");
+		out.println("final class ScannerTables {");
+		out.println();
+		out.println("\t// Number of char classes");
+		out.println("\tstatic final int CLASSES = " + columns.size() + ";");
+		out.println();
+		out.println("\t// Char class of each ASCII char (other chars are in class 0, which has no transitions)");
+		out.print("\tstatic final byte[] CHAR_CLASS = {");
+		for (int c = 0; c < CHARS; c++) {
+			out.print((c % 16 == 0 ? "\n\t\t" : " ") + charClass[c] + ",");
+		}
+		out.println("\n\t};");
+		out.println();
+		out.println("\t// Next state of each state and char class (-1 ends the token)");
+		out.println("\tstatic final int[][] TRANSITIONS = {");
+		for (int d = 0; d < states.size(); d++) {
+			out.print("\t\t{");
+			for (int k = 0; k < columns.size(); k++) {
+				out.print((k > 0 ? ", " : "") + columns.get(k)[d]);
+			}
+			out.println("},");
+		}
+		out.println("\t};");
+		out.println();
+		out.println("\t// Token kind accepted by each state (null if the state does not accept)");
+		out.println("\tstatic final GrammarSymbols[] ACCEPT = {");
+		for (int d = 0; d < states.size(); d++) {
+			out.println("\t\t" + (accept[d] == null ? "null" : "GrammarSymbols." + accept[d].name()) + ",");
+		}
+		out.println("\t};");
+		out.println();
+		out.println("\tprivate ScannerTables() {");
+		out.println("\t}");
+		out.println();
+		out.println("}");
+	}
+
+	private static int[] filled(int length, int value) {
+		int[] array = new int[length];
+		Arrays.fill(array, value);
+		return array;
+	}
+
+}
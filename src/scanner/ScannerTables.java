@@ -0,0 +1,83 @@
+package scanner;
+
+import parser.GrammarSymbols;
+
+/**
+ * Scanner tables
+ * Generated by ScannerGenerator from the lexical grammar in grammar.txt - do not edit
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+final class ScannerTables {
+
+	// Number of char classes
+	static final int CLASSES = 16;
+
+	// Char class of each ASCII char (other chars are in class 0, which has no transitions)
+	static final byte[] CHAR_CLASS = {
+		0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+		0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+		0, 0, 0, 0, 0, 0, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8,
+		9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 10, 11, 12, 13, 14, 0,
+		0, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+		15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 0, 0, 0, 0, 0,
+		0, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+		15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 0, 0, 0, 0, 0,
+	};
+
+	// Next state of each state and char class (-1 ends the token)
+	static final int[][] TRANSITIONS = {
+		{-1, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, 9, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 16, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 17, 18, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 19, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, 20, -1, -1, -1, -1, -1, 21},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, 20, -1, -1, -1, -1, -1, 21},
+		{-1, -1, -1, -1, -1, -1, -1, -1, -1, 20, -1, -1, -1, -1, -1, 21},
+	};
+
+	// Token kind accepted by each state (null if the state does not accept)
+	static final GrammarSymbols[] ACCEPT = {
+		null,
+		GrammarSymbols.LP,
+		GrammarSymbols.RP,
+		GrammarSymbols.MUL,
+		GrammarSymbols.ADD,
+		GrammarSymbols.COMMA,
+		GrammarSymbols.SUB,
+		GrammarSymbols.DOT,
+		GrammarSymbols.DIV,
+		GrammarSymbols.NUM,
+		GrammarSymbols.COLON,
+		GrammarSymbols.SEMICOLON,
+		GrammarSymbols.LT,
+		GrammarSymbols.EQUALS,
+		GrammarSymbols.GT,
+		GrammarSymbols.ID,
+		GrammarSymbols.ATTR,
+		GrammarSymbols.LE,
+		GrammarSymbols.NOTEQUALS,
+		GrammarSymbols.GE,
+		GrammarSymbols.ID,
+		GrammarSymbols.ID,
+	};
+
+	private ScannerTables() {
+	}
+
+}
@@ -1,6 +1,7 @@
 package scanner;
 
 import parser.GrammarSymbols;
+import util.Source;
 
 /**
  * Token class
@@ -15,6 +16,10 @@ public class Token {
 	private GrammarSymbols kind;
 	// The token spelling
 	private String spelling;
+	// The source the spelling is read from when it is not built yet
+	private Source source;
+	// Offsets of the token in the source (start is -1 if unknown)
+	private int start, end;
 	// The line and column that the token was found
 	private int line, column;
 	
@@ -26,8 +31,39 @@ public class Token {
 	 * @param column
 	 */
 	public Token(GrammarSymbols kind, String spelling, int line, int column) {
+		this(kind, spelling, -1, line, column);
+	}
+	
+	/**
+	 * Creates a token that also knows where it starts in the source
+	 * @param kind
+	 * @param spelling
+	 * @param start
+	 * @param line
+	 * @param column
+	 */
+	public Token(GrammarSymbols kind, String spelling, int start, int line, int column) {
 		this.kind = kind;
 		this.spelling = spelling;
+		this.start = start;
+		this.line = line;
+		this.column = column;
+	}
+	
+	/**
+	 * Creates a token whose spelling is only read from the source when asked
+	 * @param kind
+	 * @param source
+	 * @param start
+	 * @param end
+	 * @param line
+	 * @param column
+	 */
+	public Token(GrammarSymbols kind, Source source, int start, int end, int line, int column) {
+		this.kind = kind;
+		this.source = source;
+		this.start = start;
+		this.end = end;
 		this.line = line;
 		this.column = column;
 	}
@@ -45,9 +81,21 @@ public class Token {
 	 * @return
 	 */
 	public String getSpelling() {
+		if ( spelling == null && source != null ) {
+			spelling = source.substring(start, end);
+			source = null;
+		}
 		return spelling;
 	}
 
+	/**
+	 * Returns the offset where the token starts in the source (-1 if unknown)
+	 * @return
+	 */
+	public int getStart() {
+		return start;
+	}
+
 	/**
 	 * Returns the line where the token was found
 	 * @return
@@ -66,7 +114,7 @@ public class Token {
 	
 	@Override
 	public String toString() {
-		return this.spelling + "\t :[" + this.kind.name() + "]";
+		return this.getSpelling() + "\t :[" + this.kind.name() + "]";
 	}
 	
 }
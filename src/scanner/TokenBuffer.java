@@ -0,0 +1,226 @@
+package scanner;
+
+import java.util.Arrays;
+
+import parser.GrammarSymbols;
+import util.Source;
+
+/**
+ * Token buffer class
+ * Keeps every token of a source in parallel int arrays (kind ordinal, start
+ * offset, length, line and column), so no object is created per token; the
+ * spellings are only read from the source when asked
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class TokenBuffer {
+
+	// Token kinds by ordinal
+	private static final GrammarSymbols[] KINDS = GrammarSymbols.values();
+	// Initial capacity
+	private static final int INITIAL_CAPACITY = 256;
+
+	// The source the tokens were read from
+	private Source source;
+	// Token fields
+	private int[] kinds, starts, lengths, lines, columns;
+	// Number of tokens
+	private int size;
+	// Lexical error found after the last token (if any)
+	private LexicalException error;
+
+	/**
+	 * Default constructor
+	 * @param source
+	 */
+	public TokenBuffer(Source source) {
+		this.source = source;
+		this.kinds = new int[INITIAL_CAPACITY];
+		this.starts = new int[INITIAL_CAPACITY];
+		this.lengths = new int[INITIAL_CAPACITY];
+		this.lines = new int[INITIAL_CAPACITY];
+		this.columns = new int[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Appends a token
+	 * @param kind
+	 * @param start
+	 * @param length
+	 * @param line
+	 * @param column
+	 */
+	public void add(GrammarSymbols kind, int start, int length, int line, int column) {
+		if ( this.size == this.kinds.length ) {
+			this.grow();
+		}
+		this.kinds[this.size] = kind.ordinal();
+		this.starts[this.size] = start;
+		this.lengths[this.size] = length;
+		this.lines[this.size] = line;
+		this.columns[this.size] = column;
+		this.size++;
+	}
+
+	/**
+	 * Doubles the capacity of the arrays
+	 */
+	private void grow() {
+		int capacity = this.kinds.length * 2;
+		this.kinds = Arrays.copyOf(this.kinds, capacity);
+		this.starts = Arrays.copyOf(this.starts, capacity);
+		this.lengths = Arrays.copyOf(this.lengths, capacity);
+		this.lines = Arrays.copyOf(this.lines, capacity);
+		this.columns = Arrays.copyOf(this.columns, capacity);
+	}
+
+	/**
+	 * Returns the number of tokens
+	 * @return
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the source the tokens were read from
+	 * @return
+	 */
+	public Source getSource() {
+		return this.source;
+	}
+
+	/**
+	 * Returns the kind of the i-th token
+	 * @param i
+	 * @return
+	 */
+	public GrammarSymbols getKind(int i) {
+		return KINDS[this.kinds[i]];
+	}
+
+	/**
+	 * Returns the start offset of the i-th token
+	 * @param i
+	 * @return
+	 */
+	public int getStart(int i) {
+		return this.starts[i];
+	}
+
+	/**
+	 * Returns the length of the i-th token
+	 * @param i
+	 * @return
+	 */
+	public int getLength(int i) {
+		return this.lengths[i];
+	}
+
+	/**
+	 * Returns the line of the i-th token
+	 * @param i
+	 * @return
+	 */
+	public int getLine(int i) {
+		return this.lines[i];
+	}
+
+	/**
+	 * Returns the column of the i-th token
+	 * @param i
+	 * @return
+	 */
+	public int getColumn(int i) {
+		return this.columns[i];
+	}
+
+	/**
+	 * Reads the spelling of the i-th token from the source
+	 * @param i
+	 * @return
+	 */
+	public String getSpelling(int i) {
+		return this.source.substring(this.starts[i], this.starts[i] + this.lengths[i]);
+	}
+
+	/**
+	 * Returns the i-th token as a Token object (its spelling is read lazily)
+	 * @param i
+	 * @return
+	 */
+	public Token getToken(int i) {
+		return new Token(this.getKind(i), this.source,
+				this.starts[i], this.starts[i] + this.lengths[i],
+				this.lines[i], this.columns[i]);
+	}
+
+	/**
+	 * Returns the lexical error found after the last token (or null)
+	 * @return
+	 */
+	public LexicalException getError() {
+		return this.error;
+	}
+
+	/**
+	 * Sets the lexical error found after the last token
+	 * @param error
+	 */
+	public void setError(LexicalException error) {
+		this.error = error;
+	}
+
+	/**
+	 * Returns a token stream that reads this buffer from the first token
+	 * @return
+	 */
+	public TokenStream stream() {
+		return new Cursor();
+	}
+
+	/**
+	 * Token stream over the buffer
+	 * The lexical error (if any) is thrown when the stream moves past the last token
+	 */
+	private class Cursor implements TokenStream {
+
+		// Index of the current token
+		private int index = -1;
+
+		public GrammarSymbols advance() throws LexicalException {
+			if ( this.index + 1 >= size ) {
+				if ( error != null ) {
+					throw error;
+				}
+				// Stays on the last token (EOF)
+				return TokenBuffer.this.getKind(this.index);
+			}
+			this.index++;
+			return TokenBuffer.this.getKind(this.index);
+		}
+
+		public GrammarSymbols getKind() {
+			return TokenBuffer.this.getKind(this.index);
+		}
+
+		public String getSpelling() {
+			return TokenBuffer.this.getSpelling(this.index);
+		}
+
+		public int getLine() {
+			return lines[this.index];
+		}
+
+		public int getColumn() {
+			return columns[this.index];
+		}
+
+		public Token getToken() {
+			return TokenBuffer.this.getToken(this.index);
+		}
+
+	}
+
+}
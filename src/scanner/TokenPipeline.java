@@ -0,0 +1,194 @@
+package scanner;
+
+import java.util.concurrent.locks.LockSupport;
+
+import parser.GrammarSymbols;
+import util.Source;
+
+/**
+ * Token pipeline
+ * Runs the scanner on a producer thread that fills a bounded ring of tokens
+ * (parallel int arrays, as in TokenBuffer) while the parser reads them, so
+ * scanning and parsing overlap. The ring has a single producer and a single
+ * consumer and no locks: each side only writes its own counter (tail for the
+ * producer, head for the consumer) and publishes it in batches, or before it
+ * has to wait for the other side. A lexical error is thrown, as by the
+ * scanner itself, when the parser moves past the last token read before it;
+ * any other failure of the producer is rethrown there too, as it is (so it
+ * is reported as if the parser's thread had scanned).
+ * The source must allow reads from two threads (files do) and the pipeline
+ * should be closed, so a producer left waiting for room stops
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class TokenPipeline implements TokenStream, AutoCloseable {
+
+	// Token kinds by ordinal
+	private static final GrammarSymbols[] KINDS = GrammarSymbols.values();
+	// Number of tokens in the ring (a power of two)
+	private static final int CAPACITY = 1 << 12;
+	private static final int MASK = CAPACITY - 1;
+	// Tokens published or released at a time (a power of two)
+	private static final int BATCH = 64;
+	// Sources shorter than this are not worth a thread
+	public static final int MINIMUM_LENGTH = 64 * 1024;
+
+	// The source
+	private final Source source;
+	// The ring: token fields
+	private final int[] kinds = new int[CAPACITY], starts = new int[CAPACITY], lengths = new int[CAPACITY],
+			lines = new int[CAPACITY], columns = new int[CAPACITY];
+	// Tokens written by the producer and tokens read by the consumer (published)
+	private volatile long tail, head;
+	// Lexical error after the last token (written before the last tail)
+	private volatile LexicalException error;
+	// Unexpected scanner failure, exception or error (written before the last tail)
+	private volatile Throwable failure;
+	// Whether the producer published its last tail
+	private volatile boolean finished;
+	// Whether the consumer gave up
+	private volatile boolean closed;
+
+	// Consumer side: next token to read, tokens known to be written, current token
+	private long next, available;
+	private GrammarSymbols kind;
+	private int start, length, line, column;
+
+	/**
+	 * Default constructor: starts scanning the source
+	 * @param source
+	 */
+	public TokenPipeline(Source source) {
+		this.source = source;
+		Thread producer = new Thread(this::produce, "token-pipeline");
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	/**
+	 * Waits a little: spins first, then yields and finally sleeps
+	 * @param round - how many times it waited already
+	 */
+	private static void pause(int round) {
+		if ( round < 64 ) {
+			Thread.onSpinWait();
+		} else if ( round < 1024 ) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(20000);
+		}
+	}
+
+	/**
+	 * Producer thread: scans the whole source into the ring
+	 */
+	private void produce() {
+		Scanner scanner = new Scanner(this.source);
+		long tail = 0;
+		long limit = CAPACITY;
+		try {
+			for (;;) {
+				GrammarSymbols kind = scanner.scan();
+				if ( tail == limit ) {
+					// Full: publishes what it has and waits for the consumer
+					this.tail = tail;
+					for (int round = 0; (limit = this.head + CAPACITY) == tail; round++) {
+						if ( this.closed ) {
+							return;
+						}
+						pause(round);
+					}
+				}
+				int i = (int) tail & MASK;
+				this.kinds[i] = kind.ordinal();
+				this.starts[i] = scanner.getStart();
+				this.lengths[i] = scanner.getEnd() - scanner.getStart();
+				this.lines[i] = scanner.getLine();
+				this.columns[i] = scanner.getColumn();
+				tail++;
+				if ( kind == GrammarSymbols.EOF ) {
+					break;
+				}
+				if ( (tail & (BATCH - 1)) == 0 ) {
+					this.tail = tail;
+				}
+			}
+		} catch (LexicalException e) {
+			this.error = e;
+		} catch (Throwable e) {
+			// Anything else would leave the consumer without a cause
+			this.failure = e;
+		} finally {
+			this.tail = tail;
+			this.finished = true;
+		}
+	}
+
+	public GrammarSymbols advance() throws LexicalException {
+		if ( this.kind == GrammarSymbols.EOF ) {
+			return this.kind;
+		}
+		if ( this.next == this.available ) {
+			// Nothing more known: releases the ring and waits for the producer
+			this.head = this.next;
+			for (int round = 0; (this.available = this.tail) == this.next; round++) {
+				if ( this.finished ) {
+					this.available = this.tail;
+					if ( this.available == this.next ) {
+						if ( this.failure instanceof Error ) {
+							throw (Error) this.failure;
+						}
+						if ( this.failure instanceof RuntimeException ) {
+							throw (RuntimeException) this.failure;
+						}
+						if ( this.failure != null ) {
+							throw new IllegalStateException("Scanner failed on the token pipeline thread: " + this.failure, this.failure);
+						}
+						throw this.error;
+					}
+					break;
+				}
+				pause(round);
+			}
+		}
+		int i = (int) this.next & MASK;
+		this.kind = KINDS[this.kinds[i]];
+		this.start = this.starts[i];
+		this.length = this.lengths[i];
+		this.line = this.lines[i];
+		this.column = this.columns[i];
+		this.next++;
+		if ( (this.next & (BATCH - 1)) == 0 ) {
+			this.head = this.next;
+		}
+		return this.kind;
+	}
+
+	public GrammarSymbols getKind() {
+		return this.kind;
+	}
+
+	public String getSpelling() {
+		return this.source.substring(this.start, this.start + this.length);
+	}
+
+	public int getLine() {
+		return this.line;
+	}
+
+	public int getColumn() {
+		return this.column;
+	}
+
+	public Token getToken() {
+		return new Token(this.kind, this.getSpelling(), this.start, this.line, this.column);
+	}
+
+	/**
+	 * Stops the producer if it is still waiting for room
+	 */
+	public void close() {
+		this.closed = true;
+	}
+
+}
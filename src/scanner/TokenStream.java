@@ -0,0 +1,51 @@
+package scanner;
+
+import parser.GrammarSymbols;
+
+/**
+ * Token stream interface
+ * A stream keeps only the current token, so it can be read without creating
+ * a Token object for each token (use getToken() when one is really needed)
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public interface TokenStream {
+
+	/**
+	 * Moves to the next token and returns its kind
+	 * @return
+	 * @throws LexicalException
+	 */
+	public GrammarSymbols advance() throws LexicalException;
+
+	/**
+	 * Returns the current token kind
+	 * @return
+	 */
+	public GrammarSymbols getKind();
+
+	/**
+	 * Returns the current token spelling
+	 * @return
+	 */
+	public String getSpelling();
+
+	/**
+	 * Returns the line where the current token was found
+	 * @return
+	 */
+	public int getLine();
+
+	/**
+	 * Returns the column where the current token was found
+	 * @return
+	 */
+	public int getColumn();
+
+	/**
+	 * Returns the current token as a Token object
+	 * @return
+	 */
+	public Token getToken();
+
+}
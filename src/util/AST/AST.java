@@ -18,6 +18,28 @@ public abstract class AST {
 		return str.toString();
 	}
 	
+	/**
+	 * Returns the structure of a list of nodes, one level below the parent
+	 * @param nodes
+	 * @param level
+	 * @return
+	 */
+	protected String toString(AST[] nodes, int level) {
+		StringBuffer str = new StringBuffer();
+		for (AST node : nodes) {
+			str.append(node.toString(level));
+		}
+		return str.toString();
+	}
+	
 	public abstract String toString(int level);
 	
+	/**
+	 * Calls the visitor method for this node
+	 * @param v
+	 * @param arg
+	 * @return
+	 */
+	public abstract Object visit(Visitor v, Object arg);
+	
 }
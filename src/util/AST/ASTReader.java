@@ -0,0 +1,516 @@
+package util.AST;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import util.symbolsTable.Attribute;
+
+/**
+ * Binary AST reader
+ * Reads a program written by ASTWriter straight from a buffer (usually a
+ * memory mapped file). Opening a reader only reads the trailer and the
+ * index; each function, procedure or command is decoded when asked for, and
+ * each string of the string table the first time a node uses it, so a
+ * reader that wants one subprogram does not decode the whole program (only
+ * the subprograms its checked calls name, so their attributes can point to
+ * them). Each one is decoded once, and the attributes of a checked program
+ * point to the same declaration nodes the reader returns.
+ * A reader is not thread safe
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ASTReader {
+
+	// Enum values by ordinal
+	private static final Type[] TYPES = Type.values();
+	private static final Operator[] OPERATORS = Operator.values();
+
+	/**
+	 * The attribute of a name use, until its declaration is decoded
+	 */
+	private static class Reference {
+
+		private final AST node;
+		private final int kind, slot, scope;
+
+		private Reference(AST node, int kind, int slot, int scope) {
+			this.node = node;
+			this.kind = kind;
+			this.slot = slot;
+			this.scope = scope;
+		}
+
+		/**
+		 * Gives the node its attribute
+		 * @param declaration
+		 */
+		private void resolve(AST declaration) {
+			Attribute attribute = new Attribute(declaration, this.slot, this.scope);
+			if ( this.node instanceof AssignCmd ) {
+				((AssignCmd) this.node).setAttribute(attribute);
+			} else if ( this.node instanceof CallCmd ) {
+				((CallCmd) this.node).setAttribute(attribute);
+			} else if ( this.node instanceof VariableFactor ) {
+				((VariableFactor) this.node).setAttribute(attribute);
+			} else {
+				((CallFactor) this.node).setAttribute(attribute);
+			}
+		}
+
+	}
+
+	// The encoded program
+	private ByteBuffer buffer;
+	// Current decoding position
+	private int position;
+	// Offset and length of each string and the strings decoded so far
+	private int[] stringOffsets, stringLengths;
+	private String[] strings;
+	// Number of functions, procedures and commands
+	private int functions, procedures, commands;
+	// Offset of the index (the offset of each function, procedure and command follows the counts)
+	private int index;
+	// The global variables and the functions, procedures and commands decoded so far
+	private VarDec[] variables;
+	private AST[] units;
+	// The attributes of the unit being decoded, and those naming subprograms not decoded yet
+	private List<Reference> references = new ArrayList<Reference>();
+	private List<Reference> calls = new ArrayList<Reference>();
+
+	/**
+	 * Default constructor
+	 * @param buffer - the encoded program, from its position to its limit
+	 * @throws IOException if the buffer does not hold a program of this format version
+	 */
+	public ASTReader(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.slice();
+		int length = this.buffer.limit();
+		if ( length < ASTWriter.MAGIC.length + 9 ) {
+			throw new IOException("Not a binary AST");
+		}
+		for (int i = 0; i < ASTWriter.MAGIC.length; i++) {
+			if ( this.buffer.get(i) != ASTWriter.MAGIC[i] ) {
+				throw new IOException("Not a binary AST");
+			}
+		}
+		if ( this.buffer.get(ASTWriter.MAGIC.length) != ASTWriter.VERSION ) {
+			throw new IOException("Binary AST version " + this.buffer.get(ASTWriter.MAGIC.length) +
+					", expecting " + ASTWriter.VERSION);
+		}
+		this.index = this.buffer.getInt(length - 4);
+		this.functions = this.buffer.getInt(this.index);
+		this.procedures = this.buffer.getInt(this.index + 4);
+		this.commands = this.buffer.getInt(this.index + 8);
+		this.units = new AST[this.functions + this.procedures + this.commands];
+
+		// Only the string offsets, the strings are decoded when used
+		this.position = this.buffer.getInt(length - 8);
+		int count = this.readInt();
+		this.stringOffsets = new int[count];
+		this.stringLengths = new int[count];
+		this.strings = new String[count];
+		for (int i = 0; i < count; i++) {
+			this.stringLengths[i] = this.readInt();
+			this.stringOffsets[i] = this.position;
+			this.position += this.stringLengths[i];
+		}
+	}
+
+	/**
+	 * Maps a binary AST file and opens a reader on it
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static ASTReader open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel is closed
+			return new ASTReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Decodes the whole program
+	 * @return
+	 */
+	public Program read() {
+		FuncDec[] functions = new FuncDec[this.functions];
+		for (int i = 0; i < functions.length; i++) {
+			functions[i] = this.getFunction(i);
+		}
+		ProcDec[] procedures = new ProcDec[this.procedures];
+		for (int i = 0; i < procedures.length; i++) {
+			procedures[i] = this.getProcedure(i);
+		}
+		Cmd[] commands = new Cmd[this.commands];
+		for (int i = 0; i < commands.length; i++) {
+			commands[i] = this.getCommand(i);
+		}
+		return new Program(this.getName(), this.getVariables(), functions, procedures, commands);
+	}
+
+	/**
+	 * Returns the program name
+	 * @return
+	 */
+	public String getName() {
+		this.position = ASTWriter.MAGIC.length + 1;
+		return this.readString();
+	}
+
+	/**
+	 * Decodes the global variable declarations
+	 * @return
+	 */
+	public VarDec[] getVariables() {
+		if ( this.variables == null ) {
+			this.position = ASTWriter.MAGIC.length + 1;
+			// Skips the name
+			this.readInt();
+			this.variables = this.readVariables();
+		}
+		return this.variables;
+	}
+
+	public int getFunctionCount() {
+		return this.functions;
+	}
+
+	public int getProcedureCount() {
+		return this.procedures;
+	}
+
+	public int getCommandCount() {
+		return this.commands;
+	}
+
+	/**
+	 * Decodes the i-th function
+	 * @param i
+	 * @return
+	 */
+	public FuncDec getFunction(int i) {
+		return (FuncDec) this.readUnit(i, this.functions, 0);
+	}
+
+	/**
+	 * Decodes the i-th procedure
+	 * @param i
+	 * @return
+	 */
+	public ProcDec getProcedure(int i) {
+		return (ProcDec) this.readUnit(i, this.procedures, this.functions);
+	}
+
+	/**
+	 * Decodes the i-th main program command
+	 * @param i
+	 * @return
+	 */
+	public Cmd getCommand(int i) {
+		return (Cmd) this.readUnit(i, this.commands, this.functions + this.procedures);
+	}
+
+	/**
+	 * Decodes the function or procedure with the given name (only its name
+	 * is read from the other subprograms)
+	 * @param name
+	 * @return the subprogram (null if there is none with that name)
+	 */
+	public SubprogramDec getSubprogram(String name) {
+		for (int i = 0; i < this.functions + this.procedures; i++) {
+			int offset = this.buffer.getInt(this.index + 12 + 4 * i);
+			// Kind byte, then the name
+			this.position = offset + 1;
+			if ( this.readString().equals(name) ) {
+				return (SubprogramDec) this.readUnit(i, this.functions + this.procedures, 0);
+			}
+		}
+		return null;
+	}
+
+	private AST readUnit(int i, int count, int first) {
+		if ( i < 0 || i >= count ) {
+			throw new IndexOutOfBoundsException(i + " of " + count);
+		}
+		AST unit = this.decode(first + i);
+		// The subprograms its calls name (and those their calls name)
+		while (!this.calls.isEmpty()) {
+			Reference call = this.calls.remove(this.calls.size() - 1);
+			if ( call.slot < 1 || call.slot > this.functions + this.procedures ) {
+				throw new IllegalStateException("Invalid binary AST subprogram slot " + call.slot);
+			}
+			call.resolve(this.decode(call.slot - 1));
+		}
+		return unit;
+	}
+
+	/**
+	 * Decodes a function, procedure or command (unless it already was) and
+	 * gives its name uses the attributes whose declarations it can see
+	 * @param unit - its number in the index
+	 * @return
+	 */
+	private AST decode(int unit) {
+		if ( this.units[unit] == null ) {
+			this.position = this.buffer.getInt(this.index + 12 + 4 * unit);
+			AST node = this.readNode();
+			this.units[unit] = node;
+			SubprogramDec subprogram = node instanceof SubprogramDec ? (SubprogramDec) node : null;
+			for (Reference reference : this.references) {
+				if ( reference.kind == ASTWriter.SUBPROGRAM_SLOT ) {
+					this.calls.add(reference);
+				} else if ( reference.kind == ASTWriter.RESULT_SLOT && subprogram instanceof FuncDec ) {
+					reference.resolve(subprogram);
+				} else if ( reference.kind == ASTWriter.VARIABLE_SLOT ) {
+					VarDec[] variables = reference.scope == 0 ? this.getVariables() : null;
+					reference.resolve(variable(reference.slot, variables, subprogram));
+				} else {
+					throw new IllegalStateException("Invalid binary AST attribute " + reference.kind);
+				}
+			}
+			this.references.clear();
+		}
+		return this.units[unit];
+	}
+
+	/**
+	 * Finds the declaration of a variable slot: in the global variables or
+	 * else in the parameters, then the variables, of a subprogram
+	 * @param slot
+	 * @param variables - the global variables (null for a local slot)
+	 * @param subprogram
+	 * @return
+	 */
+	private static VarDec variable(int slot, VarDec[] variables, SubprogramDec subprogram) {
+		if ( variables == null ) {
+			if ( subprogram == null ) {
+				throw new IllegalStateException("Invalid binary AST local slot " + slot);
+			}
+			if ( slot >= subprogram.getParameterCount() ) {
+				slot -= subprogram.getParameterCount();
+				variables = subprogram.getVariables();
+			} else {
+				variables = subprogram.getParameters();
+			}
+		}
+		for (VarDec variable : variables) {
+			if ( slot < variable.getNames().length ) {
+				return variable;
+			}
+			slot -= variable.getNames().length;
+		}
+		throw new IllegalStateException("Invalid binary AST variable slot");
+	}
+
+	/**
+	 * Reads the attribute of a name use (resolved once its unit is decoded)
+	 * @param node
+	 * @return the node
+	 */
+	private <T extends AST> T readAttribute(T node) {
+		int kind = this.readByte();
+		if ( kind != 0 ) {
+			int slot = this.readInt();
+			this.references.add(new Reference(node, kind, slot, this.readInt()));
+		}
+		return node;
+	}
+
+	private int readByte() {
+		return this.buffer.get(this.position++) & 0xFF;
+	}
+
+	/**
+	 * Reads a varint
+	 * @return
+	 */
+	private int readInt() {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = this.readByte();
+			value |= (b & 0x7F) << shift;
+			if ( b < 0x80 ) {
+				return value;
+			}
+		}
+	}
+
+	private int readSigned() {
+		int value = this.readInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private String readString() {
+		int i = this.readInt();
+		if ( this.strings[i] == null ) {
+			byte[] bytes = new byte[this.stringLengths[i]];
+			this.buffer.get(this.stringOffsets[i], bytes);
+			this.strings[i] = new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+		return this.strings[i];
+	}
+
+	private Expression readExpression() {
+		return (Expression) this.readNode();
+	}
+
+	private Expression[] readExpressions(int count) {
+		Expression[] expressions = new Expression[count];
+		for (int i = 0; i < count; i++) {
+			expressions[i] = this.readExpression();
+		}
+		return expressions;
+	}
+
+	private Cmd[] readCommands(int count) {
+		Cmd[] commands = new Cmd[count];
+		for (int i = 0; i < count; i++) {
+			commands[i] = (Cmd) this.readNode();
+		}
+		return commands;
+	}
+
+	private VarDec[] readVariables() {
+		VarDec[] variables = new VarDec[this.readInt()];
+		for (int i = 0; i < variables.length; i++) {
+			variables[i] = (VarDec) this.readNode();
+		}
+		return variables;
+	}
+
+	/**
+	 * Decodes the node at the current position
+	 * @return
+	 */
+	private AST readNode() {
+		int kind = this.readByte();
+		if ( kind >= ASTWriter.BEXP ) {
+			// The type of an expression comes first
+			int type = this.readByte();
+			Expression expression = this.readExpression(kind);
+			if ( type != 0 ) {
+				expression.setType(TYPES[type - 1]);
+			}
+			return expression;
+		}
+		switch (kind) {
+		case ASTWriter.VARDEC: {
+			String[] names = new String[this.readInt()];
+			for (int i = 0; i < names.length; i++) {
+				names[i] = this.readString();
+			}
+			Type type = TYPES[this.readByte()];
+			int line = this.readInt();
+			return new VarDec(names, type, line, this.readInt());
+		}
+		case ASTWriter.FUNCDEC:
+		case ASTWriter.PROCDEC: {
+			String name = this.readString();
+			int line = this.readInt();
+			int column = this.readInt();
+			VarDec[] parameters = this.readVariables();
+			VarDec[] variables = this.readVariables();
+			Cmd[] commands = this.readCommands(this.readInt());
+			if ( kind == ASTWriter.PROCDEC ) {
+				return new ProcDec(name, parameters, variables, commands, line, column);
+			}
+			return new FuncDec(name, parameters, TYPES[this.readByte()], variables, commands, line, column);
+		}
+		case ASTWriter.ASSIGN: {
+			int line = this.readInt();
+			int column = this.readInt();
+			String name = this.readString();
+			return this.readAttribute(new AssignCmd(name, this.readExpression(), line, column));
+		}
+		case ASTWriter.CALL: {
+			int line = this.readInt();
+			int column = this.readInt();
+			String name = this.readString();
+			return this.readAttribute(new CallCmd(name, this.readExpressions(this.readInt()), line, column));
+		}
+		case ASTWriter.IF: {
+			int line = this.readInt();
+			int column = this.readInt();
+			Expression condition = this.readExpression();
+			Cmd[] thenCommands = this.readCommands(this.readInt());
+			int elseCount = this.readInt();
+			Cmd[] elseCommands = elseCount == 0 ? null : this.readCommands(elseCount - 1);
+			return new IfCmd(condition, thenCommands, elseCommands, line, column);
+		}
+		case ASTWriter.WHILE: {
+			int line = this.readInt();
+			int column = this.readInt();
+			Expression condition = this.readExpression();
+			return new WhileCmd(condition, this.readCommands(this.readInt()), line, column);
+		}
+		case ASTWriter.WRITE: {
+			int line = this.readInt();
+			int column = this.readInt();
+			return new WriteCmd(this.readExpression(), line, column);
+		}
+		case ASTWriter.BREAK: {
+			int line = this.readInt();
+			return new BreakCmd(line, this.readInt());
+		}
+		case ASTWriter.CONTINUE: {
+			int line = this.readInt();
+			return new ContinueCmd(line, this.readInt());
+		}
+		default:
+			throw new IllegalStateException("Invalid binary AST node kind " + kind + " at " + (this.position - 1));
+		}
+	}
+
+	/**
+	 * Decodes the fields of an expression
+	 * @param kind
+	 * @return
+	 */
+	private Expression readExpression(int kind) {
+		switch (kind) {
+		case ASTWriter.BEXP: {
+			Expression left = this.readExpression();
+			Operator operator = OPERATORS[this.readByte()];
+			return new Bexp(left, operator, this.readExpression());
+		}
+		case ASTWriter.AEXP:
+		case ASTWriter.TERM: {
+			Expression[] operands = new Expression[this.readInt()];
+			Operator[] operators = new Operator[operands.length - 1];
+			operands[0] = this.readExpression();
+			for (int i = 1; i < operands.length; i++) {
+				operators[i - 1] = OPERATORS[this.readByte()];
+				operands[i] = this.readExpression();
+			}
+			return kind == ASTWriter.AEXP ? new Aexp(operands, operators) : new Term(operands, operators);
+		}
+		case ASTWriter.VARIABLE: {
+			int line = this.readInt();
+			int column = this.readInt();
+			return this.readAttribute(new VariableFactor(this.readString(), line, column));
+		}
+		case ASTWriter.CALL_FACTOR: {
+			int line = this.readInt();
+			int column = this.readInt();
+			String name = this.readString();
+			return this.readAttribute(new CallFactor(name, this.readExpressions(this.readInt()), line, column));
+		}
+		case ASTWriter.NUMBER:
+			return new NumberFactor(this.readSigned());
+		case ASTWriter.TRUE:
+			return new BooleanFactor(true);
+		case ASTWriter.FALSE:
+			return new BooleanFactor(false);
+		default:
+			throw new IllegalStateException("Invalid binary AST node kind " + kind + " at " + (this.position - 1));
+		}
+	}
+
+}
@@ -0,0 +1,399 @@
+package util.AST;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import util.symbolsTable.Attribute;
+
+/**
+ * Binary AST writer
+ * Writes a program in the binary AST format while visiting it, without
+ * building the output in memory:
+ *   header:  "PAST", format version (byte)
+ *   program: name, variables, functions, procedures, commands
+ *   strings: count, then each string (length, ISO-8859-1 bytes)
+ *   index:   number (int) of functions, procedures and commands, then the
+ *            offset (int) of each of them
+ *   trailer: offset (int) of the strings and of the index
+ * A node is its kind byte followed by its fields; numbers are varints
+ * (lines, columns, counts, string indexes, zigzag for literals), an array
+ * is its count followed by its nodes (count + 1 for arrays that may be
+ * null, 0 for null) and names are indexes in the string table, so each
+ * identifier is stored once. The annotations of a checked program are kept
+ * too: the type of each expression (a byte after its kind, 0 if it has
+ * none) and the attribute of each name use (after its other fields: 0 if
+ * it has none, else what it declares, its slot and its scope; the reader
+ * finds the declaration again from them). The index lets a reader decode
+ * one function, procedure or command without decoding the rest of the
+ * program
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ASTWriter implements Visitor {
+
+	// Format identification
+	static final byte[] MAGIC = { 'P', 'A', 'S', 'T' };
+	static final int VERSION = 2;
+	// Node kinds
+	static final int VARDEC = 1, FUNCDEC = 2, PROCDEC = 3;
+	static final int ASSIGN = 4, CALL = 5, IF = 6, WHILE = 7, WRITE = 8, BREAK = 9, CONTINUE = 10;
+	static final int BEXP = 11, AEXP = 12, TERM = 13, VARIABLE = 14, CALL_FACTOR = 15, NUMBER = 16, TRUE = 17, FALSE = 18;
+	// Attribute declarations: a variable, the result of the enclosing function and a subprogram
+	static final int VARIABLE_SLOT = 1, RESULT_SLOT = 2, SUBPROGRAM_SLOT = 3;
+
+	// Where the bytes go
+	private OutputStream out;
+	// Output buffer (flushed to out when full)
+	private byte[] buffer = new byte[8192];
+	private int count;
+	// Bytes written before the buffer
+	private int flushed;
+	// String table: index of each string and strings in index order
+	private HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+	private List<String> strings = new ArrayList<String>();
+	// Offsets of the functions, procedures and commands
+	private List<Integer> offsets = new ArrayList<Integer>();
+
+	/**
+	 * Default constructor
+	 * @param out - where the program is written (not closed)
+	 */
+	public ASTWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes a program
+	 * @param program
+	 * @throws IOException
+	 */
+	public void write(Program program) throws IOException {
+		try {
+			this.writeBytes(MAGIC);
+			this.writeByte(VERSION);
+			program.visit(this, null);
+
+			int stringsOffset = this.position();
+			this.writeInt(this.strings.size());
+			for (String string : this.strings) {
+				byte[] bytes = string.getBytes(StandardCharsets.ISO_8859_1);
+				this.writeInt(bytes.length);
+				this.writeBytes(bytes);
+			}
+			int indexOffset = this.position();
+			this.writeFixed(program.getFunctions().length);
+			this.writeFixed(program.getProcedures().length);
+			this.writeFixed(program.getCommands().length);
+			for (int offset : this.offsets) {
+				this.writeFixed(offset);
+			}
+			this.writeFixed(stringsOffset);
+			this.writeFixed(indexOffset);
+			this.flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes written so far
+	 * @return
+	 */
+	private int position() {
+		return this.flushed + this.count;
+	}
+
+	private void flush() {
+		try {
+			this.out.write(this.buffer, 0, this.count);
+		} catch (IOException e) {
+			// Visit methods cannot throw IOException
+			throw new UncheckedIOException(e);
+		}
+		this.flushed += this.count;
+		this.count = 0;
+	}
+
+	private void writeByte(int b) {
+		if ( this.count == this.buffer.length ) {
+			this.flush();
+		}
+		this.buffer[this.count++] = (byte) b;
+	}
+
+	private void writeBytes(byte[] bytes) {
+		for (byte b : bytes) {
+			this.writeByte(b);
+		}
+	}
+
+	/**
+	 * Writes a non negative int as a varint (7 bits per byte, low bits first)
+	 * @param value
+	 */
+	private void writeInt(int value) {
+		while ((value & ~0x7F) != 0) {
+			this.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		this.writeByte(value);
+	}
+
+	/**
+	 * Writes a signed int as a zigzag varint
+	 * @param value
+	 */
+	private void writeSigned(int value) {
+		this.writeInt((value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Writes an int in four bytes (big endian)
+	 * @param value
+	 */
+	private void writeFixed(int value) {
+		this.writeByte(value >>> 24);
+		this.writeByte(value >>> 16);
+		this.writeByte(value >>> 8);
+		this.writeByte(value);
+	}
+
+	private void writeString(String string) {
+		Integer index = this.indexes.get(string);
+		if ( index == null ) {
+			index = this.strings.size();
+			this.indexes.put(string, index);
+			this.strings.add(string);
+		}
+		this.writeInt(index);
+	}
+
+	private void writeNodes(AST[] nodes) {
+		this.writeInt(nodes.length);
+		for (AST node : nodes) {
+			node.visit(this, null);
+		}
+	}
+
+	private void writePosition(int line, int column) {
+		this.writeInt(line);
+		this.writeInt(column);
+	}
+
+	/**
+	 * Writes the kind and the type of an expression
+	 * @param kind
+	 * @param expression
+	 */
+	private void writeExpression(int kind, Expression expression) {
+		this.writeByte(kind);
+		this.writeByte(expression.getType() == null ? 0 : expression.getType().ordinal() + 1);
+	}
+
+	/**
+	 * Writes the attribute of a name use
+	 * @param attribute - null if it was not checked
+	 */
+	private void writeAttribute(Attribute attribute) {
+		if ( attribute == null ) {
+			this.writeByte(0);
+			return;
+		}
+		if ( attribute.getAst() instanceof VarDec ) {
+			this.writeByte(VARIABLE_SLOT);
+		} else if ( attribute.getScope() != 0 ) {
+			this.writeByte(RESULT_SLOT);
+		} else {
+			this.writeByte(SUBPROGRAM_SLOT);
+		}
+		this.writeInt(attribute.getSlot());
+		this.writeInt(attribute.getScope());
+	}
+
+	/**
+	 * Writes operands[0] operators[0] operands[1] ...
+	 * @param kind
+	 * @param expression
+	 * @param operands
+	 * @param operators
+	 */
+	private void writeOperation(int kind, Expression expression, Expression[] operands, Operator[] operators) {
+		this.writeExpression(kind, expression);
+		this.writeInt(operands.length);
+		operands[0].visit(this, null);
+		for (int i = 1; i < operands.length; i++) {
+			this.writeByte(operators[i - 1].ordinal());
+			operands[i].visit(this, null);
+		}
+	}
+
+	public Object visitProgram(Program program, Object arg) {
+		this.writeString(program.getName());
+		this.writeNodes(program.getVariables());
+		this.writeInt(program.getFunctions().length);
+		for (FuncDec function : program.getFunctions()) {
+			this.offsets.add(this.position());
+			function.visit(this, null);
+		}
+		this.writeInt(program.getProcedures().length);
+		for (ProcDec procedure : program.getProcedures()) {
+			this.offsets.add(this.position());
+			procedure.visit(this, null);
+		}
+		this.writeInt(program.getCommands().length);
+		for (Cmd cmd : program.getCommands()) {
+			this.offsets.add(this.position());
+			cmd.visit(this, null);
+		}
+		return null;
+	}
+
+	public Object visitVarDec(VarDec varDec, Object arg) {
+		this.writeByte(VARDEC);
+		this.writeInt(varDec.getNames().length);
+		for (String name : varDec.getNames()) {
+			this.writeString(name);
+		}
+		this.writeByte(varDec.getType().ordinal());
+		this.writePosition(varDec.getLine(), varDec.getColumn());
+		return null;
+	}
+
+	/**
+	 * Writes the fields every subprogram has
+	 * @param subprogram
+	 */
+	private void writeSubprogram(SubprogramDec subprogram) {
+		this.writeString(subprogram.getName());
+		this.writePosition(subprogram.getLine(), subprogram.getColumn());
+		this.writeNodes(subprogram.getParameters());
+		this.writeNodes(subprogram.getVariables());
+		this.writeNodes(subprogram.getCommands());
+	}
+
+	public Object visitFuncDec(FuncDec funcDec, Object arg) {
+		this.writeByte(FUNCDEC);
+		this.writeSubprogram(funcDec);
+		this.writeByte(funcDec.getReturnType().ordinal());
+		return null;
+	}
+
+	public Object visitProcDec(ProcDec procDec, Object arg) {
+		this.writeByte(PROCDEC);
+		this.writeSubprogram(procDec);
+		return null;
+	}
+
+	public Object visitAssignCmd(AssignCmd cmd, Object arg) {
+		this.writeByte(ASSIGN);
+		this.writePosition(cmd.getLine(), cmd.getColumn());
+		this.writeString(cmd.getName());
+		cmd.getValue().visit(this, null);
+		this.writeAttribute(cmd.getAttribute());
+		return null;
+	}
+
+	public Object visitCallCmd(CallCmd cmd, Object arg) {
+		this.writeByte(CALL);
+		this.writePosition(cmd.getLine(), cmd.getColumn());
+		this.writeString(cmd.getName());
+		this.writeNodes(cmd.getArguments());
+		this.writeAttribute(cmd.getAttribute());
+		return null;
+	}
+
+	public Object visitIfCmd(IfCmd cmd, Object arg) {
+		this.writeByte(IF);
+		this.writePosition(cmd.getLine(), cmd.getColumn());
+		cmd.getCondition().visit(this, null);
+		this.writeNodes(cmd.getThenCommands());
+		if ( cmd.getElseCommands() == null ) {
+			this.writeInt(0);
+		} else {
+			this.writeInt(cmd.getElseCommands().length + 1);
+			for (Cmd elseCmd : cmd.getElseCommands()) {
+				elseCmd.visit(this, null);
+			}
+		}
+		return null;
+	}
+
+	public Object visitWhileCmd(WhileCmd cmd, Object arg) {
+		this.writeByte(WHILE);
+		this.writePosition(cmd.getLine(), cmd.getColumn());
+		cmd.getCondition().visit(this, null);
+		this.writeNodes(cmd.getCommands());
+		return null;
+	}
+
+	public Object visitWriteCmd(WriteCmd cmd, Object arg) {
+		this.writeByte(WRITE);
+		this.writePosition(cmd.getLine(), cmd.getColumn());
+		cmd.getValue().visit(this, null);
+		return null;
+	}
+
+	public Object visitBreakCmd(BreakCmd cmd, Object arg) {
+		this.writeByte(BREAK);
+		this.writePosition(cmd.getLine(), cmd.getColumn());
+		return null;
+	}
+
+	public Object visitContinueCmd(ContinueCmd cmd, Object arg) {
+		this.writeByte(CONTINUE);
+		this.writePosition(cmd.getLine(), cmd.getColumn());
+		return null;
+	}
+
+	public Object visitBexp(Bexp bexp, Object arg) {
+		this.writeExpression(BEXP, bexp);
+		bexp.getLeft().visit(this, null);
+		this.writeByte(bexp.getOperator().ordinal());
+		bexp.getRight().visit(this, null);
+		return null;
+	}
+
+	public Object visitAexp(Aexp aexp, Object arg) {
+		this.writeOperation(AEXP, aexp, aexp.getOperands(), aexp.getOperators());
+		return null;
+	}
+
+	public Object visitTerm(Term term, Object arg) {
+		this.writeOperation(TERM, term, term.getOperands(), term.getOperators());
+		return null;
+	}
+
+	public Object visitVariableFactor(VariableFactor factor, Object arg) {
+		this.writeExpression(VARIABLE, factor);
+		this.writePosition(factor.getLine(), factor.getColumn());
+		this.writeString(factor.getName());
+		this.writeAttribute(factor.getAttribute());
+		return null;
+	}
+
+	public Object visitCallFactor(CallFactor factor, Object arg) {
+		this.writeExpression(CALL_FACTOR, factor);
+		this.writePosition(factor.getLine(), factor.getColumn());
+		this.writeString(factor.getName());
+		this.writeNodes(factor.getArguments());
+		this.writeAttribute(factor.getAttribute());
+		return null;
+	}
+
+	public Object visitNumberFactor(NumberFactor factor, Object arg) {
+		this.writeExpression(NUMBER, factor);
+		this.writeSigned(factor.getValue());
+		return null;
+	}
+
+	public Object visitBooleanFactor(BooleanFactor factor, Object arg) {
+		this.writeExpression(factor.getValue() ? TRUE : FALSE, factor);
+		return null;
+	}
+
+}
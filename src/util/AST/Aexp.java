@@ -0,0 +1,51 @@
+package util.AST;
+
+/**
+ * Arithmetic expression node
+ * Aexp ::= Term (aop1 Term)*
+ * Operands are evaluated from left to right: operands[0] operators[0] operands[1] ...
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Aexp extends Expression {
+
+	// The operands (at least two)
+	private final Expression[] operands;
+	// The operators (aop1) between each pair of operands
+	private final Operator[] operators;
+
+	/**
+	 * Default constructor
+	 * @param operands
+	 * @param operators
+	 */
+	public Aexp(Expression[] operands, Operator[] operators) {
+		this.operands = operands;
+		this.operators = operators;
+	}
+
+	public Expression[] getOperands() {
+		return operands;
+	}
+
+	public Operator[] getOperators() {
+		return operators;
+	}
+
+	@Override
+	public String toString(int level) {
+		StringBuffer str = new StringBuffer();
+		str.append(this.getSpaces(level)).append("Aexp");
+		for (Operator operator : this.operators) {
+			str.append(' ').append(operator);
+		}
+		str.append('\n');
+		return str.toString() + this.toString(this.operands, level + 1);
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitAexp(this, arg);
+	}
+
+}
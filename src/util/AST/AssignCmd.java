@@ -0,0 +1,60 @@
+package util.AST;
+
+import util.symbolsTable.Attribute;
+
+/**
+ * Assignment command node
+ * Cmd ::= id := Bexp;
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class AssignCmd extends Cmd {
+
+	// The assigned variable (or function result)
+	private final String name;
+	// The assigned value
+	private final Expression value;
+	// The declaration of the variable (or function result) (set by the checker)
+	private Attribute attribute;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param value
+	 * @param line
+	 * @param column
+	 */
+	public AssignCmd(String name, Expression value, int line, int column) {
+		super(line, column);
+		this.name = name;
+		this.value = value;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Expression getValue() {
+		return value;
+	}
+
+	public Attribute getAttribute() {
+		return attribute;
+	}
+
+	public void setAttribute(Attribute attribute) {
+		this.attribute = attribute;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "AssignCmd " + this.name + "\n" +
+			this.value.toString(level + 1);
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitAssignCmd(this, arg);
+	}
+
+}
@@ -0,0 +1,52 @@
+package util.AST;
+
+/**
+ * Boolean expression node
+ * Bexp ::= Aexp (bop Aexp)?
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Bexp extends Expression {
+
+	// The operands
+	private final Expression left, right;
+	// The relational operator
+	private final Operator operator;
+
+	/**
+	 * Default constructor
+	 * @param left
+	 * @param operator
+	 * @param right
+	 */
+	public Bexp(Expression left, Operator operator, Expression right) {
+		this.left = left;
+		this.operator = operator;
+		this.right = right;
+	}
+
+	public Expression getLeft() {
+		return left;
+	}
+
+	public Operator getOperator() {
+		return operator;
+	}
+
+	public Expression getRight() {
+		return right;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "Bexp " + this.operator + "\n" +
+			this.left.toString(level + 1) +
+			this.right.toString(level + 1);
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitBexp(this, arg);
+	}
+
+}
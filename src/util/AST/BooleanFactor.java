@@ -0,0 +1,36 @@
+package util.AST;
+
+/**
+ * Boolean factor node
+ * Factor ::= true | false
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class BooleanFactor extends Factor {
+
+	// The boolean value
+	private final boolean value;
+
+	/**
+	 * Default constructor
+	 * @param value
+	 */
+	public BooleanFactor(boolean value) {
+		this.value = value;
+	}
+
+	public boolean getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "BooleanFactor " + this.value + "\n";
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitBooleanFactor(this, arg);
+	}
+
+}
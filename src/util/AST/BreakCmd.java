@@ -0,0 +1,30 @@
+package util.AST;
+
+/**
+ * Break command node
+ * Cmd ::= break;
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class BreakCmd extends Cmd {
+
+	/**
+	 * Default constructor
+	 * @param line
+	 * @param column
+	 */
+	public BreakCmd(int line, int column) {
+		super(line, column);
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "BreakCmd\n";
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitBreakCmd(this, arg);
+	}
+
+}
@@ -0,0 +1,60 @@
+package util.AST;
+
+import util.symbolsTable.Attribute;
+
+/**
+ * Procedure call command node
+ * Cmd ::= id( ArgLst? );
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class CallCmd extends Cmd {
+
+	// The called subprogram
+	private final String name;
+	// The arguments
+	private final Expression[] arguments;
+	// The declaration of the subprogram (set by the checker)
+	private Attribute attribute;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param arguments
+	 * @param line
+	 * @param column
+	 */
+	public CallCmd(String name, Expression[] arguments, int line, int column) {
+		super(line, column);
+		this.name = name;
+		this.arguments = arguments;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Expression[] getArguments() {
+		return arguments;
+	}
+
+	public Attribute getAttribute() {
+		return attribute;
+	}
+
+	public void setAttribute(Attribute attribute) {
+		this.attribute = attribute;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "CallCmd " + this.name + "\n" +
+			this.toString(this.arguments, level + 1);
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitCallCmd(this, arg);
+	}
+
+}
@@ -0,0 +1,71 @@
+package util.AST;
+
+import util.symbolsTable.Attribute;
+
+/**
+ * Function call factor node
+ * Factor ::= id( (ArgLst?) )
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class CallFactor extends Factor {
+
+	// The called function
+	private final String name;
+	// The arguments
+	private final Expression[] arguments;
+	// The declaration of the function (set by the checker)
+	private Attribute attribute;
+	// Position of the factor
+	private final int line, column;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param arguments
+	 * @param line
+	 * @param column
+	 */
+	public CallFactor(String name, Expression[] arguments, int line, int column) {
+		this.name = name;
+		this.arguments = arguments;
+		this.line = line;
+		this.column = column;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Expression[] getArguments() {
+		return arguments;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public int getColumn() {
+		return column;
+	}
+
+	public Attribute getAttribute() {
+		return attribute;
+	}
+
+	public void setAttribute(Attribute attribute) {
+		this.attribute = attribute;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "CallFactor " + this.name + "\n" +
+			this.toString(this.arguments, level + 1);
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitCallFactor(this, arg);
+	}
+
+}
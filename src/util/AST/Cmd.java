@@ -0,0 +1,31 @@
+package util.AST;
+
+/**
+ * Command node
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public abstract class Cmd extends AST {
+
+	// Position of the command
+	private final int line, column;
+
+	/**
+	 * Default constructor
+	 * @param line
+	 * @param column
+	 */
+	public Cmd(int line, int column) {
+		this.line = line;
+		this.column = column;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public int getColumn() {
+		return column;
+	}
+
+}
@@ -0,0 +1,30 @@
+package util.AST;
+
+/**
+ * Continue command node
+ * Cmd ::= continue;
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ContinueCmd extends Cmd {
+
+	/**
+	 * Default constructor
+	 * @param line
+	 * @param column
+	 */
+	public ContinueCmd(int line, int column) {
+		super(line, column);
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "ContinueCmd\n";
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitContinueCmd(this, arg);
+	}
+
+}
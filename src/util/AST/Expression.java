@@ -0,0 +1,23 @@
+package util.AST;
+
+/**
+ * Expression node
+ * Parent of Bexp, Aexp, Term and Factor; a rule with a single operand
+ * (an Aexp with one Term, for instance) is represented by the operand itself
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public abstract class Expression extends AST {
+
+	// Type of the value (set by the checker)
+	private Type type;
+
+	public Type getType() {
+		return type;
+	}
+
+	public void setType(Type type) {
+		this.type = type;
+	}
+
+}
@@ -0,0 +1,12 @@
+package util.AST;
+
+/**
+ * Factor node
+ * Factor ::= id((ArgLst?))? | num | true | false | (Bexp)
+ * A (Bexp) factor is represented by the inner expression
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public abstract class Factor extends Expression {
+
+}
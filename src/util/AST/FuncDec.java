@@ -0,0 +1,44 @@
+package util.AST;
+
+/**
+ * Function declaration node
+ * FuncDec ::= function id( (ParLst)? ):type; (var (VarDec;)+ )? begin (Cmd)* end;
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class FuncDec extends SubprogramDec {
+
+	// The result type
+	private final Type returnType;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param parameters
+	 * @param returnType
+	 * @param variables
+	 * @param commands
+	 * @param line
+	 * @param column
+	 */
+	public FuncDec(String name, VarDec[] parameters, Type returnType, VarDec[] variables, Cmd[] commands, int line, int column) {
+		super(name, parameters, variables, commands, line, column);
+		this.returnType = returnType;
+	}
+
+	public Type getReturnType() {
+		return returnType;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "FuncDec " + this.getName() + " : " + this.returnType + "\n" +
+			this.bodyToString(level + 1);
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitFuncDec(this, arg);
+	}
+
+}
@@ -0,0 +1,61 @@
+package util.AST;
+
+/**
+ * If command node
+ * Cmd ::= if Bexp then begin Cmd* end; ( else begin Cmd* end; )?
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class IfCmd extends Cmd {
+
+	// The condition
+	private final Expression condition;
+	// The then and else commands (elseCommands is null when there is no else)
+	private final Cmd[] thenCommands, elseCommands;
+
+	/**
+	 * Default constructor
+	 * @param condition
+	 * @param thenCommands
+	 * @param elseCommands
+	 * @param line
+	 * @param column
+	 */
+	public IfCmd(Expression condition, Cmd[] thenCommands, Cmd[] elseCommands, int line, int column) {
+		super(line, column);
+		this.condition = condition;
+		this.thenCommands = thenCommands;
+		this.elseCommands = elseCommands;
+	}
+
+	public Expression getCondition() {
+		return condition;
+	}
+
+	public Cmd[] getThenCommands() {
+		return thenCommands;
+	}
+
+	public Cmd[] getElseCommands() {
+		return elseCommands;
+	}
+
+	@Override
+	public String toString(int level) {
+		String str = this.getSpaces(level) + "IfCmd\n" +
+			this.condition.toString(level + 1) +
+			this.getSpaces(level + 1) + "Then\n" +
+			this.toString(this.thenCommands, level + 2);
+		if ( this.elseCommands != null ) {
+			str = str + this.getSpaces(level + 1) + "Else\n" +
+				this.toString(this.elseCommands, level + 2);
+		}
+		return str;
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitIfCmd(this, arg);
+	}
+
+}
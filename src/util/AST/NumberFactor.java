@@ -0,0 +1,36 @@
+package util.AST;
+
+/**
+ * Number factor node
+ * Factor ::= num
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class NumberFactor extends Factor {
+
+	// The number value
+	private final int value;
+
+	/**
+	 * Default constructor
+	 * @param value
+	 */
+	public NumberFactor(int value) {
+		this.value = value;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "NumberFactor " + this.value + "\n";
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitNumberFactor(this, arg);
+	}
+
+}
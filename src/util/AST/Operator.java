@@ -0,0 +1,39 @@
+package util.AST;
+
+/**
+ * Arithmetic and relational operators
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public enum Operator {
+	ADD("+"),
+	SUB("-"),
+	MUL("*"),
+	DIV("/"),
+	EQUALS("="),
+	NOTEQUALS("<>"),
+	GT(">"),
+	LT("<"),
+	GE(">="),
+	LE("<=");
+
+	// The operator spelling
+	private final String spelling;
+
+	private Operator(String spelling) {
+		this.spelling = spelling;
+	}
+
+	/**
+	 * Returns if the operator compares two values (its result is boolean)
+	 * @return
+	 */
+	public boolean isRelational() {
+		return this.ordinal() >= EQUALS.ordinal();
+	}
+
+	@Override
+	public String toString() {
+		return this.spelling;
+	}
+}
@@ -0,0 +1,35 @@
+package util.AST;
+
+/**
+ * Procedure declaration node
+ * ProcDec ::= procedure id( (ParLst)? ); (var (VarDec;)+ )? begin (Cmd)* end;
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ProcDec extends SubprogramDec {
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param parameters
+	 * @param variables
+	 * @param commands
+	 * @param line
+	 * @param column
+	 */
+	public ProcDec(String name, VarDec[] parameters, VarDec[] variables, Cmd[] commands, int line, int column) {
+		super(name, parameters, variables, commands, line, column);
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "ProcDec " + this.getName() + "\n" +
+			this.bodyToString(level + 1);
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitProcDec(this, arg);
+	}
+
+}
@@ -0,0 +1,71 @@
+package util.AST;
+
+/**
+ * Program node
+ * Program ::= program id; (var (VarDec;)+ )? (FuncDec)* (ProcDec)* begin (Cmd)* end.
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Program extends AST {
+
+	// The program name
+	private final String name;
+	// Global variable declarations
+	private final VarDec[] variables;
+	// Function and procedure declarations
+	private final FuncDec[] functions;
+	private final ProcDec[] procedures;
+	// Main commands
+	private final Cmd[] commands;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param variables
+	 * @param functions
+	 * @param procedures
+	 * @param commands
+	 */
+	public Program(String name, VarDec[] variables, FuncDec[] functions, ProcDec[] procedures, Cmd[] commands) {
+		this.name = name;
+		this.variables = variables;
+		this.functions = functions;
+		this.procedures = procedures;
+		this.commands = commands;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public VarDec[] getVariables() {
+		return variables;
+	}
+
+	public FuncDec[] getFunctions() {
+		return functions;
+	}
+
+	public ProcDec[] getProcedures() {
+		return procedures;
+	}
+
+	public Cmd[] getCommands() {
+		return commands;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "Program " + this.name + "\n" +
+			this.toString(this.variables, level + 1) +
+			this.toString(this.functions, level + 1) +
+			this.toString(this.procedures, level + 1) +
+			this.toString(this.commands, level + 1);
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitProgram(this, arg);
+	}
+
+}
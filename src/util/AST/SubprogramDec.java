@@ -0,0 +1,99 @@
+package util.AST;
+
+/**
+ * Subprogram declaration node
+ * Common part of FuncDec and ProcDec: id( (ParLst)? ) ... (var (VarDec;)+ )? begin (Cmd)* end;
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public abstract class SubprogramDec extends AST {
+
+	// The subprogram name
+	private final String name;
+	// Parameter declarations (ParLst)
+	private final VarDec[] parameters;
+	// Local variable declarations
+	private final VarDec[] variables;
+	// Body commands
+	private final Cmd[] commands;
+	// Position of the declaration
+	private final int line, column;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param parameters
+	 * @param variables
+	 * @param commands
+	 * @param line
+	 * @param column
+	 */
+	public SubprogramDec(String name, VarDec[] parameters, VarDec[] variables, Cmd[] commands, int line, int column) {
+		this.name = name;
+		this.parameters = parameters;
+		this.variables = variables;
+		this.commands = commands;
+		this.line = line;
+		this.column = column;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public VarDec[] getParameters() {
+		return parameters;
+	}
+
+	public VarDec[] getVariables() {
+		return variables;
+	}
+
+	public Cmd[] getCommands() {
+		return commands;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public int getColumn() {
+		return column;
+	}
+
+	/**
+	 * Returns the number of parameters (a VarDec may declare several)
+	 * @return
+	 */
+	public int getParameterCount() {
+		int count = 0;
+		for (VarDec parameter : this.parameters) {
+			count += parameter.getNames().length;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of local variables
+	 * @return
+	 */
+	public int getVariableCount() {
+		int count = 0;
+		for (VarDec variable : this.variables) {
+			count += variable.getNames().length;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the structure of the parameters, variables and commands
+	 * @param level
+	 * @return
+	 */
+	protected String bodyToString(int level) {
+		return this.toString(this.parameters, level) +
+			this.toString(this.variables, level) +
+			this.toString(this.commands, level);
+	}
+
+}
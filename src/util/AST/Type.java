@@ -0,0 +1,23 @@
+package util.AST;
+
+/**
+ * Language types
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public enum Type {
+	INTEGER("integer"),
+	BOOLEAN("boolean");
+
+	// The type spelling
+	private final String spelling;
+
+	private Type(String spelling) {
+		this.spelling = spelling;
+	}
+
+	@Override
+	public String toString() {
+		return this.spelling;
+	}
+}
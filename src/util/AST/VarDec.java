@@ -0,0 +1,58 @@
+package util.AST;
+
+/**
+ * Variable declaration node
+ * VarDec ::= id (,id)* : type
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class VarDec extends AST {
+
+	// The declared names
+	private final String[] names;
+	// The type of every declared name
+	private final Type type;
+	// Position of the declaration
+	private final int line, column;
+
+	/**
+	 * Default constructor
+	 * @param names
+	 * @param type
+	 * @param line
+	 * @param column
+	 */
+	public VarDec(String[] names, Type type, int line, int column) {
+		this.names = names;
+		this.type = type;
+		this.line = line;
+		this.column = column;
+	}
+
+	public String[] getNames() {
+		return names;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public int getColumn() {
+		return column;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "VarDec " + String.join(", ", this.names) + " : " + this.type + "\n";
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitVarDec(this, arg);
+	}
+
+}
@@ -0,0 +1,62 @@
+package util.AST;
+
+import util.symbolsTable.Attribute;
+
+/**
+ * Variable factor node
+ * Factor ::= id
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class VariableFactor extends Factor {
+
+	// The variable name
+	private final String name;
+	// Position of the factor
+	private final int line, column;
+	// The declaration of the variable (or function result) (set by the checker)
+	private Attribute attribute;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param line
+	 * @param column
+	 */
+	public VariableFactor(String name, int line, int column) {
+		this.name = name;
+		this.line = line;
+		this.column = column;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public int getColumn() {
+		return column;
+	}
+
+	public Attribute getAttribute() {
+		return attribute;
+	}
+
+	public void setAttribute(Attribute attribute) {
+		this.attribute = attribute;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "VariableFactor " + this.name + "\n";
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitVariableFactor(this, arg);
+	}
+
+}
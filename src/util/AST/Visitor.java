@@ -0,0 +1,48 @@
+package util.AST;
+
+/**
+ * AST visitor interface
+ * Every pass over the AST (checking, code generation, optimization...)
+ * implements it
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public interface Visitor {
+
+	public Object visitProgram(Program program, Object arg);
+
+	public Object visitVarDec(VarDec varDec, Object arg);
+
+	public Object visitFuncDec(FuncDec funcDec, Object arg);
+
+	public Object visitProcDec(ProcDec procDec, Object arg);
+
+	public Object visitAssignCmd(AssignCmd cmd, Object arg);
+
+	public Object visitCallCmd(CallCmd cmd, Object arg);
+
+	public Object visitIfCmd(IfCmd cmd, Object arg);
+
+	public Object visitWhileCmd(WhileCmd cmd, Object arg);
+
+	public Object visitWriteCmd(WriteCmd cmd, Object arg);
+
+	public Object visitBreakCmd(BreakCmd cmd, Object arg);
+
+	public Object visitContinueCmd(ContinueCmd cmd, Object arg);
+
+	public Object visitBexp(Bexp bexp, Object arg);
+
+	public Object visitAexp(Aexp aexp, Object arg);
+
+	public Object visitTerm(Term term, Object arg);
+
+	public Object visitVariableFactor(VariableFactor factor, Object arg);
+
+	public Object visitCallFactor(CallFactor factor, Object arg);
+
+	public Object visitNumberFactor(NumberFactor factor, Object arg);
+
+	public Object visitBooleanFactor(BooleanFactor factor, Object arg);
+
+}
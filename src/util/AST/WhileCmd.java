@@ -0,0 +1,49 @@
+package util.AST;
+
+/**
+ * While command node
+ * Cmd ::= while Bexp do begin Cmd* end;
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class WhileCmd extends Cmd {
+
+	// The condition
+	private final Expression condition;
+	// The loop body
+	private final Cmd[] commands;
+
+	/**
+	 * Default constructor
+	 * @param condition
+	 * @param commands
+	 * @param line
+	 * @param column
+	 */
+	public WhileCmd(Expression condition, Cmd[] commands, int line, int column) {
+		super(line, column);
+		this.condition = condition;
+		this.commands = commands;
+	}
+
+	public Expression getCondition() {
+		return condition;
+	}
+
+	public Cmd[] getCommands() {
+		return commands;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "WhileCmd\n" +
+			this.condition.toString(level + 1) +
+			this.toString(this.commands, level + 1);
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitWhileCmd(this, arg);
+	}
+
+}
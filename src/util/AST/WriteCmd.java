@@ -0,0 +1,40 @@
+package util.AST;
+
+/**
+ * Write command node
+ * Cmd ::= write(Bexp);
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class WriteCmd extends Cmd {
+
+	// The written value
+	private final Expression value;
+
+	/**
+	 * Default constructor
+	 * @param value
+	 * @param line
+	 * @param column
+	 */
+	public WriteCmd(Expression value, int line, int column) {
+		super(line, column);
+		this.value = value;
+	}
+
+	public Expression getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString(int level) {
+		return this.getSpaces(level) + "WriteCmd\n" +
+			this.value.toString(level + 1);
+	}
+
+	@Override
+	public Object visit(Visitor v, Object arg) {
+		return v.visitWriteCmd(this, arg);
+	}
+
+}
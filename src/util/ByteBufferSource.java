@@ -0,0 +1,80 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Source held in a byte buffer (heap, direct or mapped)
+ * Each byte between the buffer position and its limit is read as one
+ * character (ISO-8859-1), so reading a char is a single buffer access; the
+ * buffer contents must not change while the source is read
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ByteBufferSource extends Source {
+
+	// The source name
+	private String name;
+	// The source bytes (offset 0 is the buffer position)
+	private ByteBuffer buffer;
+	// The number of bytes
+	private int length;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param buffer - its position and limit are not changed
+	 */
+	public ByteBufferSource(String name, ByteBuffer buffer) {
+		this.name = name;
+		this.buffer = buffer.slice();
+		this.length = this.buffer.remaining();
+	}
+
+	@Override
+	public char charAt(int offset) {
+		if ( offset < this.length ) {
+			return (char) (this.buffer.get(offset) & 0xFF);
+		}
+		return EOT;
+	}
+
+	@Override
+	public String substring(int start, int end) {
+		// Offsets past the end (EOT) have no text
+		start = Math.min(start, this.length);
+		end = Math.min(end, this.length);
+		byte[] bytes = new byte[end - start];
+		this.buffer.get(start, bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the number of bytes
+	 * @return
+	 */
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	/**
+	 * Returns the source bytes (a read only view)
+	 * @return
+	 */
+	public ByteBuffer getBytes() {
+		return this.buffer.asReadOnlyBuffer();
+	}
+
+	@Override
+	public void close() {
+		this.buffer = null;
+		this.length = 0;
+	}
+
+}
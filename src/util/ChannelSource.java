@@ -0,0 +1,154 @@
+package util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Source read from a byte channel (a socket, a pipe, standard input...)
+ * The channel is read in chunks into a sliding window as the scanner asks
+ * for chars, and the bytes before the offset the scanner releases are
+ * dropped when the window fills up, so a source of any size is scanned in
+ * memory bound by the longest token. Each byte is read as one character
+ * (ISO-8859-1), like the mapped source files
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class ChannelSource extends Source {
+
+	// Default chunk read from the channel at a time
+	public static final int CHUNK = 64 * 1024;
+
+	// The source name
+	private String name;
+	// The channel, null once closed
+	private ReadableByteChannel channel;
+	// The window: bytes [base, limit) of the source
+	private byte[] window;
+	private int base, limit;
+	// The offset before which the bytes may be dropped
+	private int released;
+	// Whether the channel reached its end
+	private boolean ended;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param channel
+	 */
+	public ChannelSource(String name, ReadableByteChannel channel) {
+		this(name, channel, CHUNK);
+	}
+
+	/**
+	 * Creates a source read in chunks of the given size
+	 * @param name
+	 * @param channel
+	 * @param chunk
+	 */
+	public ChannelSource(String name, ReadableByteChannel channel, int chunk) {
+		if ( chunk <= 0 ) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunk);
+		}
+		this.name = name;
+		this.channel = channel;
+		this.window = new byte[chunk];
+	}
+
+	@Override
+	public char charAt(int offset) {
+		int index = offset - this.base;
+		if ( index >= 0 && offset < this.limit ) {
+			return (char) (this.window[index] & 0xFF);
+		}
+		return this.load(offset);
+	}
+
+	private char load(int offset) {
+		if ( offset < this.base ) {
+			throw new IllegalStateException("Offset " + offset + " was released (" + this.base + ")");
+		}
+		while (offset >= this.limit && !this.ended) {
+			this.fill();
+		}
+		return offset < this.limit ? (char) (this.window[offset - this.base] & 0xFF) : EOT;
+	}
+
+	/**
+	 * Reads the next chunk from the channel, making room in the window first
+	 */
+	private void fill() {
+		int used = this.limit - this.base;
+		if ( used == this.window.length ) {
+			// Drop the released bytes; grow when they were not enough
+			int drop = this.released - this.base;
+			byte[] window = used - drop > this.window.length / 2 ? new byte[this.window.length * 2] : this.window;
+			System.arraycopy(this.window, drop, window, 0, used - drop);
+			this.window = window;
+			this.base = this.released;
+			used -= drop;
+		}
+		try {
+			int read = this.channel == null ? -1 : this.channel.read(ByteBuffer.wrap(this.window, used, this.window.length - used));
+			if ( read < 0 ) {
+				this.ended = true;
+			} else {
+				this.limit += read;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public String substring(int start, int end) {
+		// Reading the last char brings the whole range into the window
+		if ( end > start ) {
+			this.charAt(end - 1);
+		}
+		this.charAt(start);
+		start = Math.min(start, this.limit);
+		end = Math.min(end, this.limit);
+		return new String(this.window, start - this.base, end - start, StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the number of bytes, or -1 until the channel ends
+	 * @return
+	 */
+	@Override
+	public int length() {
+		return this.ended ? this.limit : -1;
+	}
+
+	@Override
+	public void release(int offset) {
+		if ( offset > this.released ) {
+			this.released = Math.min(offset, this.limit);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			if ( this.channel != null ) {
+				this.channel.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			this.channel = null;
+			this.window = new byte[0];
+			this.base = this.limit = this.released = 0;
+			this.ended = true;
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package util;
+
+/**
+ * Source held in a slice of a char array
+ * The chars are read straight from the array, with no copy; the slice must
+ * not change while the source is read
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class CharArraySource extends Source {
+
+	// The source name
+	private String name;
+	// The array, and the start and length of the slice
+	private char[] chars;
+	private int start, length;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param chars
+	 */
+	public CharArraySource(String name, char[] chars) {
+		this(name, chars, 0, chars.length);
+	}
+
+	/**
+	 * Creates a source from a slice of an array
+	 * @param name
+	 * @param chars
+	 * @param start - the offset of the first char in the array
+	 * @param length - the number of chars
+	 */
+	public CharArraySource(String name, char[] chars, int start, int length) {
+		if ( start < 0 || length < 0 || start > chars.length - length ) {
+			throw new IndexOutOfBoundsException("Slice " + start + "+" + length + " of " + chars.length + " chars");
+		}
+		this.name = name;
+		this.chars = chars;
+		this.start = start;
+		this.length = length;
+	}
+
+	@Override
+	public char charAt(int offset) {
+		return offset < this.length ? this.chars[this.start + offset] : EOT;
+	}
+
+	@Override
+	public String substring(int start, int end) {
+		start = Math.min(start, this.length);
+		end = Math.min(end, this.length);
+		return new String(this.chars, this.start + start, end - start);
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+}
@@ -0,0 +1,51 @@
+package util;
+
+/**
+ * Source held in a char sequence (a String, a StringBuilder...)
+ * The chars are read straight from the sequence, with no copy; the sequence
+ * must not change while the source is read
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class CharSequenceSource extends Source {
+
+	// The source name
+	private String name;
+	// The text and its length
+	private CharSequence text;
+	private int length;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param text
+	 */
+	public CharSequenceSource(String name, CharSequence text) {
+		this.name = name;
+		this.text = text;
+		this.length = text.length();
+	}
+
+	@Override
+	public char charAt(int offset) {
+		return offset < this.length ? this.text.charAt(offset) : EOT;
+	}
+
+	@Override
+	public String substring(int start, int end) {
+		start = Math.min(start, this.length);
+		end = Math.min(end, this.length);
+		return this.text.subSequence(start, end).toString();
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+}
@@ -0,0 +1,227 @@
+package util;
+
+/**
+ * Editable source text
+ * Keeps the text in a gap buffer: the free space sits at the last edit, so
+ * a sequence of nearby edits (typing) only moves a few characters. The
+ * offsets where lines start are kept the same way (those after the gap
+ * relative to the end of the text), so converting a line to an offset and
+ * back never reads the text. A line ends at "\n", "\r\n" or a single "\r"
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class EditableSource extends Source {
+
+	// The source name
+	private String name;
+	// Text before the gap, the gap, and text after the gap
+	private char[] buffer;
+	// The gap bounds (start inclusive, end exclusive)
+	private int gapStart, gapEnd;
+	// Offset where each line starts, with a gap at the last edited line
+	private int[] lines;
+	// The line gap bounds (start inclusive, end exclusive)
+	private int lineGapStart, lineGapEnd;
+
+	/**
+	 * Default constructor
+	 * @param name
+	 * @param text
+	 */
+	public EditableSource(String name, CharSequence text) {
+		this.name = name;
+		this.buffer = new char[Math.max(16, text.length() * 2)];
+		for (int i = 0; i < text.length(); i++) {
+			this.buffer[i] = text.charAt(i);
+		}
+		this.gapStart = text.length();
+		this.gapEnd = this.buffer.length;
+		this.lines = new int[16];
+		this.lineGapStart = 0;
+		this.lineGapEnd = this.lines.length;
+		this.addLine(0);
+		this.addLines(1, this.length());
+	}
+
+	/**
+	 * Returns the text length
+	 * @return
+	 */
+	public int length() {
+		return this.buffer.length - (this.gapEnd - this.gapStart);
+	}
+
+	@Override
+	public char charAt(int offset) {
+		if ( offset < this.gapStart ) {
+			return this.buffer[offset];
+		}
+		offset += this.gapEnd - this.gapStart;
+		return offset < this.buffer.length ? this.buffer[offset] : EOT;
+	}
+
+	@Override
+	public String substring(int start, int end) {
+		start = Math.min(start, this.length());
+		end = Math.min(end, this.length());
+		StringBuffer str = new StringBuffer(end - start);
+		for (int i = start; i < end; i++) {
+			str.append(this.charAt(i));
+		}
+		return str.toString();
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Replaces a range of the text
+	 * @param offset - where the edit starts
+	 * @param removed - number of characters removed
+	 * @param inserted - the text inserted in their place
+	 */
+	public void replace(int offset, int removed, CharSequence inserted) {
+		if ( offset < 0 || removed < 0 || offset + removed > this.length() ) {
+			throw new IndexOutOfBoundsException("Invalid edit at " + offset + " (" + removed + " chars)");
+		}
+		// Lines starting in the edit (or right after it, where a "\r\n" may
+		// be joined or split) join the line gap and are found again after it
+		int first = this.getLine(offset);
+		if ( first == 0 || this.getLineStart(first) < offset ) {
+			first++;
+		}
+		this.moveLineGap(first);
+		int length = this.length();
+		while (this.lineGapEnd < this.lines.length && this.lines[this.lineGapEnd] + length <= offset + removed) {
+			this.lineGapEnd++;
+		}
+		this.moveGap(offset);
+		// The removed characters join the gap
+		this.gapEnd += removed;
+		if ( inserted.length() > this.gapEnd - this.gapStart ) {
+			this.grow(inserted.length());
+		}
+		for (int i = 0; i < inserted.length(); i++) {
+			this.buffer[this.gapStart++] = inserted.charAt(i);
+		}
+		this.addLines(Math.max(1, offset), offset + inserted.length());
+	}
+
+	/**
+	 * Returns the number of lines (an empty text has one)
+	 * @return
+	 */
+	public int getLineCount() {
+		return this.lines.length - (this.lineGapEnd - this.lineGapStart);
+	}
+
+	/**
+	 * Returns the offset where a line starts
+	 * @param line - from 0
+	 * @return
+	 */
+	public int getLineStart(int line) {
+		return line < this.lineGapStart ? this.lines[line] : this.lines[line + this.lineGapEnd - this.lineGapStart] + this.length();
+	}
+
+	/**
+	 * Returns the line of an offset
+	 * @param offset
+	 * @return
+	 */
+	public int getLine(int offset) {
+		int low = 0, high = this.getLineCount() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if ( this.getLineStart(middle) <= offset ) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Adds the lines that start at the offsets between from and to (both
+	 * inclusive) to the end of the line gap
+	 * @param from - at least 1
+	 * @param to
+	 */
+	private void addLines(int from, int to) {
+		for (int offset = from; offset <= to; offset++) {
+			char c = this.charAt(offset - 1);
+			if ( c == '\n' || (c == '\r' && this.charAt(offset) != '\n') ) {
+				this.addLine(offset);
+			}
+		}
+	}
+
+	private void addLine(int offset) {
+		if ( this.lineGapStart == this.lineGapEnd ) {
+			int after = this.lines.length - this.lineGapEnd;
+			int[] lines = new int[this.lines.length * 2];
+			System.arraycopy(this.lines, 0, lines, 0, this.lineGapStart);
+			System.arraycopy(this.lines, this.lineGapEnd, lines, lines.length - after, after);
+			this.lineGapEnd = lines.length - after;
+			this.lines = lines;
+		}
+		this.lines[this.lineGapStart++] = offset;
+	}
+
+	/**
+	 * Moves the line gap before a line, converting the starts that cross it
+	 * (absolute before the gap, relative to the end of the text after it)
+	 * @param line
+	 */
+	private void moveLineGap(int line) {
+		int length = this.length();
+		while (this.lineGapStart > line) {
+			this.lines[--this.lineGapEnd] = this.lines[--this.lineGapStart] - length;
+		}
+		while (this.lineGapStart < line) {
+			this.lines[this.lineGapStart++] = this.lines[this.lineGapEnd++] + length;
+		}
+	}
+
+	/**
+	 * Moves the gap to an offset
+	 * @param offset
+	 */
+	private void moveGap(int offset) {
+		if ( offset < this.gapStart ) {
+			int count = this.gapStart - offset;
+			System.arraycopy(this.buffer, offset, this.buffer, this.gapEnd - count, count);
+			this.gapStart -= count;
+			this.gapEnd -= count;
+		} else if ( offset > this.gapStart ) {
+			int count = offset - this.gapStart;
+			System.arraycopy(this.buffer, this.gapEnd, this.buffer, this.gapStart, count);
+			this.gapStart += count;
+			this.gapEnd += count;
+		}
+	}
+
+	/**
+	 * Enlarges the gap so it holds at least the given number of characters
+	 * @param needed
+	 */
+	private void grow(int needed) {
+		int after = this.buffer.length - this.gapEnd;
+		char[] buffer = new char[Math.max(this.buffer.length * 2, this.length() + needed + 16)];
+		System.arraycopy(this.buffer, 0, buffer, 0, this.gapStart);
+		System.arraycopy(this.buffer, this.gapEnd, buffer, buffer.length - after, after);
+		this.gapEnd = buffer.length - after;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Returns the whole text
+	 */
+	public String toString() {
+		return this.substring(0, this.length());
+	}
+
+}
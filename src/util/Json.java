@@ -0,0 +1,291 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON reader and writer
+ * Objects are read as maps (in source order), arrays as lists, numbers as
+ * Long (or Double when they have a fraction or an exponent); writing takes
+ * the same kinds of values, any Number and arrays of int or long
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class Json {
+
+	// The text being read and the current position
+	private final String text;
+	private int position;
+
+	private Json(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Reads a JSON value
+	 * @param text
+	 * @return
+	 * @throws IllegalArgumentException if the text is not JSON
+	 */
+	public static Object parse(String text) {
+		Json reader = new Json(text);
+		Object value = reader.value();
+		reader.skipSpaces();
+		if ( reader.position != text.length() ) {
+			throw reader.error();
+		}
+		return value;
+	}
+
+	/**
+	 * Writes a value as JSON
+	 * @param value
+	 * @return
+	 */
+	public static String write(Object value) {
+		StringBuilder out = new StringBuilder();
+		write(value, out);
+		return out.toString();
+	}
+
+	/**
+	 * Writes a value as JSON at the end of a buffer
+	 * @param value
+	 * @param out
+	 */
+	public static void write(Object value, StringBuilder out) {
+		if ( value == null ) {
+			out.append("null");
+		} else if ( value instanceof String ) {
+			quote((String) value, out);
+		} else if ( value instanceof Number || value instanceof Boolean ) {
+			out.append(value);
+		} else if ( value instanceof Map ) {
+			out.append('{');
+			boolean first = true;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if ( !first ) {
+					out.append(',');
+				}
+				first = false;
+				quote(String.valueOf(entry.getKey()), out);
+				out.append(':');
+				write(entry.getValue(), out);
+			}
+			out.append('}');
+		} else if ( value instanceof List ) {
+			out.append('[');
+			List<?> list = (List<?>) value;
+			for (int i = 0; i < list.size(); i++) {
+				if ( i > 0 ) {
+					out.append(',');
+				}
+				write(list.get(i), out);
+			}
+			out.append(']');
+		} else if ( value instanceof long[] ) {
+			long[] array = (long[]) value;
+			out.append('[');
+			for (int i = 0; i < array.length; i++) {
+				out.append(i > 0 ? "," : "").append(array[i]);
+			}
+			out.append(']');
+		} else if ( value instanceof int[] ) {
+			int[] array = (int[]) value;
+			out.append('[');
+			for (int i = 0; i < array.length; i++) {
+				out.append(i > 0 ? "," : "").append(array[i]);
+			}
+			out.append(']');
+		} else {
+			quote(value.toString(), out);
+		}
+	}
+
+	private static void quote(String string, StringBuilder out) {
+		out.append('"');
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			switch (c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if ( c < ' ' ) {
+					out.append(String.format("\\u%04x", (int) c));
+				} else {
+					out.append(c);
+				}
+			}
+		}
+		out.append('"');
+	}
+
+	private Object value() {
+		this.skipSpaces();
+		if ( this.position == this.text.length() ) {
+			throw this.error();
+		}
+		char c = this.text.charAt(this.position);
+		if ( c == '{' ) {
+			return this.object();
+		} else if ( c == '[' ) {
+			return this.array();
+		} else if ( c == '"' ) {
+			return this.string();
+		} else if ( this.text.startsWith("true", this.position) ) {
+			this.position += 4;
+			return Boolean.TRUE;
+		} else if ( this.text.startsWith("false", this.position) ) {
+			this.position += 5;
+			return Boolean.FALSE;
+		} else if ( this.text.startsWith("null", this.position) ) {
+			this.position += 4;
+			return null;
+		}
+		return this.number();
+	}
+
+	private Map<String, Object> object() {
+		Map<String, Object> object = new LinkedHashMap<String, Object>();
+		this.position++;
+		this.skipSpaces();
+		if ( this.accept('}') ) {
+			return object;
+		}
+		do {
+			this.skipSpaces();
+			if ( !this.text.startsWith("\"", this.position) ) {
+				throw this.error();
+			}
+			String key = this.string();
+			this.skipSpaces();
+			this.expect(':');
+			object.put(key, this.value());
+			this.skipSpaces();
+		} while (this.accept(','));
+		this.expect('}');
+		return object;
+	}
+
+	private List<Object> array() {
+		List<Object> array = new ArrayList<Object>();
+		this.position++;
+		this.skipSpaces();
+		if ( this.accept(']') ) {
+			return array;
+		}
+		do {
+			array.add(this.value());
+			this.skipSpaces();
+		} while (this.accept(','));
+		this.expect(']');
+		return array;
+	}
+
+	private String string() {
+		StringBuilder string = new StringBuilder();
+		this.position++;
+		while (true) {
+			if ( this.position >= this.text.length() ) {
+				throw this.error();
+			}
+			char c = this.text.charAt(this.position++);
+			if ( c == '"' ) {
+				return string.toString();
+			} else if ( c != '\\' ) {
+				string.append(c);
+				continue;
+			}
+			if ( this.position >= this.text.length() ) {
+				throw this.error();
+			}
+			c = this.text.charAt(this.position++);
+			switch (c) {
+			case 'b':
+				string.append('\b');
+				break;
+			case 'f':
+				string.append('\f');
+				break;
+			case 'n':
+				string.append('\n');
+				break;
+			case 'r':
+				string.append('\r');
+				break;
+			case 't':
+				string.append('\t');
+				break;
+			case 'u':
+				if ( this.position + 4 > this.text.length() ) {
+					throw this.error();
+				}
+				string.append((char) Integer.parseInt(this.text.substring(this.position, this.position + 4), 16));
+				this.position += 4;
+				break;
+			default:
+				string.append(c);
+			}
+		}
+	}
+
+	private Number number() {
+		int start = this.position;
+		boolean fraction = false;
+		while (this.position < this.text.length()) {
+			char c = this.text.charAt(this.position);
+			if ( c == '.' || c == 'e' || c == 'E' ) {
+				fraction = true;
+			} else if ( !(c == '-' || c == '+' || (c >= '0' && c <= '9')) ) {
+				break;
+			}
+			this.position++;
+		}
+		try {
+			String number = this.text.substring(start, this.position);
+			return fraction ? (Number) Double.valueOf(number) : (Number) Long.valueOf(number);
+		} catch (NumberFormatException e) {
+			throw this.error();
+		}
+	}
+
+	private void skipSpaces() {
+		while (this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position))) {
+			this.position++;
+		}
+	}
+
+	private boolean accept(char c) {
+		if ( this.position < this.text.length() && this.text.charAt(this.position) == c ) {
+			this.position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(char c) {
+		if ( !this.accept(c) ) {
+			throw this.error();
+		}
+	}
+
+	private IllegalArgumentException error() {
+		return new IllegalArgumentException("Invalid JSON at offset " + this.position);
+	}
+
+}
@@ -0,0 +1,45 @@
+package util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory mapped source file
+ * The whole file is mapped once and each byte is read as one character
+ * (ISO-8859-1), so reading a char is a single buffer access
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class MappedSource extends ByteBufferSource {
+
+	/**
+	 * Default constructor
+	 * @param name
+	 */
+	public MappedSource(String name) {
+		super(name, map(name));
+	}
+
+	/**
+	 * Maps a whole file
+	 * @param name
+	 * @return
+	 */
+	private static MappedByteBuffer map(String name) {
+		try (FileChannel channel = FileChannel.open(Paths.get(name), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if ( size > Integer.MAX_VALUE ) {
+				throw new IOException("Source file too large: " + name);
+			}
+			// The mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
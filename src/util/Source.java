@@ -0,0 +1,60 @@
+package util;
+
+/**
+ * Source code input class
+ * Gives offset based access to the characters of a source program, so the
+ * scanner can read it without any per line bookkeeping
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public abstract class Source {
+
+	// Character returned for every offset past the end of the source
+	public static final char EOT = '\000';
+
+	/**
+	 * Returns the char at the given offset, or EOT if the offset is past the end
+	 * @param offset
+	 * @return
+	 */
+	public abstract char charAt(int offset);
+
+	/**
+	 * Returns the text between two offsets (start inclusive, end exclusive)
+	 * Offsets past the end of the source are ignored
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public abstract String substring(int start, int end);
+
+	/**
+	 * Returns the source name (used in reports)
+	 * @return
+	 */
+	public abstract String getName();
+
+	/**
+	 * Returns the source length, or -1 while it is not known (a source read
+	 * from a stream only knows it once the stream ends)
+	 * @return
+	 */
+	public int length() {
+		return -1;
+	}
+
+	/**
+	 * Tells the source that the chars before an offset will not be read
+	 * again, so a source read from a stream may drop them
+	 * @param offset
+	 */
+	public void release(int offset) {
+	}
+
+	/**
+	 * Releases the resources held by the source
+	 */
+	public void close() {
+	}
+
+}
@@ -0,0 +1,91 @@
+package util.diagnostics;
+
+/**
+ * Diagnostic codes
+ * Each code knows the phase that reports it, its severity and the pattern
+ * of its message (filled with the diagnostic arguments only when the
+ * message is shown). Lexical and syntactic codes take as last argument the
+ * character or the token the error was found at
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public enum Code {
+	// Lexical errors
+	LEXICAL_ERROR(Phase.LEXICAL, "%s"),
+	UNEXPECTED_CHARACTER(Phase.LEXICAL, "I found a lexical error!"),
+	// Syntactic errors
+	SYNTACTIC_ERROR(Phase.SYNTACTIC, "%s"),
+	EXPECTED_TOKEN(Phase.SYNTACTIC, "Syntactic error: expecting %s, but found %s"),
+	INTEGER_TOO_LARGE(Phase.SYNTACTIC, "Syntactic error: integer constant %s is too large"),
+	// Semantic errors
+	SEMANTIC_ERROR(Phase.SEMANTIC, "%s"),
+	ALREADY_DEFINED(Phase.SEMANTIC, "Identifier %s already defined."),
+	UNDECLARED_VARIABLE(Phase.SEMANTIC, "Undeclared variable %s"),
+	NOT_A_VARIABLE(Phase.SEMANTIC, "%s is not a variable"),
+	UNDECLARED_SUBPROGRAM(Phase.SEMANTIC, "Undeclared subprogram %s"),
+	NOT_A_SUBPROGRAM(Phase.SEMANTIC, "%s is not a subprogram"),
+	ARGUMENT_COUNT(Phase.SEMANTIC, "%s expects %s arguments, but found %s"),
+	ARGUMENT_TYPE(Phase.SEMANTIC, "Argument %s of %s must be %s, but found %s"),
+	CONDITION_TYPE(Phase.SEMANTIC, "Condition must be boolean, but found %s"),
+	ASSIGNMENT_TYPE(Phase.SEMANTIC, "Cannot assign a %s value to %s, which is %s"),
+	BREAK_OUTSIDE_LOOP(Phase.SEMANTIC, "break outside a loop"),
+	CONTINUE_OUTSIDE_LOOP(Phase.SEMANTIC, "continue outside a loop"),
+	COMPARISON_TYPES(Phase.SEMANTIC, "Cannot compare %s with %s"),
+	ARITHMETIC_TYPE(Phase.SEMANTIC, "Arithmetic operand must be integer, but found %s"),
+	PROCEDURE_VALUE(Phase.SEMANTIC, "Procedure %s has no value"),
+	// Errors outside the compiler phases: reading files and compiler bugs
+	INPUT_ERROR(Phase.INPUT, "%s"),
+	INTERNAL_ERROR(Phase.INPUT, "Internal compiler error: %s");
+
+	/**
+	 * The phases that report diagnostics, with the title of their reports
+	 * and the name of the subject they point at (null if none)
+	 */
+	public enum Phase {
+		LEXICAL("LEXICAL", "Character"),
+		SYNTACTIC("SYNTACTIC", "Token"),
+		SEMANTIC("SEMANTIC", null),
+		INPUT(null, null);
+
+		private final String title, subject;
+
+		private Phase(String title, String subject) {
+			this.title = title;
+			this.subject = subject;
+		}
+
+		public String getTitle() {
+			return this.title;
+		}
+
+		public String getSubject() {
+			return this.subject;
+		}
+	}
+
+	private final Phase phase;
+	private final Severity severity;
+	private final String pattern;
+
+	private Code(Phase phase, String pattern) {
+		this(phase, Severity.ERROR, pattern);
+	}
+
+	private Code(Phase phase, Severity severity, String pattern) {
+		this.phase = phase;
+		this.severity = severity;
+		this.pattern = pattern;
+	}
+
+	public Phase getPhase() {
+		return this.phase;
+	}
+
+	public Severity getSeverity() {
+		return this.severity;
+	}
+
+	public String getPattern() {
+		return this.pattern;
+	}
+}
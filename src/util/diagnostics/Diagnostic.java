@@ -0,0 +1,136 @@
+package util.diagnostics;
+
+/**
+ * Compilation diagnostic
+ * A code, a position and the arguments of the message; the message and the
+ * report are only built when they are shown, so finding an error costs
+ * about as much as allocating this object
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public final class Diagnostic {
+
+	// The code (phase, severity and message pattern)
+	private final Code code;
+	// The source file (null until the diagnostic is reported to a sink)
+	private String file;
+	// Line and column (from 0; -1 if unknown)
+	private final int line, column;
+	// Offset of the subject in the source (-1 if unknown)
+	private final int offset;
+	// The message arguments (for lexical and syntactic codes, the last one is the subject)
+	private final Object[] arguments;
+
+	/**
+	 * Default constructor
+	 * @param code
+	 * @param line - from 0 (-1 if unknown)
+	 * @param column - from 0 (-1 if unknown)
+	 * @param arguments
+	 */
+	public Diagnostic(Code code, int line, int column, Object... arguments) {
+		this(code, line, column, -1, arguments);
+	}
+
+	/**
+	 * Creates a diagnostic that also knows where its subject starts in the source
+	 * @param code
+	 * @param line - from 0 (-1 if unknown)
+	 * @param column - from 0 (-1 if unknown)
+	 * @param offset - offset of the subject (-1 if unknown)
+	 * @param arguments
+	 */
+	public Diagnostic(Code code, int line, int column, int offset, Object[] arguments) {
+		this.code = code;
+		this.line = line;
+		this.column = column;
+		this.offset = offset;
+		this.arguments = arguments;
+	}
+
+	public Code getCode() {
+		return this.code;
+	}
+
+	public Severity getSeverity() {
+		return this.code.getSeverity();
+	}
+
+	public String getFile() {
+		return this.file;
+	}
+
+	void setFile(String file) {
+		this.file = file;
+	}
+
+	public int getLine() {
+		return this.line;
+	}
+
+	public int getColumn() {
+		return this.column;
+	}
+
+	public int getOffset() {
+		return this.offset;
+	}
+
+	public Object[] getArguments() {
+		return this.arguments;
+	}
+
+	/**
+	 * Returns the message (built from the code pattern and the arguments)
+	 * @return
+	 */
+	public String getMessage() {
+		return String.format(this.code.getPattern(), this.arguments);
+	}
+
+	/**
+	 * Returns the character or the token spelling the error was found at
+	 * (null if the code has none)
+	 * @return
+	 */
+	public String getSubject() {
+		if ( this.code.getPhase().getSubject() == null || this.arguments.length == 0 ) {
+			return null;
+		}
+		return String.valueOf(this.arguments[this.arguments.length - 1]);
+	}
+
+	/**
+	 * Appends the error report to a buffer
+	 * @param out
+	 */
+	public void format(StringBuilder out) {
+		Code.Phase phase = this.code.getPhase();
+		if ( phase.getTitle() == null ) {
+			out.append(this.getMessage());
+			return;
+		}
+		out.append("----------------------------- ").append(phase.getTitle())
+				.append(" ERROR REPORT - BEGIN -----------------------------\n");
+		out.append(">> Message: ").append(this.getMessage()).append('\n');
+		if ( phase.getSubject() != null ) {
+			out.append(">> ").append(phase.getSubject()).append(": ").append(this.getSubject()).append('\n');
+		}
+		if ( this.line >= 0 ) {
+			out.append("   at line: ").append(this.line + 1).append('\n');
+			out.append("   at column: ").append(this.column + 1).append('\n');
+		}
+		out.append("------------------------------ ").append(phase.getTitle())
+				.append(" ERROR REPORT - END ------------------------------\n");
+	}
+
+	/**
+	 * Returns the error report
+	 */
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		this.format(str);
+		return str.toString();
+	}
+
+}
@@ -0,0 +1,44 @@
+package util.diagnostics;
+
+/**
+ * Exception that carries a diagnostic
+ * The compiler phases throw it at their API boundaries (and to unwind to
+ * the point where the parser recovers), so it captures no stack trace and
+ * only builds its message and report when they are asked for
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public abstract class DiagnosticException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	// The diagnostic
+	private final Diagnostic diagnostic;
+
+	/**
+	 * Default constructor
+	 * @param diagnostic
+	 */
+	protected DiagnosticException(Diagnostic diagnostic) {
+		super(null, null, true, false);
+		this.diagnostic = diagnostic;
+	}
+
+	public Diagnostic getDiagnostic() {
+		return this.diagnostic;
+	}
+
+	@Override
+	public String getMessage() {
+		return this.diagnostic.getMessage();
+	}
+
+	/**
+	 * Creates the error report
+	 */
+	@Override
+	public String toString() {
+		return this.diagnostic.toString();
+	}
+
+}
@@ -0,0 +1,96 @@
+package util.diagnostics;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Diagnostic sink
+ * Collects the diagnostics of a source file, in the order they are found
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public class DiagnosticSink {
+
+	// The source file
+	private final String file;
+	// The diagnostics and how many of them are errors
+	private final List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+	private int errors;
+
+	/**
+	 * Default constructor
+	 * @param file - the source file of the diagnostics
+	 */
+	public DiagnosticSink(String file) {
+		this.file = file;
+	}
+
+	/**
+	 * Adds a diagnostic (of this sink source file, unless it has one)
+	 * @param diagnostic
+	 */
+	public void report(Diagnostic diagnostic) {
+		if ( diagnostic.getFile() == null ) {
+			diagnostic.setFile(this.file);
+		}
+		this.diagnostics.add(diagnostic);
+		if ( diagnostic.getSeverity() == Severity.ERROR ) {
+			this.errors++;
+		}
+	}
+
+	/**
+	 * Adds the diagnostic of an exception and of the exceptions it holds
+	 * (other errors found by the same phase); exceptions that are not
+	 * compiler errors are reported with their class and message: I/O errors
+	 * (also unchecked ones, from sources) as input errors, any other
+	 * unchecked exception as an internal error of the compiler
+	 * @param e
+	 */
+	public void report(Throwable e) {
+		this.report(diagnostic(e));
+		for (Throwable other : e.getSuppressed()) {
+			this.report(diagnostic(other));
+		}
+	}
+
+	/**
+	 * Returns the diagnostic of an exception
+	 * @param e
+	 * @return
+	 */
+	public static Diagnostic diagnostic(Throwable e) {
+		if ( e instanceof DiagnosticException ) {
+			return ((DiagnosticException) e).getDiagnostic();
+		}
+		if ( e instanceof UncheckedIOException ) {
+			return new Diagnostic(Code.INPUT_ERROR, -1, -1, e.getCause().toString());
+		}
+		return new Diagnostic(e instanceof RuntimeException ? Code.INTERNAL_ERROR : Code.INPUT_ERROR, -1, -1, e.toString());
+	}
+
+	public List<Diagnostic> getDiagnostics() {
+		return this.diagnostics;
+	}
+
+	public int getErrorCount() {
+		return this.errors;
+	}
+
+	public boolean hasErrors() {
+		return this.errors > 0;
+	}
+
+	/**
+	 * Returns the reports of every diagnostic
+	 */
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		for (Diagnostic diagnostic : this.diagnostics) {
+			diagnostic.format(str);
+		}
+		return str.toString();
+	}
+
+}
@@ -0,0 +1,11 @@
+package util.diagnostics;
+
+/**
+ * Diagnostic severities
+ * @version 2010-september-04
+ * @discipline Compiladores
+ */
+public enum Severity {
+	ERROR,
+	WARNING;
+}
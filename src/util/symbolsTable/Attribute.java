@@ -14,13 +14,29 @@ public class Attribute {
 
 	// AST node
 	private AST ast;
+	// Storage slot of the identifier (-1 if it has none)
+	private int slot;
+	// Scope where the identifier was declared (0 for globals)
+	private int scope;
 	
 	/**
 	 * Default constructor
 	 * @param ast
 	 */
 	public Attribute(AST ast) {
+		this(ast, -1, 0);
+	}
+	
+	/**
+	 * Constructor for identifiers bound to a storage slot
+	 * @param ast
+	 * @param slot
+	 * @param scope
+	 */
+	public Attribute(AST ast, int slot, int scope) {
 		this.ast = ast;
+		this.slot = slot;
+		this.scope = scope;
 	}
 
 	/**
@@ -30,5 +46,21 @@ public class Attribute {
 	public AST getAst() {
 		return ast;
 	}
+
+	/**
+	 * Returns the storage slot
+	 * @return
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Returns the declaration scope
+	 * @return
+	 */
+	public int getScope() {
+		return scope;
+	}
 	
 }
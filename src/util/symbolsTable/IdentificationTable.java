@@ -2,13 +2,17 @@ package util.symbolsTable;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Set;
 
 import util.AST.AST;
+import util.diagnostics.Code;
+import util.diagnostics.Diagnostic;
 import checker.SemanticException;
 
 /**
  * Identification table class
+ * Each name maps to its declaration, so a lookup is a single probe (a name
+ * visible in some scope cannot be declared again, so it has only one). Each
+ * scope keeps the names it declared, so closing a scope only removes those
  * @version 2010-september-04
  * @discipline Compiladores
  * @author Gustavo H P Carvalho
@@ -16,32 +20,32 @@ import checker.SemanticException;
  */
 public class IdentificationTable {
 
-	// The table maps a key to an attribute
-	private HashMap<Key, Attribute> table;
+	// The table maps a name to its attribute (null for reserved words)
+	private HashMap<String, Attribute> table;
+	// Names declared so far, in declaration order (the undo list of every open scope)
+	private ArrayList<String> declared;
+	// Size of the undo list when each scope was opened
+	private int[] marks;
 	// Current table scope
 	private int currentScope;
+	// Operations done so far (declarations, lookups and scopes opened)
+	private int declarations, lookups, scopes;
 	
 	/**
 	 * Default constructor
 	 */
 	public IdentificationTable() {
 		// Creates the mapping table
-		this.table = new HashMap<Key, Attribute>();
+		this.table = new HashMap<String, Attribute>();
+		this.declared = new ArrayList<String>();
+		this.marks = new int[16];
 
 		// Puts in the table each language reserved word
-		this.table.put(new Key(0, "void"), null);
-		this.table.put(new Key(0, "int"), null);
-		this.table.put(new Key(0, "double"), null);
-		this.table.put(new Key(0, "boolean"), null);
-		this.table.put(new Key(0, "if"), null);
-		this.table.put(new Key(0, "else"), null);
-		this.table.put(new Key(0, "while"), null);
-		this.table.put(new Key(0, "return"), null);
-		this.table.put(new Key(0, "break"), null);
-		this.table.put(new Key(0, "continue"), null);
-		this.table.put(new Key(0, "println"), null);
-		this.table.put(new Key(0, "false"), null);
-		this.table.put(new Key(0, "true"), null);
+		String[] reservedWords = { "void", "int", "double", "boolean", "if", "else", "while",
+				"return", "break", "continue", "println", "false", "true" };
+		for (String reservedWord : reservedWords) {
+			this.table.put(reservedWord, null);
+		}
 
 		// Initializes currentScope to 0 (global)
 		this.currentScope = 0;
@@ -51,24 +55,23 @@ public class IdentificationTable {
 	 * Opens a scope (increments currentScope)
 	 */
 	public void openScope() {
+		this.scopes++;
 		this.currentScope++;
+		if ( this.currentScope == this.marks.length ) {
+			int[] marks = new int[this.marks.length * 2];
+			System.arraycopy(this.marks, 0, marks, 0, this.marks.length);
+			this.marks = marks;
+		}
+		this.marks[this.currentScope] = this.declared.size();
 	}
 	
 	/**
-	 * Closes a scope (decreases currentScope and updates identification table)
+	 * Closes a scope (removes the entries declared in it)
 	 */
 	public void closeScope() {
-		ArrayList<Key> currentScopeKeys = new ArrayList<Key>();
-		// Gets the keys of entries for current scope
-		Set<Key> keys = this.table.keySet();
-		for (Key key : keys) {
-			if ( key.getScope() == this.currentScope ) {
-				currentScopeKeys.add(key);
-			}
-		}
-		// Removes each entry for current scope
-		for (Key key2 : currentScopeKeys) {
-			this.table.remove(key2);
+		int mark = this.marks[this.currentScope];
+		for (int i = this.declared.size() - 1; i >= mark; i--) {
+			this.table.remove(this.declared.remove(i));
 		}
 		// Decreases current scope
 		this.currentScope--;
@@ -81,26 +84,26 @@ public class IdentificationTable {
 	 * @throws SemanticException
 	 */
 	public void enter(String id, AST node) throws SemanticException {
-		boolean hasFound = false;
-		// Verifies if in the current scope already exists an identifier with the same spelling
-		for (int i=this.currentScope; i>=0; i--) {
-			Key key = new Key(i, id);
-			if ( this.table.containsKey(key) ) {
-				hasFound = true;
-				break;
-			}
-		}
-		
-		// If does not exist
-		if ( hasFound == false ) {
-			// Adds the new entry
-			Key key = new Key(this.currentScope, id);
-			this.table.put(key, new Attribute(node));
-		// If exists
-		} else {
+		this.enter(id, node, -1);
+	}
+	
+	/**
+	 * Adds an entry bound to a storage slot (a variable index, a register...)
+	 * @param id
+	 * @param node
+	 * @param slot
+	 * @throws SemanticException
+	 */
+	public void enter(String id, AST node, int slot) throws SemanticException {
+		// Verifies if in some scope level already exists an identifier with the same spelling
+		if ( this.table.containsKey(id) ) {
 			// Raises a semantic exception
-			throw new SemanticException("Identifier " + id + " already defined.");
+			throw new SemanticException(new Diagnostic(Code.ALREADY_DEFINED, -1, -1, id));
 		}
+		// Adds the new entry
+		this.table.put(id, new Attribute(node, slot, this.currentScope));
+		this.declared.add(id);
+		this.declarations++;
 	}
 	
 	/**
@@ -109,16 +112,20 @@ public class IdentificationTable {
 	 * @return
 	 */
 	public AST retrieve(String id) {
-		// For each scope level
-		for (int i=this.currentScope; i>=0; i--) {
-			Key key = new Key(i, id);
-			// Verifies if the identifier exists
-			if ( this.table.containsKey(key) ) {
-				// Returns the attribute of the first entry found (for the highest scope)
-				return this.table.get(key).getAst();
-			}
-		}
-		return null;
+		Attribute attribute = this.retrieveAttribute(id);
+		return attribute != null ? attribute.getAst() : null;
+	}
+	
+	/**
+	 * Verifies if exists an identifier (in some scope level) and returns its
+	 * whole attribute (node, slot and scope)
+	 * @param id
+	 * @return
+	 */
+	public Attribute retrieveAttribute(String id) {
+		this.lookups++;
+		// Reserved words have no attribute
+		return this.table.get(id);
 	}
 	
 	/**
@@ -127,17 +134,32 @@ public class IdentificationTable {
 	 * @return
 	 */
 	public boolean containsKey(String id) {
-		// For each scope level
-		for (int i=this.currentScope; i>=0; i--) {
-			Key key = new Key(i, id);
-			// Verifies if the identifier exists
-			if ( this.table.containsKey(key) ) {
-				// Returns true if it exists
-				return true;
-			}
-		}
-		// Returns false if it does not exist
-		return false;
+		this.lookups++;
+		return this.table.containsKey(id);
+	}
+	
+	/**
+	 * Returns the number of names declared so far
+	 * @return
+	 */
+	public int getDeclarations() {
+		return this.declarations;
+	}
+	
+	/**
+	 * Returns the number of lookups done so far
+	 * @return
+	 */
+	public int getLookups() {
+		return this.lookups;
+	}
+	
+	/**
+	 * Returns the number of scopes opened so far
+	 * @return
+	 */
+	public int getScopes() {
+		return this.scopes;
 	}
 	
 }